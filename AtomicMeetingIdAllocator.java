@@ -0,0 +1,88 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AtomicMeetingIdAllocator - Implements MeetingIdAllocator interface.
+ *
+ * Hands out meeting IDs from a monotonic sequence starting at 1. Safe for use by concurrent writers: each call to
+ * nextId() is a single compare-and-set on the sequence, so no locking is needed.
+ */
+public class AtomicMeetingIdAllocator implements MeetingIdAllocator {
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Allocates a new meeting ID.
+     *
+     * @return a meeting ID that has not been allocated or reserved before.
+     * @throws IllegalStateException if the ID space is exhausted.
+     */
+    @Override
+    public int nextId() {
+        for (;;) {
+            int id = this.nextId.get();
+
+            // The sequence wraps to a negative value once Integer.MAX_VALUE has been handed out.
+            if (id <= 0) {
+                throw new IllegalStateException("Meeting ID space exhausted.");
+            }
+            if (this.nextId.compareAndSet(id, id + 1)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Allocates a range of consecutive meeting IDs in one step.
+     *
+     * @param count number of IDs to allocate.
+     * @return the first ID of the range.
+     * @throws IllegalArgumentException if the count is not positive.
+     * @throws IllegalStateException if the ID space cannot hold the range.
+     */
+    @Override
+    public int nextIds(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("ID count must be positive.");
+        }
+        for (;;) {
+            int id = this.nextId.get();
+
+            if (id <= 0 || (long) id + count - 1 > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Meeting ID space exhausted.");
+            }
+            // Moving past Integer.MAX_VALUE wraps to a negative value, which marks the space as exhausted.
+            if (this.nextId.compareAndSet(id, id + count)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Reserves an ID that is already in use, so that it will not be allocated.
+     *
+     * @param id the ID in use.
+     */
+    @Override
+    public void reserve(int id) {
+        for (;;) {
+            int current = this.nextId.get();
+
+            // IDs behind the sequence can never be handed out again, so only those ahead of it move it on.
+            if (current <= 0 || id < current) {
+                return;
+            }
+            if (this.nextId.compareAndSet(current, id + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the ID the next call to nextId() will return, without allocating it.
+     *
+     * @return the next meeting ID.
+     */
+    @Override
+    public int peekNextId() {
+        return this.nextId.get();
+    }
+}
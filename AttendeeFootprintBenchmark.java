@@ -0,0 +1,100 @@
+import java.util.*;
+
+/**
+ * AttendeeFootprintBenchmark
+ *
+ * Compares the heap taken by meetings whose attendees are held in a HashSet of contacts with meetings whose attendees
+ * are held in an AttendeeSet of contact IDs.
+ *
+ * Usage: java AttendeeFootprintBenchmark [meetings] [contacts]
+ *
+ * The defaults are 5,000,000 meetings of 1 to 7 attendees (4 on average) drawn from 100,000 contacts. Contacts are
+ * created once and shared, so only the meetings and their attendee sets are counted. The footprint is the growth of
+ * the used heap after a full GC, as in MeetingFootprintBenchmark. Give it a heap of about 4 GB (-Xmx4g).
+ */
+public class AttendeeFootprintBenchmark {
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int meetings = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int contacts = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        final IntHashMap<Contact> contactIndex = new IntHashMap<Contact>();
+        for (int x = 1; x <= contacts; x++) {
+            contactIndex.put(x, new ContactImpl(x, "Contact " + x, ""));
+        }
+        ContactLookup contactLookup = new ContactLookup() {
+            @Override
+            public Contact getContact(int id) {
+                return contactIndex.get(id);
+            }
+        };
+
+        double hashSetBytes = measure(meetings, contacts, contactIndex, null);
+        double attendeeSetBytes = measure(meetings, contacts, contactIndex, contactLookup);
+        System.out.printf("HashSet attendees: %.1f bytes per meeting, %.0f MB in all.%n", hashSetBytes,
+                hashSetBytes * meetings / (1024 * 1024));
+        System.out.printf("AttendeeSet attendees: %.1f bytes per meeting, %.0f MB in all.%n", attendeeSetBytes,
+                attendeeSetBytes * meetings / (1024 * 1024));
+        System.out.printf("Saved: %.1f bytes per meeting, %.0f MB in all.%n", hashSetBytes - attendeeSetBytes,
+                (hashSetBytes - attendeeSetBytes) * meetings / (1024 * 1024));
+    }
+
+    /**
+     * Creates the meetings and returns the heap they take.
+     *
+     * @param meetings number of meetings.
+     * @param contacts number of contacts.
+     * @param contactIndex the contacts by ID.
+     * @param contactLookup lookup for AttendeeSet attendees, or null for HashSet attendees.
+     * @return used heap growth per meeting, in bytes.
+     */
+    private static double measure(int meetings, int contacts, IntHashMap<Contact> contactIndex,
+                                  ContactLookup contactLookup) {
+        Random random = new Random(42);
+        List<Meeting> meetingList = new ArrayList<Meeting>(meetings);
+        long before = usedHeap();
+
+        for (int x = 0; x < meetings; x++) {
+            int[] attendeeIds = new int[1 + random.nextInt(7)];
+            for (int y = 0; y < attendeeIds.length; y++) {
+                attendeeIds[y] = 1 + random.nextInt(contacts);
+            }
+
+            Set<Contact> attendees = null;
+            if (contactLookup == null) {
+                attendees = new HashSet<Contact>();
+                for (int id : attendeeIds) {
+                    attendees.add(contactIndex.get(id));
+                }
+            } else {
+                attendees = new AttendeeSet(attendeeIds, contactLookup);
+            }
+            meetingList.add(new FutureMeetingImpl(x + 1, 1262304000000L + x * 60000L, attendees));
+        }
+
+        double bytesPerMeeting = (double) (usedHeap() - before) / meetings;
+
+        // Keep the meetings reachable until measured.
+        if (meetingList.size() != meetings) {
+            throw new IllegalStateException("Meetings were lost.");
+        }
+        return bytesPerMeeting;
+    }
+
+    /**
+     * Returns the used heap after asking for full garbage collections.
+     *
+     * @return used heap in bytes.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int x = 0; x < 3; x++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
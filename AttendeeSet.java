@@ -0,0 +1,136 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * AttendeeSet
+ *
+ * The attendees of a meeting, held as their contact IDs in a sorted int array and looked up through a ContactLookup
+ * when read. A HashSet of four contacts takes about 270 bytes; this takes about 56.
+ *
+ * The set cannot be changed. Every ID is expected to belong to a contact the lookup can find, so IDs that are not
+ * known have to be left out before creating the set.
+ */
+public final class AttendeeSet extends AbstractSet<Contact> {
+    private final int[] contactIds;
+    private final ContactLookup contactLookup;
+
+    /**
+     * Constructor
+     *
+     * @param contactIds contact IDs of the attendees, in any order. The array is copied and duplicates are dropped.
+     * @param contactLookup where the contacts are looked up when read.
+     */
+    public AttendeeSet(int[] contactIds, ContactLookup contactLookup) {
+        int[] sortedIds = contactIds.clone();
+        Arrays.sort(sortedIds);
+
+        int size = 0;
+        for (int x = 0; x < sortedIds.length; x++) {
+            if (size == 0 || sortedIds[size - 1] != sortedIds[x]) {
+                sortedIds[size++] = sortedIds[x];
+            }
+        }
+
+        this.contactIds = size == sortedIds.length ? sortedIds : Arrays.copyOf(sortedIds, size);
+        this.contactLookup = contactLookup;
+    }
+
+    /**
+     * Returns an AttendeeSet of the contacts, which is the collection itself if it is already one using the same
+     * lookup.
+     *
+     * @param contacts the attendees.
+     * @param contactLookup where the contacts are looked up when read.
+     * @return the set of attendees.
+     */
+    public static AttendeeSet of(Collection<? extends Contact> contacts, ContactLookup contactLookup) {
+        if (contacts instanceof AttendeeSet && ((AttendeeSet) contacts).contactLookup == contactLookup) {
+            return (AttendeeSet) contacts;
+        }
+
+        int[] contactIds = new int[contacts.size()];
+        int x = 0;
+        for (Contact contact : contacts) {
+            contactIds[x++] = contact.getId();
+        }
+        return new AttendeeSet(contactIds, contactLookup);
+    }
+
+    /**
+     * Returns the contact IDs of the attendees, without looking up the contacts.
+     *
+     * @return a copy of the IDs, in ascending order.
+     */
+    public int[] getContactIds() {
+        return this.contactIds.clone();
+    }
+
+    /**
+     * Checks if a contact is an attendee, by ID only.
+     *
+     * @param contactId the contact ID.
+     * @return true if the contact is an attendee, otherwise false.
+     */
+    public boolean containsContactId(int contactId) {
+        return Arrays.binarySearch(this.contactIds, contactId) >= 0;
+    }
+
+    /**
+     * Returns the number of attendees.
+     *
+     * @return the number of attendees.
+     */
+    @Override
+    public int size() {
+        return this.contactIds.length;
+    }
+
+    /**
+     * Checks if the set contains a contact.
+     *
+     * @param o the contact to look for.
+     * @return true if the contact is an attendee, otherwise false.
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Contact)) {
+            return false;
+        }
+
+        Contact contact = (Contact) o;
+        return containsContactId(contact.getId()) && contact.equals(this.contactLookup.getContact(contact.getId()));
+    }
+
+    /**
+     * Returns an iterator over the attendees, in ascending order of ID. Each contact is looked up as it is reached.
+     *
+     * @return the iterator.
+     */
+    @Override
+    public Iterator<Contact> iterator() {
+        return new Iterator<Contact>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.position < AttendeeSet.this.contactIds.length;
+            }
+
+            @Override
+            public Contact next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more attendees.");
+                }
+                return AttendeeSet.this.contactLookup.getContact(AttendeeSet.this.contactIds[this.position++]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Attendees cannot be changed.");
+            }
+        };
+    }
+}
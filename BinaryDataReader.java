@@ -0,0 +1,239 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * BinaryDataReader
+ *
+ * Streams records out of the binary snapshot format written by BinaryDataWriter.
+ *
+ * Nothing is tokenized or parsed from text: numbers are decoded straight from the bytes and dates are already epoch
+ * milliseconds. The checksum is checked once the END tag is reached, so records are handed on before the file is
+ * known to be intact and a caller must discard what it loaded if read() throws.
+ */
+public class BinaryDataReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int[] NO_IDS = new int[0];
+
+    private InputStream in = null;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    // Start of the bytes in the buffer not yet added to the checksum.
+    private int checksumStart = 0;
+    private CRC32 crc = new CRC32();
+
+    /**
+     * Reads every record from the stream and passes each one to the handler.
+     *
+     * @param in stream positioned at the start of the snapshot.
+     * @param handler receiver of the records.
+     * @return the number of records read.
+     * @throws IOException if reading fails, or if the snapshot is not in this format, is truncated or is damaged.
+     */
+    public long read(InputStream in, DataRecordHandler handler) throws IOException {
+        this.in = in;
+        this.position = 0;
+        this.limit = 0;
+        this.checksumStart = 0;
+        this.crc.reset();
+
+        if (readFixedInt() != BinaryDataWriter.MAGIC) {
+            throw new IOException("Not a binary data file.");
+        }
+        int version = readVarInt();
+        if (version != BinaryDataWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported binary data file version " + version + ".");
+        }
+
+        long records = 0;
+        while (true) {
+            int tag = readByte();
+            if (tag == BinaryDataWriter.END_TAG) {
+                break;
+            }
+            records++;
+
+            switch (tag) {
+                case BinaryDataWriter.CONTACT_TAG:
+                    handler.contactRecord(readVarInt(), readString(), readString());
+                    break;
+                case BinaryDataWriter.PAST_MEETING_TAG:
+                    handler.pastMeetingRecord(readVarInt(), readLong(), readString(), readIds());
+                    break;
+                case BinaryDataWriter.FUTURE_MEETING_TAG:
+                    handler.futureMeetingRecord(readVarInt(), readLong(), readIds());
+                    break;
+                case BinaryDataWriter.MEETING_NOTES_TAG:
+                    handler.meetingNotesRecord(readVarInt(), readString());
+                    break;
+                case BinaryDataWriter.CONTACT_NOTES_TAG:
+                    handler.contactNotesRecord(readVarInt(), readString());
+                    break;
+                case BinaryDataWriter.MEETING_SEQUENCE_TAG:
+                    handler.meetingSequenceRecord(readVarInt());
+                    break;
+                default:
+                    throw new IOException("Unknown record tag " + tag + " in binary data file.");
+            }
+        }
+
+        // Everything up to and including the END tag is covered by the checksum.
+        this.crc.update(this.buffer, this.checksumStart, this.position - this.checksumStart);
+        this.checksumStart = this.position;
+        int expected = (int) this.crc.getValue();
+        if (readFixedInt() != expected) {
+            throw new IOException("Binary data file is damaged: its checksum does not match its contents.");
+        }
+        return records;
+    }
+
+    /**
+     * Reads one byte.
+     *
+     * @return the byte as an unsigned value.
+     * @throws IOException if the stream ends or reading fails.
+     */
+    private int readByte() throws IOException {
+        if (this.position == this.limit) {
+            fill(1);
+        }
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @return the value.
+     * @throws IOException if the varint is too long, the stream ends or reading fails.
+     */
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad number in binary data file.");
+    }
+
+    /**
+     * Reads 8 big-endian bytes as a long.
+     *
+     * @return the value.
+     * @throws IOException if the stream ends or reading fails.
+     */
+    private long readLong() throws IOException {
+        long value = 0;
+        for (int x = 0; x < 8; x++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads 4 big-endian bytes as an int.
+     *
+     * @return the value.
+     * @throws IOException if the stream ends or reading fails.
+     */
+    private int readFixedInt() throws IOException {
+        int value = 0;
+        for (int x = 0; x < 4; x++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @return the string, or null if null was written.
+     * @throws IOException if the stream ends or reading fails.
+     */
+    private String readString() throws IOException {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        if (length <= this.buffer.length) {
+            if (this.limit - this.position < length) {
+                fill(length);
+            }
+            String value = new String(this.buffer, this.position, length, ContactManagerImpl.DATA_FILE_CHARSET);
+            this.position += length;
+            return value;
+        }
+
+        // Longer than the buffer: copy what is buffered, then read the rest straight from the stream.
+        byte[] bytes = new byte[length];
+        int buffered = this.limit - this.position;
+        System.arraycopy(this.buffer, this.position, bytes, 0, buffered);
+        this.position = this.limit;
+
+        // The checksum is order dependent, so add the buffered bytes before the ones read directly.
+        this.crc.update(this.buffer, this.checksumStart, this.limit - this.checksumStart);
+        this.checksumStart = this.limit;
+
+        int read = buffered;
+        while (read < length) {
+            int count = this.in.read(bytes, read, length - read);
+            if (count < 0) {
+                throw new EOFException("Binary data file is incomplete.");
+            }
+            read += count;
+        }
+        this.crc.update(bytes, buffered, length - buffered);
+        return new String(bytes, ContactManagerImpl.DATA_FILE_CHARSET);
+    }
+
+    /**
+     * Reads a count-prefixed list of contact IDs.
+     *
+     * @return the contact IDs.
+     * @throws IOException if the stream ends or reading fails.
+     */
+    private int[] readIds() throws IOException {
+        int count = readVarInt();
+        if (count == 0) {
+            return NO_IDS;
+        }
+
+        int[] ids = new int[count];
+        for (int x = 0; x < count; x++) {
+            ids[x] = readVarInt();
+        }
+        return ids;
+    }
+
+    /**
+     * Refills the buffer so that at least the given number of bytes are available, adding the consumed bytes to the
+     * checksum first.
+     *
+     * @param size the number of bytes needed, at most the buffer size.
+     * @throws IOException if the stream ends first or reading fails.
+     */
+    private void fill(int size) throws IOException {
+        this.crc.update(this.buffer, this.checksumStart, this.position - this.checksumStart);
+
+        // Keep the unread bytes.
+        int remaining = this.limit - this.position;
+        System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+        this.position = 0;
+        this.limit = remaining;
+        this.checksumStart = 0;
+
+        while (this.limit < size) {
+            int count = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (count < 0) {
+                throw new EOFException("Binary data file is incomplete.");
+            }
+            this.limit += count;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * BinaryDataWriter
+ *
+ * Writes records in the binary snapshot format read by BinaryDataReader.
+ *
+ * The file starts with a magic number and a format version. Each record is a one byte tag followed by its fields:
+ * IDs and counts as unsigned varints, dates as 8 byte epoch milliseconds, strings as a varint byte length (0 for
+ * null, otherwise length + 1) and UTF-8 bytes, and attendees as a varint count followed by varint contact IDs. The
+ * file ends with an END tag and the big-endian CRC-32 of every byte before it. No delimiters are involved, so notes
+ * may contain any character.
+ */
+public class BinaryDataWriter {
+    public static final int MAGIC = 0x434D4253;
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int END_TAG = 0;
+    public static final int CONTACT_TAG = 1;
+    public static final int PAST_MEETING_TAG = 2;
+    public static final int FUTURE_MEETING_TAG = 3;
+    public static final int MEETING_NOTES_TAG = 4;
+    public static final int MEETING_SEQUENCE_TAG = 5;
+    public static final int CONTACT_NOTES_TAG = 6;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Room for the largest fixed-size field (a date) or varint, so they are written without bounds checks.
+    private static final int MAX_FIELD_SIZE = 10;
+
+    private OutputStream out = null;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private CRC32 crc = new CRC32();
+    private long recordsWritten = 0;
+
+    /**
+     * Constructor
+     * Writes the header.
+     *
+     * @param out stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public BinaryDataWriter(OutputStream out) throws IOException {
+        this.out = out;
+
+        writeFixedInt(MAGIC);
+        writeVarInt(FORMAT_VERSION);
+    }
+
+    /**
+     * Writes a contact record.
+     *
+     * @param id ID of the contact.
+     * @param name the name of the contact.
+     * @param notes notes about the contact.
+     * @throws IOException if writing fails.
+     */
+    public void writeContact(int id, String name, String notes) throws IOException {
+        writeTag(CONTACT_TAG);
+        writeVarInt(id);
+        writeString(name);
+        writeString(notes);
+    }
+
+    /**
+     * Writes a past meeting record.
+     *
+     * @param id ID of the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param notes meeting notes text.
+     * @param attendeeIds contact IDs of the attendees.
+     * @throws IOException if writing fails.
+     */
+    public void writePastMeeting(int id, long dateMillis, String notes, int[] attendeeIds) throws IOException {
+        writeTag(PAST_MEETING_TAG);
+        writeVarInt(id);
+        writeLong(dateMillis);
+        writeString(notes);
+        writeIds(attendeeIds);
+    }
+
+    /**
+     * Writes a future meeting record.
+     *
+     * @param id ID of the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param attendeeIds contact IDs of the attendees.
+     * @throws IOException if writing fails.
+     */
+    public void writeFutureMeeting(int id, long dateMillis, int[] attendeeIds) throws IOException {
+        writeTag(FUTURE_MEETING_TAG);
+        writeVarInt(id);
+        writeLong(dateMillis);
+        writeIds(attendeeIds);
+    }
+
+    /**
+     * Writes a meeting notes record, which sets the notes of a meeting and makes it a past meeting.
+     *
+     * @param id ID of the meeting.
+     * @param notes meeting notes text.
+     * @throws IOException if writing fails.
+     */
+    public void writeMeetingNotes(int id, String notes) throws IOException {
+        writeTag(MEETING_NOTES_TAG);
+        writeVarInt(id);
+        writeString(notes);
+    }
+
+    /**
+     * Writes a contact notes record, which sets the notes of a contact.
+     *
+     * @param id ID of the contact.
+     * @param notes notes about the contact.
+     * @throws IOException if writing fails.
+     */
+    public void writeContactNotes(int id, String notes) throws IOException {
+        writeTag(CONTACT_NOTES_TAG);
+        writeVarInt(id);
+        writeString(notes);
+    }
+
+    /**
+     * Writes a meeting sequence record.
+     *
+     * @param nextId the next meeting ID to allocate.
+     * @throws IOException if writing fails.
+     */
+    public void writeMeetingSequence(int nextId) throws IOException {
+        writeTag(MEETING_SEQUENCE_TAG);
+        writeVarInt(nextId);
+    }
+
+    /**
+     * Writes the END tag and the checksum, and hands every buffered byte to the stream. The stream is not flushed or
+     * closed, that is left to its owner.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void finish() throws IOException {
+        writeTag(END_TAG);
+        this.recordsWritten--;
+        drain();
+
+        // The checksum itself is not part of the checksum.
+        int checksum = (int) this.crc.getValue();
+        this.out.write(new byte[] {(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8),
+                (byte) checksum});
+    }
+
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return the number of records written.
+     */
+    public long getRecordsWritten() {
+        return this.recordsWritten;
+    }
+
+    /**
+     * Starts a record.
+     *
+     * @param tag the record tag.
+     * @throws IOException if writing fails.
+     */
+    private void writeTag(int tag) throws IOException {
+        ensureRoom(1);
+        this.buffer[this.position++] = (byte) tag;
+        this.recordsWritten++;
+    }
+
+    /**
+     * Writes an int as an unsigned varint, 7 bits per byte, low bits first.
+     *
+     * @param value the value.
+     * @throws IOException if writing fails.
+     */
+    private void writeVarInt(int value) throws IOException {
+        ensureRoom(MAX_FIELD_SIZE);
+        while ((value & ~0x7F) != 0) {
+            this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.position++] = (byte) value;
+    }
+
+    /**
+     * Writes a long as 8 big-endian bytes.
+     *
+     * @param value the value.
+     * @throws IOException if writing fails.
+     */
+    private void writeLong(long value) throws IOException {
+        ensureRoom(MAX_FIELD_SIZE);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            this.buffer[this.position++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes an int as 4 big-endian bytes.
+     *
+     * @param value the value.
+     * @throws IOException if writing fails.
+     */
+    private void writeFixedInt(int value) throws IOException {
+        ensureRoom(MAX_FIELD_SIZE);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            this.buffer[this.position++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param value the string, may be null.
+     * @throws IOException if writing fails.
+     */
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(ContactManagerImpl.DATA_FILE_CHARSET);
+        writeVarInt(bytes.length + 1);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Writes a count-prefixed list of contact IDs.
+     *
+     * @param ids the contact IDs.
+     * @throws IOException if writing fails.
+     */
+    private void writeIds(int[] ids) throws IOException {
+        writeVarInt(ids.length);
+        for (int id : ids) {
+            writeVarInt(id);
+        }
+    }
+
+    /**
+     * Writes raw bytes.
+     *
+     * @param bytes the bytes.
+     * @throws IOException if writing fails.
+     */
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > this.buffer.length) {
+            drain();
+            this.crc.update(bytes, 0, bytes.length);
+            this.out.write(bytes);
+            return;
+        }
+        ensureRoom(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+
+    /**
+     * Makes sure the buffer has room for the given number of bytes.
+     *
+     * @param size the number of bytes.
+     * @throws IOException if writing fails.
+     */
+    private void ensureRoom(int size) throws IOException {
+        if (this.buffer.length - this.position < size) {
+            drain();
+        }
+    }
+
+    /**
+     * Hands the buffered bytes to the stream, adding them to the checksum.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void drain() throws IOException {
+        this.crc.update(this.buffer, 0, this.position);
+        this.out.write(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+}
@@ -0,0 +1,166 @@
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * ClockBenchmark
+ *
+ * Measures the check of whether a date is in the future, made on every addFutureMeeting() and addMeetingNotes(), and
+ * those two writes themselves, with the current time read from different clocks:
+ *   calendar  Calendar.getInstance(), as the check used to do.
+ *   system    Clock.systemUTC(), the default.
+ *   coarse    a CoarseClock.
+ *
+ * Usage: java ClockBenchmark [checks] [writes]
+ *
+ * The defaults are 10,000,000 checks and 200,000 writes of each kind per round, on managers holding 1,000 contacts.
+ * Future meetings get 4 random attendees and a random date in the coming year. Each measurement is repeated and the
+ * median time and allocation per call are reported. Run it in an empty directory, as the managers load contacts.txt
+ * if there is one.
+ */
+public class ClockBenchmark {
+    private static final int ROUNDS = 7;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // Results are added here so that the JIT cannot drop the calls that produce them.
+    private static volatile long sink = 0;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        final int checks = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        final int writes = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        Clock calendarClock = new Clock() {
+            @Override
+            public long millis() {
+                return Calendar.getInstance().getTimeInMillis();
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis());
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneId.systemDefault();
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+        CoarseClock coarseClock = new CoarseClock();
+
+        Map<String, Clock> clocks = new LinkedHashMap<String, Clock>();
+        clocks.put("calendar", calendarClock);
+        clocks.put("system", Clock.systemUTC());
+        clocks.put("coarse", coarseClock);
+
+        final Calendar date = Calendar.getInstance();
+        date.add(Calendar.DAY_OF_MONTH, 1);
+        report("Calendar.getInstance().before(date)", checks, new Runnable() {
+            @Override
+            public void run() {
+                long result = 0;
+                for (int x = 0; x < checks; x++) {
+                    result += Calendar.getInstance().before(date) ? 1 : 0;
+                }
+                sink += result;
+            }
+        });
+        for (Map.Entry<String, Clock> entry : clocks.entrySet()) {
+            final Clock clock = entry.getValue();
+            report("timeInFuture(date, " + entry.getKey() + ")", checks, new Runnable() {
+                @Override
+                public void run() {
+                    long result = 0;
+                    for (int x = 0; x < checks; x++) {
+                        result += Utilities.timeInFuture(date, clock) ? 1 : 0;
+                    }
+                    sink += result;
+                }
+            });
+        }
+
+        for (Map.Entry<String, Clock> entry : clocks.entrySet()) {
+            final ContactManagerImpl contactManager =
+                    new ContactManagerImpl(new ContactManagerOptions().setClock(entry.getValue()));
+            for (int x = 0; x < 1000; x++) {
+                contactManager.addNewContact("Contact " + x, "");
+            }
+            final Set<Contact> attendees = contactManager.getContacts(1, 2, 3, 4);
+
+            Calendar pastDate = Calendar.getInstance();
+            pastDate.add(Calendar.YEAR, -1);
+            contactManager.addNewPastMeeting(attendees, pastDate, "");
+            final int pastMeetingId = contactManager.getPastMeetingList(attendees.iterator().next()).get(0).getId();
+
+            report("addMeetingNotes, " + entry.getKey(), writes, new Runnable() {
+                @Override
+                public void run() {
+                    for (int x = 0; x < writes; x++) {
+                        contactManager.addMeetingNotes(pastMeetingId, "Notes.");
+                    }
+                }
+            });
+
+            // Random attendees and dates, so that the meetings spread over many posting lists and day buckets.
+            final Contact[] contacts = contactManager.getContacts("").toArray(new Contact[0]);
+            final Random random = new Random(42);
+            final Calendar futureDate = Calendar.getInstance();
+            report("addFutureMeeting, " + entry.getKey(), writes, new Runnable() {
+                @Override
+                public void run() {
+                    long result = 0;
+                    for (int x = 0; x < writes; x++) {
+                        Set<Contact> meetingAttendees = new HashSet<Contact>();
+                        for (int y = 0; y < 4; y++) {
+                            meetingAttendees.add(contacts[random.nextInt(contacts.length)]);
+                        }
+                        futureDate.setTimeInMillis(System.currentTimeMillis() + DAY_MILLIS
+                                + (long) (random.nextDouble() * 365 * DAY_MILLIS));
+                        result += contactManager.addFutureMeeting(meetingAttendees, futureDate);
+                    }
+                    sink += result;
+                }
+            });
+        }
+
+        coarseClock.close();
+    }
+
+    /**
+     * Runs a measurement repeatedly and prints the median time and allocation per call.
+     *
+     * @param name what is measured.
+     * @param calls number of calls the measurement makes.
+     * @param measurement the code to time.
+     */
+    private static void report(String name, int calls, Runnable measurement) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        double[] times = new double[ROUNDS];
+        double[] bytes = new double[ROUNDS];
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            measurement.run();
+            times[round] = (double) (System.nanoTime() - startTime) / calls;
+            bytes[round] = (double) (threads.getThreadAllocatedBytes(threadId) - startBytes) / calls;
+        }
+        Arrays.sort(times);
+        Arrays.sort(bytes);
+        System.out.printf("%-38s median %8.1f ns, %6.1f bytes per call.%n", name, times[ROUNDS / 2],
+                bytes[ROUNDS / 2]);
+    }
+}
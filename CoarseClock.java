@@ -0,0 +1,137 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CoarseClock
+ *
+ * A clock that reads the system time every few milliseconds on a daemon thread, so that reading it is a single
+ * volatile read rather than a system call. It is meant for managers taking writes at a high rate, which check the
+ * time on every addFutureMeeting() and addMeetingNotes(). Its time lags the system time by up to the resolution, so
+ * a meeting less than that far in the future or past may be taken for the other.
+ *
+ * Once closed it reads the system time on every call instead.
+ */
+public class CoarseClock extends Clock implements AutoCloseable {
+    public static final long DEFAULT_RESOLUTION_MILLIS = 10;
+
+    // Last time read by the ticker, or -1 once closed. Shared by the clocks returned by withZone().
+    private AtomicLong currentMillis = null;
+    private Thread ticker = null;
+    private ZoneId zone = null;
+
+    /**
+     * Constructor
+     * Reads the time every DEFAULT_RESOLUTION_MILLIS milliseconds, in UTC.
+     */
+    public CoarseClock() {
+        this(DEFAULT_RESOLUTION_MILLIS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param resolutionMillis how often the time is read, in milliseconds.
+     * @throws IllegalArgumentException if the resolution is not positive.
+     */
+    public CoarseClock(final long resolutionMillis) {
+        if (resolutionMillis <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive.");
+        }
+
+        final AtomicLong currentMillis = new AtomicLong(System.currentTimeMillis());
+        this.currentMillis = currentMillis;
+        this.zone = ZoneOffset.UTC;
+        this.ticker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (currentMillis.get() >= 0) {
+                    try {
+                        Thread.sleep(resolutionMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    // Only move the time on while the clock is open.
+                    long millis = currentMillis.get();
+                    if (millis >= 0) {
+                        currentMillis.compareAndSet(millis, System.currentTimeMillis());
+                    }
+                }
+            }
+        }, "CoarseClock");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Constructor for withZone(), sharing the time of another clock.
+     *
+     * @param clock the clock to share the time of.
+     * @param zone the time zone.
+     */
+    private CoarseClock(CoarseClock clock, ZoneId zone) {
+        this.currentMillis = clock.currentMillis;
+        this.ticker = clock.ticker;
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the current time, as last read.
+     *
+     * @return milliseconds since the epoch.
+     */
+    @Override
+    public long millis() {
+        long millis = this.currentMillis.get();
+        if (millis < 0) {
+            return System.currentTimeMillis();
+        }
+        return millis;
+    }
+
+    /**
+     * Returns the current time, as last read.
+     *
+     * @return the current instant.
+     */
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    /**
+     * Returns the time zone of the clock.
+     *
+     * @return the time zone.
+     */
+    @Override
+    public ZoneId getZone() {
+        return this.zone;
+    }
+
+    /**
+     * Returns a clock with the same time in another time zone. It is closed along with this one.
+     *
+     * @param zone the time zone.
+     * @return the clock.
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (zone.equals(this.zone)) {
+            return this;
+        }
+        return new CoarseClock(this, zone);
+    }
+
+    /**
+     * Stops the ticker thread. The clock, and those returned by withZone(), read the system time from then on.
+     */
+    @Override
+    public void close() {
+        this.currentMillis.set(-1);
+        this.ticker.interrupt();
+    }
+}
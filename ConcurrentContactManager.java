@@ -0,0 +1,944 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ConcurrentContactManager - Implements ContactManager interface.
+ *
+ * A thread-safe contact manager for use by many threads at once, reading and writing the same CSV data file as
+ * ContactManagerImpl.
+ *
+ * Every meeting lives in a MeetingHolder, which is shared by the meeting map and the attendee and date indexes and
+ * holds the meeting as created plus, once it has notes, its current PastMeeting in a volatile field. Adding notes
+ * sets that field to a new PastMeeting while holding the holder's own lock, so updates of different meetings never
+ * contend and the future to past conversion is a single write: every reader sees the meeting either as future or as
+ * past, never both or neither, and never goes back from past to future. Meeting objects are not changed once
+ * published, and their attendees are copied into an AttendeeSet, so a caller changing its set afterwards cannot
+ * change a meeting under its readers or leave it in the wrong contacts' lists.
+ *
+ * Reads take no locks: the attendee and calendar indexes hold each contact's and each day's meetings as a sorted
+ * list of small chunks, which is replaced rather than changed, so adding a meeting copies one chunk and the list of
+ * chunks rather than every meeting. Loading builds each list once, from its sorted meetings. Changes share a read
+ * lock that flush() takes exclusively, so the data file is always written from a consistent state.
+ */
+public class ConcurrentContactManager implements ContactManager {
+    private static final MeetingHolder[][] NO_CHUNKS = new MeetingHolder[0][];
+
+    // Meeting map keyed by meeting ID.
+    private ConcurrentMap<Integer, MeetingHolder> meetings = null;
+
+    // Attendee index: contact ID to that contact's meetings in chronological order.
+    private ConcurrentMap<Integer, MeetingArray> meetingsByContact = null;
+
+    // Calendar index: epoch day to the meetings held on that day in chronological order.
+    private ConcurrentNavigableMap<Long, MeetingArray> meetingsByDay = null;
+
+    // Contact map keyed by contact ID.
+    private ConcurrentMap<Integer, Contact> contacts = null;
+
+    // Finds the contacts of the AttendeeSets that meetings hold, so that a caller's set is never kept.
+    private ContactLookup contactLookup = null;
+
+    // Source of new contact IDs, which are made in a serial fashion based on their sequence of creation.
+    private AtomicInteger lastContactId = null;
+
+    // Source of new meeting IDs. Once it is exhausted, e.g. after loading a data file from before the sequence whose
+    // random IDs reach Integer.MAX_VALUE, IDs are taken from the gaps between the IDs in use, lowest first.
+    private MeetingIdAllocator meetingIdAllocator = null;
+    private long freeMeetingIdCursor = 1;
+    private Object freeMeetingIdLock = null;
+
+    // Shared by changes, held exclusively while the data file is written.
+    private ReadWriteLock snapshotLock = null;
+
+    private File dataFile = null;
+
+    /**
+     * Constructor
+     * Note that it loads contacts.txt if available.
+     */
+    public ConcurrentContactManager() {
+        this(new File(ContactManagerImpl.DATA_FILE));
+    }
+
+    /**
+     * Constructor
+     * Note that it loads the data file if available.
+     *
+     * @param dataFile the CSV data file to load and save.
+     */
+    public ConcurrentContactManager(File dataFile) {
+        this.dataFile = dataFile;
+
+        this.meetings = new ConcurrentHashMap<Integer, MeetingHolder>();
+        this.meetingsByContact = new ConcurrentHashMap<Integer, MeetingArray>();
+        this.meetingsByDay = new ConcurrentSkipListMap<Long, MeetingArray>();
+        this.contacts = new ConcurrentHashMap<Integer, Contact>();
+        this.contactLookup = new ContactLookup() {
+            @Override
+            public Contact getContact(int id) {
+                return contacts.get(id);
+            }
+        };
+        this.lastContactId = new AtomicInteger();
+        this.meetingIdAllocator = new AtomicMeetingIdAllocator();
+        this.freeMeetingIdLock = new Object();
+        this.snapshotLock = new ReentrantReadWriteLock();
+
+        loadData();
+    }
+
+    /**
+     * Add a new meeting to be held in the future.
+     *
+     * @param contacts a list of contacts that will participate in the meeting.
+     * @param date the date on which the meeting will take place.
+     * @return the ID for the meeting.
+     * @throws IllegalArgumentException if the meeting is set for a time in the past, or if any contact is unknown.
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        // Exception thrown if time is in the past.
+        if (!Utilities.timeInFuture(date)) {
+            throw new IllegalArgumentException("Meeting time is in the past.");
+        }
+
+        // Copy the attendees first, so that later changes to the caller's set cannot reach the meeting, and the IDs
+        // checked are the ones indexed.
+        AttendeeSet attendees = AttendeeSet.of(contacts, this.contactLookup);
+
+        // Exception thrown if at least one ID doesn't exist.
+        checkContactsExist(attendees);
+
+        this.snapshotLock.readLock().lock();
+        try {
+            int meetingId = nextMeetingId();
+            indexMeeting(new FutureMeetingImpl(meetingId, date, attendees));
+            return meetingId;
+        } finally {
+            this.snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the PAST meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     * @throws IllegalArgumentException if there is a meeting with that ID happening in the future.
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting meeting = getMeeting(id);
+
+        // Check if meeting exists based on ID.
+        if (meeting == null) {
+            return null;
+        }
+
+        // Check if meeting is not in future based on the state held by its holder.
+        if (meeting instanceof FutureMeeting) {
+            throw new IllegalArgumentException("Meeting time is in the future.");
+        }
+
+        return (PastMeeting) meeting;
+    }
+
+    /**
+     * Returns the FUTURE meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     * @throws IllegalArgumentException if there is a meeting with that ID happening in the past
+     */
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting meeting = getMeeting(id);
+
+        // Check if meeting exists based on ID.
+        if (meeting == null) {
+            return null;
+        }
+
+        // Check if meeting is not in past based on the state held by its holder.
+        if (meeting instanceof PastMeeting) {
+            throw new IllegalArgumentException("Meeting time is in the past.");
+        }
+
+        return (FutureMeeting) meeting;
+    }
+
+    /**
+     * Returns the meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     */
+    @Override
+    public Meeting getMeeting(int id) {
+        MeetingHolder holder = this.meetings.get(id);
+        if (holder == null) {
+            return null;
+        }
+        return holder.getMeeting();
+    }
+
+    /**
+     * Returns the list of future meetings scheduled with this contact.
+     *
+     * If there are none, the returned list will be empty. Otherwise, the list will be chronologically sorted and will
+     * not contain any duplicates.
+     *
+     * @param contact one of the user's contacts.
+     * @return the list of the future meeting(s) scheduled with this contact (maybe empty).
+     * @throws IllegalArgumentException if the contact does not exist.
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        List<Meeting> meetingListForContact = new ArrayList<Meeting>();
+
+        for (MeetingHolder holder : meetingsForContact(contact)) {
+            // A meeting without a past meeting was created as a future meeting.
+            if (holder.getPastMeeting() == null) {
+                meetingListForContact.add(holder.createdMeeting);
+            }
+        }
+        return meetingListForContact;
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, the specified date.
+     *
+     * If there are none, the returned list will be empty. Otherwise, the list will be chronologically sorted and will
+     * not contain any duplicates.
+     *
+     * @param date the date.
+     * @return the list of meetings.
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        return getMeetingList(date, date);
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, any day from one date to another.
+     *
+     * If there are none, the returned list will be empty. Otherwise, the list will be chronologically sorted and will
+     * not contain any duplicates.
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @return the list of meetings.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the arguments is null.
+     */
+    @Override
+    public List<Meeting> getMeetingList(Calendar from, Calendar to) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+
+        long fromDay = Utilities.calendarToEpochDay(from);
+        long toDay = Utilities.calendarToEpochDay(to);
+
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Start date is after end date.");
+        }
+
+        List<Meeting> meetingsInRangeList = new ArrayList<Meeting>();
+
+        // Days are visited in ascending order, so concatenating them keeps the list chronological.
+        for (MeetingArray day : this.meetingsByDay.subMap(fromDay, true, toDay, true).values()) {
+            for (MeetingHolder holder : day) {
+                meetingsInRangeList.add(holder.getMeeting());
+            }
+        }
+        return meetingsInRangeList;
+    }
+
+    /**
+     * Returns the list of past meeting in which this contact has participated.
+     *
+     * If there are none, the returned list will be empty. Otherwise, the list will be chronologically sorted and will
+     * not contain any duplicates.
+     *
+     * @param contact one of the user's contacts.
+     * @return the list of past meeting(s) scheduled with this contact (maybe empty).
+     * @throws IllegalArgumentException if the contact does not exist.
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        List<PastMeeting> pastMeetingsForContactList = new ArrayList<PastMeeting>();
+
+        for (MeetingHolder holder : meetingsForContact(contact)) {
+            PastMeeting pastMeeting = holder.getPastMeeting();
+            if (pastMeeting != null) {
+                pastMeetingsForContactList.add(pastMeeting);
+            }
+        }
+        return pastMeetingsForContactList;
+    }
+
+    /**
+     * Create a new record for a meeting that took place in the past.
+     *
+     * @param contacts a list of participants.
+     * @param date     the date on which the meeting took place.
+     * @param text     messages to be added about the meeting.
+     * @throws IllegalArgumentException if the list of contacts is empty, or any of the contacts does not exist.
+     * @throws NullPointerException     if any of the arguments is null.
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+        // As with ContactManagerImpl, the date is not checked to be in the past.
+
+        if (contacts == null || date == null || text == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+
+        // Copy the attendees first, so that later changes to the caller's set cannot reach the meeting, and the IDs
+        // checked are the ones indexed.
+        AttendeeSet attendees = AttendeeSet.of(contacts, this.contactLookup);
+
+        if (attendees.isEmpty()) {
+            throw new IllegalArgumentException("Contact list is empty.");
+        }
+
+        // Throw exception of at least one of the contacts is not found.
+        checkContactsExist(attendees);
+
+        this.snapshotLock.readLock().lock();
+        try {
+            indexMeeting(new PastMeetingImpl(nextMeetingId(), date, attendees, text));
+        } finally {
+            this.snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add notes to a meeting.
+     *
+     * This method is used when a future meeting takes place, and is then converted to a past meeting (with notes).
+     * The conversion is atomic: concurrent callers adding notes to the same meeting convert it exactly once, and the
+     * notes of the last of them are kept.
+     *
+     * It can be also used to add notes to a past meeting at a later date.
+     *
+     * @param id   the ID of the meeting.
+     * @param text messages to be added about the meetings.
+     * @throws IllegalArgumentException if the meeting does not exist.
+     * @throws IllegalStateException    if the meeting is set for a date in the future.
+     * @throws NullPointerException     if the notes are null.
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        MeetingHolder holder = this.meetings.get(id);
+
+        // Exception thrown if meeting does not exist.
+        if (holder == null) {
+            throw new IllegalArgumentException("Meeting ID does not exist.");
+        }
+
+        // As with ContactManagerImpl, the date is checked rather than the type, since a PastMeeting may have been
+        // created with a future date. The date of a meeting never changes, so it can be checked before the update.
+        if (Utilities.timeInFuture(holder.dateMillis)) {
+            throw new IllegalStateException("Meeting time is in the future.");
+        }
+
+        if (text == null) {
+            throw new NullPointerException("Notes are null.");
+        }
+
+        this.snapshotLock.readLock().lock();
+        try {
+            holder.setNotes(text);
+        } finally {
+            this.snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Create a new contact with the specified name and notes.
+     *
+     * @param name  the name of the contact.
+     * @param notes notes to be added about the contact.
+     * @throws NullPointerException if the name or the notes are null.
+     */
+    @Override
+    public void addNewContact(String name, String notes) {
+        // Exception thrown if name or notes are null.
+        if (name == null || notes == null) {
+            throw new NullPointerException("Contact name or string cannot be null.");
+        }
+
+        this.snapshotLock.readLock().lock();
+        try {
+            int contactId = this.lastContactId.incrementAndGet();
+            this.contacts.put(contactId, new ContactImpl(contactId, name, notes));
+        } finally {
+            this.snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a list containing the contacts that correspond to the IDs.
+     *
+     * @param ids an arbitrary number of contact IDs.
+     * @return a list containing the contacts that correspond to the IDs.
+     * @throws IllegalArgumentException if any of the IDs does not correspond to a real contact.
+     */
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        Set<Contact> tempContactSet = new HashSet<Contact>();
+
+        for (int id : ids) {
+            Contact contact = this.contacts.get(id);
+            if (contact == null) {
+                // Exception thrown if at least one ID doesn't exist.
+                throw new IllegalArgumentException("Not all IDs supplied exist.");
+            }
+            tempContactSet.add(contact);
+        }
+        return tempContactSet;
+    }
+
+    /**
+     * Returns a list with the contacts whose name contains that string.
+     *
+     * @param name the string to search for.
+     * @return a list with the contacts whose name contains that string.
+     * @throws NullPointerException if the parameter is null.
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        // Exception thrown if name parameter is null.
+        if (name == null) {
+            throw new NullPointerException("Search string cannot be null.");
+        }
+
+        Set<Contact> tempContactSet = new HashSet<Contact>();
+
+        for (Contact contact : this.contacts.values()) {
+            if (contact.getName().contains(name)) {
+                tempContactSet.add(contact);
+            }
+        }
+        return tempContactSet;
+    }
+
+    /**
+     * Save all data to disk.
+     *
+     * Changes made by other threads wait until the data file is written.
+     *
+     * @throws UncheckedIOException if the data file could not be written.
+     */
+    @Override
+    public void flush() {
+        this.snapshotLock.writeLock().lock();
+        try {
+            saveData();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save data.", e);
+        } finally {
+            this.snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks that every attendee exists.
+     *
+     * @param attendees the attendees.
+     * @throws IllegalArgumentException if any of the attendees is unknown.
+     */
+    private void checkContactsExist(AttendeeSet attendees) {
+        for (int contactId : attendees.getContactIds()) {
+            if (!this.contacts.containsKey(contactId)) {
+                throw new IllegalArgumentException("Contact ID supplied does not exist.");
+            }
+        }
+    }
+
+    /**
+     * Returns the meetings of a contact.
+     *
+     * @param contact the contact.
+     * @return the contact's meetings in chronological order.
+     * @throws IllegalArgumentException if the contact does not exist.
+     */
+    private Iterable<MeetingHolder> meetingsForContact(Contact contact) {
+        // Throw exception if contact does not exist based on ID.
+        if (!this.contacts.containsKey(contact.getId())) {
+            throw new IllegalArgumentException("Contact ID supplied does not exist.");
+        }
+
+        MeetingArray contactMeetings = this.meetingsByContact.get(contact.getId());
+        if (contactMeetings == null) {
+            return Collections.emptyList();
+        }
+        return contactMeetings;
+    }
+
+    /**
+     * Allocates a new meeting ID, from the gaps between the IDs in use once the allocator is exhausted.
+     *
+     * @return a meeting ID not in use.
+     * @throws IllegalStateException if every meeting ID is in use.
+     */
+    private int nextMeetingId() {
+        try {
+            return this.meetingIdAllocator.nextId();
+        } catch (IllegalStateException e) {
+            // The cursor is only moved under the lock, so no two writers are handed the same gap.
+            synchronized (this.freeMeetingIdLock) {
+                for (long id = this.freeMeetingIdCursor; id <= Integer.MAX_VALUE; id++) {
+                    if (!this.meetings.containsKey((int) id)) {
+                        this.freeMeetingIdCursor = id + 1;
+                        return (int) id;
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a new meeting to the meeting map and the indexes.
+     *
+     * @param meeting the meeting.
+     */
+    private void indexMeeting(Meeting meeting) {
+        MeetingHolder holder = new MeetingHolder(Utilities.meetingTimeMillis(meeting), meeting.getId(), meeting);
+        this.meetings.put(meeting.getId(), holder);
+
+        addToIndex(this.meetingsByDay, Utilities.meetingEpochDay(meeting), holder);
+        for (Contact attendee : meeting.getContacts()) {
+            addToIndex(this.meetingsByContact, attendee.getId(), holder);
+        }
+    }
+
+    /**
+     * Adds a meeting to the array held under a key, creating the array if needed.
+     *
+     * @param index the index.
+     * @param key the key.
+     * @param holder the meeting.
+     * @param <K> key type.
+     */
+    private static <K> void addToIndex(ConcurrentMap<K, MeetingArray> index, K key, MeetingHolder holder) {
+        MeetingArray meetingArray = index.get(key);
+        if (meetingArray == null) {
+            MeetingArray newMeetingArray = new MeetingArray();
+            meetingArray = index.putIfAbsent(key, newMeetingArray);
+            if (meetingArray == null) {
+                meetingArray = newMeetingArray;
+            }
+        }
+        meetingArray.add(holder);
+    }
+
+    /**
+     * Writes every contact and meeting to the data file, as ContactManagerImpl does.
+     *
+     * @throws IOException if the data file could not be written.
+     */
+    private void saveData() throws IOException {
+        SnapshotFile snapshot = new SnapshotFile(this.dataFile);
+        try {
+            CsvDataWriter writer = new CsvDataWriter(snapshot.beginWrite());
+
+            // Save the meeting ID sequence so IDs stay unique across runs.
+            writer.writeMeetingSequence(this.meetingIdAllocator.peekNextId());
+
+            for (Contact contact : this.contacts.values()) {
+                writer.writeContact(contact);
+            }
+
+            for (MeetingHolder holder : this.meetings.values()) {
+                PastMeeting pastMeeting = holder.getPastMeeting();
+                if (pastMeeting != null) {
+                    writer.writePastMeeting(pastMeeting);
+                }
+            }
+
+            for (MeetingHolder holder : this.meetings.values()) {
+                if (holder.getPastMeeting() == null) {
+                    writer.writeFutureMeeting((FutureMeeting) holder.createdMeeting);
+                }
+            }
+
+            snapshot.commit();
+        } catch (IOException e) {
+            // The data file is untouched, only the temporary file is thrown away.
+            snapshot.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads contacts and meetings from the data file, if there is one.
+     *
+     * @throws IllegalStateException if the data file is damaged.
+     */
+    private void loadData() {
+        if (!this.dataFile.exists()) {
+            return;
+        }
+
+        try {
+            SnapshotFile.verify(this.dataFile);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(this.dataFile),
+                    ContactManagerImpl.DATA_FILE_CHARSET), 1 << 16);
+            try {
+                LoadingHandler handler = new LoadingHandler();
+                new CsvDataReader().read(in, handler);
+                handler.publishIndexes();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load " + this.dataFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The current state of one meeting, ordered by date and then by ID.
+     *
+     * Date and ID never change, so the holder can sit in sorted indexes while its meeting is replaced. The state is
+     * read with a null check rather than instanceof checks against the meeting interfaces, which are slow to fail.
+     */
+    private static final class MeetingHolder implements Comparable<MeetingHolder> {
+        private final long dateMillis;
+        private final int id;
+
+        // The meeting as created, a FutureMeeting or a PastMeeting.
+        private final Meeting createdMeeting;
+
+        // The current past meeting, or null while the meeting is still a future meeting.
+        private volatile PastMeeting pastMeeting;
+
+        MeetingHolder(long dateMillis, int id, Meeting createdMeeting) {
+            this.dateMillis = dateMillis;
+            this.id = id;
+            this.createdMeeting = createdMeeting;
+            if (createdMeeting instanceof PastMeeting) {
+                this.pastMeeting = (PastMeeting) createdMeeting;
+            }
+        }
+
+        /**
+         * Returns the current meeting.
+         *
+         * @return the past meeting if there is one, otherwise the future meeting.
+         */
+        Meeting getMeeting() {
+            PastMeeting current = this.pastMeeting;
+            if (current != null) {
+                return current;
+            }
+            return this.createdMeeting;
+        }
+
+        /**
+         * Returns the current past meeting.
+         *
+         * @return the past meeting, or null if the meeting is still a future meeting.
+         */
+        PastMeeting getPastMeeting() {
+            return this.pastMeeting;
+        }
+
+        /**
+         * Replaces the meeting with a past meeting holding the notes, converting a future meeting.
+         *
+         * @param text the notes.
+         */
+        synchronized void setNotes(String text) {
+            this.pastMeeting = new PastMeetingImpl(this.id, this.dateMillis,
+                    this.createdMeeting.getContacts(), text);
+        }
+
+        @Override
+        public int compareTo(MeetingHolder other) {
+            int result = Long.compare(this.dateMillis, other.dateMillis);
+            if (result == 0) {
+                result = Integer.compare(this.id, other.id);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Meetings in chronological order, held as a list of sorted chunks that is replaced rather than changed, so readers
+     * iterate it without locking.
+     */
+    private static final class MeetingArray implements Iterable<MeetingHolder> {
+        // An insert copies one chunk and the list of chunks, so it costs O(MAX_CHUNK_SIZE + meetings / chunk size).
+        private static final int MAX_CHUNK_SIZE = 64;
+
+        private volatile MeetingHolder[][] chunks = NO_CHUNKS;
+
+        /**
+         * Constructor
+         */
+        MeetingArray() {
+        }
+
+        /**
+         * Constructor
+         * Fills the chunks from meetings that are already in order, as the loader does.
+         *
+         * @param sortedHolders the meetings in chronological order, without duplicates.
+         */
+        MeetingArray(List<MeetingHolder> sortedHolders) {
+            int size = sortedHolders.size();
+            MeetingHolder[][] filled = new MeetingHolder[(size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE][];
+            for (int c = 0; c < filled.length; c++) {
+                int start = c * MAX_CHUNK_SIZE;
+                filled[c] = sortedHolders.subList(start, Math.min(size, start + MAX_CHUNK_SIZE))
+                        .toArray(new MeetingHolder[0]);
+            }
+            this.chunks = filled;
+        }
+
+        /**
+         * Adds a meeting in its chronological position.
+         *
+         * @param holder the meeting.
+         */
+        synchronized void add(MeetingHolder holder) {
+            MeetingHolder[][] current = this.chunks;
+            if (current.length == 0) {
+                this.chunks = new MeetingHolder[][] {{holder}};
+                return;
+            }
+
+            // The last chunk starting at or before the meeting, or the first chunk.
+            int low = 0;
+            int high = current.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (current[middle][0].compareTo(holder) <= 0) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            MeetingHolder[] chunk = current[low];
+
+            int position = Arrays.binarySearch(chunk, holder);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+
+            MeetingHolder[][] updated;
+            if (chunk.length < MAX_CHUNK_SIZE) {
+                updated = current.clone();
+                updated[low] = insert(chunk, position, holder);
+            } else if (low == current.length - 1 && position == chunk.length) {
+                // Meetings are mostly added in date order, so start a new chunk rather than leave two half full.
+                updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = new MeetingHolder[] {holder};
+            } else {
+                // Split the full chunk in two.
+                MeetingHolder[] grown = insert(chunk, position, holder);
+                int half = grown.length / 2;
+                updated = new MeetingHolder[current.length + 1][];
+                System.arraycopy(current, 0, updated, 0, low);
+                updated[low] = Arrays.copyOfRange(grown, 0, half);
+                updated[low + 1] = Arrays.copyOfRange(grown, half, grown.length);
+                System.arraycopy(current, low + 1, updated, low + 2, current.length - low - 1);
+            }
+            this.chunks = updated;
+        }
+
+        /**
+         * Returns an iterator over the meetings as they are now. Later additions are not seen by it.
+         *
+         * @return the iterator.
+         */
+        @Override
+        public Iterator<MeetingHolder> iterator() {
+            final MeetingHolder[][] snapshot = this.chunks;
+            return new Iterator<MeetingHolder>() {
+                private int chunk = 0;
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return this.chunk < snapshot.length;
+                }
+
+                @Override
+                public MeetingHolder next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    MeetingHolder holder = snapshot[this.chunk][this.position++];
+                    if (this.position == snapshot[this.chunk].length) {
+                        this.chunk++;
+                        this.position = 0;
+                    }
+                    return holder;
+                }
+            };
+        }
+
+        /**
+         * Returns a copy of a chunk with a meeting inserted.
+         *
+         * @param chunk the chunk.
+         * @param position where the meeting goes.
+         * @param holder the meeting.
+         * @return the new chunk.
+         */
+        private static MeetingHolder[] insert(MeetingHolder[] chunk, int position, MeetingHolder holder) {
+            MeetingHolder[] updated = new MeetingHolder[chunk.length + 1];
+            System.arraycopy(chunk, 0, updated, 0, position);
+            updated[position] = holder;
+            System.arraycopy(chunk, position, updated, position + 1, chunk.length - position);
+            return updated;
+        }
+    }
+
+    /**
+     * Rebuilds contacts and meetings from the records read from the data file.
+     *
+     * The attendee and calendar indexes are only built by publishIndexes(), once every meeting is read, so that each
+     * contact's and each day's meetings are sorted once rather than inserted one by one.
+     */
+    private class LoadingHandler implements DataRecordHandler {
+        private Map<Integer, List<MeetingHolder>> holdersByContact = new HashMap<Integer, List<MeetingHolder>>();
+        private Map<Long, List<MeetingHolder>> holdersByDay = new HashMap<Long, List<MeetingHolder>>();
+
+        @Override
+        public void contactRecord(int id, String name, String notes) {
+            contacts.putIfAbsent(id, new ContactImpl(id, name, notes));
+
+            // New contacts are numbered after the highest loaded ID.
+            if (id > lastContactId.get()) {
+                lastContactId.set(id);
+            }
+        }
+
+        @Override
+        public void pastMeetingRecord(int id, long dateMillis, String notes, int[] attendeeIds) {
+            if (!meetings.containsKey(id)) {
+                loadMeeting(new PastMeetingImpl(id, dateMillis, resolveAttendees(attendeeIds), notes));
+            }
+        }
+
+        @Override
+        public void futureMeetingRecord(int id, long dateMillis, int[] attendeeIds) {
+            if (!meetings.containsKey(id)) {
+                loadMeeting(new FutureMeetingImpl(id, dateMillis, resolveAttendees(attendeeIds)));
+            }
+        }
+
+        @Override
+        public void meetingNotesRecord(int id, String notes) {
+            MeetingHolder holder = meetings.get(id);
+            if (holder != null) {
+                holder.setNotes(notes);
+            }
+        }
+
+        @Override
+        public void contactNotesRecord(int id, String notes) {
+            Contact contact = contacts.get(id);
+            if (contact instanceof ContactImpl) {
+                ((ContactImpl) contact).setNotes(notes);
+            }
+        }
+
+        @Override
+        public void meetingSequenceRecord(int nextId) {
+            // Restore the meeting ID sequence.
+            meetingIdAllocator.reserve(nextId - 1);
+        }
+
+        /**
+         * Sorts the meetings gathered for each contact and each day and publishes them to the indexes.
+         */
+        void publishIndexes() {
+            publish(this.holdersByContact, meetingsByContact);
+            publish(this.holdersByDay, meetingsByDay);
+        }
+
+        /**
+         * Adds a loaded meeting to the meeting map and gathers it for the indexes.
+         *
+         * @param meeting the meeting.
+         */
+        private void loadMeeting(Meeting meeting) {
+            MeetingHolder holder = new MeetingHolder(Utilities.meetingTimeMillis(meeting), meeting.getId(), meeting);
+            meetings.put(meeting.getId(), holder);
+
+            gather(this.holdersByDay, Utilities.meetingEpochDay(meeting), holder);
+            for (Contact attendee : meeting.getContacts()) {
+                gather(this.holdersByContact, attendee.getId(), holder);
+            }
+
+            // Make sure the loaded ID is never handed out again.
+            meetingIdAllocator.reserve(meeting.getId());
+        }
+
+        /**
+         * Adds a meeting to the list gathered under a key, creating the list if needed.
+         *
+         * @param holdersByKey the gathered meetings.
+         * @param key the key.
+         * @param holder the meeting.
+         * @param <K> key type.
+         */
+        private <K> void gather(Map<K, List<MeetingHolder>> holdersByKey, K key, MeetingHolder holder) {
+            List<MeetingHolder> holders = holdersByKey.get(key);
+            if (holders == null) {
+                holders = new ArrayList<MeetingHolder>();
+                holdersByKey.put(key, holders);
+            }
+            holders.add(holder);
+        }
+
+        /**
+         * Sorts the meetings gathered under each key and puts them in the index as one MeetingArray.
+         *
+         * @param holdersByKey the gathered meetings, emptied once published.
+         * @param index the index.
+         * @param <K> key type.
+         */
+        private <K> void publish(Map<K, List<MeetingHolder>> holdersByKey, ConcurrentMap<K, MeetingArray> index) {
+            for (Map.Entry<K, List<MeetingHolder>> entry : holdersByKey.entrySet()) {
+                List<MeetingHolder> holders = entry.getValue();
+                Collections.sort(holders);
+                index.put(entry.getKey(), new MeetingArray(holders));
+            }
+            holdersByKey.clear();
+        }
+
+        /**
+         * Resolves contact IDs to contacts. Contacts are written before meetings, so unknown IDs are skipped.
+         *
+         * @param ids contact IDs.
+         * @return the contacts.
+         */
+        private Set<Contact> resolveAttendees(int[] ids) {
+            int[] knownIds = new int[ids.length];
+            int count = 0;
+            for (int id : ids) {
+                if (contacts.containsKey(id)) {
+                    knownIds[count++] = id;
+                }
+            }
+            return new AttendeeSet(count == ids.length ? knownIds : Arrays.copyOf(knownIds, count), contactLookup);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.File;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConcurrentContactManagerBenchmark
+ *
+ * Measures throughput of ConcurrentContactManager against ContactManagerImpl behind one global lock, from 1 to 32
+ * threads.
+ *
+ * Usage: java ConcurrentContactManagerBenchmark [contacts] [meetings] [write percentage] [seconds per run]
+ *
+ * Each thread runs a mix of attendee list, date and ID lookups with the given share of new future meetings and
+ * meeting notes. Nothing is saved, but ContactManagerImpl loads contacts.txt if there is one, so run it in an empty
+ * directory.
+ */
+public class ConcurrentContactManagerBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     * @throws InterruptedException if interrupted while waiting for a run.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int contacts = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int meetings = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int writePercentage = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 2;
+
+        System.out.printf("%d contacts, %d meetings, %d%% writes, %d processors.%n", contacts, meetings,
+                writePercentage, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %20s %20s%n", "threads", "global lock ops/s", "concurrent ops/s");
+
+        for (int threads : THREAD_COUNTS) {
+            ContactManager locked = populate(new SynchronizedContactManager(
+                    new ContactManagerImpl(new ContactManagerOptions())), contacts, meetings);
+            ContactManager concurrent = populate(new ConcurrentContactManager(new File("benchmark-unused.txt")),
+                    contacts, meetings);
+
+            double lockedRate = run(locked, threads, contacts, meetings, writePercentage, seconds);
+            double concurrentRate = run(concurrent, threads, contacts, meetings, writePercentage, seconds);
+            System.out.printf("%8d %20.0f %20.0f%n", threads, lockedRate, concurrentRate);
+        }
+    }
+
+    /**
+     * Adds contacts and past and future meetings.
+     *
+     * @param contactManager the manager to fill.
+     * @param contacts number of contacts.
+     * @param meetings number of meetings.
+     * @return the manager.
+     */
+    private static ContactManager populate(ContactManager contactManager, int contacts, int meetings) {
+        Random random = new Random(42);
+        for (int x = 1; x <= contacts; x++) {
+            contactManager.addNewContact("Contact " + x, "Benchmark contact.");
+        }
+        for (int x = 0; x < meetings; x++) {
+            Set<Contact> attendees = contactManager.getContacts(random.nextInt(contacts) + 1,
+                    random.nextInt(contacts) + 1);
+            Calendar date = Calendar.getInstance();
+            date.add(Calendar.DAY_OF_MONTH, random.nextInt(730) - 365);
+            if (date.after(Calendar.getInstance())) {
+                contactManager.addFutureMeeting(attendees, date);
+            } else {
+                contactManager.addNewPastMeeting(attendees, date, "Benchmark meeting.");
+            }
+        }
+        return contactManager;
+    }
+
+    /**
+     * Runs the operation mix on a number of threads for a fixed time.
+     *
+     * @param contactManager the manager to use.
+     * @param threads number of threads.
+     * @param contacts number of contacts.
+     * @param meetings number of meetings.
+     * @param writePercentage share of operations that change data.
+     * @param seconds how long to run.
+     * @return operations per second over all threads.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static double run(final ContactManager contactManager, int threads, final int contacts,
+                              final int meetings, final int writePercentage, double seconds)
+            throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    long count = 0;
+
+                    // Days over the next year to add meetings on and to list meetings for.
+                    Calendar[] days = new Calendar[365];
+                    for (int x = 0; x < days.length; x++) {
+                        days[x] = Calendar.getInstance();
+                        days[x].add(Calendar.DAY_OF_MONTH, x + 1);
+                    }
+
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (running.get()) {
+                        Contact contact = contactManager.getContacts(random.nextInt(contacts) + 1).iterator().next();
+                        int operation = random.nextInt(100);
+
+                        if (operation < writePercentage / 2) {
+                            contactManager.addFutureMeeting(contactManager.getContacts(contact.getId()),
+                                    days[random.nextInt(days.length)]);
+                        } else if (operation < writePercentage) {
+                            // Past meetings were created first, so low IDs are mostly past meetings.
+                            int id = random.nextInt(meetings / 2) + 1;
+                            Meeting meeting = contactManager.getMeeting(id);
+                            if (meeting != null && !Utilities.timeInFuture(Utilities.meetingTimeMillis(meeting))) {
+                                contactManager.addMeetingNotes(id, "Updated.");
+                            }
+                        } else if (operation < 40) {
+                            contactManager.getFutureMeetingList(contact);
+                        } else if (operation < 70) {
+                            contactManager.getPastMeetingList(contact);
+                        } else if (operation < 85) {
+                            contactManager.getFutureMeetingList(days[random.nextInt(days.length)]);
+                        } else {
+                            contactManager.getMeeting(random.nextInt(meetings) + 1);
+                        }
+                        count++;
+                    }
+                    operations.addAndGet(count);
+                }
+            };
+            workers[t].start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.get() / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * ContactManager wrapper that serializes every call through one lock, as done with ContactManagerImpl today.
+     */
+    private static class SynchronizedContactManager implements ContactManager {
+        private ContactManager delegate = null;
+
+        SynchronizedContactManager(ContactManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+            return this.delegate.addFutureMeeting(contacts, date);
+        }
+
+        @Override
+        public synchronized PastMeeting getPastMeeting(int id) {
+            return this.delegate.getPastMeeting(id);
+        }
+
+        @Override
+        public synchronized FutureMeeting getFutureMeeting(int id) {
+            return this.delegate.getFutureMeeting(id);
+        }
+
+        @Override
+        public synchronized Meeting getMeeting(int id) {
+            return this.delegate.getMeeting(id);
+        }
+
+        @Override
+        public synchronized List<Meeting> getFutureMeetingList(Contact contact) {
+            return this.delegate.getFutureMeetingList(contact);
+        }
+
+        @Override
+        public synchronized List<Meeting> getFutureMeetingList(Calendar date) {
+            return this.delegate.getFutureMeetingList(date);
+        }
+
+        @Override
+        public synchronized List<Meeting> getMeetingList(Calendar from, Calendar to) {
+            return this.delegate.getMeetingList(from, to);
+        }
+
+        @Override
+        public synchronized List<PastMeeting> getPastMeetingList(Contact contact) {
+            return this.delegate.getPastMeetingList(contact);
+        }
+
+        @Override
+        public synchronized void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+            this.delegate.addNewPastMeeting(contacts, date, text);
+        }
+
+        @Override
+        public synchronized void addMeetingNotes(int id, String text) {
+            this.delegate.addMeetingNotes(id, text);
+        }
+
+        @Override
+        public synchronized void addNewContact(String name, String notes) {
+            this.delegate.addNewContact(name, notes);
+        }
+
+        @Override
+        public synchronized Set<Contact> getContacts(int... ids) {
+            return this.delegate.getContacts(ids);
+        }
+
+        @Override
+        public synchronized Set<Contact> getContacts(String name) {
+            return this.delegate.getContacts(name);
+        }
+
+        @Override
+        public synchronized void flush() {
+            this.delegate.flush();
+        }
+    }
+}
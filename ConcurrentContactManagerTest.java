@@ -0,0 +1,275 @@
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JUnit stress test class for ConcurrentContactManager.
+ */
+public class ConcurrentContactManagerTest {
+    private static final int CONTACTS = 8;
+    private static final int MEETINGS = 400;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+
+    private File dataFile;
+    private ConcurrentContactManager contactManager;
+
+    @Before
+    public void setUp() throws Exception {
+        dataFile = File.createTempFile("concurrent-contacts", ".txt");
+        dataFile.delete();
+        contactManager = new ConcurrentContactManager(dataFile);
+
+        for (int x = 1; x <= CONTACTS; x++) {
+            contactManager.addNewContact("Contact " + x, "Notes " + x);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataFile.delete();
+        contactManager = null;
+    }
+
+    @Test
+    public void testConcurrentMeetingNotesConvertEachMeetingOnce() throws Exception {
+        // Meetings a second ahead, so they can be created as future meetings and have notes added once passed.
+        Calendar soon = Calendar.getInstance();
+        soon.add(Calendar.SECOND, 1);
+
+        final int[] meetingIds = new int[MEETINGS];
+        for (int x = 0; x < MEETINGS; x++) {
+            meetingIds[x] = contactManager.addFutureMeeting(contactManager.getContacts(x % CONTACTS + 1,
+                    (x + 1) % CONTACTS + 1), soon);
+        }
+        while (Utilities.timeInFuture(soon)) {
+            Thread.sleep(50);
+        }
+
+        final Queue<String> violations = new ConcurrentLinkedQueue<String>();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        // Readers check that no meeting is ever seen as future after it has been seen as past.
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    Set<Integer> seenPast = new HashSet<Integer>();
+                    awaitQuietly(start);
+                    do {
+                        for (int c = 1; c <= CONTACTS; c++) {
+                            Contact contact = contactManager.getContacts(c).iterator().next();
+
+                            for (PastMeeting meeting : contactManager.getPastMeetingList(contact)) {
+                                seenPast.add(meeting.getId());
+                            }
+                            for (Meeting meeting : contactManager.getFutureMeetingList(contact)) {
+                                if (seenPast.contains(meeting.getId())) {
+                                    violations.add("Meeting " + meeting.getId() + " went from past to future.");
+                                }
+                            }
+                        }
+                        for (int id : meetingIds) {
+                            if (seenPast.contains(id) && !(contactManager.getMeeting(id) instanceof PastMeeting)) {
+                                violations.add("Meeting " + id + " went from past to future by ID.");
+                            }
+                        }
+                    } while (writing.get());
+                }
+            });
+        }
+
+        // Writers race to add notes to every meeting, each in its own order.
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    List<Integer> order = new ArrayList<Integer>();
+                    for (int id : meetingIds) {
+                        order.add(id);
+                    }
+                    Collections.shuffle(order, new Random(writer));
+
+                    awaitQuietly(start);
+                    for (int id : order) {
+                        contactManager.addMeetingNotes(id, "Writer " + writer);
+                    }
+                }
+            });
+        }
+        threads.addAll(writers);
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        org.junit.Assert.assertTrue(violations.toString(), violations.isEmpty());
+
+        // Every meeting ends up past, listed once, with the notes of one of the writers.
+        for (int id : meetingIds) {
+            PastMeeting meeting = contactManager.getPastMeeting(id);
+            org.junit.Assert.assertTrue(meeting.getNotes().startsWith("Writer "));
+        }
+        int listed = 0;
+        for (int c = 1; c <= CONTACTS; c++) {
+            Contact contact = contactManager.getContacts(c).iterator().next();
+            org.junit.Assert.assertTrue(contactManager.getFutureMeetingList(contact).isEmpty());
+            listed += contactManager.getPastMeetingList(contact).size();
+        }
+        org.junit.Assert.assertEquals(2 * MEETINGS, listed);
+    }
+
+    @Test
+    public void testConcurrentAddsGetUniqueIdsAndSurviveFlush() throws Exception {
+        final Calendar future = Calendar.getInstance();
+        future.add(Calendar.MONTH, 5);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < WRITERS; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+                    for (int x = 0; x < MEETINGS; x++) {
+                        contactManager.addFutureMeeting(contactManager.getContacts(x % CONTACTS + 1), future);
+                        contactManager.addNewContact("Added", "By a writer.");
+                        if (x % 100 == 0) {
+                            contactManager.flush();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        contactManager.flush();
+
+        ConcurrentContactManager reloaded = new ConcurrentContactManager(dataFile);
+        org.junit.Assert.assertEquals(WRITERS * MEETINGS, reloaded.getContacts("Added").size());
+        org.junit.Assert.assertEquals(WRITERS * MEETINGS, reloaded.getMeetingList(future, future).size());
+    }
+
+    @Test
+    public void testLegacyMeetingIdAtIntegerMaxLeavesRoomForNewMeetings() throws Exception {
+        Writer out = new OutputStreamWriter(new FileOutputStream(dataFile), ContactManagerImpl.DATA_FILE_CHARSET);
+        try {
+            out.write("CONTACT&1&Hisham Khalifa&I made this.\n");
+            out.write("FUTUREMEETING&2147483647&2013/04/22 22:22:22&1\n");
+            out.write("PASTMEETING&1&2012/04/23 22:22:22&Taken.&1\n");
+        } finally {
+            out.close();
+        }
+
+        ConcurrentContactManager legacyContactManager = new ConcurrentContactManager(dataFile);
+        Calendar future = Calendar.getInstance();
+        future.add(Calendar.MONTH, 5);
+
+        // The sequence has no room above the legacy ID, so new IDs come from the gaps below it.
+        Set<Integer> ids = new HashSet<Integer>();
+        for (int x = 0; x < 3; x++) {
+            ids.add(legacyContactManager.addFutureMeeting(legacyContactManager.getContacts(1), future));
+        }
+        org.junit.Assert.assertEquals(new HashSet<Integer>(Arrays.asList(2, 3, 4)), ids);
+        org.junit.Assert.assertNotNull(legacyContactManager.getMeeting(2147483647));
+    }
+
+    @Test
+    public void testMeetingListsStayChronologicalWhenAddedOutOfOrderAndReloaded() throws Exception {
+        // Enough meetings on one contact and one day to fill and split many chunks, added in no particular order.
+        Calendar day = Calendar.getInstance();
+        day.add(Calendar.DAY_OF_MONTH, 10);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        Random random = new Random(42);
+        for (int x = 0; x < 1000; x++) {
+            Calendar date = (Calendar) day.clone();
+            date.add(Calendar.MINUTE, random.nextInt(23 * 60));
+            contactManager.addFutureMeeting(contactManager.getContacts(1), date);
+        }
+        contactManager.flush();
+
+        ConcurrentContactManager reloaded = new ConcurrentContactManager(dataFile);
+        for (ConcurrentContactManager manager : Arrays.asList(contactManager, reloaded)) {
+            Contact contact = manager.getContacts(1).iterator().next();
+            List<Meeting> contactMeetings = manager.getFutureMeetingList(contact);
+            List<Meeting> dayMeetings = manager.getMeetingList(day, day);
+
+            for (List<Meeting> meetingList : Arrays.asList(contactMeetings, dayMeetings)) {
+                org.junit.Assert.assertEquals(1000, meetingList.size());
+                for (int x = 1; x < meetingList.size(); x++) {
+                    Meeting previous = meetingList.get(x - 1);
+                    Meeting meeting = meetingList.get(x);
+                    int order = previous.getDate().compareTo(meeting.getDate());
+                    org.junit.Assert.assertTrue(order < 0 || order == 0 && previous.getId() < meeting.getId());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMeetingsKeepTheirAttendeesWhenTheCallersSetChanges() throws Exception {
+        Calendar future = Calendar.getInstance();
+        future.add(Calendar.MONTH, 5);
+        Calendar past = Calendar.getInstance();
+        past.add(Calendar.MONTH, -5);
+        Contact first = contactManager.getContacts(1).iterator().next();
+        Contact second = contactManager.getContacts(2).iterator().next();
+
+        Set<Contact> attendees = new HashSet<Contact>(Arrays.asList(first));
+        int futureId = contactManager.addFutureMeeting(attendees, future);
+        contactManager.addNewPastMeeting(attendees, past, "Notes.");
+        attendees.add(second);
+        attendees.remove(first);
+
+        Set<Contact> expected = new HashSet<Contact>(Arrays.asList(first));
+        org.junit.Assert.assertEquals(expected, contactManager.getFutureMeeting(futureId).getContacts());
+        org.junit.Assert.assertEquals(expected, contactManager.getPastMeetingList(first).get(0).getContacts());
+        org.junit.Assert.assertEquals(1, contactManager.getFutureMeetingList(first).size());
+        org.junit.Assert.assertTrue(contactManager.getFutureMeetingList(second).isEmpty());
+        org.junit.Assert.assertTrue(contactManager.getPastMeetingList(second).isEmpty());
+
+        try {
+            contactManager.getFutureMeeting(futureId).getContacts().add(second);
+            org.junit.Assert.fail("The attendees of a meeting could be changed.");
+        } catch (UnsupportedOperationException e) {
+            org.junit.Assert.assertEquals(expected, contactManager.getFutureMeeting(futureId).getContacts());
+        }
+    }
+
+    /**
+     * Waits for the latch, giving up if interrupted.
+     *
+     * @param latch the latch.
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
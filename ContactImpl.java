@@ -10,6 +10,7 @@ public class ContactImpl implements Contact {
     private int id = 0;
     private String name = "";
     private String notes = "";
+    private ContactNotesListener notesListener = null;
 
     /**
      * Constructor
@@ -62,6 +63,29 @@ public class ContactImpl implements Contact {
         // Each note is added on a separate line.
         String concatenatedNotes = getNotes() + "\n" + note;
         this.notes = concatenatedNotes;
+
+        if (this.notesListener != null) {
+            this.notesListener.notesAdded(this);
+        }
+    }
+
+    /**
+     * Replaces the notes about the contact without telling the listener, e.g. when notes added by an earlier run are
+     * restored from the journal.
+     *
+     * @param notes the notes.
+     */
+    void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    /**
+     * Sets the listener told about notes added by addNotes(), replacing any previous one.
+     *
+     * @param notesListener the listener, or null for none.
+     */
+    public void setNotesListener(ContactNotesListener notesListener) {
+        this.notesListener = notesListener;
     }
 
 }
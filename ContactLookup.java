@@ -0,0 +1,14 @@
+/**
+ * ContactLookup
+ *
+ * Finds contacts by ID, for structures that hold contact IDs rather than the contacts themselves (e.g. AttendeeSet).
+ */
+public interface ContactLookup {
+    /**
+     * Returns the contact with the ID.
+     *
+     * @param id the contact ID.
+     * @return the contact, or null if there is none.
+     */
+    Contact getContact(int id);
+}
@@ -0,0 +1,184 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * ContactLookupBenchmark
+ *
+ * Compares resolving contact IDs by scanning every contact, as ContactManagerImpl used to, with the contact index it
+ * uses now, for getContacts(int...) and for the ID check made by allContactsExist().
+ *
+ * Usage: java ContactLookupBenchmark [contacts...]
+ *
+ * The defaults are 10,000, 100,000 and 1,000,000 contacts. Each measurement resolves LOOKUPS random sets of 3 IDs, as
+ * when a meeting's attendees are checked, and is repeated with the median reported. The scans are kept below as they
+ * were; the index is timed through a ContactManagerImpl holding the same contacts, and an IntHashMap probed the way
+ * allContactsExist() probes it.
+ */
+public class ContactLookupBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int LOOKUPS = 200;
+    private static final int IDS_PER_LOOKUP = 3;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     * @throws IOException if the temporary data directory cannot be created.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {10000, 100000, 1000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int x = 0; x < args.length; x++) {
+                sizes[x] = Integer.parseInt(args[x]);
+            }
+        }
+
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    /**
+     * Times both ways of resolving IDs for a number of contacts.
+     *
+     * @param size the number of contacts.
+     * @throws IOException if the temporary data directory cannot be created.
+     */
+    private static void run(int size) throws IOException {
+        File directory = Files.createTempDirectory("contacts").toFile();
+        final ContactManagerImpl contactManager =
+                new ContactManagerImpl(new ContactManagerOptions().setDataDirectory(directory));
+        final Set<Contact> contactSet = new HashSet<Contact>();
+        final IntHashMap<Contact> contactIndex = new IntHashMap<Contact>();
+        for (int x = 1; x <= size; x++) {
+            contactManager.addNewContact("Contact " + x, "");
+        }
+        for (Contact contact : contactManager.getContacts("")) {
+            contactSet.add(contact);
+            contactIndex.put(contact.getId(), contact);
+        }
+
+        Random random = new Random(42);
+        final int[][] lookups = new int[LOOKUPS][IDS_PER_LOOKUP];
+        for (int[] ids : lookups) {
+            for (int x = 0; x < ids.length; x++) {
+                ids[x] = random.nextInt(size) + 1;
+            }
+        }
+
+        System.out.printf("%,d contacts, %d lookups of %d IDs:%n", size, LOOKUPS, IDS_PER_LOOKUP);
+        report("  getContacts(int...) by scan", new Runnable() {
+            @Override
+            public void run() {
+                for (int[] ids : lookups) {
+                    scanGetContacts(contactSet, ids);
+                }
+            }
+        });
+        report("  getContacts(int...) by index", new Runnable() {
+            @Override
+            public void run() {
+                for (int[] ids : lookups) {
+                    contactManager.getContacts(ids);
+                }
+            }
+        });
+        report("  allContactsExist() by scan", new Runnable() {
+            @Override
+            public void run() {
+                for (int[] ids : lookups) {
+                    if (!scanAllContactsExist(contactSet, ids)) {
+                        throw new IllegalStateException("Contact not found.");
+                    }
+                }
+            }
+        });
+        report("  allContactsExist() by index", new Runnable() {
+            @Override
+            public void run() {
+                for (int[] ids : lookups) {
+                    for (int id : ids) {
+                        if (!contactIndex.containsKey(id)) {
+                            throw new IllegalStateException("Contact not found.");
+                        }
+                    }
+                }
+            }
+        });
+
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    /**
+     * getContacts(int...) as it was before the contact index: every contact is compared with every ID.
+     *
+     * @param contactSet the contacts.
+     * @param ids the contact IDs.
+     * @return a set containing the contacts that correspond to the IDs.
+     * @throws IllegalArgumentException if any of the IDs does not correspond to a real contact.
+     */
+    private static Set<Contact> scanGetContacts(Set<Contact> contactSet, int... ids) {
+        if (scanAllContactsExist(contactSet, ids)) {
+            Set<Contact> tempContactSet = new HashSet<Contact>();
+
+            for (Contact contact : contactSet) {
+                for (int id : ids) {
+                    if (contact.getId() == id) {
+                        tempContactSet.add(contact);
+                    }
+                }
+            }
+            return tempContactSet;
+        } else {
+            throw new IllegalArgumentException("Not all IDs supplied exist.");
+        }
+    }
+
+    /**
+     * allContactsExist() as it was before the contact index: each ID is looked for among all the contacts.
+     *
+     * @param contactSet the contacts.
+     * @param ids the contact IDs.
+     * @return true if all IDs exist, otherwise false.
+     */
+    private static boolean scanAllContactsExist(Set<Contact> contactSet, int... ids) {
+        for (int id : ids) {
+            boolean foundFlag = false;
+
+            for (Contact contact : contactSet) {
+                if (id == contact.getId()) {
+                    foundFlag = true;
+                }
+            }
+
+            if (!foundFlag) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a measurement repeatedly and prints the median time.
+     *
+     * @param name what is measured.
+     * @param measurement the code to time.
+     */
+    private static void report(String name, Runnable measurement) {
+        double[] times = new double[ROUNDS];
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long startTime = System.nanoTime();
+            measurement.run();
+            times[round] = (System.nanoTime() - startTime) / 1e6;
+        }
+        Arrays.sort(times);
+        System.out.printf("%s: median %.3f ms.%n", name, times[ROUNDS / 2]);
+    }
+}
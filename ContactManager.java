@@ -66,6 +66,20 @@ public interface ContactManager {
      */
     List<Meeting> getFutureMeetingList(Calendar date);
 
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, any day from one date to another.
+     *
+     * If there are none, the returned list will be empty. Otherwise, the list will be chronologically sorted and will
+     * not contain any duplicates.
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @return the list of meetings.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the arguments is null.
+     */
+    List<Meeting> getMeetingList(Calendar from, Calendar to);
+
     /**
      * Returns the list of past meeting in which this contact has participated.
      *
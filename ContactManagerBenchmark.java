@@ -0,0 +1,463 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * ContactManagerBenchmark
+ *
+ * Measures every ContactManager operation of ContactManagerImpl, plus loading the data file (loadDataAsCSV, run by the
+ * constructor) and flush(), against a synthetic data set written by DataFileGenerator. Scores can be saved and later
+ * runs compared against them, so that a change that makes an operation slower is noticed before it is released.
+ *
+ * Usage: java ContactManagerBenchmark [contacts] [meetings] [attendees per meeting] [past meeting ratio] [options]
+ *
+ * The defaults are 10,000 contacts, 100,000 meetings of 4 attendees and half the meetings in the past. Options:
+ *   -only=TEXT     only run the benchmarks whose name contains TEXT.
+ *   -save=FILE     save the scores to FILE.
+ *   -compare=FILE  compare the scores with those saved in FILE. The exit status is 1 if any benchmark is more than
+ *                  10% slower.
+ *
+ * The data file is written to contacts.txt in a new temporary directory, which flush() then overwrites, so the data
+ * file in the working directory is left alone.
+ *
+ * Operations are timed as in JMH's average time mode: 3 warm-up iterations of 1 second that are not counted, then 5
+ * measured iterations of 1 second, reporting the mean time per call and its standard deviation across iterations.
+ * Loading and flushing are too slow for that and are timed one call at a time instead (JMH's single shot mode), after
+ * one call to warm up. Allocation per call is read from the thread's allocated bytes counter, the one used by the JMH
+ * gc profiler. Operations that add contacts or meetings run after the queries, since they keep adding to the manager
+ * for as long as they are timed, and flush() is timed on a newly loaded manager for the same reason.
+ */
+public class ContactManagerBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1000L * 1000 * 1000;
+    private static final int CALLS_PER_TIME_CHECK = 16;
+    private static final int SINGLE_SHOT_RUNS = 5;
+    private static final double REGRESSION_THRESHOLD = 0.10;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // Results are added here so that the JIT cannot drop the calls that produce them.
+    private static volatile long sink = 0;
+
+    private String only = "";
+    private ContactManagerOptions options = null;
+    private Map<String, Double> scores = new LinkedHashMap<String, Double>();
+    private com.sun.management.ThreadMXBean threads = null;
+
+    /**
+     * Constructor
+     *
+     * @param only only run the benchmarks whose name contains this text.
+     * @param dataDirectory directory holding the data file to load and flush.
+     */
+    public ContactManagerBenchmark(String only, File dataDirectory) {
+        this.only = only;
+        this.options = new ContactManagerOptions().setDataDirectory(dataDirectory);
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Runs the benchmarks described by the command line arguments.
+     *
+     * @param args see class description.
+     * @throws IOException if the data file or the scores cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] numbers = {10000, 100000, 4};
+        double pastMeetingRatio = 0.5;
+        String only = "";
+        String saveFile = null;
+        String compareFile = null;
+
+        int position = 0;
+        for (String arg : args) {
+            if (arg.startsWith("-only=")) {
+                only = arg.substring("-only=".length());
+            } else if (arg.startsWith("-save=")) {
+                saveFile = arg.substring("-save=".length());
+            } else if (arg.startsWith("-compare=")) {
+                compareFile = arg.substring("-compare=".length());
+            } else if (position < numbers.length) {
+                numbers[position++] = Integer.parseInt(arg);
+            } else {
+                pastMeetingRatio = Double.parseDouble(arg);
+            }
+        }
+
+        File directory = Files.createTempDirectory("contacts").toFile();
+        File file = new File(directory, ContactManagerImpl.DATA_FILE);
+        long lines = new DataFileGenerator(numbers[0], numbers[1], numbers[2], pastMeetingRatio, 42).write(file);
+        System.out.printf("Data set: %d contacts, %d meetings of %d attendees, %.0f%% past (%d lines, %d bytes).%n",
+                numbers[0], numbers[1], numbers[2], pastMeetingRatio * 100, lines, file.length());
+
+        ContactManagerBenchmark benchmark = new ContactManagerBenchmark(only, directory);
+        benchmark.runAll();
+
+        if (saveFile != null) {
+            benchmark.save(new File(saveFile));
+        }
+        if (compareFile != null && benchmark.compare(new File(compareFile))) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs every benchmark, printing each result as it is known.
+     */
+    public void runAll() {
+        System.out.printf("%-34s %4s %4s %14s   %12s %12s%n", "Benchmark", "Mode", "Cnt", "Score (us/op)",
+                "StdDev", "Alloc (B/op)");
+
+        singleShot("loadDataAsCSV", new Operation() {
+            @Override
+            public int run(Random random) {
+                return new ContactManagerImpl(options).getContacts("").size();
+            }
+        });
+
+        final ContactManagerImpl contactManager = new ContactManagerImpl(this.options);
+        final Contact[] contacts = contactManager.getContacts("").toArray(new Contact[0]);
+        final int[] pastMeetingIds = meetingIds(contactManager, true);
+        final int[] futureMeetingIds = meetingIds(contactManager, false);
+        final long now = System.currentTimeMillis();
+
+        averageTime("getPastMeeting", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getPastMeeting(pick(random, pastMeetingIds)).getId();
+            }
+        });
+        averageTime("getFutureMeeting", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getFutureMeeting(pick(random, futureMeetingIds)).getId();
+            }
+        });
+        averageTime("getMeeting", new Operation() {
+            @Override
+            public int run(Random random) {
+                int[] meetingIds = random.nextBoolean() ? pastMeetingIds : futureMeetingIds;
+                return contactManager.getMeeting(pick(random, meetingIds)).getId();
+            }
+        });
+        averageTime("getFutureMeetingList(Contact)", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getFutureMeetingList(contacts[random.nextInt(contacts.length)]).size();
+            }
+        });
+        averageTime("getFutureMeetingList(Calendar)", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getFutureMeetingList(randomDate(random, now - 365 * DAY_MILLIS, 730)).size();
+            }
+        });
+        averageTime("getMeetingList(Calendar, Calendar)", new Operation() {
+            @Override
+            public int run(Random random) {
+                Calendar from = randomDate(random, now - 365 * DAY_MILLIS, 730);
+                Calendar to = (Calendar) from.clone();
+                to.add(Calendar.DAY_OF_MONTH, 6);
+                return contactManager.getMeetingList(from, to).size();
+            }
+        });
+        averageTime("getPastMeetingList", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getPastMeetingList(contacts[random.nextInt(contacts.length)]).size();
+            }
+        });
+        averageTime("getContacts(int...)", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getContacts(contacts[random.nextInt(contacts.length)].getId(),
+                        contacts[random.nextInt(contacts.length)].getId()).size();
+            }
+        });
+        averageTime("getContacts(String)", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.getContacts(contacts[random.nextInt(contacts.length)].getName()).size();
+            }
+        });
+
+        // Changes go last, as they grow the data set the queries above run on.
+        averageTime("addFutureMeeting", new Operation() {
+            @Override
+            public int run(Random random) {
+                return contactManager.addFutureMeeting(randomAttendees(random, contacts),
+                        randomDate(random, now + DAY_MILLIS, 365));
+            }
+        });
+        averageTime("addNewPastMeeting", new Operation() {
+            @Override
+            public int run(Random random) {
+                contactManager.addNewPastMeeting(randomAttendees(random, contacts),
+                        randomDate(random, now - 366 * DAY_MILLIS, 365), "Benchmark notes.");
+                return 1;
+            }
+        });
+        averageTime("addMeetingNotes", new Operation() {
+            @Override
+            public int run(Random random) {
+                contactManager.addMeetingNotes(pick(random, pastMeetingIds), "Benchmark notes " + random.nextInt());
+                return 1;
+            }
+        });
+        averageTime("addNewContact", new Operation() {
+            @Override
+            public int run(Random random) {
+                contactManager.addNewContact("Benchmark contact " + random.nextInt(), "Benchmark notes.");
+                return 1;
+            }
+        });
+
+        // Flush a freshly loaded manager, which holds the generated data set rather than everything added above.
+        final ContactManagerImpl loadedManager = new ContactManagerImpl(this.options);
+        singleShot("flush", new Operation() {
+            @Override
+            public int run(Random random) {
+                loadedManager.flush();
+                return 1;
+            }
+        });
+    }
+
+    /**
+     * Saves the scores of the last run.
+     *
+     * @param file file to save them to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Double> score : this.scores.entrySet()) {
+            properties.setProperty(score.getKey(), Double.toString(score.getValue()));
+        }
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "ContactManagerBenchmark scores, microseconds per call");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compares the scores of the last run with scores saved earlier and prints the change of each.
+     *
+     * @param file file the earlier scores were saved to.
+     * @return true if any benchmark is slower by more than the threshold, otherwise false.
+     * @throws IOException if the file cannot be read.
+     */
+    public boolean compare(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        boolean regressed = false;
+        System.out.printf("%n%-34s %14s %14s %8s%n", "Benchmark", "Before (us/op)", "After (us/op)", "Change");
+        for (Map.Entry<String, Double> score : this.scores.entrySet()) {
+            String before = properties.getProperty(score.getKey());
+            if (before == null) {
+                continue;
+            }
+
+            double change = score.getValue() / Double.parseDouble(before) - 1;
+            boolean slower = change > REGRESSION_THRESHOLD;
+            regressed |= slower;
+            System.out.printf("%-34s %14.3f %14.3f %+7.1f%%%s%n", score.getKey(), Double.parseDouble(before),
+                    score.getValue(), change * 100, slower ? "  SLOWER" : "");
+        }
+        return regressed;
+    }
+
+    /**
+     * Times an operation by the number of calls it makes in a fixed time, for operations that take microseconds.
+     *
+     * @param name name of the benchmark.
+     * @param operation the operation.
+     */
+    private void averageTime(String name, Operation operation) {
+        if (!name.contains(this.only)) {
+            return;
+        }
+
+        Random random = new Random(7);
+        long threadId = Thread.currentThread().getId();
+        double[] micros = new double[MEASUREMENT_ITERATIONS];
+        long measuredCalls = 0;
+        long measuredBytes = 0;
+        long result = 0;
+
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASUREMENT_ITERATIONS; iteration++) {
+            long calls = 0;
+            long startBytes = this.threads.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            long endTime = startTime + ITERATION_NANOS;
+            long time = startTime;
+
+            // Check the time every few calls, so that reading the clock is not what gets measured.
+            while (time < endTime) {
+                for (int x = 0; x < CALLS_PER_TIME_CHECK; x++) {
+                    result += operation.run(random);
+                }
+                calls += CALLS_PER_TIME_CHECK;
+                time = System.nanoTime();
+            }
+
+            if (iteration >= WARMUP_ITERATIONS) {
+                micros[iteration - WARMUP_ITERATIONS] = (time - startTime) / 1e3 / calls;
+                measuredCalls += calls;
+                measuredBytes += this.threads.getThreadAllocatedBytes(threadId) - startBytes;
+            }
+        }
+
+        sink += result;
+        report(name, "avgt", micros, (double) measuredBytes / measuredCalls);
+    }
+
+    /**
+     * Times an operation one call at a time, for operations that take milliseconds or more.
+     *
+     * @param name name of the benchmark.
+     * @param operation the operation.
+     */
+    private void singleShot(String name, Operation operation) {
+        if (!name.contains(this.only)) {
+            return;
+        }
+
+        Random random = new Random(7);
+        long threadId = Thread.currentThread().getId();
+        double[] micros = new double[SINGLE_SHOT_RUNS];
+        long measuredBytes = 0;
+        long result = 0;
+
+        // The first call warms up and is not counted.
+        for (int run = -1; run < SINGLE_SHOT_RUNS; run++) {
+            System.gc();
+            long startBytes = this.threads.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            result += operation.run(random);
+            long elapsed = System.nanoTime() - startTime;
+
+            if (run >= 0) {
+                micros[run] = elapsed / 1e3;
+                measuredBytes += this.threads.getThreadAllocatedBytes(threadId) - startBytes;
+            }
+        }
+
+        sink += result;
+        report(name, "ss", micros, (double) measuredBytes / SINGLE_SHOT_RUNS);
+    }
+
+    /**
+     * Prints and keeps the result of a benchmark.
+     *
+     * @param name name of the benchmark.
+     * @param mode "avgt" for average time, "ss" for single shot.
+     * @param micros time per call of each measured iteration, in microseconds.
+     * @param bytesPerCall bytes allocated per call.
+     */
+    private void report(String name, String mode, double[] micros, double bytesPerCall) {
+        double mean = 0;
+        for (double value : micros) {
+            mean += value / micros.length;
+        }
+        double variance = 0;
+        for (double value : micros) {
+            variance += (value - mean) * (value - mean) / (micros.length - 1);
+        }
+
+        this.scores.put(name, mean);
+        System.out.printf("%-34s %4s %4d %14.3f +- %11.3f %12.0f%n", name, mode, micros.length, mean,
+                Math.sqrt(variance), bytesPerCall);
+    }
+
+    /**
+     * Returns the IDs of the past or the future meetings of a manager.
+     *
+     * @param contactManager the manager.
+     * @param past true for past meetings, false for future meetings.
+     * @return the meeting IDs.
+     */
+    private static int[] meetingIds(ContactManagerImpl contactManager, boolean past) {
+        Set<Integer> meetingIds = new TreeSet<Integer>();
+        for (Contact contact : contactManager.getContacts("")) {
+            List<? extends Meeting> meetings = past
+                    ? contactManager.getPastMeetingList(contact) : contactManager.getFutureMeetingList(contact);
+            for (Meeting meeting : meetings) {
+                meetingIds.add(meeting.getId());
+            }
+        }
+
+        int[] ids = new int[meetingIds.size()];
+        int x = 0;
+        for (int id : meetingIds) {
+            ids[x++] = id;
+        }
+        if (ids.length == 0) {
+            throw new IllegalStateException("The data set has no " + (past ? "past" : "future") + " meetings.");
+        }
+        return ids;
+    }
+
+    /**
+     * Picks an ID at random.
+     *
+     * @param random source of randomness.
+     * @param ids the IDs.
+     * @return one of the IDs.
+     */
+    private static int pick(Random random, int[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    /**
+     * Picks 4 attendees at random.
+     *
+     * @param random source of randomness.
+     * @param contacts the contacts to pick from.
+     * @return the attendees.
+     */
+    private static Set<Contact> randomAttendees(Random random, Contact[] contacts) {
+        Set<Contact> attendees = new HashSet<Contact>();
+        for (int x = 0; x < 4; x++) {
+            attendees.add(contacts[random.nextInt(contacts.length)]);
+        }
+        return attendees;
+    }
+
+    /**
+     * Returns a date up to a number of days after a time.
+     *
+     * @param random source of randomness.
+     * @param start the time.
+     * @param days the number of days.
+     * @return the date.
+     */
+    private static Calendar randomDate(Random random, long start, int days) {
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(start + (long) (random.nextDouble() * days * DAY_MILLIS));
+        return date;
+    }
+
+    /**
+     * An operation to measure.
+     */
+    private interface Operation {
+        /**
+         * Runs the operation once.
+         *
+         * @param random source of randomness for the arguments.
+         * @return a value computed from the result, so that the call cannot be optimised away.
+         */
+        int run(Random random);
+    }
+}
@@ -1,5 +1,9 @@
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * ContactManagerImpl - Implements ContactManager interface.
@@ -8,48 +12,205 @@ import java.util.*;
  */
 public class ContactManagerImpl implements ContactManager {
     public static final String DATA_FILE = "contacts.txt";
+    public static final String BINARY_DATA_FILE = "contacts.bin";
     public static final String DELIMITER = "&";
     public static final String ATTENDEE_DELIMITER = "±";
+    public static final String CONTACT_RECORD = "CONTACT";
+    public static final String PAST_MEETING_RECORD = "PASTMEETING";
+    public static final String FUTURE_MEETING_RECORD = "FUTUREMEETING";
+    public static final String MEETING_NOTES_RECORD = "MEETINGNOTES";
+    public static final String CONTACT_NOTES_RECORD = "CONTACTNOTES";
+    public static final String MEETING_SEQUENCE = "MEETINGSEQUENCE";
+    public static final String JOURNAL_FILE = "contacts.journal";
+    public static final Charset DATA_FILE_CHARSET = StandardCharsets.UTF_8;
+
+    // Large read buffer, the data file is read sequentially from start to end.
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    // Largest table of changed meetings that is cleared and reused once published.
+    private static final int CHANGED_MEETINGS_REUSE_LIMIT = 1024;
 
     // Note that since the definition of the interfaces does in no way define a method for creating meeting
-    // and contact IDs, the IDs in methods that create meetings are auto-generated using a random
-    // ID number generator Utilities.createUniqueInteger() and those that create contacts are simply made
-    // in a serial fashion based on their sequence of creation.
+    // and contact IDs, the IDs in methods that create meetings are handed out by a MeetingIdAllocator
+    // (a monotonic sequence whose next value is saved with the data file) and those that create contacts are
+    // simply made in a serial fashion based on their sequence of creation. Data files from before the sequence hold
+    // random meeting IDs up to Integer.MAX_VALUE, which can leave the sequence with little or no room above them, so
+    // once it is exhausted IDs are taken from the gaps between the IDs in use instead.
+
+    // Primary meeting index keyed by meeting ID. Whether a meeting is past or future is held by the entry
+    // itself (a PastMeeting or a FutureMeeting), so ID lookups and state checks are a single probe.
+    private IntHashMap<Meeting> meetingIndex = null;
+
+    // Inverted attendee indexes: contact ID to that contact's future and past meetings in chronological order.
+    private IntHashMap<MeetingPostingList<FutureMeeting>> futureMeetingsByContact = null;
+    private IntHashMap<MeetingPostingList<PastMeeting>> pastMeetingsByContact = null;
+
+    // Calendar index: epoch day to the meetings (past and future) held on that day in chronological order.
+    private NavigableMap<Long, MeetingPostingList<Meeting>> meetingsByDay = null;
+
+    // Data file, binary data file and journal, in the working directory unless another is set.
+    private File dataFile = null;
+    private File binaryDataFile = null;
+
+    // Source of new meeting IDs.
+    private MeetingIdAllocator meetingIdAllocator = null;
+
+    // Lowest meeting ID that may still be free, for allocation from the gaps once the allocator is exhausted. Only
+    // ever moves up, so each gap is scanned once.
+    private long freeMeetingIdCursor = 1;
 
-    // Meeting lists.
-    private List<PastMeeting> pastMeetingList = null;
-    private List<FutureMeeting> futureMeetingList = null;
+    // Journal of changes since the data file was last written. Changes are only appended in journal mode, but a
+    // journal left by an earlier run is always replayed.
+    private DataJournal journal = null;
+    private boolean journalEnabled = false;
+    private long compactionThreshold = 0;
 
-    // Caches ID integers used up so far for all meetings.
-    private List<Integer> idIntegersList = null;
+    // Data files at least this large are memory mapped and loaded in parallel.
+    private long parallelLoadThreshold = 0;
 
-    // Caches ID integers used up so far for future meetings.
-    private List<Integer> idFutureIntegersList = null;
+    // Format the data file is saved in.
+    private SnapshotFormat snapshotFormat = null;
 
-    // Caches ID integers used up so far for past meetings.
-    private List<Integer> idPastIntegersList = null;
+    // Source of the current time for every check of whether a meeting is in the future.
+    private Clock clock = null;
+
+    // Future meetings in order of time, so that those whose time has passed are moved into the past without a scan.
+    // Null unless meeting rollover is enabled.
+    private MeetingRolloverQueue rolloverQueue = null;
+
+    // Statistics of the last data file load.
+    private LoadStatistics lastLoadStatistics = null;
+
+    // Total size of the data files written by saves.
+    private long savedBytes = 0;
 
     // Contacts set.
     private Set<Contact> contactSet = null;
 
+    // Contact index keyed by contact ID, maintained alongside the contacts set.
+    private IntHashMap<Contact> contactIndex = null;
+
+    // Meetings hold their attendees as contact IDs in an AttendeeSet, which looks them up through this.
+    private ContactLookup contactLookup = null;
+
+    // Name index for substring and prefix searches. It is built by the first name search, so managers that never
+    // search by name do not pay for it at load time, and maintained from then on.
+    private ContactNameIndex nameIndex = null;
+
+    // Full-text indexes of past meeting notes and contact notes, also built by the first search. Contacts report notes
+    // added through Contact.addNotes() to the listener.
+    private NotesIndex meetingNotesIndex = null;
+    private NotesIndex contactNotesIndex = null;
+    private ContactNotesListener contactNotesListener = null;
+
+    // In snapshot view mode queries are answered from the last published immutable view, so readers on other threads
+    // never lock and never see a write half applied. Writes are still made by one thread at a time.
+    private boolean snapshotViewsEnabled = false;
+    private volatile ContactManagerSnapshot publishedSnapshot = null;
+    private int writeBatchDepth = 0;
+
+    // Changes made since the last published view.
+    private IntHashMap<Meeting> changedMeetings = null;
+    private List<Contact> addedContacts = null;
+
     /**
      * Constructor
      * Note that it loads the data file if available.
      */
     public ContactManagerImpl() {
+        this(new ContactManagerOptions());
+    }
+
+    /**
+     * Constructor
+     * Note that it loads the data file if available.
+     *
+     * @param meetingIdAllocator source of new meeting IDs.
+     * @throws NullPointerException if the allocator is null.
+     */
+    public ContactManagerImpl(MeetingIdAllocator meetingIdAllocator) {
+        this(new ContactManagerOptions().setMeetingIdAllocator(meetingIdAllocator));
+    }
+
+    /**
+     * Constructor
+     * Note that it loads the data file, and replays the journal over it, if available.
+     *
+     * @param options settings for the manager.
+     */
+    public ContactManagerImpl(ContactManagerOptions options) {
+        this.meetingIdAllocator = options.getMeetingIdAllocator();
+
+        this.dataFile = new File(options.getDataDirectory(), DATA_FILE);
+        this.binaryDataFile = new File(options.getDataDirectory(), BINARY_DATA_FILE);
+        this.journal = new DataJournal(new File(options.getDataDirectory(), JOURNAL_FILE));
+        this.journalEnabled = options.isJournalEnabled();
+        this.compactionThreshold = options.getCompactionThreshold();
+        this.parallelLoadThreshold = options.getParallelLoadThreshold();
+        this.snapshotFormat = options.getSnapshotFormat();
+        this.clock = options.getClock();
+        if (options.isMeetingRolloverEnabled()) {
+            this.rolloverQueue = new MeetingRolloverQueue(this.clock);
+        }
+
         // The List interface is implemented as ArrayList
         // and the Set interface as HashSet.
         this.contactSet = new HashSet<Contact>();
+        this.contactIndex = new IntHashMap<Contact>();
+
+        this.meetingIndex = new IntHashMap<Meeting>();
+        this.futureMeetingsByContact = new IntHashMap<MeetingPostingList<FutureMeeting>>();
+        this.pastMeetingsByContact = new IntHashMap<MeetingPostingList<PastMeeting>>();
+        this.meetingsByDay = new TreeMap<Long, MeetingPostingList<Meeting>>();
+
+        this.contactLookup = new ContactLookup() {
+            @Override
+            public Contact getContact(int id) {
+                // Readers of snapshot views may be on other threads, so they look in the published view, which holds
+                // every contact of the meetings in it. Contacts added since are only looked for by the writer.
+                if (snapshotViewsEnabled) {
+                    Contact contact = publishedSnapshot.getContact(id);
+                    if (contact != null) {
+                        return contact;
+                    }
+                }
+                return contactIndex.get(id);
+            }
+        };
+
+        this.contactNotesListener = new ContactNotesListener() {
+            @Override
+            public void notesAdded(Contact contact) {
+                // The record holds every note so far, so replaying it twice does no harm.
+                if (journalEnabled) {
+                    try {
+                        journal.append().writeContactNotes(contact.getId(), contact.getNotes());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not append to journal.", e);
+                    }
+                }
+
+                if (contactNotesIndex != null) {
+                    contactNotesIndex.put(contact.getId(), contact.getNotes());
+                }
+            }
+        };
 
-        this.pastMeetingList = new ArrayList<PastMeeting>();
-        this.futureMeetingList = new ArrayList<FutureMeeting>();
+        // Load contacts.bin or contacts.txt if available. A binary manager falls back to contacts.txt until it
+        // has saved contacts.bin for the first time.
+        if (this.snapshotFormat == SnapshotFormat.BINARY && this.binaryDataFile.exists()) {
+            loadDataAsBinary();
+        } else {
+            loadDataAsCSV();
+        }
 
-        this.idIntegersList = new ArrayList<Integer>();
-        this.idFutureIntegersList = new ArrayList<Integer>();
-        this.idPastIntegersList = new ArrayList<Integer>();
+        // Then apply the changes made since it was written.
+        replayJournal();
 
-        // Load contacts.txt if available.
-        loadDataAsCSV();
+        // Publish the loaded data as the first view.
+        if (options.isSnapshotViewsEnabled()) {
+            enableSnapshotViews();
+        }
     }
 
     /**
@@ -62,8 +223,10 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        rollOverMeetings();
+
         // Exception thrown if time is in the past.
-        if (!Utilities.timeInFuture(date)) {
+        if (!Utilities.timeInFuture(date, this.clock)) {
             throw new IllegalArgumentException("Meeting time is in the past.");
         }
 
@@ -76,17 +239,24 @@ public class ContactManagerImpl implements ContactManager {
         }
 
         // Get unique ID not used by other meetings.
-        int meetingId = Utilities.createUniqueInteger(this.idIntegersList);
-
-        // Cache meeting ID in ID lists.
-        this.idFutureIntegersList.add(meetingId);
-        this.idIntegersList.add(meetingId);
+        int meetingId = allocateMeetingIds(1);
 
         // Create meeting.
-        FutureMeeting futureMeeting = new FutureMeetingImpl(meetingId, date, contacts);
+        FutureMeeting futureMeeting = new FutureMeetingImpl(meetingId, date,
+                AttendeeSet.of(contacts, this.contactLookup));
+
+        // Record the change before applying it.
+        if (this.journalEnabled) {
+            try {
+                this.journal.append().writeFutureMeeting(futureMeeting);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to journal.", e);
+            }
+        }
 
-        // Add meeting to future meeting list.
-        this.futureMeetingList.add(futureMeeting);
+        // Add meeting to meeting indexes.
+        indexFutureMeeting(futureMeeting);
+        writeCompleted();
 
         return meetingId;
     }
@@ -100,18 +270,24 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public PastMeeting getPastMeeting(int id) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getPastMeeting(id);
+        }
+
+        rollOverMeetings();
+
+        Meeting meeting = this.meetingIndex.get(id);
+
         // Check if meeting exists based on ID.
-        if (!this.idIntegersList.contains(id)) {
+        if (meeting == null) {
             return null;
         }
 
-        // Check if meeting is not in future based on future meetings ID list.
-        if (this.idFutureIntegersList.contains(id)) {
+        // Check if meeting is not in future based on the state held in the index.
+        if (meeting instanceof FutureMeeting) {
             throw new IllegalArgumentException("Meeting time is in the future.");
         }
 
-        Meeting meeting = getMeeting(id);
-
         // Downcast to PastMeeting before returning.
         return (PastMeeting) meeting;
     }
@@ -125,15 +301,21 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public FutureMeeting getFutureMeeting(int id) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getFutureMeeting(id);
+        }
+
+        rollOverMeetings();
+
+        Meeting meeting = this.meetingIndex.get(id);
+
         // Check if meeting exists based on ID.
-        if (!this.idIntegersList.contains(id)) {
+        if (meeting == null) {
             return null;
         }
 
-        Meeting meeting = getMeeting(id);
-
-        // Check if meeting is not in past based on past meetings ID list.
-        if (this.idPastIntegersList.contains(id)) {
+        // Check if meeting is not in past based on the state held in the index.
+        if (meeting instanceof PastMeeting) {
             throw new IllegalArgumentException("Meeting time is in the past.");
         }
 
@@ -149,25 +331,14 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public Meeting getMeeting(int id) {
-        // Check if ID is in past list and return past meeting.
-        if (this.idPastIntegersList.contains(id)) {
-            for (PastMeeting aPastMeeting : this.pastMeetingList) {
-                if (aPastMeeting.getId() == id) {
-                    return aPastMeeting;
-                }
-            }
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getMeeting(id);
         }
 
-        // Check if ID is in future list and return future meeting.
-        if (this.idFutureIntegersList.contains(id)) {
-            for (FutureMeeting aFutureMeeting : this.futureMeetingList) {
-                if (aFutureMeeting.getId() == id) {
-                    return aFutureMeeting;
-                }
-            }
-        }
+        rollOverMeetings();
 
-        return null;
+        // Past or future, the index holds the meeting under its ID.
+        return this.meetingIndex.get(id);
     }
 
     /**
@@ -182,42 +353,19 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public List<Meeting> getFutureMeetingList(Contact contact) {
-        // Throw exception if contact does not exist based on ID.
-        if (!allContactsExist(contact.getId())) {
-            throw new IllegalArgumentException("Contact ID supplied does not exist.");
-        }
-
-        List<Meeting> meetingListForContact = new ArrayList<Meeting>();
-
-        for (Meeting meeting : this.futureMeetingList) {
-            Set<Contact> contacts = meeting.getContacts();
-            if (contacts.contains(contact)) {
-                meetingListForContact.add(meeting);
-            }
-        }
-
-        meetingListForContact = Utilities.removeDuplicateItemsInList(meetingListForContact);
-
-        // Chronological sort.
-        // Here we make the ArrayList into explicit MeetingImpl ArrayList since Collections.compareTo() is implemented
-        // in MeetingImpl and not part of the Meeting interface spec.
-        // Create empty MeetingImpl ArrayList.
-        List<MeetingImpl> sortedList = new ArrayList<MeetingImpl>();
-        // Fill up list with meetings from Meeting ArrayList.
-        for (Meeting meeting : meetingListForContact) {
-            sortedList.add((MeetingImpl)meeting);
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getFutureMeetingList(contact);
         }
 
-        // Sort list.
-        Collections.sort(sortedList);
+        rollOverMeetings();
 
-        // Now convert back to Meeting ArrayList.
-        meetingListForContact.clear();
-        for (Meeting meeting : sortedList) {
-            meetingListForContact.add(meeting);
+        // Throw exception if contact does not exist based on ID.
+        if (!allContactsExist(contact.getId())) {
+            throw new IllegalArgumentException("Contact ID supplied does not exist.");
         }
 
-        return meetingListForContact;
+        // The posting list is already chronologically sorted and free of duplicates.
+        return MeetingPostingList.<Meeting>copyOf(this.futureMeetingsByContact.get(contact.getId()));
     }
 
     /**
@@ -234,46 +382,63 @@ public class ContactManagerImpl implements ContactManager {
         // Note that as per Sergio, this interface method should have been named getMeetingList(Calendar date) as
         // it returns past and future meetings.
 
-        List<Meeting> pastAndFutureMeetingsForDateList = new ArrayList<Meeting>();
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getFutureMeetingList(date);
+        }
+
+        rollOverMeetings();
 
-        // Get meetings from future list.
-        for (Meeting meeting : this.futureMeetingList) {
-            Calendar meetingDate = meeting.getDate();
-            if (Utilities.calendarsEqual(meetingDate, date)) {
-                pastAndFutureMeetingsForDateList.add(meeting);
-            }
+        // The day's bucket is already chronologically sorted and free of duplicates.
+        return MeetingPostingList.copyOf(this.meetingsByDay.get(Utilities.calendarToEpochDay(date)));
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, any day from one date to another.
+     *
+     * If there are none, the returned list will be empty. Otherwise, the list will be chronologically sorted and will
+     * not contain any duplicates.
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @return the list of meetings.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the arguments is null.
+     */
+    @Override
+    public List<Meeting> getMeetingList(Calendar from, Calendar to) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getMeetingList(from, to);
         }
 
-        // Get meetings from past list.
-        for (Meeting meeting : this.pastMeetingList) {
-            Calendar meetingDate = meeting.getDate();
-            if (Utilities.calendarsEqual(meetingDate, date)) {
-                pastAndFutureMeetingsForDateList.add(meeting);
-            }
+        rollOverMeetings();
+
+        if (from == null || to == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
         }
 
-        pastAndFutureMeetingsForDateList = Utilities.removeDuplicateItemsInList(pastAndFutureMeetingsForDateList);
+        long fromDay = Utilities.calendarToEpochDay(from);
+        long toDay = Utilities.calendarToEpochDay(to);
 
-        // Chronological sort.
-        // Here we make the ArrayList into explicit MeetingImpl ArrayList since Collections.compareTo() is implemented
-        // in MeetingImpl and not part of the Meeting interface spec.
-        // Create empty MeetingImpl ArrayList.
-        List<MeetingImpl> sortedList = new ArrayList<MeetingImpl>();
-        // Fill up list with meetings from Meeting ArrayList.
-        for (Meeting meeting : pastAndFutureMeetingsForDateList) {
-            sortedList.add((MeetingImpl)meeting);
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Start date is after end date.");
         }
 
-        // Sort list.
-        Collections.sort(sortedList);
+        Collection<MeetingPostingList<Meeting>> dayBuckets =
+                this.meetingsByDay.subMap(fromDay, true, toDay, true).values();
+
+        // Size the list up front so that it is allocated once.
+        int meetingCount = 0;
+        for (MeetingPostingList<Meeting> dayBucket : dayBuckets) {
+            meetingCount += dayBucket.size();
+        }
+        List<Meeting> meetingsInRangeList = new ArrayList<Meeting>(meetingCount);
 
-        // Now convert back to Meeting ArrayList.
-        pastAndFutureMeetingsForDateList.clear();
-        for (Meeting meeting : sortedList) {
-            pastAndFutureMeetingsForDateList.add(meeting);
+        // Day buckets are visited in ascending order, so concatenating them keeps the list chronological.
+        for (MeetingPostingList<Meeting> dayBucket : dayBuckets) {
+            dayBucket.copyInto(meetingsInRangeList);
         }
 
-        return pastAndFutureMeetingsForDateList;
+        return meetingsInRangeList;
     }
 
     /**
@@ -288,6 +453,12 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public List<PastMeeting> getPastMeetingList(Contact contact) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getPastMeetingList(contact);
+        }
+
+        rollOverMeetings();
+
         // Throw exception if contact does not exist based on ID.
         if (!allContactsExist(contact.getId())) {
             throw new IllegalArgumentException("Contact ID supplied does not exist.");
@@ -295,37 +466,205 @@ public class ContactManagerImpl implements ContactManager {
 
         // Interface Definition Note: For some reason interface requires return type to be a List<PastMeeting>
         // while for the similar method for future meetings, it only requires a List<Meeting> return type.
-        List<PastMeeting> pastMeetingsForContactList = new ArrayList<PastMeeting>();
 
-        for (PastMeeting meeting : this.pastMeetingList) {
-            Set<Contact> contacts = meeting.getContacts();
-            if (contacts.contains(contact)) {
-                pastMeetingsForContactList.add(meeting);
+        // The posting list is already chronologically sorted and free of duplicates.
+        return MeetingPostingList.copyOf(this.pastMeetingsByContact.get(contact.getId()));
+    }
+
+    /**
+     * Returns a page of the future meetings scheduled with this contact.
+     *
+     * Pages are read by passing the last meeting of one page to get the next, which starts right after it in
+     * chronological order. Finding the start is a binary search, so a page costs the same however far into the list it
+     * is and however long the list is.
+     *
+     * @param contact one of the user's contacts.
+     * @param after the last meeting of the previous page, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return up to limit future meetings that come after the given meeting, chronologically sorted.
+     * @throws IllegalArgumentException if the contact does not exist or the limit is negative.
+     */
+    public List<Meeting> getFutureMeetingList(Contact contact, Meeting after, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getFutureMeetingList(contact, after, limit);
+        }
+
+        rollOverMeetings();
+
+        // Throw exception if contact does not exist based on ID.
+        if (!allContactsExist(contact.getId())) {
+            throw new IllegalArgumentException("Contact ID supplied does not exist.");
+        }
+
+        List<Meeting> page = new ArrayList<Meeting>();
+        MeetingPostingList<FutureMeeting> postingList = this.futureMeetingsByContact.get(contact.getId());
+        if (postingList != null) {
+            postingList.copyPageInto(after, limit, page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns a page of the meetings that are scheduled for, or that took place on, any day from one date to another.
+     * Pages are read as for getFutureMeetingList(Contact, Meeting, int).
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @param after the last meeting of the previous page, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return up to limit meetings in the range that come after the given meeting, chronologically sorted.
+     * @throws IllegalArgumentException if the first date is after the last date or the limit is negative.
+     * @throws NullPointerException if any of the dates is null.
+     */
+    public List<Meeting> getMeetingList(Calendar from, Calendar to, Meeting after, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getMeetingList(from, to, after, limit);
+        }
+
+        rollOverMeetings();
+
+        if (from == null || to == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+
+        long fromDay = Utilities.calendarToEpochDay(from);
+        long toDay = Utilities.calendarToEpochDay(to);
+
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Start date is after end date.");
+        }
+
+        // Days before the one of the last meeting returned are skipped without being visited.
+        List<Meeting> page = new ArrayList<Meeting>();
+        long startDay = after == null ? fromDay : Math.max(fromDay, Utilities.meetingEpochDay(after));
+        if (startDay > toDay) {
+            return page;
+        }
+        for (MeetingPostingList<Meeting> dayBucket : this.meetingsByDay.subMap(startDay, true, toDay, true).values()) {
+            if (page.size() >= limit) {
+                break;
             }
+            dayBucket.copyPageInto(after, limit - page.size(), page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns a page of the past meetings in which this contact has participated.
+     * Pages are read as for getFutureMeetingList(Contact, Meeting, int).
+     *
+     * @param contact one of the user's contacts.
+     * @param after the last meeting of the previous page, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return up to limit past meetings that come after the given meeting, chronologically sorted.
+     * @throws IllegalArgumentException if the contact does not exist or the limit is negative.
+     */
+    public List<PastMeeting> getPastMeetingList(Contact contact, Meeting after, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getPastMeetingList(contact, after, limit);
+        }
+
+        rollOverMeetings();
+
+        // Throw exception if contact does not exist based on ID.
+        if (!allContactsExist(contact.getId())) {
+            throw new IllegalArgumentException("Contact ID supplied does not exist.");
+        }
+
+        List<PastMeeting> page = new ArrayList<PastMeeting>();
+        MeetingPostingList<PastMeeting> postingList = this.pastMeetingsByContact.get(contact.getId());
+        if (postingList != null) {
+            postingList.copyPageInto(after, limit, page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns an iterator over the future meetings scheduled with this contact, chronologically sorted.
+     *
+     * The meetings are read a page at a time as the iterator advances, so only as many are copied as are used. With
+     * snapshot views enabled, the iterator reads the view published when it was created.
+     *
+     * @param contact one of the user's contacts.
+     * @return the iterator.
+     * @throws IllegalArgumentException if the contact does not exist.
+     */
+    public Iterator<Meeting> iterateFutureMeetings(final Contact contact) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.iterateFutureMeetings(contact);
         }
 
-        pastMeetingsForContactList = Utilities.removeDuplicateItemsInList(pastMeetingsForContactList);
+        // Checks the contact now rather than on the first call to hasNext().
+        getFutureMeetingList(contact, null, 0);
+
+        return new PagedMeetingIterator<Meeting>() {
+            @Override
+            protected List<Meeting> fetchPage(Meeting after, int limit) {
+                return getFutureMeetingList(contact, after, limit);
+            }
+        };
+    }
 
-        // Chronological sort.
-        // Here we make the ArrayList into explicit PastMeetingImpl ArrayList since Collections.compareTo() is implemented
-        // in MeetingImpl and not part of the Meeting interface spec.
-        // Create empty MeetingImpl ArrayList.
-        List<PastMeetingImpl> sortedList = new ArrayList<PastMeetingImpl>();
-        // Fill up list with meetings from Meeting ArrayList.
-        for (PastMeeting meeting : pastMeetingsForContactList) {
-            sortedList.add((PastMeetingImpl)meeting);
+    /**
+     * Returns an iterator over the meetings that are scheduled for, or that took place on, any day from one date to
+     * another, chronologically sorted. The meetings are read as for iterateFutureMeetings(Contact).
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @return the iterator.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the dates is null.
+     */
+    public Iterator<Meeting> iterateMeetings(final Calendar from, final Calendar to) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.iterateMeetings(from, to);
         }
 
-        // Sort list.
-        Collections.sort(sortedList);
+        // Checks the dates now rather than on the first call to hasNext().
+        getMeetingList(from, to, null, 0);
+
+        return new PagedMeetingIterator<Meeting>() {
+            @Override
+            protected List<Meeting> fetchPage(Meeting after, int limit) {
+                return getMeetingList(from, to, after, limit);
+            }
+        };
+    }
 
-        // Now convert back to PastMeeting ArrayList.
-        pastMeetingsForContactList.clear();
-        for (PastMeeting meeting : sortedList) {
-            pastMeetingsForContactList.add(meeting);
+    /**
+     * Returns an iterator over the past meetings in which this contact has participated, chronologically sorted. The
+     * meetings are read as for iterateFutureMeetings(Contact).
+     *
+     * @param contact one of the user's contacts.
+     * @return the iterator.
+     * @throws IllegalArgumentException if the contact does not exist.
+     */
+    public Iterator<PastMeeting> iteratePastMeetings(final Contact contact) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.iteratePastMeetings(contact);
         }
 
-        return pastMeetingsForContactList;
+        // Checks the contact now rather than on the first call to hasNext().
+        getPastMeetingList(contact, null, 0);
+
+        return new PagedMeetingIterator<PastMeeting>() {
+            @Override
+            protected List<PastMeeting> fetchPage(Meeting after, int limit) {
+                return getPastMeetingList(contact, after, limit);
+            }
+        };
     }
 
     /**
@@ -339,6 +678,8 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+        rollOverMeetings();
+
         // NOTE: This method as defined by the interface does NOT check for a date being in the FUTURE.
         // Therefore we can create with it a PAST MEETING THAT HAS A FUTURE DATE and NOT throw an exception.
 
@@ -358,17 +699,24 @@ public class ContactManagerImpl implements ContactManager {
         }
 
         // Get unique ID not used by other meetings.
-        int meetingId = Utilities.createUniqueInteger(this.idIntegersList);
-
-        // Cache meeting ID in ID lists.
-        this.idPastIntegersList.add(meetingId);
-        this.idIntegersList.add(meetingId);
+        int meetingId = allocateMeetingIds(1);
 
         // Create past meeting.
-        PastMeeting pastMeeting = new PastMeetingImpl(meetingId, date, contacts, text);
+        PastMeeting pastMeeting = new PastMeetingImpl(meetingId, date, AttendeeSet.of(contacts, this.contactLookup),
+                text);
+
+        // Record the change before applying it.
+        if (this.journalEnabled) {
+            try {
+                this.journal.append().writePastMeeting(pastMeeting);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to journal.", e);
+            }
+        }
 
-        // Add past meeting to past meeting list.
-        this.pastMeetingList.add(pastMeeting);
+        // Add past meeting to meeting indexes.
+        indexPastMeeting(pastMeeting);
+        writeCompleted();
     }
 
     /**
@@ -386,20 +734,22 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public void addMeetingNotes(int id, String text) {
+        rollOverMeetings();
+
+        Meeting meeting = this.meetingIndex.get(id);
+
         // Exception thrown if meeting does not exist.
-        if (! this.idIntegersList.contains(id) ) {
+        if (meeting == null) {
             throw new IllegalArgumentException("Meeting ID does not exist.");
         }
 
-        Meeting meeting = getMeeting(id);
-
         // This is slippery as per the interface spec and discussion. We need to check the date
         // and NOT the object type (i.e. checking that it is FutureMeetingImpl is NOT right).
         // This is important since using addNewPastMeeting we can actually create a PastMeeting
         // that has a FUTURE date without throwing an exception.
 
         // Use private method to check if meeting date is in the future and throw exception if it is.
-        if (Utilities.timeInFuture(meeting.getDate())) {
+        if (Utilities.timeInFuture(Utilities.meetingTimeMillis(meeting), this.clock)) {
             throw new IllegalStateException("Meeting time is in the future.");
         }
 
@@ -407,36 +757,59 @@ public class ContactManagerImpl implements ContactManager {
             throw new NullPointerException("Notes are null.");
         }
 
+        // Record the change before applying it.
+        if (this.journalEnabled) {
+            try {
+                this.journal.append().writeMeetingNotes(id, text);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to journal.", e);
+            }
+        }
+
+        applyMeetingNotes(meeting, text);
+        writeCompleted();
+    }
+
+    /**
+     * Sets the notes of a meeting, converting it to a past meeting if it is a future meeting.
+     *
+     * @param meeting the meeting.
+     * @param text messages to be added about the meeting.
+     */
+    private void applyMeetingNotes(Meeting meeting, String text) {
         // If meeting is a FutureMeetingImpl type, convert it to PastMeetingImpl type.
-        if (this.futureMeetingList.contains(meeting)) {
+        if (meeting instanceof FutureMeeting) {
             // Keep references to FutureMeetingImpl object's state.
             int tempID = meeting.getId();
-            Calendar tempDate = meeting.getDate();
+            long tempDate = Utilities.meetingTimeMillis(meeting);
             Set<Contact> tempContacts = meeting.getContacts();
 
-            // Remove cached ID from future ID list.
-            this.idFutureIntegersList.remove((Integer)tempID);
-
-            // Remove FutureMeetingImpl meeting object from future meeting list.
-            this.futureMeetingList.remove(meeting);
-
             // Create new past meeting with future meeting's state.
             PastMeeting tempMeeting = new PastMeetingImpl(tempID, tempDate, tempContacts, text);
 
-            // Add the PastMeetingImpl meeting object to the past meeting list.
-            this.pastMeetingList.add(tempMeeting);
-
-            // Add cached ID to past ID list.
-            this.idPastIntegersList.add(tempID);
+            // Replacing the index entries flips the meeting from future to past for each attendee.
+            unindexFutureMeeting((FutureMeeting) meeting);
+            indexPastMeeting(tempMeeting);
 
             // As this was a converted future meeting object, we've already added the notes during
             // its conversion, so we just return.
             return;
         }
 
-        PastMeetingImpl pastMeeting = (PastMeetingImpl) getMeeting(id);
+        PastMeetingImpl pastMeeting = (PastMeetingImpl) meeting;
+
+        // Published views hold the meeting object, so replace it rather than change the notes under their readers.
+        if (this.snapshotViewsEnabled) {
+            unindexPastMeeting(pastMeeting);
+            indexPastMeeting(new PastMeetingImpl(pastMeeting.getId(), pastMeeting.getDateMillis(),
+                    pastMeeting.getContacts(), text));
+            return;
+        }
 
         pastMeeting.setNotes(text);
+        if (this.meetingNotesIndex != null) {
+            this.meetingNotesIndex.put(pastMeeting.getId(), text);
+        }
     }
 
     /**
@@ -457,7 +830,22 @@ public class ContactManagerImpl implements ContactManager {
         int contactId = this.contactSet.size() + 1;
 
         Contact newContact = new ContactImpl(contactId, name, notes);
-        this.contactSet.add(newContact);
+
+        // Record the change before applying it.
+        if (this.journalEnabled) {
+            try {
+                this.journal.append().writeContact(newContact);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to journal.", e);
+            }
+        }
+
+        indexContact(newContact);
+
+        if (this.snapshotViewsEnabled) {
+            this.addedContacts.add(newContact);
+        }
+        writeCompleted();
     }
 
     /**
@@ -469,23 +857,23 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public Set<Contact> getContacts(int... ids) {
-        // Check if all contact IDs supplied are valid.
-        if (allContactsExist(ids)) {
-            // Temporary set that holds contacts to return.
-            Set<Contact> tempContactSet = new HashSet<Contact>();
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getContacts(ids);
+        }
 
-            for (Contact contact : this.contactSet) {
-                for (int id : ids) {
-                    if (contact.getId() == id) {
-                        tempContactSet.add(contact);
-                    }
-                }
+        // Temporary set that holds contacts to return.
+        Set<Contact> tempContactSet = new HashSet<Contact>();
+
+        // Resolve each ID through the contact index.
+        for (int id : ids) {
+            Contact contact = this.contactIndex.get(id);
+            if (contact == null) {
+                // Exception thrown if at least one ID doesn't exist.
+                throw new IllegalArgumentException("Not all IDs supplied exist.");
             }
-            return tempContactSet;
-        } else {
-            // Exception thrown if at least one ID doesn't exist.
-            throw new IllegalArgumentException("Not all IDs supplied exist.");
+            tempContactSet.add(contact);
         }
+        return tempContactSet;
     }
 
     /**
@@ -497,246 +885,898 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public Set<Contact> getContacts(String name) {
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getContacts(name);
+        }
+
         // Exception thrown if name parameter is null.
         if (name == null) {
             throw new NullPointerException("Search string cannot be null.");
         }
 
-        // Temporary set that holds contacts to return.
-        Set<Contact> tempContactSet = new HashSet<Contact>();
-
-        for (Contact contact : this.contactSet) {
-            if (contact.getName().contains(name)) {
-                tempContactSet.add(contact);
-            }
-        }
-
         // NOTE: Interface does not specify an exception for a null result, so we just
         // return an empty list in case there are no matches.
-        return tempContactSet;
+        return getContacts(name, Integer.MAX_VALUE);
     }
 
     /**
-     * Save all data to disk.
+     * Returns up to a number of contacts whose name contains that string (case-sensitive), e.g. for an autocomplete
+     * box that shows a few matches per keystroke.
      *
-     * This method must be executed when the program is closed and when/if the user requests it.
+     * @param name the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @return a set with the contacts whose name contains that string.
+     * @throws NullPointerException if the string is null.
+     * @throws IllegalArgumentException if the limit is negative.
      */
-    public void flush() {
-        saveDataAsCSV();
-    }
+    public Set<Contact> getContacts(String name, int limit) {
+        if (name == null) {
+            throw new NullPointerException("Search string cannot be null.");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
 
-    /**
-     * Returns a single contact that corresponds to the ID.
-     *
-     * @param id a contact ID.
-     * @return a Contact that corresponds to the ID or null if not found.
-     */
-    private Contact getContact(int id) {
-        for (Contact contact : this.contactSet) {
-            if (contact.getId() == id) {
-                return contact;
-            }
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getContacts(name, limit);
         }
-        return null;
+
+        Set<Contact> tempContactSet = new HashSet<Contact>();
+        getNameIndex().findContaining(name, limit, tempContactSet);
+        return tempContactSet;
     }
 
     /**
-     * Checks if provided contact IDs exist.
+     * Returns up to a number of contacts whose name starts with that string, ignoring case.
      *
-     * @param ids contact IDs.
-     * @return true if all IDs exist, otherwise false.
+     * @param prefix the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @return a list with the contacts whose name starts with that string, in order of name.
+     * @throws NullPointerException if the string is null.
+     * @throws IllegalArgumentException if the limit is negative.
      */
-    private boolean allContactsExist(int... ids) {
-        // Check each ID to see if present in contacts.
-        for (int id : ids) {
-            // Flag set to true when an id is found.
-            boolean foundFlag = false;
-
-            // Check to see if current ID is present in any of the contacts.
-            // If found, set foundFlag to true.
-            for (Contact contact : contactSet) {
-                if (id == contact.getId()) {
-                    foundFlag = true;
-                }
-            }
+    public List<Contact> getContactsByPrefix(String prefix, int limit) {
+        if (prefix == null) {
+            throw new NullPointerException("Search string cannot be null.");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
 
-            if (foundFlag == false) {
-                // No need to check other IDs. If one is not found, return false.
-                return false;
-            }
+        if (this.snapshotViewsEnabled) {
+            return this.publishedSnapshot.getContactsByPrefix(prefix, limit);
         }
 
-        // All IDs found, so return true.
-        return true;
+        List<Contact> contactList = new ArrayList<Contact>();
+        getNameIndex().findStartingWith(prefix, limit, contactList);
+        return contactList;
     }
 
     /**
-     * Saves contacts and meetings to CSV text file.
+     * Returns the past meetings whose notes contain every word of the query, best match first.
      *
-     * @return returns true if successful save, otherwise false.
+     * Words are letters and digits and are matched ignoring case. Matches are ranked by BM25, so notes that mention
+     * rare query words, mention them often, or are short come first. In snapshot view mode this reads the live index,
+     * so it must be called from the writing thread.
+     *
+     * @param query the words to search for.
+     * @param limit maximum number of meetings to return.
+     * @return the best matching past meetings, best first.
+     * @throws NullPointerException if the query is null.
+     * @throws IllegalArgumentException if the limit is negative.
      */
-    private boolean saveDataAsCSV() {
-        File file = new File(DATA_FILE);
-        PrintWriter out = null;
+    public List<PastMeeting> searchMeetingNotes(String query, int limit) {
+        if (query == null) {
+            throw new NullPointerException("Search string cannot be null.");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+
+        List<PastMeeting> pastMeetingList = new ArrayList<PastMeeting>();
+        for (int id : getMeetingNotesIndex().search(query, limit)) {
+            pastMeetingList.add((PastMeeting) this.meetingIndex.get(id));
+        }
+        return pastMeetingList;
+    }
+
+    /**
+     * Returns the contacts whose notes contain every word of the query, best match first, ranked like
+     * searchMeetingNotes().
+     *
+     * @param query the words to search for.
+     * @param limit maximum number of contacts to return.
+     * @return the best matching contacts, best first.
+     * @throws NullPointerException if the query is null.
+     * @throws IllegalArgumentException if the limit is negative.
+     */
+    public List<Contact> searchContactNotes(String query, int limit) {
+        if (query == null) {
+            throw new NullPointerException("Search string cannot be null.");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+
+        List<Contact> contactList = new ArrayList<Contact>();
+        for (int id : getContactNotesIndex().search(query, limit)) {
+            contactList.add(this.contactIndex.get(id));
+        }
+        return contactList;
+    }
+
+    /**
+     * Save all data to disk.
+     *
+     * This method must be executed when the program is closed and when/if the user requests it.
+     *
+     * In journal mode only the journal is synced, unless it has grown past the compaction threshold, in which case it
+     * is compacted into the data file.
+     */
+    public void flush() {
         try {
-            out = new PrintWriter(file);
+            if (this.journalEnabled && this.journal.getRecordCount() < this.compactionThreshold) {
+                this.journal.sync();
+            } else {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save data.", e);
+        }
+    }
 
-            // Save contacts.
-            for (Contact contact : contactSet) {
-                String contactLine;
-                int tempID = contact.getId();
-                String tempName = contact.getName();
-                String tempNotes = contact.getNotes();
+    /**
+     * Rewrites the data file with every contact and meeting and then empties the journal.
+     *
+     * Like every other method of this class it must not be called concurrently with other calls, so a periodic
+     * compaction should be run from the thread that owns the manager.
+     *
+     * @throws IOException if the data file could not be written or the journal could not be emptied.
+     */
+    public void compact() throws IOException {
+        rollOverMeetings();
 
-                contactLine = "CONTACT" + DELIMITER + tempID + DELIMITER + tempName + DELIMITER + tempNotes;
-                out.println(contactLine);
+        // The journal is only emptied once a snapshot holding all of its changes has been written.
+        if (this.snapshotFormat == SnapshotFormat.BINARY) {
+            if (!saveDataAsBinary()) {
+                throw new IOException("Could not write " + this.binaryDataFile);
             }
+        } else if (!saveDataAsCSV()) {
+            throw new IOException("Could not write " + this.dataFile);
+        }
+        this.journal.reset();
+    }
 
-            // Save past meetings.
-            for (PastMeeting meeting : this.pastMeetingList) {
-                String meetingLine;
+    /**
+     * Moves the future meetings whose time has passed into the past, by the manager's clock, if meeting rollover is
+     * enabled. They become past meetings with empty notes, as if addMeetingNotes() had been called with "" (the change
+     * is not journaled, since it is made again whenever the data is loaded).
+     *
+     * Each meeting moved costs O(log n) and the check when none is due costs O(1), so this is called at the start of
+     * every query and write. In snapshot view mode queries may run on other threads and never change the manager, so
+     * meetings are only moved by writes and by calling this method, e.g. from a timer run by the thread that owns the
+     * manager.
+     */
+    public void rollOverMeetings() {
+        if (this.rolloverQueue == null) {
+            return;
+        }
+
+        boolean rolledOver = false;
+        FutureMeeting meeting = this.rolloverQueue.pollDue();
+        while (meeting != null) {
+            // Meetings already made past by addMeetingNotes() are no longer indexed as queued.
+            if (this.meetingIndex.get(meeting.getId()) == meeting) {
+                unindexFutureMeeting(meeting);
+                indexPastMeeting(new PastMeetingImpl(meeting.getId(), Utilities.meetingTimeMillis(meeting),
+                        meeting.getContacts(), ""));
+                rolledOver = true;
+            }
+            meeting = this.rolloverQueue.pollDue();
+        }
+
+        if (rolledOver) {
+            writeCompleted();
+        }
+    }
+
+    /**
+     * Returns the last published snapshot view, so that a caller can run several queries against one version of the
+     * data, e.g. to render a page. The view never changes, later writes are published as new versions.
+     *
+     * @return the current snapshot view.
+     * @throws IllegalStateException if snapshot view mode is not enabled.
+     */
+    public ContactManagerSnapshot pinSnapshot() {
+        if (!this.snapshotViewsEnabled) {
+            throw new IllegalStateException("Snapshot view mode is not enabled.");
+        }
+        return this.publishedSnapshot;
+    }
+
+    /**
+     * Starts a write batch. In snapshot view mode the changes made until the matching endWriteBatch() are published
+     * together as one new version, so readers see all of them or none. Until then queries, including those made by
+     * the writing thread, are answered from the version published before the batch.
+     *
+     * Batches can be nested, only the outermost one publishes.
+     */
+    public void beginWriteBatch() {
+        this.writeBatchDepth++;
+    }
+
+    /**
+     * Ends a write batch started by beginWriteBatch() and, once the outermost batch ends in snapshot view mode,
+     * publishes its changes as a new version.
+     *
+     * @throws IllegalStateException if no write batch was started.
+     */
+    public void endWriteBatch() {
+        if (this.writeBatchDepth == 0) {
+            throw new IllegalStateException("No write batch was started.");
+        }
+        this.writeBatchDepth--;
+        writeCompleted();
+    }
+
+    /**
+     * Starts a bulk import. Contacts and meetings added to the batch are applied together by its commit().
+     *
+     * No other changes may be made to the manager until the batch is committed or aborted.
+     *
+     * @return the import batch.
+     */
+    public ImportBatch beginImport() {
+        return new ImportBatch(this, this.contactSet.size() + 1);
+    }
+
+    /**
+     * Applies a committed import batch: journals it as one segment (or saves the data file if that would take the
+     * journal past the compaction threshold), then indexes it in one pass and publishes it as one version.
+     *
+     * @param firstContactId ID of the first contact in the batch.
+     * @param contacts contacts to add, in ID order.
+     * @param pastMeetings past meetings to add.
+     * @param futureMeetings future meetings to add.
+     * @throws IllegalStateException if contacts were added since the batch began.
+     * @throws UncheckedIOException if the batch could not be written to the journal or the data file.
+     */
+    void commitImport(int firstContactId, List<Contact> contacts, List<PastMeeting> pastMeetings,
+                      List<FutureMeeting> futureMeetings) {
+        // Contact IDs are handed out by position, so they are only valid if nothing was added in between.
+        if (firstContactId != this.contactSet.size() + 1) {
+            throw new IllegalStateException("Contacts were added since the import began.");
+        }
+
+        long records = contacts.size() + pastMeetings.size() + futureMeetings.size();
+        boolean compactAfterImport = this.journalEnabled
+                && this.journal.getRecordCount() + records >= this.compactionThreshold;
+
+        // Record the changes before applying them, as a single synced segment.
+        if (this.journalEnabled && !compactAfterImport) {
+            try {
+                for (Contact contact : contacts) {
+                    this.journal.append().writeContact(contact);
+                }
+                for (PastMeeting meeting : pastMeetings) {
+                    this.journal.append().writePastMeeting(meeting);
+                }
+                for (FutureMeeting meeting : futureMeetings) {
+                    this.journal.append().writeFutureMeeting(meeting);
+                }
+                this.journal.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to journal.", e);
+            }
+        }
+
+        for (Contact contact : contacts) {
+            indexContact(contact);
+        }
+        if (this.snapshotViewsEnabled) {
+            this.addedContacts.addAll(contacts);
+        }
+
+        indexMeetings(pastMeetings, futureMeetings);
+        writeCompleted();
+
+        if (compactAfterImport) {
+            try {
+                compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not save data.", e);
+            }
+        }
+    }
+
+    /**
+     * Allocates a range of consecutive meeting IDs.
+     *
+     * @param count number of IDs to allocate.
+     * @return the first ID of the range.
+     * @throws IllegalStateException if the ID space cannot hold the range.
+     */
+    int allocateMeetingIds(int count) {
+        try {
+            return count == 1 ? this.meetingIdAllocator.nextId() : this.meetingIdAllocator.nextIds(count);
+        } catch (IllegalStateException e) {
+            return allocateFreeMeetingIds(count, e);
+        }
+    }
+
+    /**
+     * Allocates a range of consecutive meeting IDs from the gaps between the IDs in use, lowest first.
+     *
+     * @param count number of IDs to allocate.
+     * @param exhausted the exception the allocator threw, rethrown if no gap is large enough.
+     * @return the first ID of the range.
+     * @throws IllegalStateException if no gap can hold the range.
+     */
+    private int allocateFreeMeetingIds(int count, IllegalStateException exhausted) {
+        long firstId = this.freeMeetingIdCursor;
+        for (long id = firstId; id <= Integer.MAX_VALUE; id++) {
+            if (this.meetingIndex.containsKey((int) id)) {
+                firstId = id + 1;
+            } else if (id - firstId + 1 == count) {
+                this.freeMeetingIdCursor = id + 1;
+                return (int) firstId;
+            }
+        }
+        throw exhausted;
+    }
 
-                    int tempID = meeting.getId();
-                    Calendar tempDate = meeting.getDate();
-                    String tempNotes = meeting.getNotes();
-                    String tempContacts = "";
+    /**
+     * Returns a single contact that corresponds to the ID.
+     *
+     * @param id a contact ID.
+     * @return a Contact that corresponds to the ID or null if not found.
+     */
+    Contact getContact(int id) {
+        return this.contactIndex.get(id);
+    }
 
-                    // Get string representation of date.
-                    String tempStringDate = Utilities.calendarToString(tempDate);
+    /**
+     * Returns the source of the current time.
+     *
+     * @return the clock.
+     */
+    Clock getClock() {
+        return this.clock;
+    }
 
-                    // Create delimited list of attendees.
-                    for (Contact attendee : meeting.getContacts()) {
-                        tempContacts += attendee.getId() + ATTENDEE_DELIMITER;
+    /**
+     * Returns the lookup that attendee sets of this manager resolve contacts through.
+     *
+     * @return the contact lookup.
+     */
+    ContactLookup getContactLookup() {
+        return this.contactLookup;
+    }
+
+    /**
+     * Returns the meeting notes index, building it from the past meetings on first use.
+     *
+     * @return the meeting notes index.
+     */
+    private NotesIndex getMeetingNotesIndex() {
+        if (this.meetingNotesIndex == null) {
+            this.meetingNotesIndex = new NotesIndex();
+            for (Meeting meeting : this.meetingIndex.values()) {
+                if (meeting instanceof PastMeeting) {
+                    this.meetingNotesIndex.put(meeting.getId(), ((PastMeeting) meeting).getNotes());
+                }
+            }
+        }
+        return this.meetingNotesIndex;
+    }
+
+    /**
+     * Returns the contact notes index, building it from the contacts set on first use.
+     *
+     * @return the contact notes index.
+     */
+    private NotesIndex getContactNotesIndex() {
+        if (this.contactNotesIndex == null) {
+            this.contactNotesIndex = new NotesIndex();
+            for (Contact contact : this.contactSet) {
+                this.contactNotesIndex.put(contact.getId(), contact.getNotes());
+            }
+        }
+        return this.contactNotesIndex;
+    }
+
+    /**
+     * Returns the name index, building it from the contacts set on first use.
+     *
+     * @return the name index.
+     */
+    private ContactNameIndex getNameIndex() {
+        if (this.nameIndex == null) {
+            this.nameIndex = new ContactNameIndex();
+            for (Contact contact : this.contactSet) {
+                this.nameIndex.add(contact);
+            }
+        }
+        return this.nameIndex;
+    }
+
+    /**
+     * Adds a contact to the contacts set and the contact indexes.
+     *
+     * @param contact the contact.
+     */
+    private void indexContact(Contact contact) {
+        this.contactSet.add(contact);
+        this.contactIndex.put(contact.getId(), contact);
+        if (this.nameIndex != null) {
+            this.nameIndex.add(contact);
+        }
+        if (this.contactNotesIndex != null) {
+            this.contactNotesIndex.put(contact.getId(), contact.getNotes());
+        }
+        if (contact instanceof ContactImpl) {
+            ((ContactImpl) contact).setNotesListener(this.contactNotesListener);
+        }
+    }
+
+    /**
+     * Checks if provided contact IDs exist.
+     *
+     * @param ids contact IDs.
+     * @return true if all IDs exist, otherwise false.
+     */
+    private boolean allContactsExist(int... ids) {
+        // Check each ID to see if present in the contact index.
+        for (int id : ids) {
+            if (!this.contactIndex.containsKey(id)) {
+                // No need to check other IDs. If one is not found, return false.
+                return false;
+            }
+        }
+
+        // All IDs found, so return true.
+        return true;
+    }
+
+    /**
+     * Adds a future meeting to the meeting index, to the posting list of each attendee and to its day bucket.
+     *
+     * @param meeting the future meeting.
+     */
+    private void indexFutureMeeting(FutureMeeting meeting) {
+        this.meetingIndex.put(meeting.getId(), meeting);
+        addToPostingLists(this.futureMeetingsByContact, meeting);
+        addToDayBucket(meeting);
+        recordChange(meeting);
+        if (this.rolloverQueue != null) {
+            this.rolloverQueue.add(meeting);
+        }
+    }
+
+    /**
+     * Removes a future meeting from the posting list of each attendee and from its day bucket.
+     * The meeting index entry is left for the caller to replace.
+     *
+     * @param meeting the future meeting.
+     */
+    private void unindexFutureMeeting(FutureMeeting meeting) {
+        for (Contact attendee : meeting.getContacts()) {
+            MeetingPostingList<FutureMeeting> postingList = this.futureMeetingsByContact.get(attendee.getId());
+            if (postingList != null) {
+                postingList.remove(meeting);
+            }
+        }
+
+        MeetingPostingList<Meeting> dayBucket = this.meetingsByDay.get(Utilities.meetingEpochDay(meeting));
+        if (dayBucket != null) {
+            dayBucket.remove(meeting);
+        }
+    }
+
+    /**
+     * Adds a past meeting to the meeting index, to the posting list of each attendee and to its day bucket.
+     *
+     * @param meeting the past meeting.
+     */
+    private void indexPastMeeting(PastMeeting meeting) {
+        this.meetingIndex.put(meeting.getId(), meeting);
+        addToPostingLists(this.pastMeetingsByContact, meeting);
+        addToDayBucket(meeting);
+        recordChange(meeting);
+        if (this.meetingNotesIndex != null) {
+            this.meetingNotesIndex.put(meeting.getId(), meeting.getNotes());
+        }
+    }
+
+    /**
+     * Removes a past meeting from the posting list of each attendee and from its day bucket.
+     * The meeting index entry is left for the caller to replace.
+     *
+     * @param meeting the past meeting.
+     */
+    private void unindexPastMeeting(PastMeeting meeting) {
+        for (Contact attendee : meeting.getContacts()) {
+            MeetingPostingList<PastMeeting> postingList = this.pastMeetingsByContact.get(attendee.getId());
+            if (postingList != null) {
+                postingList.remove(meeting);
+            }
+        }
+
+        MeetingPostingList<Meeting> dayBucket = this.meetingsByDay.get(Utilities.meetingEpochDay(meeting));
+        if (dayBucket != null) {
+            dayBucket.remove(meeting);
+        }
+    }
+
+    /**
+     * Adds many meetings to the indexes at once. Meetings are sorted once and then merged into each posting list and
+     * day bucket, instead of being inserted one at a time.
+     *
+     * @param pastMeetings past meetings to add.
+     * @param futureMeetings future meetings to add.
+     */
+    private void indexMeetings(List<PastMeeting> pastMeetings, List<FutureMeeting> futureMeetings) {
+        List<PastMeeting> sortedPastMeetings = new ArrayList<PastMeeting>(pastMeetings);
+        List<FutureMeeting> sortedFutureMeetings = new ArrayList<FutureMeeting>(futureMeetings);
+        Collections.sort(sortedPastMeetings, Meeting.CHRONOLOGICAL_ORDER);
+        Collections.sort(sortedFutureMeetings, Meeting.CHRONOLOGICAL_ORDER);
+
+        // Merge the two sorted lists rather than sorting all the meetings again.
+        List<Meeting> sortedMeetings = new ArrayList<Meeting>(pastMeetings.size() + futureMeetings.size());
+        int x = 0;
+        int y = 0;
+        while (x < sortedPastMeetings.size() && y < sortedFutureMeetings.size()) {
+            if (Meeting.CHRONOLOGICAL_ORDER.compare(sortedPastMeetings.get(x), sortedFutureMeetings.get(y)) <= 0) {
+                sortedMeetings.add(sortedPastMeetings.get(x++));
+            } else {
+                sortedMeetings.add(sortedFutureMeetings.get(y++));
+            }
+        }
+        sortedMeetings.addAll(sortedPastMeetings.subList(x, sortedPastMeetings.size()));
+        sortedMeetings.addAll(sortedFutureMeetings.subList(y, sortedFutureMeetings.size()));
+
+        for (Meeting meeting : sortedMeetings) {
+            this.meetingIndex.put(meeting.getId(), meeting);
+            recordChange(meeting);
+        }
+        if (this.meetingNotesIndex != null) {
+            for (PastMeeting meeting : pastMeetings) {
+                this.meetingNotesIndex.put(meeting.getId(), meeting.getNotes());
+            }
+        }
+        mergeIntoPostingLists(this.pastMeetingsByContact, sortedPastMeetings);
+        mergeIntoPostingLists(this.futureMeetingsByContact, sortedFutureMeetings);
+        if (this.rolloverQueue != null) {
+            for (FutureMeeting meeting : sortedFutureMeetings) {
+                this.rolloverQueue.add(meeting);
+            }
+        }
+
+        // Group by day, keeping each group in order, then merge each group into its bucket.
+        Map<Long, List<Meeting>> meetingsForDay = new HashMap<Long, List<Meeting>>();
+        for (Meeting meeting : sortedMeetings) {
+            long epochDay = Utilities.meetingEpochDay(meeting);
+            List<Meeting> group = meetingsForDay.get(epochDay);
+            if (group == null) {
+                group = new ArrayList<Meeting>();
+                meetingsForDay.put(epochDay, group);
+            }
+            group.add(meeting);
+        }
+        for (Map.Entry<Long, List<Meeting>> group : meetingsForDay.entrySet()) {
+            MeetingPostingList<Meeting> dayBucket = this.meetingsByDay.get(group.getKey());
+            if (dayBucket == null) {
+                dayBucket = new MeetingPostingList<Meeting>();
+                this.meetingsByDay.put(group.getKey(), dayBucket);
+            }
+            dayBucket.addAll(group.getValue());
+        }
+    }
+
+    /**
+     * Merges chronologically sorted meetings into the posting list of each of their attendees, creating lists as
+     * needed.
+     *
+     * @param postingLists contact ID to posting list index.
+     * @param sortedMeetings meetings in chronological order.
+     */
+    private static <M extends Meeting> void mergeIntoPostingLists(IntHashMap<MeetingPostingList<M>> postingLists,
+                                                                  List<M> sortedMeetings) {
+        // Group by attendee, keeping each group in order, and note the posting list each group goes into.
+        IntHashMap<List<M>> meetingsForContact = new IntHashMap<List<M>>();
+        List<List<M>> groups = new ArrayList<List<M>>();
+        List<MeetingPostingList<M>> groupPostingLists = new ArrayList<MeetingPostingList<M>>();
+        for (M meeting : sortedMeetings) {
+            for (Contact attendee : meeting.getContacts()) {
+                List<M> group = meetingsForContact.get(attendee.getId());
+                if (group == null) {
+                    group = new ArrayList<M>();
+                    meetingsForContact.put(attendee.getId(), group);
+
+                    MeetingPostingList<M> postingList = postingLists.get(attendee.getId());
+                    if (postingList == null) {
+                        postingList = new MeetingPostingList<M>();
+                        postingLists.put(attendee.getId(), postingList);
                     }
-                    // Trim last extraneous delimiting character.
-                    tempContacts = tempContacts.substring(0, tempContacts.length() - 1);
+                    groups.add(group);
+                    groupPostingLists.add(postingList);
+                }
+                group.add(meeting);
+            }
+        }
 
-                    meetingLine = "PASTMEETING" + DELIMITER + tempID + DELIMITER + tempStringDate + DELIMITER + tempNotes + DELIMITER + tempContacts;
+        for (int x = 0; x < groups.size(); x++) {
+            groupPostingLists.get(x).addAll(groups.get(x));
+        }
+    }
 
-                    out.println(meetingLine);
+    /**
+     * Inserts a meeting into the calendar index bucket for its day, creating the bucket as needed.
+     *
+     * @param meeting the meeting to insert.
+     */
+    private void addToDayBucket(Meeting meeting) {
+        long epochDay = Utilities.meetingEpochDay(meeting);
+
+        MeetingPostingList<Meeting> dayBucket = this.meetingsByDay.get(epochDay);
+        if (dayBucket == null) {
+            dayBucket = new MeetingPostingList<Meeting>();
+            this.meetingsByDay.put(epochDay, dayBucket);
+        }
+        dayBucket.add(meeting);
+    }
+
+    /**
+     * Inserts a meeting into the posting list of each of its attendees, creating lists as needed.
+     *
+     * @param postingLists contact ID to posting list index.
+     * @param meeting the meeting to insert.
+     */
+    private static <M extends Meeting> void addToPostingLists(IntHashMap<MeetingPostingList<M>> postingLists,
+                                                              M meeting) {
+        for (Contact attendee : meeting.getContacts()) {
+            MeetingPostingList<M> postingList = postingLists.get(attendee.getId());
+            if (postingList == null) {
+                postingList = new MeetingPostingList<M>();
+                postingLists.put(attendee.getId(), postingList);
+            }
+            postingList.add(meeting);
+        }
+    }
+
+    /**
+     * Switches on snapshot view mode and publishes everything loaded so far as the first view.
+     */
+    private void enableSnapshotViews() {
+        // The first view takes everything loaded so far in one go, so the tables of changes only ever hold a batch.
+        this.changedMeetings = new IntHashMap<Meeting>();
+        this.addedContacts = new ArrayList<Contact>();
+        this.publishedSnapshot = new ContactManagerSnapshot().next(this.meetingIndex.values(), this.contactSet);
+        this.snapshotViewsEnabled = true;
+    }
+
+    /**
+     * Notes a meeting as changed since the last published view.
+     *
+     * @param meeting the meeting that was indexed.
+     */
+    private void recordChange(Meeting meeting) {
+        if (!this.snapshotViewsEnabled) {
+            return;
+        }
+
+        this.changedMeetings.put(meeting.getId(), meeting);
+    }
+
+    /**
+     * Publishes the changes of a write unless a write batch is still open.
+     */
+    private void writeCompleted() {
+        if (this.snapshotViewsEnabled && this.writeBatchDepth == 0) {
+            publishChanges();
+        }
+    }
+
+    /**
+     * Publishes a new snapshot view holding the changes made since the last one.
+     */
+    private void publishChanges() {
+        if (this.changedMeetings.isEmpty() && this.addedContacts.isEmpty()) {
+            return;
+        }
+
+        // The view works out which posting lists and day buckets the changed meetings move between, and copies only
+        // the chunks and trie paths they touch. The volatile write makes the fully built view visible to readers in
+        // one step.
+        this.publishedSnapshot = this.publishedSnapshot.next(this.changedMeetings.values(), this.addedContacts);
+
+        // Clearing costs the capacity of the table, so one grown by a large batch (e.g. an import) is dropped rather
+        // than cleared after every later write.
+        if (this.changedMeetings.size() > CHANGED_MEETINGS_REUSE_LIMIT) {
+            this.changedMeetings = new IntHashMap<Meeting>();
+        } else {
+            this.changedMeetings.clear();
+        }
+        this.addedContacts.clear();
+    }
+
+    /**
+     * Saves contacts and meetings to CSV text file.
+     *
+     * The data is written to a temporary file with a checksum trailer, forced to disk and then renamed over the data
+     * file, so a crash part way through leaves the previous data file intact.
+     *
+     * @return returns true if successful save, otherwise false.
+     */
+    private boolean saveDataAsCSV() {
+        SnapshotFile snapshot = new SnapshotFile(this.dataFile);
+        try {
+            CsvDataWriter writer = new CsvDataWriter(snapshot.beginWrite());
+
+            // Save the meeting ID sequence so IDs stay unique across runs.
+            writer.writeMeetingSequence(this.meetingIdAllocator.peekNextId());
+
+            // Save contacts.
+            for (Contact contact : this.contactSet) {
+                writer.writeContact(contact);
+            }
+
+            // Save past meetings.
+            for (Meeting meeting : this.meetingIndex.values()) {
+                if (meeting instanceof PastMeeting) {
+                    writer.writePastMeeting((PastMeeting) meeting);
+                }
             }
 
             // Save future meetings.
-            for (FutureMeeting meeting : futureMeetingList) {
-                String meetingLine;
+            for (Meeting meeting : this.meetingIndex.values()) {
+                if (meeting instanceof FutureMeeting) {
+                    writer.writeFutureMeeting((FutureMeeting) meeting);
+                }
+            }
+
+            this.savedBytes += snapshot.commit();
+            return true;
+        } catch (IOException e) {
+            // The data file is untouched, only the temporary file is thrown away.
+            snapshot.abort();
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-                    int tempID = meeting.getId();
-                    Calendar tempDate = meeting.getDate();
-                    String tempContacts = "";
+    /**
+     * Saves contacts and meetings to binary file, with the same temporary file and rename as saveDataAsCSV().
+     *
+     * @return returns true if successful save, otherwise false.
+     */
+    private boolean saveDataAsBinary() {
+        SnapshotFile snapshot = new SnapshotFile(this.binaryDataFile);
+        try {
+            BinaryDataWriter writer = new BinaryDataWriter(snapshot.beginBinaryWrite());
 
-                    // Stringify date.
-                    String tempStringDate = Utilities.calendarToString(tempDate);
+            // Save the meeting ID sequence so IDs stay unique across runs.
+            writer.writeMeetingSequence(this.meetingIdAllocator.peekNextId());
 
-                    // Create delimited list of attendees.
-                    for (Contact attendee : meeting.getContacts()) {
-                        tempContacts += attendee.getId() + ATTENDEE_DELIMITER;
-                    }
-                    // Trim last extraneous delimiting character.
-                    tempContacts = tempContacts.substring(0, tempContacts.length() - 1);
+            // Save contacts.
+            for (Contact contact : this.contactSet) {
+                writer.writeContact(contact.getId(), contact.getName(), contact.getNotes());
+            }
 
-                    meetingLine = "FUTUREMEETING" + DELIMITER + tempID + DELIMITER + tempStringDate + DELIMITER + tempContacts;
+            // Save past meetings.
+            for (Meeting meeting : this.meetingIndex.values()) {
+                if (meeting instanceof PastMeeting) {
+                    writer.writePastMeeting(meeting.getId(), Utilities.meetingTimeMillis(meeting),
+                            ((PastMeeting) meeting).getNotes(), Utilities.attendeeIds(meeting));
+                }
+            }
 
-                out.println(meetingLine);
+            // Save future meetings.
+            for (Meeting meeting : this.meetingIndex.values()) {
+                if (meeting instanceof FutureMeeting) {
+                    writer.writeFutureMeeting(meeting.getId(), Utilities.meetingTimeMillis(meeting),
+                            Utilities.attendeeIds(meeting));
+                }
             }
 
-        } catch (FileNotFoundException e) {
+            writer.finish();
+            this.savedBytes += snapshot.commit();
+            return true;
+        } catch (IOException e) {
+            // The data file is untouched, only the temporary file is thrown away.
+            snapshot.abort();
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Loads contacts and meetings from binary file.
+     *
+     * @return returns true if successful load, otherwise false.
+     * @throws IllegalStateException if the file is truncated or damaged.
+     */
+    private boolean loadDataAsBinary() {
+        File file = this.binaryDataFile;
+        long startTime = System.nanoTime();
+
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+
+            // Records are streamed straight into the indexes, the checksum is checked at the end.
+            long records = new BinaryDataReader().read(in, new LoadingHandler());
+
+            this.lastLoadStatistics = new LoadStatistics(records, file.length(), System.nanoTime() - startTime);
+            return true;
+        } catch (IOException e) {
+            // Refuse to start from a damaged data file, saving over it would lose whatever it still holds.
+            throw new IllegalStateException("Could not load " + file + ": " + e.getMessage(), e);
         } finally {
-            if (out != null) {
-                out.close();
-                return true;
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
-            return false;
         }
     }
 
+    /**
+     * Returns line count, size and duration of the last data file load.
+     *
+     * @return statistics of the last load, or null if no data file was loaded.
+     */
+    public LoadStatistics getLastLoadStatistics() {
+        return this.lastLoadStatistics;
+    }
+
+    /**
+     * Returns the total size of the data files written since the manager was created. A save that only syncs the
+     * journal writes no data file.
+     *
+     * @return bytes written to data files.
+     */
+    public long getSavedBytes() {
+        return this.savedBytes;
+    }
+
     /**
      * Loads contacts and meetings from CSV text file.
      *
      * @return returns true if successful load, otherwise false.
      */
     private boolean loadDataAsCSV() {
-        File file = new File(DATA_FILE);
+        File file = this.dataFile;
+
+        // Refuse to start from a damaged data file, saving over it would lose whatever it still holds.
+        if (file.exists()) {
+            try {
+                SnapshotFile.verify(file);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not load " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        // Startup time of large files is bound by the single-threaded line loop, so spread them over the cores.
+        if (file.exists() && file.length() >= this.parallelLoadThreshold) {
+            return loadDataInParallel(file);
+        }
+
         BufferedReader in = null;
         try {
-            in = new BufferedReader(new FileReader(file));
-            String line;
-
-            while ((line = in.readLine()) != null) {
-                // Split line using delimiter.
-                String[] tokens = line.split(DELIMITER);
-
-                // All data should have at least 4 tokens, otherwise do not process line.
-                if (tokens.length >= 4) {
-                    if (tokens[0].equals("CONTACT")) {
-                        // Get contact attributes.
-                        int tempID = Integer.parseInt(tokens[1]);
-                        String tempName = tokens[2];
-                        String tempNotes = tokens[3];
-
-                        // Create contact object using loaded attributes.
-                        Contact recreatedContact = new ContactImpl(tempID, tempName, tempNotes);
-                        // Add contact to contact list.
-                        this.contactSet.add(recreatedContact);
-                    } else if (tokens[0].equals("PASTMEETING")) {
-                        // Get past meeting attributes.
-                        int meetingID = Integer.parseInt(tokens[1]);
-                        String tempStringDate = tokens[2];
-                        String tempNotes = tokens[3];
-                        String tempContacts = tokens[4];
-                        Calendar meetingDate;
-                        Set<Contact> tempContactsSet;
-
-                        meetingDate = Utilities.stringToCalendar(tempStringDate);
-
-                        // Create contact set for meeting.
-                        tempContactsSet = new HashSet<Contact>();
-                        String[] contactTokens = tempContacts.split(ATTENDEE_DELIMITER);
-                        for (String contactID : contactTokens) {
-                            int tempID = Integer.parseInt(contactID);
-                            tempContactsSet.add(getContact(tempID));
-                        }
-
-                        // Recreate past meeting.
-                        PastMeeting recreatedPastMeeting = new PastMeetingImpl(meetingID, meetingDate, tempContactsSet, tempNotes);
-                        // Add meeting to meeting list.
-                        this.pastMeetingList.add(recreatedPastMeeting);
-
-                        // Cache meeting ID in ID lists.
-                        this.idPastIntegersList.add(meetingID);
-                        this.idIntegersList.add(meetingID);
-
-                    } else if (tokens[0].equals("FUTUREMEETING")) {
-                        // Get future meeting attributes.
-                        int meetingID = Integer.parseInt(tokens[1]);
-                        String tempStringDate = tokens[2];
-                        String tempContacts = tokens[3];
-                        Calendar meetingDate;
-                        Set<Contact> tempContactsSet;
-
-                        meetingDate = Utilities.stringToCalendar(tempStringDate);
-
-                        // Create contact set for meeting.
-                        tempContactsSet = new HashSet<Contact>();
-                        String[] contactTokens = tempContacts.split(ATTENDEE_DELIMITER);
-                        for (String contactID : contactTokens) {
-                            int tempID = Integer.parseInt(contactID);
-                            tempContactsSet.add(getContact(tempID));
-                        }
-
-                        // Recreate future meeting.
-                        FutureMeeting recreatedFutureMeeting = new FutureMeetingImpl(meetingID, meetingDate, tempContactsSet);
-                        // Add meeting to meeting list.
-                        this.futureMeetingList.add(recreatedFutureMeeting);
-
-                        // Cache meeting ID in ID lists.
-                        this.idFutureIntegersList.add(meetingID);
-                        this.idIntegersList.add(meetingID);
-                    }
-                }
-            }
+            long startTime = System.nanoTime();
+
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(file), DATA_FILE_CHARSET),
+                    READ_BUFFER_SIZE);
+
+            // Records are streamed straight into the indexes, one line at a time.
+            long lines = new CsvDataReader().read(in, new LoadingHandler());
+
+            this.lastLoadStatistics = new LoadStatistics(lines, file.length(), System.nanoTime() - startTime);
         } catch (FileNotFoundException e) {
-            System.out.println("contacts.txt file does not exist. All contacts and meeting data is empty.");
+            System.out.println(file + " file does not exist. All contacts and meeting data is empty.");
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -751,4 +1791,174 @@ public class ContactManagerImpl implements ContactManager {
             return false;
         }
     }
+
+    /**
+     * Loads contacts and meetings from CSV text file using a memory mapped, parallel loader.
+     *
+     * The records are indexed through the same LoadingHandler checks as those of the streaming loader, in file order,
+     * so both loaders give the same contacts and meetings.
+     *
+     * @param file the data file.
+     * @return returns true if successful load.
+     * @throws IllegalStateException if the file cannot be read.
+     */
+    private boolean loadDataInParallel(File file) {
+        long startTime = System.nanoTime();
+        ParallelDataLoader loader = new ParallelDataLoader(file, ForkJoinPool.commonPool());
+        LoadingHandler handler = new LoadingHandler();
+
+        try {
+            // First pass: parse every chunk and create the contacts.
+            loader.parse();
+        } catch (IOException e) {
+            // Refuse to start from a data file that cannot be read, saving over it would lose whatever it holds.
+            throw new IllegalStateException("Could not load " + file + ": " + e.getMessage(), e);
+        }
+
+        for (Contact contact : loader.getContacts()) {
+            handler.loadedContact(contact);
+        }
+
+        // Second pass: create the meetings against the now complete contact index, then index them in file order.
+        for (Meeting meeting : loader.buildMeetings(this.contactLookup)) {
+            handler.loadedMeeting(meeting);
+        }
+
+        // Then the meeting notes and sequence records, which apply to the meetings.
+        loader.replayMeetingRecords(handler);
+
+        this.lastLoadStatistics = new LoadStatistics(loader.getLines(), file.length(), System.nanoTime() - startTime);
+        return true;
+    }
+
+    /**
+     * Replays the journal left by earlier runs, if any, over the loaded data file.
+     *
+     * @throws IllegalStateException if the journal is damaged before its last record, or cannot be read.
+     */
+    private void replayJournal() {
+        try {
+            this.journal.replay(new LoadingHandler());
+
+            // A journal from before text was escaped cannot be appended to, so fold it into the data file first.
+            if (this.journalEnabled && this.journal.isLegacyFormat()) {
+                compact();
+            }
+        } catch (IOException e) {
+            // Refuse to start from a damaged journal, compacting it away would lose the changes after the damage.
+            throw new IllegalStateException("Could not replay " + this.journal.getFile() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolves attendee contact IDs through the contact index.
+     *
+     * @param attendeeIds contact IDs of the attendees.
+     * @return set of attendees. IDs that do not belong to a known contact are left out.
+     */
+    private Set<Contact> resolveAttendees(int[] attendeeIds) {
+        int[] knownIds = new int[attendeeIds.length];
+        int count = 0;
+
+        for (int id : attendeeIds) {
+            if (getContact(id) != null) {
+                knownIds[count++] = id;
+            }
+        }
+        return new AttendeeSet(Arrays.copyOf(knownIds, count), this.contactLookup);
+    }
+
+    /**
+     * Rebuilds contacts and meetings from the records read from the data file and the journal.
+     *
+     * Records that are already loaded are skipped, so replaying a journal whose changes already made it into the data
+     * file (a crash between writing the data file and emptying the journal) is harmless.
+     */
+    private class LoadingHandler implements DataRecordHandler {
+        @Override
+        public void contactRecord(int id, String name, String notes) {
+            if (contactIndex.containsKey(id)) {
+                return;
+            }
+
+            // Create contact object using loaded attributes.
+            loadedContact(new ContactImpl(id, name, notes));
+        }
+
+        @Override
+        public void pastMeetingRecord(int id, long dateMillis, String notes, int[] attendeeIds) {
+            if (meetingIndex.containsKey(id)) {
+                return;
+            }
+
+            // Recreate past meeting and add it to the meeting indexes.
+            loadedMeeting(new PastMeetingImpl(id, dateMillis, resolveAttendees(attendeeIds), notes));
+        }
+
+        @Override
+        public void futureMeetingRecord(int id, long dateMillis, int[] attendeeIds) {
+            if (meetingIndex.containsKey(id)) {
+                return;
+            }
+
+            // Recreate future meeting and add it to the meeting indexes.
+            loadedMeeting(new FutureMeetingImpl(id, dateMillis, resolveAttendees(attendeeIds)));
+        }
+
+        /**
+         * Adds a loaded contact to the contact list and indexes, unless a contact with its ID is already loaded.
+         *
+         * @param contact the contact.
+         */
+        void loadedContact(Contact contact) {
+            if (!contactIndex.containsKey(contact.getId())) {
+                indexContact(contact);
+            }
+        }
+
+        /**
+         * Adds a loaded meeting to the meeting indexes, unless a meeting with its ID is already loaded.
+         *
+         * @param meeting the meeting, a PastMeeting or a FutureMeeting.
+         */
+        void loadedMeeting(Meeting meeting) {
+            if (meetingIndex.containsKey(meeting.getId())) {
+                return;
+            }
+
+            if (meeting instanceof PastMeeting) {
+                indexPastMeeting((PastMeeting) meeting);
+            } else {
+                indexFutureMeeting((FutureMeeting) meeting);
+            }
+
+            // Make sure the loaded ID is never handed out again.
+            meetingIdAllocator.reserve(meeting.getId());
+        }
+
+        @Override
+        public void meetingNotesRecord(int id, String notes) {
+            Meeting meeting = meetingIndex.get(id);
+            if (meeting != null) {
+                applyMeetingNotes(meeting, notes);
+            }
+        }
+
+        @Override
+        public void contactNotesRecord(int id, String notes) {
+            Contact contact = contactIndex.get(id);
+            if (contact instanceof ContactImpl) {
+                ((ContactImpl) contact).setNotes(notes);
+                if (contactNotesIndex != null) {
+                    contactNotesIndex.put(id, notes);
+                }
+            }
+        }
+
+        @Override
+        public void meetingSequenceRecord(int nextId) {
+            // Restore the meeting ID sequence.
+            meetingIdAllocator.reserve(nextId - 1);
+        }
+    }
 }
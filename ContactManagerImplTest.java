@@ -1,9 +1,33 @@
 import org.junit.*;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * JUnit test class for ContactManageImpl.
@@ -14,9 +38,8 @@ public class ContactManagerImplTest {
     private Calendar somePastDate;
 
     // Note that since the definition of the interfaces does in no way define a method for creating meeting
-    // IDs, the IDs in methods that create meetings are auto-generated using a random ID number generator defined as
-    // Utilities.createUniqueInteger().
-    // As such, the tests here dealing with meetings have IDs that relate to the provided sample contacts.txt.
+    // IDs, the IDs in methods that create meetings are handed out by a MeetingIdAllocator.
+    // As such, the tests here dealing with existing meetings have IDs that relate to the provided sample contacts.txt.
 
     @Before
     public void setUp() throws Exception {
@@ -375,4 +398,1277 @@ public class ContactManagerImplTest {
 
         org.junit.Assert.assertFalse(meetingList.isEmpty());
     }
+
+    @Test
+    public void testAddMeetingNotesMovesMeetingToPastMeetingListForContact() throws Exception {
+        // Contact 5 only attends the sample future meeting 1960765772, whose date has already passed.
+        Contact contact = contactManager.getContacts(5).iterator().next();
+
+        org.junit.Assert.assertEquals(1, contactManager.getFutureMeetingList(contact).size());
+        org.junit.Assert.assertTrue(contactManager.getPastMeetingList(contact).isEmpty());
+
+        contactManager.addMeetingNotes(1960765772, "Went well.");
+
+        List<PastMeeting> pastMeetingList = contactManager.getPastMeetingList(contact);
+
+        org.junit.Assert.assertTrue(contactManager.getFutureMeetingList(contact).isEmpty());
+        org.junit.Assert.assertEquals(1, pastMeetingList.size());
+        org.junit.Assert.assertEquals("Went well.", pastMeetingList.get(0).getNotes());
+    }
+
+    @Test
+    public void testGetPastMeetingListIsChronologicallySorted() throws Exception {
+        Set<Contact> contactSet = contactManager.getContacts(7);
+
+        Calendar earlierDate = (Calendar) somePastDate.clone();
+        earlierDate.add(Calendar.YEAR, -20);
+
+        contactManager.addNewPastMeeting(contactSet, somePastDate, "Later.");
+        contactManager.addNewPastMeeting(contactSet, earlierDate, "Earliest.");
+
+        List<PastMeeting> pastMeetingList = contactManager.getPastMeetingList(contactSet.iterator().next());
+
+        org.junit.Assert.assertEquals(3, pastMeetingList.size());
+        org.junit.Assert.assertEquals("Earliest.", pastMeetingList.get(0).getNotes());
+        org.junit.Assert.assertEquals("Later.", pastMeetingList.get(2).getNotes());
+    }
+
+    @Test
+    public void testGetMeetingListForDateRange() throws Exception {
+        Calendar from = Utilities.stringToCalendar("2012/04/01 00:00:00");
+        Calendar to = Utilities.stringToCalendar("2013/04/22 00:00:00");
+
+        List<Meeting> meetingList = contactManager.getMeetingList(from, to);
+
+        // Both sample meetings fall in the range, which includes the whole of its last day.
+        org.junit.Assert.assertEquals(2, meetingList.size());
+        org.junit.Assert.assertEquals(1380640586, meetingList.get(0).getId());
+        org.junit.Assert.assertEquals(1960765772, meetingList.get(1).getId());
+
+        org.junit.Assert.assertTrue(contactManager.getMeetingList(from, from).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetMeetingListForReversedDateRange() throws Exception {
+        contactManager.getMeetingList(someFutureDate, somePastDate);
+    }
+
+    @Test
+    public void testAddFutureMeetingAllocatesIdsAfterLoadedMeetings() throws Exception {
+        Set<Contact> contactSet = contactManager.getContacts(1, 2);
+
+        int firstId = contactManager.addFutureMeeting(contactSet, someFutureDate);
+        int secondId = contactManager.addFutureMeeting(contactSet, someFutureDate);
+
+        // Highest ID in the sample contacts.txt is 1960765772.
+        org.junit.Assert.assertTrue(firstId > 1960765772);
+        org.junit.Assert.assertEquals(firstId + 1, secondId);
+    }
+
+    @Test
+    public void testBinarySnapshotKeepsDataAndDelimitersInNotes() throws Exception {
+        java.io.File binaryFile = new java.io.File(ContactManagerImpl.BINARY_DATA_FILE);
+        ContactManagerOptions options = new ContactManagerOptions().setSnapshotFormat(SnapshotFormat.BINARY);
+
+        try {
+            // Starts from the sample contacts.txt, as there is no contacts.bin yet.
+            ContactManagerImpl binaryContactManager = new ContactManagerImpl(options);
+            binaryContactManager.addNewContact("Ampersand & Plus-Minus", "Notes with & and ± in them.");
+            binaryContactManager.compact();
+
+            ContactManagerImpl reloadedContactManager = new ContactManagerImpl(options);
+            Contact contact = reloadedContactManager.getContacts("Ampersand & Plus-Minus").iterator().next();
+
+            org.junit.Assert.assertEquals("Notes with & and ± in them.", contact.getNotes());
+            org.junit.Assert.assertNotNull(reloadedContactManager.getPastMeeting(1380640586));
+            org.junit.Assert.assertNotNull(reloadedContactManager.getFutureMeeting(1960765772));
+        } finally {
+            binaryFile.delete();
+        }
+    }
+
+    @Test
+    public void testPinnedSnapshotIsUnchangedByLaterWriteBatch() throws Exception {
+        ContactManagerImpl snapshotContactManager =
+                new ContactManagerImpl(new ContactManagerOptions().setSnapshotViewsEnabled(true));
+        Contact contact = snapshotContactManager.getContacts(5).iterator().next();
+
+        ContactManagerSnapshot pinned = snapshotContactManager.pinSnapshot();
+
+        // Convert the sample future meeting and add a contact in one batch.
+        snapshotContactManager.beginWriteBatch();
+        snapshotContactManager.addMeetingNotes(1960765772, "Went well.");
+        snapshotContactManager.addNewContact("Grace Hopper", "Compiler pioneer.");
+
+        // Nothing is published until the batch ends.
+        org.junit.Assert.assertSame(pinned, snapshotContactManager.pinSnapshot());
+        org.junit.Assert.assertEquals(1, snapshotContactManager.getFutureMeetingList(contact).size());
+        snapshotContactManager.endWriteBatch();
+
+        ContactManagerSnapshot current = snapshotContactManager.pinSnapshot();
+        org.junit.Assert.assertEquals(pinned.getVersion() + 1, current.getVersion());
+
+        // The pinned version still has the meeting as future and no new contact.
+        org.junit.Assert.assertEquals(1, pinned.getFutureMeetingList(contact).size());
+        org.junit.Assert.assertTrue(pinned.getPastMeetingList(contact).isEmpty());
+        org.junit.Assert.assertTrue(pinned.getContacts("Grace").isEmpty());
+
+        org.junit.Assert.assertTrue(snapshotContactManager.getFutureMeetingList(contact).isEmpty());
+        org.junit.Assert.assertEquals("Went well.", snapshotContactManager.getPastMeeting(1960765772).getNotes());
+        org.junit.Assert.assertEquals(1, snapshotContactManager.getContacts("Grace").size());
+
+        // Changing the notes of a past meeting publishes a new meeting object and leaves the old one alone.
+        snapshotContactManager.addMeetingNotes(1960765772, "Went even better.");
+        org.junit.Assert.assertEquals("Went well.", current.getPastMeeting(1960765772).getNotes());
+        org.junit.Assert.assertEquals("Went even better.",
+                snapshotContactManager.getPastMeetingList(contact).get(0).getNotes());
+    }
+
+    @Test
+    public void testSnapshotViewsStayCorrectAcrossManySingleWrites() throws Exception {
+        File directory = Files.createTempDirectory("snapshot-views").toFile();
+        try {
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory);
+            ContactManagerImpl viewContactManager = new ContactManagerImpl(options.setSnapshotViewsEnabled(true));
+            viewContactManager.addNewContact("Ada Lovelace", "First programmer.");
+            viewContactManager.addNewContact("Charles Babbage", "Engine designer.");
+            Contact ada = viewContactManager.getContacts("Ada").iterator().next();
+            Set<Contact> attendees = viewContactManager.getContacts("a");
+
+            Calendar firstDay = Calendar.getInstance();
+            firstDay.add(Calendar.DAY_OF_MONTH, 10);
+            firstDay.set(Calendar.HOUR_OF_DAY, 0);
+            firstDay.set(Calendar.MINUTE, 0);
+            firstDay.set(Calendar.SECOND, 0);
+            firstDay.set(Calendar.MILLISECOND, 0);
+            Calendar lastDay = (Calendar) firstDay.clone();
+            lastDay.add(Calendar.DAY_OF_MONTH, 2);
+            Calendar pastDay = (Calendar) firstDay.clone();
+            pastDay.add(Calendar.YEAR, -1);
+
+            // Meetings on three days in no particular order, enough for chunks and the nodes above them to fill up and
+            // split, with a published version pinned now and then along with what it held.
+            List<ContactManagerSnapshot> pinned = new ArrayList<ContactManagerSnapshot>();
+            List<List<Meeting>> pinnedFutureMeetings = new ArrayList<List<Meeting>>();
+            List<List<Meeting>> pinnedDays = new ArrayList<List<Meeting>>();
+            List<List<PastMeeting>> pinnedPastMeetings = new ArrayList<List<PastMeeting>>();
+            Random random = new Random(7);
+            for (int x = 0; x < 5000; x++) {
+                Calendar date = (Calendar) firstDay.clone();
+                date.add(Calendar.MINUTE, random.nextInt(3 * 24 * 60));
+                viewContactManager.addFutureMeeting(attendees, date);
+
+                Calendar pastDate = (Calendar) pastDay.clone();
+                pastDate.add(Calendar.MINUTE, random.nextInt(24 * 60));
+                viewContactManager.addNewPastMeeting(attendees, pastDate, "Meeting " + x);
+                if (x % 3 == 0) {
+                    PastMeeting pastMeeting = viewContactManager.getPastMeetingList(ada).get(random.nextInt(x + 1));
+                    viewContactManager.addMeetingNotes(pastMeeting.getId(), "Changed " + x);
+                }
+
+                if (x % 500 == 0) {
+                    ContactManagerSnapshot snapshot = viewContactManager.pinSnapshot();
+                    pinned.add(snapshot);
+                    pinnedFutureMeetings.add(snapshot.getFutureMeetingList(ada));
+                    pinnedDays.add(snapshot.getMeetingList(firstDay, lastDay));
+                    pinnedPastMeetings.add(snapshot.getPastMeetingList(ada));
+                }
+            }
+
+            // Later versions never change an earlier one.
+            for (int x = 0; x < pinned.size(); x++) {
+                org.junit.Assert.assertEquals(pinnedFutureMeetings.get(x), pinned.get(x).getFutureMeetingList(ada));
+                org.junit.Assert.assertEquals(pinnedDays.get(x), pinned.get(x).getMeetingList(firstDay, lastDay));
+                org.junit.Assert.assertEquals(pinnedPastMeetings.get(x), pinned.get(x).getPastMeetingList(ada));
+            }
+
+            // The last version answers as a manager that indexed the same data from scratch.
+            viewContactManager.flush();
+            ContactManagerImpl reloaded = new ContactManagerImpl(new ContactManagerOptions()
+                    .setDataDirectory(directory));
+            Contact reloadedAda = reloaded.getContacts("Ada").iterator().next();
+            org.junit.Assert.assertEquals(5000, viewContactManager.getFutureMeetingList(ada).size());
+            org.junit.Assert.assertEquals(describe(reloaded), describe(viewContactManager));
+            org.junit.Assert.assertEquals(ids(reloaded.getFutureMeetingList(reloadedAda)),
+                    ids(viewContactManager.getFutureMeetingList(ada)));
+            org.junit.Assert.assertEquals(ids(reloaded.getMeetingList(firstDay, lastDay)),
+                    ids(viewContactManager.getMeetingList(firstDay, lastDay)));
+            org.junit.Assert.assertEquals(ids(reloaded.getMeetingList(pastDay, pastDay)),
+                    ids(viewContactManager.getMeetingList(pastDay, pastDay)));
+
+            List<String> reloadedNotes = new ArrayList<String>();
+            for (PastMeeting meeting : reloaded.getPastMeetingList(reloadedAda)) {
+                reloadedNotes.add(meeting.getId() + " " + meeting.getNotes());
+            }
+            List<String> viewNotes = new ArrayList<String>();
+            for (PastMeeting meeting : viewContactManager.getPastMeetingList(ada)) {
+                viewNotes.add(meeting.getId() + " " + meeting.getNotes());
+            }
+            org.junit.Assert.assertEquals(reloadedNotes, viewNotes);
+
+            // Pages across chunk boundaries join up to the whole list.
+            List<Meeting> paged = new ArrayList<Meeting>();
+            Iterator<Meeting> iterator = viewContactManager.iterateMeetings(firstDay, lastDay);
+            while (iterator.hasNext()) {
+                paged.add(iterator.next());
+            }
+            org.junit.Assert.assertEquals(viewContactManager.getMeetingList(firstDay, lastDay), paged);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testSnapshotViewsSearchNamesThroughTheirOwnIndex() throws Exception {
+        File directory = Files.createTempDirectory("snapshot-names").toFile();
+        try {
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory);
+            ContactManagerImpl viewContactManager = new ContactManagerImpl(options.setSnapshotViewsEnabled(true));
+            String[] parts = {"Ada", "ada", "Alan", "Grace", "GRACE", "Hop", "Lov", "Turing", "Lace", "Ing"};
+            String[] containing = {"", "a", "Ad", "ada", "ace", "Lace", "ing T", "Grace Hop", "zzz"};
+            String[] prefixes = {"", "a", "ADA", "grace h", "Tu", "lov", "x"};
+
+            // Enough single writes for the leaves and nodes of the name tree to fill up and split, with a published
+            // version pinned now and then along with what it found.
+            Random random = new Random(11);
+            List<ContactManagerSnapshot> pinned = new ArrayList<ContactManagerSnapshot>();
+            List<List<Integer>> pinnedPrefixResults = new ArrayList<List<Integer>>();
+            for (int x = 0; x < 3000; x++) {
+                String name = parts[random.nextInt(parts.length)] + " " + parts[random.nextInt(parts.length)]
+                        + parts[random.nextInt(parts.length)];
+                viewContactManager.addNewContact(name, "");
+
+                if (x % 600 == 0) {
+                    ContactManagerSnapshot snapshot = viewContactManager.pinSnapshot();
+                    pinned.add(snapshot);
+                    pinnedPrefixResults.add(contactIds(snapshot.getContactsByPrefix("a", 50)));
+                    org.junit.Assert.assertEquals(expectedPrefixSearch(snapshot.getContacts(""), "a", 50),
+                            pinnedPrefixResults.get(pinnedPrefixResults.size() - 1));
+                }
+            }
+
+            // Later versions never change an earlier one.
+            for (int x = 0; x < pinned.size(); x++) {
+                org.junit.Assert.assertEquals(pinnedPrefixResults.get(x),
+                        contactIds(pinned.get(x).getContactsByPrefix("a", 50)));
+                org.junit.Assert.assertEquals(x * 600 + 1, pinned.get(x).getContacts("").size());
+            }
+
+            // The index answers as a scan of every contact would, both as built one write at a time and as built in
+            // one go when the data is loaded.
+            viewContactManager.flush();
+            ContactManagerImpl reloaded = new ContactManagerImpl(new ContactManagerOptions()
+                    .setDataDirectory(directory).setSnapshotViewsEnabled(true));
+            for (ContactManagerImpl contactManager : Arrays.asList(viewContactManager, reloaded)) {
+                List<Contact> contacts = new ArrayList<Contact>(contactManager.getContacts(""));
+                org.junit.Assert.assertEquals(3000, contacts.size());
+
+                for (String text : containing) {
+                    Set<Integer> expected = new HashSet<Integer>();
+                    for (Contact contact : contacts) {
+                        if (contact.getName().contains(text)) {
+                            expected.add(contact.getId());
+                        }
+                    }
+                    org.junit.Assert.assertEquals(expected,
+                            new HashSet<Integer>(contactIds(contactManager.getContacts(text, Integer.MAX_VALUE))));
+
+                    Set<Contact> limited = contactManager.getContacts(text, 10);
+                    org.junit.Assert.assertEquals(Math.min(10, expected.size()), limited.size());
+                    org.junit.Assert.assertTrue(expected.containsAll(contactIds(limited)));
+                }
+                for (String prefix : prefixes) {
+                    for (int limit : new int[] {0, 1, 70, Integer.MAX_VALUE}) {
+                        org.junit.Assert.assertEquals(expectedPrefixSearch(contacts, prefix, limit),
+                                contactIds(contactManager.getContactsByPrefix(prefix, limit)));
+                    }
+                }
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testImportBatchAddsContactsAndMeetingsOnCommit() throws Exception {
+        ContactManagerImpl importContactManager = new ContactManagerImpl();
+        Calendar earlierDate = (Calendar) somePastDate.clone();
+        earlierDate.add(Calendar.YEAR, -20);
+
+        ImportBatch batch = importContactManager.beginImport();
+        int contactId = batch.addContact("Ada Lovelace", "First programmer.");
+        int laterId = batch.addPastMeeting(somePastDate, "Later.", contactId, 7);
+        int earlierId = batch.addPastMeeting(earlierDate, "Earliest.", contactId, 7);
+        int futureId = batch.addFutureMeeting(someFutureDate, contactId);
+
+        // Nothing is applied before the commit.
+        org.junit.Assert.assertTrue(importContactManager.getContacts("Ada").isEmpty());
+        org.junit.Assert.assertNull(importContactManager.getMeeting(laterId));
+        batch.commit();
+
+        Contact contact = importContactManager.getContacts(contactId).iterator().next();
+        org.junit.Assert.assertEquals("Ada Lovelace", contact.getName());
+        org.junit.Assert.assertEquals(futureId, importContactManager.getFutureMeetingList(contact).get(0).getId());
+
+        // Merged into contact 7's existing past meeting list in chronological order.
+        List<PastMeeting> pastMeetingList = importContactManager.getPastMeetingList(
+                importContactManager.getContacts(7).iterator().next());
+        org.junit.Assert.assertEquals(3, pastMeetingList.size());
+        org.junit.Assert.assertEquals(earlierId, pastMeetingList.get(0).getId());
+        org.junit.Assert.assertEquals(1380640586, pastMeetingList.get(1).getId());
+        org.junit.Assert.assertEquals(laterId, pastMeetingList.get(2).getId());
+
+        // New meeting IDs keep coming after the imported ones.
+        org.junit.Assert.assertTrue(importContactManager.addFutureMeeting(importContactManager.getContacts(1),
+                someFutureDate) > futureId);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImportBatchWithUnknownAttendee() throws Exception {
+        new ContactManagerImpl().beginImport().addPastMeeting(somePastDate, "Notes.", 1, 9999);
+    }
+
+    @Test
+    public void testNameSearchWithLimitAndPrefix() throws Exception {
+        ContactManagerImpl searchContactManager = new ContactManagerImpl();
+
+        // The first search builds the name index, later contacts are added to it.
+        org.junit.Assert.assertEquals(1, searchContactManager.getContacts("Wozniak").size());
+        searchContactManager.addNewContact("alan Turing", "Codebreaker.");
+        searchContactManager.addNewContact("Alanis", "Singer.");
+        searchContactManager.addNewContact("Alan Kay", "Smalltalk designer.");
+
+        org.junit.Assert.assertEquals(2, searchContactManager.getContacts("Alan").size());
+        org.junit.Assert.assertEquals(1, searchContactManager.getContacts("Alan", 1).size());
+        org.junit.Assert.assertEquals(3, searchContactManager.getContacts("", 3).size());
+        org.junit.Assert.assertTrue(searchContactManager.getContacts("Turingx").isEmpty());
+
+        List<Contact> prefixList = searchContactManager.getContactsByPrefix("ALAN", 2);
+        org.junit.Assert.assertEquals(2, prefixList.size());
+        org.junit.Assert.assertEquals("Alan Kay", prefixList.get(0).getName());
+        org.junit.Assert.assertEquals("alan Turing", prefixList.get(1).getName());
+    }
+
+    @Test
+    public void testSearchNotesRanksMatchesAndFollowsChanges() throws Exception {
+        ContactManagerImpl searchContactManager = new ContactManagerImpl();
+        Set<Contact> contactSet = searchContactManager.getContacts(7);
+
+        // The sample past meeting's notes are "Good stuff. Very civil."
+        org.junit.Assert.assertEquals(1380640586,
+                searchContactManager.searchMeetingNotes("very GOOD", 10).get(0).getId());
+
+        searchContactManager.addNewPastMeeting(contactSet, somePastDate, "Budget, budget and more budget.");
+        searchContactManager.addNewPastMeeting(contactSet, somePastDate,
+                "Long talk about the budget, hiring, the office move and many other things.");
+
+        List<PastMeeting> budgetList = searchContactManager.searchMeetingNotes("budget", 10);
+        org.junit.Assert.assertEquals(2, budgetList.size());
+        org.junit.Assert.assertEquals("Budget, budget and more budget.", budgetList.get(0).getNotes());
+        org.junit.Assert.assertEquals(1, searchContactManager.searchMeetingNotes("budget", 1).size());
+        org.junit.Assert.assertTrue(searchContactManager.searchMeetingNotes("budget civil", 10).isEmpty());
+
+        // Replaced notes are searched by their new words only.
+        searchContactManager.addMeetingNotes(1380640586, "Rude.");
+        org.junit.Assert.assertTrue(searchContactManager.searchMeetingNotes("civil", 10).isEmpty());
+        org.junit.Assert.assertEquals(1, searchContactManager.searchMeetingNotes("rude", 10).size());
+
+        // Notes added to a contact after the first search are found too.
+        org.junit.Assert.assertEquals(1, searchContactManager.searchContactNotes("6502", 10).size());
+        contactSet.iterator().next().addNotes("Also worked on the KIM-1.");
+        org.junit.Assert.assertEquals(7, searchContactManager.searchContactNotes("kim 1", 10).get(0).getId());
+    }
+
+    @Test
+    public void testMeetingDateIsCopiedOnEachCall() throws Exception {
+        Meeting meeting = contactManager.getMeeting(1380640586);
+        Calendar date = meeting.getDate();
+        long dateMillis = date.getTimeInMillis();
+
+        // Changing the returned calendar must not move the meeting.
+        date.add(Calendar.YEAR, 5);
+        org.junit.Assert.assertEquals(dateMillis, meeting.getDate().getTimeInMillis());
+        org.junit.Assert.assertEquals(Utilities.calendarToEpochDay(meeting.getDate()),
+                ((MeetingImpl) meeting).getEpochDay());
+    }
+
+    @Test
+    public void testMeetingsAreEqualByIdOnly() throws Exception {
+        Set<Contact> contactSet = contactManager.getContacts(7);
+        Meeting meeting = new FutureMeetingImpl(42, someFutureDate, contactSet);
+        Meeting sameId = new PastMeetingImpl(42, somePastDate, contactManager.getContacts(1, 2), "Notes.");
+
+        org.junit.Assert.assertEquals(meeting, sameId);
+        org.junit.Assert.assertEquals(meeting.hashCode(), sameId.hashCode());
+        org.junit.Assert.assertFalse(meeting.equals(new FutureMeetingImpl(43, someFutureDate, contactSet)));
+        org.junit.Assert.assertFalse(meeting.equals("42"));
+    }
+
+    @Test
+    public void testMeetingListsAreOrderedAndIndependentCopies() throws Exception {
+        Set<Contact> contactSet = contactManager.getContacts(1);
+        Calendar laterDate = (Calendar) someFutureDate.clone();
+        laterDate.add(Calendar.HOUR_OF_DAY, 1);
+        contactManager.addFutureMeeting(contactSet, laterDate);
+        contactManager.addFutureMeeting(contactSet, someFutureDate);
+
+        List<Meeting> meetingList = contactManager.getFutureMeetingList(contactSet.iterator().next());
+        for (int x = 1; x < meetingList.size(); x++) {
+            org.junit.Assert.assertTrue(
+                    Meeting.CHRONOLOGICAL_ORDER.compare(meetingList.get(x - 1), meetingList.get(x)) < 0);
+        }
+
+        // Changing a returned list must not change the index it was copied from.
+        int size = meetingList.size();
+        meetingList.clear();
+        org.junit.Assert.assertEquals(size, contactManager.getFutureMeetingList(contactSet.iterator().next()).size());
+    }
+
+    @Test
+    public void testMeetingPagesAndIterators() throws Exception {
+        ContactManagerImpl pagingContactManager = new ContactManagerImpl();
+        Set<Contact> contactSet = pagingContactManager.getContacts(4);
+        Contact contact = contactSet.iterator().next();
+        for (int x = 0; x < 5; x++) {
+            Calendar date = (Calendar) someFutureDate.clone();
+            date.add(Calendar.DAY_OF_MONTH, x);
+            pagingContactManager.addFutureMeeting(contactSet, date);
+        }
+        List<Meeting> allMeetings = pagingContactManager.getFutureMeetingList(contact);
+
+        List<Meeting> firstPage = pagingContactManager.getFutureMeetingList(contact, null, 2);
+        org.junit.Assert.assertEquals(allMeetings.subList(0, 2), firstPage);
+        List<Meeting> secondPage = pagingContactManager.getFutureMeetingList(contact, firstPage.get(1), 2);
+        org.junit.Assert.assertEquals(allMeetings.subList(2, 4), secondPage);
+        List<Meeting> lastPage = pagingContactManager.getFutureMeetingList(contact, secondPage.get(1), 2);
+        org.junit.Assert.assertEquals(1, lastPage.size());
+
+        Calendar lastDate = (Calendar) someFutureDate.clone();
+        lastDate.add(Calendar.DAY_OF_MONTH, 4);
+        List<Meeting> rangePage = pagingContactManager.getMeetingList(someFutureDate, lastDate, allMeetings.get(0), 3);
+        org.junit.Assert.assertEquals(allMeetings.subList(1, 4), rangePage);
+
+        Iterator<Meeting> iterator = pagingContactManager.iterateMeetings(someFutureDate, lastDate);
+        for (Meeting meeting : allMeetings) {
+            org.junit.Assert.assertEquals(meeting, iterator.next());
+        }
+        org.junit.Assert.assertFalse(iterator.hasNext());
+        org.junit.Assert.assertFalse(pagingContactManager.iteratePastMeetings(contact).hasNext());
+    }
+
+    @Test
+    public void testMeetingAttendeesAreAReadOnlyViewOfContacts() throws Exception {
+        Set<Contact> contactSet = contactManager.getContacts(3, 1, 2);
+        int id = contactManager.addFutureMeeting(contactSet, someFutureDate);
+        Set<Contact> attendees = contactManager.getFutureMeeting(id).getContacts();
+
+        org.junit.Assert.assertEquals(contactSet, attendees);
+        org.junit.Assert.assertTrue(attendees.containsAll(contactManager.getContacts(1, 2, 3)));
+        org.junit.Assert.assertFalse(attendees.contains(contactManager.getContacts(4).iterator().next()));
+        org.junit.Assert.assertFalse(attendees.contains(new ContactImpl(1, "Not the same contact", "")));
+
+        int lastId = 0;
+        for (Contact attendee : attendees) {
+            org.junit.Assert.assertTrue(attendee.getId() > lastId);
+            lastId = attendee.getId();
+        }
+
+        try {
+            attendees.clear();
+            org.junit.Assert.fail("Attendees were changed.");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testInstrumentedManagerRecordsCallsFailuresAndPercentiles() throws Exception {
+        InstrumentedContactManager instrumented = new InstrumentedContactManager(contactManager);
+        instrumented.getContacts(1, 2);
+        instrumented.getContacts(1);
+        try {
+            instrumented.getPastMeeting(1960765772);
+            org.junit.Assert.fail("Future meeting returned as a past meeting.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        OperationMetrics getContacts = instrumented.getMetrics().operation("getContacts(int...)");
+        org.junit.Assert.assertEquals(2, getContacts.getCalls());
+        org.junit.Assert.assertEquals(0, getContacts.getFailures());
+        org.junit.Assert.assertEquals(1.5, getContacts.getMeanResultSize(), 0);
+        org.junit.Assert.assertTrue(getContacts.getP50Micros() <= getContacts.getMaxMicros());
+
+        String dump = instrumented.getMetrics().dump();
+        org.junit.Assert.assertTrue(dump.contains("getContacts(int...)"));
+        org.junit.Assert.assertFalse(dump.contains("addNewContact"));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName getPastMeeting =
+                new ObjectName("ContactManager:type=Operation,manager=\"test\",name=\"getPastMeeting\"");
+        instrumented.getMetrics().register(server, "test");
+        org.junit.Assert.assertEquals(1L, server.getAttribute(getPastMeeting, "Failures"));
+        instrumented.getMetrics().unregister();
+        org.junit.Assert.assertFalse(server.isRegistered(getPastMeeting));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int x = 1; x <= 1000; x++) {
+            histogram.record(x);
+        }
+        org.junit.Assert.assertEquals(10, histogram.getValueAtPercentile(1));
+        org.junit.Assert.assertEquals(500, histogram.getValueAtPercentile(50), 500 * 0.04);
+        org.junit.Assert.assertEquals(1000, histogram.getValueAtPercentile(100));
+        org.junit.Assert.assertEquals(500.5, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void testMeetingRolloverMovesMeetingsIntoThePastAsTimePasses() throws Exception {
+        // The future meeting of the sample data was held in 2013.
+        ContactManagerImpl rolloverContactManager =
+                new ContactManagerImpl(new ContactManagerOptions().setMeetingRolloverEnabled(true));
+        PastMeeting rolledOver = rolloverContactManager.getPastMeeting(1960765772);
+        org.junit.Assert.assertEquals("", rolledOver.getNotes());
+
+        Contact contact = rolloverContactManager.getContacts(5).iterator().next();
+        org.junit.Assert.assertTrue(rolloverContactManager.getFutureMeetingList(contact).isEmpty());
+        org.junit.Assert.assertTrue(rolloverContactManager.getPastMeetingList(contact).contains(rolledOver));
+
+        // A clock that is moved by hand.
+        final long[] now = {1000};
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now[0]);
+            }
+        };
+
+        MeetingRolloverQueue queue = new MeetingRolloverQueue(clock);
+        queue.add(new FutureMeetingImpl(2, 3000L, contactManager.getContacts(1)));
+        queue.add(new FutureMeetingImpl(1, 2000L, contactManager.getContacts(1)));
+        org.junit.Assert.assertNull(queue.pollDue());
+
+        now[0] = 2000;
+        org.junit.Assert.assertEquals(1, queue.pollDue().getId());
+        org.junit.Assert.assertNull(queue.pollDue());
+
+        now[0] = 5000;
+        org.junit.Assert.assertEquals(2, queue.pollDue().getId());
+        org.junit.Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testInjectedClockDecidesWhatIsInTheFuture() throws Exception {
+        // Before the 2013 meeting of the sample data, which is then still to come, even with meeting rollover.
+        Clock before = Clock.fixed(Instant.parse("2012-06-01T00:00:00Z"), ZoneOffset.UTC);
+        ContactManagerImpl earlyContactManager = new ContactManagerImpl(
+                new ContactManagerOptions().setClock(before).setMeetingRolloverEnabled(true));
+        org.junit.Assert.assertNotNull(earlyContactManager.getFutureMeeting(1960765772));
+        try {
+            earlyContactManager.addMeetingNotes(1960765772, "Too early.");
+            org.junit.Assert.fail("Notes added to a meeting in the future.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        // After someFutureDate, which can then no longer be used for a future meeting.
+        Calendar later = (Calendar) someFutureDate.clone();
+        later.add(Calendar.YEAR, 1);
+        ContactManagerImpl lateContactManager = new ContactManagerImpl(new ContactManagerOptions()
+                .setClock(Clock.fixed(Instant.ofEpochMilli(later.getTimeInMillis()), ZoneOffset.UTC)));
+        try {
+            lateContactManager.addFutureMeeting(lateContactManager.getContacts(1), someFutureDate);
+            org.junit.Assert.fail("Meeting added in the past.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        CoarseClock coarseClock = new CoarseClock(5);
+        try {
+            org.junit.Assert.assertTrue(Math.abs(coarseClock.millis() - System.currentTimeMillis()) < 1000);
+        } finally {
+            coarseClock.close();
+        }
+        org.junit.Assert.assertTrue(coarseClock.millis() <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testDateCodecRoundTripsAndMatchesDateTimeFormatter() throws Exception {
+        final ZoneId london = ZoneId.of("Europe/London");
+        final ZoneId sydney = ZoneId.of("Australia/Sydney");
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Utilities.DATE_FORMAT);
+
+        // Around the clocks going forward and back in London in 2015, and over six centuries in two zones at once.
+        final long[] dates = new long[20000];
+        long forward = Instant.parse("2015-03-29T01:00:00Z").toEpochMilli();
+        long back = Instant.parse("2015-10-25T01:00:00Z").toEpochMilli();
+        for (int x = 0; x < 4000; x++) {
+            dates[x] = (x % 2 == 0 ? forward : back) + (x / 2 - 1000) * 1000L;
+        }
+        Random random = new Random(42);
+        for (int x = 4000; x < dates.length; x++) {
+            dates[x] = (long) ((random.nextDouble() * 600 - 300) * 365.25 * 24 * 60 * 60 * 1000) / 1000 * 1000;
+        }
+
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final ZoneId zone = t % 2 == 0 ? london : sydney;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (long date : dates) {
+                            String text = Utilities.millisToString(date, zone);
+                            org.junit.Assert.assertEquals(formatter.format(Instant.ofEpochMilli(date).atZone(zone)),
+                                    text);
+
+                            // Twice occurring local times are read as the earlier one.
+                            long parsed = Utilities.parseDateTimeMillis(text, 0, text.length(), zone);
+                            org.junit.Assert.assertEquals(text, Utilities.millisToString(parsed, zone));
+                            org.junit.Assert.assertTrue(parsed <= date && parsed >= date - 60 * 60 * 1000);
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+
+        // A local time skipped when the clocks go forward is moved on by the gap, as ZonedDateTime does.
+        org.junit.Assert.assertEquals(Instant.parse("2015-03-29T01:30:00Z").toEpochMilli(),
+                Utilities.parseDateTimeMillis("2015/03/29 01:30:00", 0, 19, london));
+        org.junit.Assert.assertEquals(Instant.parse("2015-10-25T00:30:00Z").toEpochMilli(),
+                Utilities.parseDateTimeMillis("2015/10/25 01:30:00", 0, 19, london));
+
+        for (String mangled : new String[] {"2015/02/29 10:00:00", "2015/13/01 10:00:00", "2015-01-01 10:00:00",
+                "2015/01/01 24:00:00", "2015/01/01 1:00:00"}) {
+            try {
+                Utilities.parseDateTimeMillis(mangled, 0, mangled.length(), london);
+                org.junit.Assert.fail("Parsed " + mangled);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+
+        // Dates typed without leading zeros are still read, through the lenient formatter.
+        Calendar typed = Utilities.stringToCalendar("2015/3/9 8:05:00");
+        org.junit.Assert.assertEquals("2015/03/09 08:05:00", Utilities.calendarToString(typed));
+    }
+
+    @Test
+    public void testLegacyMeetingIdAtIntegerMaxLeavesRoomForNewMeetings() throws Exception {
+        byte[] sampleData = replaceDataFile("CONTACT&1&Hisham Khalifa&I made this.\n"
+                + "CONTACT&2&Bowers Stephenson&Speaker designer.\n"
+                + "FUTUREMEETING&2147483647&2013/04/22 22:22:22&1±2\n"
+                + "PASTMEETING&1&2012/04/23 22:22:22&Taken.&1\n");
+        try {
+            ContactManagerImpl legacyContactManager = new ContactManagerImpl();
+            Set<Contact> contactSet = legacyContactManager.getContacts(1, 2);
+
+            // The sequence has no room above the legacy ID, so new IDs come from the gaps below it.
+            int firstId = legacyContactManager.addFutureMeeting(contactSet, someFutureDate);
+            int secondId = legacyContactManager.addFutureMeeting(contactSet, someFutureDate);
+            org.junit.Assert.assertEquals(2, firstId);
+            org.junit.Assert.assertEquals(3, secondId);
+            org.junit.Assert.assertNotNull(legacyContactManager.getFutureMeeting(2147483647));
+
+            // The same holds after a save, whose meeting sequence has wrapped.
+            legacyContactManager.flush();
+            ContactManagerImpl reloadedContactManager = new ContactManagerImpl();
+            int thirdId = reloadedContactManager.addFutureMeeting(contactSet, someFutureDate);
+            org.junit.Assert.assertEquals(4, thirdId);
+            org.junit.Assert.assertNotNull(reloadedContactManager.getFutureMeeting(secondId));
+        } finally {
+            restoreDataFile(sampleData);
+        }
+    }
+
+    @Test
+    public void testCsvDataReaderSkipsMalformedAndEmptyLinesAndReadsCrLf() throws Exception {
+        String data = "CONTACT&1&Ada Lovelace&First programmer.\r\n"
+                + "\r\n"
+                + "\n"
+                + "CONTACT&x&Bad Id&Not a number.\n"
+                + "PASTMEETING&5&2012/13/01 10:00:00&Bad month.&1\n"
+                + "PASTMEETING&6&2012/04/23\n"
+                + "FUTUREMEETING&7&2013/04/22 22:22:22&1±z\n"
+                + "Not a record\n"
+                + "FUTUREMEETING&8&2013/04/22 22:22:22&1\r\n"
+                + "MEETINGNOTES&8&Notes with a CR line end.\r\n"
+                + "MEETINGSEQUENCE&9\r\n";
+        RecordingHandler handler = new RecordingHandler();
+        CsvDataReader reader = new CsvDataReader(ZoneOffset.UTC);
+
+        long lines = reader.read(new BufferedReader(new StringReader(data)), handler);
+
+        org.junit.Assert.assertEquals(11, lines);
+        org.junit.Assert.assertEquals(5, reader.getMalformedLines());
+        org.junit.Assert.assertEquals(Arrays.asList(
+                "CONTACT 1 Ada Lovelace First programmer.",
+                "FUTUREMEETING 8 " + Instant.parse("2013-04-22T22:22:22Z").toEpochMilli() + " [1]",
+                "MEETINGNOTES 8 Notes with a CR line end.",
+                "MEETINGSEQUENCE 9"), handler.records);
+    }
+
+    @Test
+    public void testParallelLoaderReadsTheSameRecordsAsTheStreamingLoaderWhereverChunksAreCut() throws Exception {
+        File dataFile = File.createTempFile("parallel-contacts", ".txt");
+        try {
+            Files.write(dataFile.toPath(), sampleDataWithCrLf().getBytes(ContactManagerImpl.DATA_FILE_CHARSET));
+
+            RecordingHandler streamed = new RecordingHandler();
+            BufferedReader in = Files.newBufferedReader(dataFile.toPath(), ContactManagerImpl.DATA_FILE_CHARSET);
+            try {
+                new CsvDataReader().read(in, streamed);
+            } finally {
+                in.close();
+            }
+
+            // Every cut from one byte on falls in turn between each '\r' and '\n', and on every other character.
+            for (int chunkSize = 0; chunkSize <= 64; chunkSize++) {
+                ParallelDataLoader loader = new ParallelDataLoader(dataFile, ForkJoinPool.commonPool(), chunkSize);
+                loader.parse();
+
+                final IntHashMap<Contact> contacts = new IntHashMap<Contact>();
+                RecordingHandler loaded = new RecordingHandler();
+                for (Contact contact : loader.getContacts()) {
+                    contacts.put(contact.getId(), contact);
+                    loaded.contactRecord(contact.getId(), contact.getName(), contact.getNotes());
+                }
+                for (Meeting meeting : loader.buildMeetings(new ContactLookup() {
+                    @Override
+                    public Contact getContact(int id) {
+                        return contacts.get(id);
+                    }
+                })) {
+                    if (meeting instanceof PastMeeting) {
+                        loaded.pastMeetingRecord(meeting.getId(), Utilities.meetingTimeMillis(meeting),
+                                ((PastMeeting) meeting).getNotes(), Utilities.attendeeIds(meeting));
+                    } else {
+                        loaded.futureMeetingRecord(meeting.getId(), Utilities.meetingTimeMillis(meeting),
+                                Utilities.attendeeIds(meeting));
+                    }
+                }
+                loader.replayMeetingRecords(loaded);
+
+                org.junit.Assert.assertEquals("Chunk size " + chunkSize, new HashSet<String>(streamed.records),
+                        new HashSet<String>(loaded.records));
+                org.junit.Assert.assertEquals("Chunk size " + chunkSize, streamed.records.size(),
+                        loaded.records.size());
+            }
+        } finally {
+            dataFile.delete();
+        }
+    }
+
+    @Test
+    public void testParallelLoadGivesTheSameManagerAsStreamingLoad() throws Exception {
+        File directory = Files.createTempDirectory("parallel-contacts").toFile();
+        File dataFile = new File(directory, ContactManagerImpl.DATA_FILE);
+        try {
+            Files.write(dataFile.toPath(), sampleDataWithCrLf().getBytes(ContactManagerImpl.DATA_FILE_CHARSET));
+
+            ContactManagerOptions streamingOptions = new ContactManagerOptions().setDataDirectory(directory)
+                    .setParallelLoadThreshold(Long.MAX_VALUE);
+            ContactManagerOptions parallelOptions = new ContactManagerOptions().setDataDirectory(directory)
+                    .setParallelLoadThreshold(0);
+            ContactManagerImpl streamingContactManager = new ContactManagerImpl(streamingOptions);
+            ContactManagerImpl parallelContactManager = new ContactManagerImpl(parallelOptions);
+
+            // Duplicate IDs are dropped the same way, the first record of each ID is kept.
+            org.junit.Assert.assertEquals(describe(streamingContactManager), describe(parallelContactManager));
+            org.junit.Assert.assertEquals("Contact 1", parallelContactManager.getContacts(1).iterator().next()
+                    .getName());
+            org.junit.Assert.assertEquals("Notes of 1.", parallelContactManager.getPastMeeting(1).getNotes());
+
+            // The meeting sequence record is restored too.
+            org.junit.Assert.assertEquals(streamingContactManager.allocateMeetingIds(1),
+                    parallelContactManager.allocateMeetingIds(1));
+        } finally {
+            dataFile.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testDelimitersAndLineEndsInTextSurviveTheJournalAndEveryDataFileFormat() throws Exception {
+        String name = "Ampersand & Plus-Minus ± Back\\slash";
+        String notes = "Notes with & and ±,\non two lines, a \\n that is not a line end and a CR\r.";
+        File directory = Files.createTempDirectory("escaped-contacts").toFile();
+        try {
+            // Journaled by a binary manager, whose journal is still CSV.
+            ContactManagerOptions binaryOptions = new ContactManagerOptions().setDataDirectory(directory)
+                    .setSnapshotFormat(SnapshotFormat.BINARY).setJournalEnabled(true);
+            ContactManagerImpl binaryContactManager = new ContactManagerImpl(binaryOptions);
+            binaryContactManager.addNewContact(name, notes);
+            int contactId = binaryContactManager.getContacts(name).iterator().next().getId();
+            Set<Contact> contactSet = binaryContactManager.getContacts(contactId);
+            binaryContactManager.addNewPastMeeting(contactSet, somePastDate, notes);
+            binaryContactManager.addNewPastMeeting(contactSet, somePastDate, "");
+            List<PastMeeting> pastMeetings = binaryContactManager.getPastMeetingList(contactSet.iterator().next());
+            int firstId = pastMeetings.get(0).getId();
+            int secondId = pastMeetings.get(1).getId();
+            binaryContactManager.addMeetingNotes(secondId, notes);
+            binaryContactManager.flush();
+
+            byte[] journal = Files.readAllBytes(new File(directory, ContactManagerImpl.JOURNAL_FILE).toPath());
+
+            // Replayed from the journal, then saved to and loaded from contacts.bin.
+            List<ContactManagerImpl> reloadedContactManagers = new ArrayList<ContactManagerImpl>();
+            ContactManagerImpl replayedContactManager = new ContactManagerImpl(binaryOptions);
+            reloadedContactManagers.add(replayedContactManager);
+            replayedContactManager.compact();
+            reloadedContactManagers.add(new ContactManagerImpl(binaryOptions));
+
+            // Replayed from the same journal, then saved to contacts.txt and loaded by both loaders.
+            Files.delete(new File(directory, ContactManagerImpl.BINARY_DATA_FILE).toPath());
+            Files.write(new File(directory, ContactManagerImpl.JOURNAL_FILE).toPath(), journal);
+            ContactManagerOptions csvOptions = new ContactManagerOptions().setDataDirectory(directory);
+            new ContactManagerImpl(csvOptions).compact();
+            reloadedContactManagers.add(new ContactManagerImpl(csvOptions.setParallelLoadThreshold(Long.MAX_VALUE)));
+            reloadedContactManagers.add(new ContactManagerImpl(csvOptions.setParallelLoadThreshold(0)));
+
+            for (ContactManagerImpl reloadedContactManager : reloadedContactManagers) {
+                Contact contact = reloadedContactManager.getContacts(contactId).iterator().next();
+                org.junit.Assert.assertEquals(name, contact.getName());
+                org.junit.Assert.assertEquals(notes, contact.getNotes());
+                org.junit.Assert.assertEquals(notes, reloadedContactManager.getPastMeeting(firstId).getNotes());
+                org.junit.Assert.assertEquals(notes, reloadedContactManager.getPastMeeting(secondId).getNotes());
+            }
+
+            // Each record stays on one line.
+            List<String> lines = Files.readAllLines(new File(directory, ContactManagerImpl.DATA_FILE).toPath(),
+                    ContactManagerImpl.DATA_FILE_CHARSET);
+            org.junit.Assert.assertEquals(6, lines.size());
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testJournalReplaysNewContactsMeetingsAndNotes() throws Exception {
+        File directory = Files.createTempDirectory("journal-contacts").toFile();
+        try {
+            // Dates are saved to the second.
+            someFutureDate.set(Calendar.MILLISECOND, 0);
+            somePastDate.set(Calendar.MILLISECOND, 0);
+
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory)
+                    .setJournalEnabled(true);
+            ContactManagerImpl journalContactManager = new ContactManagerImpl(options);
+            journalContactManager.addNewContact("Ada Lovelace", "First note.");
+            journalContactManager.addNewContact("Charles Babbage", "");
+            Contact ada = journalContactManager.getContacts("Ada Lovelace").iterator().next();
+            Contact charles = journalContactManager.getContacts("Charles Babbage").iterator().next();
+            ada.addNotes("Second note.");
+
+            Set<Contact> contactSet = journalContactManager.getContacts(ada.getId(), charles.getId());
+            int futureId = journalContactManager.addFutureMeeting(contactSet, someFutureDate);
+            journalContactManager.addNewPastMeeting(contactSet, somePastDate, "");
+            int pastId = journalContactManager.getPastMeetingList(ada).get(0).getId();
+            journalContactManager.addMeetingNotes(pastId, "Notes added later.");
+            journalContactManager.flush();
+
+            // Nothing but the journal was written.
+            org.junit.Assert.assertFalse(new File(directory, ContactManagerImpl.DATA_FILE).exists());
+            List<String> lines = Files.readAllLines(new File(directory, ContactManagerImpl.JOURNAL_FILE).toPath(),
+                    ContactManagerImpl.DATA_FILE_CHARSET);
+            org.junit.Assert.assertEquals(7, lines.size());
+            for (String line : lines) {
+                org.junit.Assert.assertTrue(line, line.matches("[0-9a-f]{8} [A-Z]+&.*"));
+            }
+
+            ContactManagerImpl replayedContactManager = new ContactManagerImpl(options);
+            org.junit.Assert.assertEquals(describe(journalContactManager), describe(replayedContactManager));
+            org.junit.Assert.assertEquals("First note.\nSecond note.",
+                    replayedContactManager.getContacts(ada.getId()).iterator().next().getNotes());
+            org.junit.Assert.assertEquals("Notes added later.", replayedContactManager.getPastMeeting(pastId)
+                    .getNotes());
+            org.junit.Assert.assertNotNull(replayedContactManager.getFutureMeeting(futureId));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testJournalIsCompactedIntoTheDataFile() throws Exception {
+        File directory = Files.createTempDirectory("journal-contacts").toFile();
+        File journalFile = new File(directory, ContactManagerImpl.JOURNAL_FILE);
+        try {
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory)
+                    .setJournalEnabled(true).setCompactionThreshold(3);
+            ContactManagerImpl journalContactManager = new ContactManagerImpl(options);
+            journalContactManager.addNewContact("Ada Lovelace", "");
+            journalContactManager.addNewContact("Charles Babbage", "");
+            journalContactManager.flush();
+            org.junit.Assert.assertTrue(journalFile.exists());
+            org.junit.Assert.assertFalse(new File(directory, ContactManagerImpl.DATA_FILE).exists());
+
+            // The third record reaches the threshold, so the next flush rewrites the data file and empties the journal.
+            journalContactManager.getContacts("Ada Lovelace").iterator().next().addNotes("A note.");
+            journalContactManager.flush();
+            org.junit.Assert.assertFalse(journalFile.exists());
+
+            ContactManagerImpl reloadedContactManager = new ContactManagerImpl(options);
+            org.junit.Assert.assertEquals(describe(journalContactManager), describe(reloadedContactManager));
+
+            // Appending starts a new journal.
+            reloadedContactManager.addNewContact("Grace Hopper", "");
+            reloadedContactManager.flush();
+            org.junit.Assert.assertEquals(3, new ContactManagerImpl(options).getContacts("").size());
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testDamagedLastJournalRecordIsDroppedAndCutOff() throws Exception {
+        File directory = Files.createTempDirectory("journal-contacts").toFile();
+        Path journalFile = new File(directory, ContactManagerImpl.JOURNAL_FILE).toPath();
+        try {
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory)
+                    .setJournalEnabled(true);
+            ContactManagerImpl journalContactManager = new ContactManagerImpl(options);
+            journalContactManager.addNewContact("Ada Lovelace", "");
+            journalContactManager.addNewContact("Charles Babbage", "");
+            Set<Contact> contactSet = journalContactManager.getContacts("");
+            int meetingId = journalContactManager.addFutureMeeting(contactSet, someFutureDate);
+            journalContactManager.flush();
+            byte[] journal = Files.readAllBytes(journalFile);
+            String text = new String(journal, ContactManagerImpl.DATA_FILE_CHARSET);
+            int lastAttendeeDelimiter = text.substring(0, text.lastIndexOf(ContactManagerImpl.ATTENDEE_DELIMITER))
+                    .getBytes(ContactManagerImpl.DATA_FILE_CHARSET).length;
+
+            // A record cut short by a crash, and a finished one whose attendee list lost its end: both still parse.
+            byte[] unfinished = Arrays.copyOf(journal, journal.length - 2);
+            byte[] damaged = Arrays.copyOf(journal, lastAttendeeDelimiter + 1);
+            damaged[lastAttendeeDelimiter] = '\n';
+
+            for (byte[] contents : Arrays.asList(unfinished, damaged)) {
+                Files.write(journalFile, contents);
+
+                ContactManagerImpl replayedContactManager = new ContactManagerImpl(options);
+                org.junit.Assert.assertNull(replayedContactManager.getMeeting(meetingId));
+                org.junit.Assert.assertEquals(2, replayedContactManager.getContacts("").size());
+
+                // The damaged record is cut off, so the next one starts on a line of its own.
+                replayedContactManager.addNewContact("Grace Hopper", "");
+                replayedContactManager.flush();
+                ContactManagerImpl reloadedContactManager = new ContactManagerImpl(options);
+                org.junit.Assert.assertEquals(3, reloadedContactManager.getContacts("").size());
+                org.junit.Assert.assertEquals(4, Files.readAllLines(journalFile, ContactManagerImpl.DATA_FILE_CHARSET)
+                        .size());
+            }
+
+            // Damage before the last record is not the work of a crash, so the journal is refused.
+            journal[journal.length / 2] ^= 1;
+            Files.write(journalFile, journal);
+            try {
+                new ContactManagerImpl(options);
+                org.junit.Assert.fail("A journal damaged before its last record was replayed.");
+            } catch (IllegalStateException e) {
+                org.junit.Assert.assertTrue(e.getMessage(), e.getMessage().contains("checksum"));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testSnapshotFileRejectsDamagedAndTruncatedDataFiles() throws Exception {
+        File directory = Files.createTempDirectory("snapshot-contacts").toFile();
+        File dataFile = new File(directory, ContactManagerImpl.DATA_FILE);
+        try {
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory);
+            ContactManagerImpl savedContactManager = new ContactManagerImpl(options);
+            savedContactManager.addNewContact("Ada Lovelace", "First programmer.");
+            savedContactManager.flush();
+            SnapshotFile.verify(dataFile);
+            byte[] snapshot = Files.readAllBytes(dataFile.toPath());
+
+            // One changed character, then the CHECKSUM line cut short, then lost altogether.
+            byte[] damaged = snapshot.clone();
+            damaged[new String(snapshot, ContactManagerImpl.DATA_FILE_CHARSET).indexOf("Ada")] = 'E';
+            byte[] truncated = Arrays.copyOf(snapshot, snapshot.length - 3);
+            byte[] withoutChecksum = Arrays.copyOf(snapshot, new String(snapshot, ContactManagerImpl.DATA_FILE_CHARSET)
+                    .indexOf(SnapshotFile.CHECKSUM_RECORD));
+
+            for (byte[] contents : Arrays.asList(damaged, truncated, withoutChecksum)) {
+                Files.write(dataFile.toPath(), contents);
+                try {
+                    SnapshotFile.verify(dataFile);
+                    org.junit.Assert.fail("A damaged data file was verified.");
+                } catch (IOException e) {
+                    org.junit.Assert.assertTrue(e.getMessage(), e.getMessage().contains(dataFile.toString()));
+                }
+
+                // The manager refuses to start rather than save over what is left.
+                try {
+                    new ContactManagerImpl(options);
+                    org.junit.Assert.fail("A damaged data file was loaded.");
+                } catch (IllegalStateException e) {
+                    org.junit.Assert.assertArrayEquals(contents, Files.readAllBytes(dataFile.toPath()));
+                }
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testFailedSnapshotWriteLeavesTheDataFileUntouched() throws Exception {
+        File directory = Files.createTempDirectory("snapshot-contacts").toFile();
+        File dataFile = new File(directory, ContactManagerImpl.DATA_FILE);
+        File tempFile = new File(directory, ContactManagerImpl.DATA_FILE + SnapshotFile.TEMP_SUFFIX);
+        try {
+            ContactManagerOptions options = new ContactManagerOptions().setDataDirectory(directory);
+            ContactManagerImpl savedContactManager = new ContactManagerImpl(options);
+            savedContactManager.addNewContact("Ada Lovelace", "First programmer.");
+            savedContactManager.flush();
+            byte[] snapshot = Files.readAllBytes(dataFile.toPath());
+
+            // A snapshot abandoned half way.
+            SnapshotFile abandoned = new SnapshotFile(dataFile);
+            abandoned.beginWrite().write("CONTACT&2&Charles Babbage&Half writ");
+            abandoned.abort();
+            org.junit.Assert.assertArrayEquals(snapshot, Files.readAllBytes(dataFile.toPath()));
+            org.junit.Assert.assertFalse(tempFile.exists());
+
+            // A save whose temporary file cannot be created.
+            org.junit.Assert.assertTrue(tempFile.mkdir());
+            savedContactManager.addNewContact("Charles Babbage", "Engine designer.");
+            try {
+                savedContactManager.compact();
+                org.junit.Assert.fail("A snapshot was saved without its temporary file.");
+            } catch (IOException e) {
+                org.junit.Assert.assertArrayEquals(snapshot, Files.readAllBytes(dataFile.toPath()));
+            }
+            SnapshotFile.verify(dataFile);
+            org.junit.Assert.assertEquals(1, new ContactManagerImpl(options).getContacts("").size());
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Returns a data file with contacts, past and future meetings, notes and a meeting sequence, whose lines end with
+     * "\r\n" apart from every fifth, which ends with "\n". It also holds duplicate IDs and malformed lines.
+     *
+     * @return the data file contents.
+     */
+    private static String sampleDataWithCrLf() {
+        StringBuilder data = new StringBuilder();
+        List<String> lines = new ArrayList<String>();
+        for (int id = 1; id <= 20; id++) {
+            lines.add("CONTACT&" + id + "&Contact " + id + "&Notes of contact " + id + ".");
+        }
+        lines.add("CONTACT&1&Duplicate contact&Dropped.");
+        lines.add("Not a record");
+        lines.add("");
+        for (int id = 1; id <= 40; id++) {
+            String attendees = (id % 20 + 1) + "±" + ((id + 7) % 20 + 1);
+            if (id % 2 == 0) {
+                lines.add("FUTUREMEETING&" + id + "&2031/0" + (id % 9 + 1) + "/1" + (id % 10) + " 10:00:00&"
+                        + attendees);
+            } else {
+                lines.add("PASTMEETING&" + id + "&2012/0" + (id % 9 + 1) + "/1" + (id % 10) + " 10:00:00&Notes of "
+                        + id + ".&" + attendees);
+            }
+        }
+        lines.add("PASTMEETING&1&2012/01/01 10:00:00&Duplicate meeting.&1");
+        lines.add("FUTUREMEETING&41&2031/13/01 10:00:00&1");
+        lines.add("MEETINGNOTES&3&Notes added later.");
+        lines.add("MEETINGSEQUENCE&100");
+
+        for (int x = 0; x < lines.size(); x++) {
+            data.append(lines.get(x)).append(x % 5 == 4 ? "\n" : "\r\n");
+        }
+        return data.toString();
+    }
+
+    /**
+     * Describes every contact and meeting of a manager, for comparing managers loaded in different ways.
+     *
+     * @param contactManager the manager.
+     * @return one line per contact and meeting, in ID order.
+     */
+    private static List<String> describe(ContactManagerImpl contactManager) {
+        List<String> description = new ArrayList<String>();
+        for (Contact contact : contactManager.getContacts("")) {
+            description.add("CONTACT " + contact.getId() + " " + contact.getName() + " " + contact.getNotes());
+        }
+        for (int id = 1; id <= 100; id++) {
+            Meeting meeting = contactManager.getMeeting(id);
+            if (meeting != null) {
+                description.add((meeting instanceof PastMeeting ? "PASTMEETING " + ((PastMeeting) meeting).getNotes()
+                        : "FUTUREMEETING") + " " + id + " " + Utilities.meetingTimeMillis(meeting) + " "
+                        + Arrays.toString(Utilities.attendeeIds(meeting)));
+            }
+        }
+        Collections.sort(description);
+        return description;
+    }
+
+    /**
+     * Lists the IDs of meetings, for comparing meeting lists of different managers.
+     *
+     * @param meetings the meetings.
+     * @return the meeting IDs, in the order of the meetings.
+     */
+    private static List<Integer> ids(List<? extends Meeting> meetings) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Meeting meeting : meetings) {
+            ids.add(meeting.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Lists the IDs of contacts, in the order given.
+     *
+     * @param contacts the contacts.
+     * @return the contact IDs.
+     */
+    private static List<Integer> contactIds(Collection<Contact> contacts) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the answer to a prefix search by checking every contact, in the order of the name index: by lower case
+     * name, then by ID.
+     *
+     * @param contacts every contact.
+     * @param prefix the string searched for.
+     * @param limit maximum number of contacts to return.
+     * @return the IDs of the contacts found.
+     */
+    private static List<Integer> expectedPrefixSearch(Collection<Contact> contacts, String prefix, int limit) {
+        List<Contact> found = new ArrayList<Contact>();
+        for (Contact contact : contacts) {
+            if (contact.getName().toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT))) {
+                found.add(contact);
+            }
+        }
+        Collections.sort(found, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact first, Contact second) {
+                int comparison = first.getName().toLowerCase(Locale.ROOT)
+                        .compareTo(second.getName().toLowerCase(Locale.ROOT));
+                return comparison != 0 ? comparison : Integer.compare(first.getId(), second.getId());
+            }
+        });
+        return contactIds(found.subList(0, Math.min(limit, found.size())));
+    }
+
+    /**
+     * Removes a temporary data directory and the files in it.
+     *
+     * @param directory the directory.
+     * @throws IOException if a file cannot be removed.
+     */
+    private static void deleteDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    /**
+     * Replaces the data file the tests run against, e.g. with the contents of a data file written by an old version.
+     *
+     * @param contents the new contents of the data file.
+     * @return the previous contents, to be passed to restoreDataFile().
+     * @throws IOException if the data file cannot be read or written.
+     */
+    private static byte[] replaceDataFile(String contents) throws IOException {
+        Path dataFile = Paths.get(ContactManagerImpl.DATA_FILE);
+        byte[] previousContents = Files.readAllBytes(dataFile);
+        Files.write(dataFile, contents.getBytes(ContactManagerImpl.DATA_FILE_CHARSET));
+        return previousContents;
+    }
+
+    /**
+     * Puts back the data file replaced by replaceDataFile() and removes any journal or binary data file left behind.
+     *
+     * @param previousContents the contents to restore.
+     * @throws IOException if the data file cannot be written.
+     */
+    private static void restoreDataFile(byte[] previousContents) throws IOException {
+        Files.write(Paths.get(ContactManagerImpl.DATA_FILE), previousContents);
+        Files.deleteIfExists(Paths.get(ContactManagerImpl.JOURNAL_FILE));
+        Files.deleteIfExists(Paths.get(ContactManagerImpl.BINARY_DATA_FILE));
+    }
+
+    /**
+     * Records every record it receives as a line of text, for comparing what different readers and loaders produce.
+     */
+    private static class RecordingHandler implements DataRecordHandler {
+        private List<String> records = new ArrayList<String>();
+
+        /**
+         * Describes attendee IDs in ascending order, as meetings hold them, whatever their order in the file.
+         *
+         * @param attendeeIds the attendee IDs.
+         * @return the description.
+         */
+        private static String sortedIds(int[] attendeeIds) {
+            int[] sortedIds = attendeeIds.clone();
+            Arrays.sort(sortedIds);
+            return Arrays.toString(sortedIds);
+        }
+
+        @Override
+        public void contactRecord(int id, String name, String notes) {
+            this.records.add("CONTACT " + id + " " + name + " " + notes);
+        }
+
+        @Override
+        public void pastMeetingRecord(int id, long dateMillis, String notes, int[] attendeeIds) {
+            this.records.add("PASTMEETING " + id + " " + dateMillis + " " + notes + " " + sortedIds(attendeeIds));
+        }
+
+        @Override
+        public void futureMeetingRecord(int id, long dateMillis, int[] attendeeIds) {
+            this.records.add("FUTUREMEETING " + id + " " + dateMillis + " " + sortedIds(attendeeIds));
+        }
+
+        @Override
+        public void meetingNotesRecord(int id, String notes) {
+            this.records.add("MEETINGNOTES " + id + " " + notes);
+        }
+
+        @Override
+        public void contactNotesRecord(int id, String notes) {
+            this.records.add("CONTACTNOTES " + id + " " + notes);
+        }
+
+        @Override
+        public void meetingSequenceRecord(int nextId) {
+            this.records.add("MEETINGSEQUENCE " + nextId);
+        }
+    }
 }
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ContactManagerMetrics
+ *
+ * Metrics of an instrumented ContactManager: an OperationMetrics for each operation, plus the data file load and the
+ * bytes written by flushes. They can be printed with dump() or registered with an MBeanServer, as one MBean named
+ * ContactManager:type=Metrics,name=NAME and one per operation named ContactManager:type=Operation,manager=NAME,name=OP.
+ */
+public class ContactManagerMetrics implements ContactManagerMetricsMBean {
+    public static final String JMX_DOMAIN = "ContactManager";
+
+    private Map<String, OperationMetrics> operations = null;
+    private volatile LoadStatistics loadStatistics = null;
+    private volatile long lastFlushNanos = 0;
+    private AtomicLong flushedBytes = null;
+
+    // Names the MBeans were registered under.
+    private MBeanServer server = null;
+    private List<ObjectName> registeredNames = null;
+
+    /**
+     * Constructor
+     */
+    public ContactManagerMetrics() {
+        this.operations = new LinkedHashMap<String, OperationMetrics>();
+        this.flushedBytes = new AtomicLong();
+        this.registeredNames = new ArrayList<ObjectName>();
+    }
+
+    /**
+     * Returns the metrics of an operation, creating them the first time. Operations are listed in the order they were
+     * first asked for.
+     *
+     * @param name name of the operation.
+     * @return the metrics of the operation.
+     */
+    public synchronized OperationMetrics operation(String name) {
+        OperationMetrics metrics = this.operations.get(name);
+        if (metrics == null) {
+            metrics = new OperationMetrics(name);
+            this.operations.put(name, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of every operation.
+     *
+     * @return a copy of the list of operation metrics.
+     */
+    public synchronized List<OperationMetrics> getOperations() {
+        return new ArrayList<OperationMetrics>(this.operations.values());
+    }
+
+    /**
+     * Records the data file load.
+     *
+     * @param loadStatistics statistics of the load, or null if no data file was loaded.
+     */
+    public void recordLoad(LoadStatistics loadStatistics) {
+        this.loadStatistics = loadStatistics;
+    }
+
+    /**
+     * Records a successful flush. Its latency is recorded separately, as the flush operation.
+     *
+     * @param elapsedNanos time the flush took in nanoseconds.
+     * @param bytes size of the data files it wrote.
+     */
+    public void recordFlush(long elapsedNanos, long bytes) {
+        this.lastFlushNanos = elapsedNanos;
+        this.flushedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Returns the number of lines or records read by the data file load.
+     *
+     * @return lines read, or 0 if no data file was loaded.
+     */
+    @Override
+    public long getLoadLines() {
+        LoadStatistics statistics = this.loadStatistics;
+        return statistics == null ? 0 : statistics.getLines();
+    }
+
+    /**
+     * Returns the size of the data file loaded.
+     *
+     * @return bytes read, or 0 if no data file was loaded.
+     */
+    @Override
+    public long getLoadBytes() {
+        LoadStatistics statistics = this.loadStatistics;
+        return statistics == null ? 0 : statistics.getBytes();
+    }
+
+    /**
+     * Returns the time the data file load took.
+     *
+     * @return load time in milliseconds, or 0 if no data file was loaded.
+     */
+    @Override
+    public double getLoadMillis() {
+        LoadStatistics statistics = this.loadStatistics;
+        return statistics == null ? 0 : statistics.getElapsedNanos() / 1e6;
+    }
+
+    /**
+     * Returns the total size of the data files written by flushes.
+     *
+     * @return bytes written, or 0 if the manager does not report them.
+     */
+    @Override
+    public long getFlushedBytes() {
+        return this.flushedBytes.get();
+    }
+
+    /**
+     * Returns the time the last flush took.
+     *
+     * @return last flush time in milliseconds, or 0 if there was none.
+     */
+    @Override
+    public double getLastFlushMillis() {
+        return this.lastFlushNanos / 1e6;
+    }
+
+    /**
+     * Returns every metric as text, one operation per line. Latencies are in microseconds.
+     *
+     * @return the metrics.
+     */
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        LoadStatistics statistics = this.loadStatistics;
+        text.append(statistics == null ? "No data file loaded." : statistics.toString()).append('\n');
+        text.append(String.format("Flushed %d bytes, last flush took %.1f ms.%n%n", getFlushedBytes(),
+                getLastFlushMillis()));
+        text.append(String.format("%-30s %9s %6s %10s %10s %10s %10s %10s %10s %9s%n", "Operation", "Calls", "Failed",
+                "Mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "Max us", "Avg size"));
+
+        for (OperationMetrics metrics : getOperations()) {
+            // Leave out operations that were never called.
+            if (metrics.getCalls() > 0) {
+                text.append(metrics).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Registers the metrics as MBeans.
+     *
+     * @param server the MBean server, usually ManagementFactory.getPlatformMBeanServer().
+     * @param name name telling this manager's MBeans apart from those of other managers.
+     * @throws JMException if an MBean cannot be registered, e.g. because the name is already taken.
+     * @throws IllegalStateException if the metrics are already registered.
+     */
+    public synchronized void register(MBeanServer server, String name) throws JMException {
+        if (this.server != null) {
+            throw new IllegalStateException("Metrics are already registered.");
+        }
+
+        this.server = server;
+        try {
+            registerMBean(this, JMX_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+
+            // Operation names such as getMeetingList(Calendar, Calendar) hold commas, so they are quoted too.
+            for (OperationMetrics metrics : getOperations()) {
+                registerMBean(metrics, JMX_DOMAIN + ":type=Operation,manager=" + ObjectName.quote(name) + ",name="
+                        + ObjectName.quote(metrics.getName()));
+            }
+        } catch (JMException e) {
+            // Leave nothing half registered.
+            unregister();
+            throw e;
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by register(). Does nothing if the metrics are not registered.
+     */
+    public synchronized void unregister() {
+        for (ObjectName objectName : this.registeredNames) {
+            try {
+                this.server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        this.registeredNames.clear();
+        this.server = null;
+    }
+
+    /**
+     * Registers one MBean and remembers its name.
+     *
+     * @param mbean the MBean.
+     * @param objectName the name to register it under.
+     * @throws JMException if it cannot be registered.
+     */
+    private void registerMBean(Object mbean, String objectName) throws JMException {
+        ObjectName registeredName = this.server.registerMBean(mbean, new ObjectName(objectName)).getObjectName();
+        this.registeredNames.add(registeredName);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * ContactManagerMetricsMBean
+ *
+ * JMX view of the data file load and the flushes of an instrumented ContactManager. Each operation has its own
+ * OperationMetricsMBean.
+ */
+public interface ContactManagerMetricsMBean {
+    /**
+     * Returns the number of lines or records read by the data file load.
+     *
+     * @return lines read, or 0 if no data file was loaded.
+     */
+    long getLoadLines();
+
+    /**
+     * Returns the size of the data file loaded.
+     *
+     * @return bytes read, or 0 if no data file was loaded.
+     */
+    long getLoadBytes();
+
+    /**
+     * Returns the time the data file load took.
+     *
+     * @return load time in milliseconds, or 0 if no data file was loaded.
+     */
+    double getLoadMillis();
+
+    /**
+     * Returns the total size of the data files written by flushes.
+     *
+     * @return bytes written, or 0 if the manager does not report them.
+     */
+    long getFlushedBytes();
+
+    /**
+     * Returns the time the last flush took.
+     *
+     * @return last flush time in milliseconds, or 0 if there was none.
+     */
+    double getLastFlushMillis();
+
+    /**
+     * Returns every metric as text, one operation per line.
+     *
+     * @return the metrics.
+     */
+    String dump();
+}
@@ -0,0 +1,257 @@
+import java.io.File;
+import java.time.Clock;
+
+/**
+ * ContactManagerOptions
+ *
+ * Optional settings for ContactManagerImpl. Setters return this object so that settings can be chained, e.g.
+ * new ContactManagerImpl(new ContactManagerOptions().setJournalEnabled(true)).
+ */
+public class ContactManagerOptions {
+    // Journal size at which flush() rewrites the snapshot instead of just syncing the journal.
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 100000;
+
+    // Data file size from which it is memory mapped and loaded in parallel, when more than one core is available.
+    public static final long DEFAULT_PARALLEL_LOAD_THRESHOLD = 32L * 1024 * 1024;
+
+    private MeetingIdAllocator meetingIdAllocator = null;
+    private boolean journalEnabled = false;
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private long parallelLoadThreshold = -1;
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private boolean snapshotViewsEnabled = false;
+    private boolean meetingRolloverEnabled = false;
+    private Clock clock = null;
+    private File dataDirectory = null;
+
+    /**
+     * Returns the source of new meeting IDs.
+     *
+     * @return the meeting ID allocator, or a new SequentialMeetingIdAllocator if none was set.
+     */
+    public MeetingIdAllocator getMeetingIdAllocator() {
+        if (this.meetingIdAllocator == null) {
+            return new SequentialMeetingIdAllocator();
+        }
+        return this.meetingIdAllocator;
+    }
+
+    /**
+     * Sets the source of new meeting IDs.
+     *
+     * @param meetingIdAllocator the meeting ID allocator.
+     * @return these options.
+     * @throws NullPointerException if the allocator is null.
+     */
+    public ContactManagerOptions setMeetingIdAllocator(MeetingIdAllocator meetingIdAllocator) {
+        if (meetingIdAllocator == null) {
+            throw new NullPointerException("Meeting ID allocator cannot be null.");
+        }
+        this.meetingIdAllocator = meetingIdAllocator;
+        return this;
+    }
+
+    /**
+     * Checks if changes are appended to a journal rather than saved by rewriting the whole data file.
+     *
+     * @return true if journal mode is enabled, otherwise false.
+     */
+    public boolean isJournalEnabled() {
+        return this.journalEnabled;
+    }
+
+    /**
+     * Enables or disables journal mode.
+     *
+     * In journal mode every change is appended to a journal as it is made, flush() only syncs the journal, and the
+     * data file is rewritten (compacted) once the journal reaches the compaction threshold.
+     *
+     * @param journalEnabled true to enable journal mode.
+     * @return these options.
+     */
+    public ContactManagerOptions setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+        return this;
+    }
+
+    /**
+     * Returns the journal size at which flush() compacts the journal into the data file.
+     *
+     * @return the compaction threshold in records.
+     */
+    public long getCompactionThreshold() {
+        return this.compactionThreshold;
+    }
+
+    /**
+     * Sets the journal size at which flush() compacts the journal into the data file.
+     *
+     * @param compactionThreshold the compaction threshold in records.
+     * @return these options.
+     * @throws IllegalArgumentException if the threshold is not positive.
+     */
+    public ContactManagerOptions setCompactionThreshold(long compactionThreshold) {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive.");
+        }
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the data file size from which the data file is loaded by the memory mapped, parallel loader.
+     *
+     * @return the threshold in bytes. Unless one was set, DEFAULT_PARALLEL_LOAD_THRESHOLD when more than one core is
+     *         available and Long.MAX_VALUE, i.e. never, on a single core.
+     */
+    public long getParallelLoadThreshold() {
+        if (this.parallelLoadThreshold < 0) {
+            return Runtime.getRuntime().availableProcessors() > 1 ? DEFAULT_PARALLEL_LOAD_THRESHOLD : Long.MAX_VALUE;
+        }
+        return this.parallelLoadThreshold;
+    }
+
+    /**
+     * Sets the data file size from which the data file is loaded by the memory mapped, parallel loader, whatever the
+     * number of cores. 0 loads every data file in parallel.
+     *
+     * @param parallelLoadThreshold the threshold in bytes.
+     * @return these options.
+     * @throws IllegalArgumentException if the threshold is negative.
+     */
+    public ContactManagerOptions setParallelLoadThreshold(long parallelLoadThreshold) {
+        if (parallelLoadThreshold < 0) {
+            throw new IllegalArgumentException("Parallel load threshold cannot be negative.");
+        }
+        this.parallelLoadThreshold = parallelLoadThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the format the data file is saved in.
+     *
+     * @return the snapshot format.
+     */
+    public SnapshotFormat getSnapshotFormat() {
+        return this.snapshotFormat;
+    }
+
+    /**
+     * Sets the format the data file is saved in.
+     *
+     * With BINARY the data is saved to contacts.bin. If there is no contacts.bin yet, contacts.txt is loaded instead,
+     * so the first save converts an existing CSV data file.
+     *
+     * @param snapshotFormat the snapshot format.
+     * @return these options.
+     * @throws NullPointerException if the format is null.
+     */
+    public ContactManagerOptions setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        if (snapshotFormat == null) {
+            throw new NullPointerException("Snapshot format cannot be null.");
+        }
+        this.snapshotFormat = snapshotFormat;
+        return this;
+    }
+
+    /**
+     * Checks if query methods are answered from immutable snapshot views.
+     *
+     * @return true if snapshot view mode is enabled, otherwise false.
+     */
+    public boolean isSnapshotViewsEnabled() {
+        return this.snapshotViewsEnabled;
+    }
+
+    /**
+     * Enables or disables snapshot view mode.
+     *
+     * In snapshot view mode the manager publishes an immutable, versioned ContactManagerSnapshot after every write
+     * (or write batch), and its query methods are answered from the latest one. Any number of threads may then query
+     * while one thread writes, and callers can pin a snapshot to run several queries against the same version.
+     *
+     * @param snapshotViewsEnabled true to enable snapshot view mode.
+     * @return these options.
+     */
+    public ContactManagerOptions setSnapshotViewsEnabled(boolean snapshotViewsEnabled) {
+        this.snapshotViewsEnabled = snapshotViewsEnabled;
+        return this;
+    }
+
+    /**
+     * Checks if future meetings are moved into the past once their time has passed.
+     *
+     * @return true if meeting rollover is enabled, otherwise false.
+     */
+    public boolean isMeetingRolloverEnabled() {
+        return this.meetingRolloverEnabled;
+    }
+
+    /**
+     * Enables or disables meeting rollover.
+     *
+     * With meeting rollover a future meeting becomes a past meeting, with empty notes, as soon as its time has
+     * passed, rather than when notes are added to it. getFutureMeeting() then no longer returns meetings that are
+     * over, and getPastMeeting() and the past meeting lists do.
+     *
+     * @param meetingRolloverEnabled true to enable meeting rollover.
+     * @return these options.
+     */
+    public ContactManagerOptions setMeetingRolloverEnabled(boolean meetingRolloverEnabled) {
+        this.meetingRolloverEnabled = meetingRolloverEnabled;
+        return this;
+    }
+
+    /**
+     * Returns the source of the current time, used to check whether meetings are in the future and to roll them over.
+     *
+     * @return the clock, or the system clock in UTC if none was set.
+     */
+    public Clock getClock() {
+        if (this.clock == null) {
+            return Clock.systemUTC();
+        }
+        return this.clock;
+    }
+
+    /**
+     * Sets the source of the current time. Tests can use a fixed or hand-moved clock, and managers taking writes at a
+     * high rate a CoarseClock.
+     *
+     * @param clock the clock.
+     * @return these options.
+     * @throws NullPointerException if the clock is null.
+     */
+    public ContactManagerOptions setClock(Clock clock) {
+        if (clock == null) {
+            throw new NullPointerException("Clock cannot be null.");
+        }
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Returns the directory holding the data file, the binary data file and the journal.
+     *
+     * @return the directory, or null for the working directory.
+     */
+    public File getDataDirectory() {
+        return this.dataDirectory;
+    }
+
+    /**
+     * Sets the directory holding the data file, the binary data file and the journal, e.g. a temporary directory for
+     * a benchmark, so that the data in the working directory is left alone.
+     *
+     * @param dataDirectory the directory.
+     * @return these options.
+     * @throws NullPointerException if the directory is null.
+     */
+    public ContactManagerOptions setDataDirectory(File dataDirectory) {
+        if (dataDirectory == null) {
+            throw new NullPointerException("Data directory cannot be null.");
+        }
+        this.dataDirectory = dataDirectory;
+        return this;
+    }
+}
@@ -0,0 +1,577 @@
+import java.util.*;
+
+/**
+ * ContactManagerSnapshot
+ *
+ * An immutable, versioned view of the contacts and meetings of a ContactManagerImpl, as they were when the view was
+ * published. Its indexes are never changed once published, so any number of threads can query it without locking,
+ * and a caller that keeps hold of one snapshot gets consistent answers across several queries (e.g. all the lists on
+ * a page) however many writes are published in the meantime.
+ *
+ * Versions are built from persistent structures that share what did not change. The meeting and contact indexes are
+ * PersistentTrieMaps, so a write batch copies only the trie paths to the IDs it changed, and each posting list and day
+ * bucket is a MeetingChunkList, so a changed meeting copies only the chunk it falls into, the tree nodes above that
+ * chunk and the trie path to that list. Names are searched through a PersistentContactNameIndex, which an added
+ * contact changes in the same way. Publishing a write batch therefore costs about the size of its changes times the
+ * depth of the structures, not the size of the whole data set.
+ *
+ * Contacts are shared with the manager, so notes added through Contact.addNotes() are visible in every version.
+ */
+public final class ContactManagerSnapshot {
+    private final long version;
+
+    // Meeting ID to meeting. Whether a meeting is past or future is held by the entry itself.
+    private final PersistentTrieMap<Meeting> meetings;
+
+    // Contact ID to contact. IDs are handed out in order of creation, so this is also the order of name searches.
+    private final PersistentTrieMap<Contact> contacts;
+
+    // Trigram postings and lower case names of the contacts, for name searches.
+    private final PersistentContactNameIndex nameIndex;
+
+    // Contact ID to that contact's future and past meetings in chronological order.
+    private final PersistentTrieMap<MeetingChunkList<Meeting>> futureMeetingsByContact;
+    private final PersistentTrieMap<MeetingChunkList<PastMeeting>> pastMeetingsByContact;
+
+    // Epoch day to the meetings held on that day in chronological order.
+    private final PersistentTrieMap<MeetingChunkList<Meeting>> meetingsByDay;
+
+    /**
+     * Constructor
+     * Note that it creates the empty version 0 that the first published version is derived from.
+     */
+    ContactManagerSnapshot() {
+        this(0, PersistentTrieMap.<Meeting>emptyIntMap(), PersistentTrieMap.<Contact>emptyIntMap(),
+                PersistentContactNameIndex.empty(),
+                PersistentTrieMap.<MeetingChunkList<Meeting>>emptyIntMap(),
+                PersistentTrieMap.<MeetingChunkList<PastMeeting>>emptyIntMap(),
+                PersistentTrieMap.<MeetingChunkList<Meeting>>emptyLongMap());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param version version number.
+     * @param meetings meeting index.
+     * @param contacts contact index.
+     * @param nameIndex contact name index.
+     * @param futureMeetingsByContact future meetings of each contact.
+     * @param pastMeetingsByContact past meetings of each contact.
+     * @param meetingsByDay meetings of each day.
+     */
+    private ContactManagerSnapshot(long version, PersistentTrieMap<Meeting> meetings,
+                                   PersistentTrieMap<Contact> contacts, PersistentContactNameIndex nameIndex,
+                                   PersistentTrieMap<MeetingChunkList<Meeting>> futureMeetingsByContact,
+                                   PersistentTrieMap<MeetingChunkList<PastMeeting>> pastMeetingsByContact,
+                                   PersistentTrieMap<MeetingChunkList<Meeting>> meetingsByDay) {
+        this.version = version;
+        this.meetings = meetings;
+        this.contacts = contacts;
+        this.nameIndex = nameIndex;
+        this.futureMeetingsByContact = futureMeetingsByContact;
+        this.pastMeetingsByContact = pastMeetingsByContact;
+        this.meetingsByDay = meetingsByDay;
+    }
+
+    /**
+     * Creates the next version by applying the changes of a write batch to this version's indexes.
+     *
+     * A changed meeting replaces the version of it held here, which has the same date and attendees, so the old
+     * version is taken out of the posting lists and day bucket it is in and the new one put into those it belongs to.
+     * The changes to each list are gathered first and applied in one pass.
+     *
+     * @param changedMeetings meetings added or replaced since this version.
+     * @param addedContacts contacts added since this version.
+     * @return the next version.
+     */
+    ContactManagerSnapshot next(Collection<Meeting> changedMeetings, Collection<Contact> addedContacts) {
+        PersistentTrieMap<Contact> nextContacts = this.contacts;
+        PersistentContactNameIndex nextNameIndex = this.nameIndex;
+        if (!addedContacts.isEmpty()) {
+            PersistentTrieMap.Editor<Contact> contactEditor = this.contacts.edit();
+            for (Contact contact : addedContacts) {
+                contactEditor.put(contact.getId(), contact);
+            }
+            nextContacts = contactEditor.toMap();
+            nextNameIndex = this.nameIndex.with(addedContacts, nextContacts);
+        }
+
+        if (changedMeetings.isEmpty()) {
+            return new ContactManagerSnapshot(this.version + 1, this.meetings, nextContacts, nextNameIndex,
+                    this.futureMeetingsByContact, this.pastMeetingsByContact, this.meetingsByDay);
+        }
+
+        // Sorting the changes once leaves the changes to each list in order as they are handed out.
+        List<Meeting> addedMeetings = new ArrayList<Meeting>(changedMeetings);
+        Collections.sort(addedMeetings, Meeting.CHRONOLOGICAL_ORDER);
+        List<Meeting> removedMeetings = new ArrayList<Meeting>();
+        PersistentTrieMap.Editor<Meeting> meetingEditor = this.meetings.edit();
+        for (Meeting meeting : addedMeetings) {
+            Meeting previous = meetingEditor.put(meeting.getId(), meeting);
+            if (previous != null) {
+                removedMeetings.add(previous);
+            }
+        }
+        Collections.sort(removedMeetings, Meeting.CHRONOLOGICAL_ORDER);
+
+        Map<Long, ListChanges<Meeting>> futureChanges = new HashMap<Long, ListChanges<Meeting>>();
+        Map<Long, ListChanges<PastMeeting>> pastChanges = new HashMap<Long, ListChanges<PastMeeting>>();
+        Map<Long, ListChanges<Meeting>> dayChanges = new HashMap<Long, ListChanges<Meeting>>();
+        for (Meeting meeting : removedMeetings) {
+            for (Contact attendee : meeting.getContacts()) {
+                if (meeting instanceof PastMeeting) {
+                    changesFor(pastChanges, attendee.getId()).removals.add(meeting);
+                } else {
+                    changesFor(futureChanges, attendee.getId()).removals.add(meeting);
+                }
+            }
+            changesFor(dayChanges, Utilities.meetingEpochDay(meeting)).removals.add(meeting);
+        }
+        for (Meeting meeting : addedMeetings) {
+            for (Contact attendee : meeting.getContacts()) {
+                if (meeting instanceof PastMeeting) {
+                    changesFor(pastChanges, attendee.getId()).additions.add((PastMeeting) meeting);
+                } else {
+                    changesFor(futureChanges, attendee.getId()).additions.add(meeting);
+                }
+            }
+            changesFor(dayChanges, Utilities.meetingEpochDay(meeting)).additions.add(meeting);
+        }
+
+        return new ContactManagerSnapshot(this.version + 1, meetingEditor.toMap(), nextContacts, nextNameIndex,
+                withChanges(this.futureMeetingsByContact, futureChanges),
+                withChanges(this.pastMeetingsByContact, pastChanges), withChanges(this.meetingsByDay, dayChanges));
+    }
+
+    /**
+     * Returns the version number. Every published version has a higher number than the one before.
+     *
+     * @return the version number.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the PAST meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     * @throws IllegalArgumentException if there is a meeting with that ID happening in the future.
+     */
+    public PastMeeting getPastMeeting(int id) {
+        Meeting meeting = this.meetings.get(id);
+
+        if (meeting instanceof FutureMeeting) {
+            throw new IllegalArgumentException("Meeting time is in the future.");
+        }
+        return (PastMeeting) meeting;
+    }
+
+    /**
+     * Returns the FUTURE meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     * @throws IllegalArgumentException if there is a meeting with that ID happening in the past.
+     */
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting meeting = this.meetings.get(id);
+
+        if (meeting instanceof PastMeeting) {
+            throw new IllegalArgumentException("Meeting time is in the past.");
+        }
+        return (FutureMeeting) meeting;
+    }
+
+    /**
+     * Returns the meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     */
+    public Meeting getMeeting(int id) {
+        return this.meetings.get(id);
+    }
+
+    /**
+     * Returns the list of future meetings scheduled with this contact, chronologically sorted.
+     *
+     * @param contact one of the user's contacts.
+     * @return the list of the future meeting(s) scheduled with this contact (maybe empty).
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        checkContactExists(contact);
+
+        return copyOf(this.futureMeetingsByContact.get(contact.getId()));
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, the specified date, chronologically
+     * sorted.
+     *
+     * @param date the date.
+     * @return the list of meetings.
+     */
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        return copyOf(this.meetingsByDay.get(Utilities.calendarToEpochDay(date)));
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, any day from one date to another,
+     * chronologically sorted.
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @return the list of meetings.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the arguments is null.
+     */
+    public List<Meeting> getMeetingList(Calendar from, Calendar to) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+
+        long fromDay = Utilities.calendarToEpochDay(from);
+        long toDay = Utilities.calendarToEpochDay(to);
+
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Start date is after end date.");
+        }
+
+        List<MeetingChunkList<Meeting>> days = new ArrayList<MeetingChunkList<Meeting>>();
+        for (MeetingChunkList<Meeting> dayBucket : this.meetingsByDay.values(fromDay, toDay)) {
+            days.add(dayBucket);
+        }
+
+        // Size the list up front so that it is allocated once.
+        int meetingCount = 0;
+        for (MeetingChunkList<Meeting> dayBucket : days) {
+            meetingCount += dayBucket.size();
+        }
+        List<Meeting> meetingsInRangeList = new ArrayList<Meeting>(meetingCount);
+        for (MeetingChunkList<Meeting> dayBucket : days) {
+            dayBucket.copyInto(meetingsInRangeList);
+        }
+        return meetingsInRangeList;
+    }
+
+    /**
+     * Returns the list of past meetings in which this contact has participated, chronologically sorted.
+     *
+     * @param contact one of the user's contacts.
+     * @return the list of past meeting(s) with this contact (maybe empty).
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        checkContactExists(contact);
+
+        return copyOf(this.pastMeetingsByContact.get(contact.getId()));
+    }
+
+    /**
+     * Returns a page of the future meetings scheduled with this contact, chronologically sorted.
+     *
+     * @param contact one of the user's contacts.
+     * @param after the last meeting of the previous page, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return up to limit future meetings that come after the given meeting.
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    public List<Meeting> getFutureMeetingList(Contact contact, Meeting after, int limit) {
+        checkContactExists(contact);
+
+        List<Meeting> page = new ArrayList<Meeting>();
+        copyPage(this.futureMeetingsByContact.get(contact.getId()), after, limit, page);
+        return page;
+    }
+
+    /**
+     * Returns a page of the meetings that are scheduled for, or that took place on, any day from one date to another,
+     * chronologically sorted.
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @param after the last meeting of the previous page, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return up to limit meetings in the range that come after the given meeting.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the dates is null.
+     */
+    public List<Meeting> getMeetingList(Calendar from, Calendar to, Meeting after, int limit) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+
+        long fromDay = Utilities.calendarToEpochDay(from);
+        long toDay = Utilities.calendarToEpochDay(to);
+
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Start date is after end date.");
+        }
+
+        // Days before the one of the last meeting returned are skipped without being visited.
+        List<Meeting> page = new ArrayList<Meeting>();
+        long startDay = after == null ? fromDay : Math.max(fromDay, Utilities.meetingEpochDay(after));
+        if (startDay > toDay) {
+            return page;
+        }
+        for (MeetingChunkList<Meeting> dayBucket : this.meetingsByDay.values(startDay, toDay)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            dayBucket.copyPageInto(after, limit - page.size(), page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns a page of the past meetings in which this contact has participated, chronologically sorted.
+     *
+     * @param contact one of the user's contacts.
+     * @param after the last meeting of the previous page, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return up to limit past meetings that come after the given meeting.
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    public List<PastMeeting> getPastMeetingList(Contact contact, Meeting after, int limit) {
+        checkContactExists(contact);
+
+        List<PastMeeting> page = new ArrayList<PastMeeting>();
+        copyPage(this.pastMeetingsByContact.get(contact.getId()), after, limit, page);
+        return page;
+    }
+
+    /**
+     * Returns an iterator over the future meetings scheduled with this contact, chronologically sorted, that reads
+     * them a page at a time.
+     *
+     * @param contact one of the user's contacts.
+     * @return the iterator.
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    public Iterator<Meeting> iterateFutureMeetings(final Contact contact) {
+        checkContactExists(contact);
+
+        return new PagedMeetingIterator<Meeting>() {
+            @Override
+            protected List<Meeting> fetchPage(Meeting after, int limit) {
+                return getFutureMeetingList(contact, after, limit);
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the meetings from one date to another, chronologically sorted, that reads them a page
+     * at a time.
+     *
+     * @param from the first date of the range (inclusive, only the date portion is used).
+     * @param to the last date of the range (inclusive, only the date portion is used).
+     * @return the iterator.
+     * @throws IllegalArgumentException if the first date is after the last date.
+     * @throws NullPointerException if any of the dates is null.
+     */
+    public Iterator<Meeting> iterateMeetings(final Calendar from, final Calendar to) {
+        // Checks the arguments now rather than on the first call to hasNext().
+        getMeetingList(from, to, null, 0);
+
+        return new PagedMeetingIterator<Meeting>() {
+            @Override
+            protected List<Meeting> fetchPage(Meeting after, int limit) {
+                return getMeetingList(from, to, after, limit);
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the past meetings in which this contact has participated, chronologically sorted, that
+     * reads them a page at a time.
+     *
+     * @param contact one of the user's contacts.
+     * @return the iterator.
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    public Iterator<PastMeeting> iteratePastMeetings(final Contact contact) {
+        checkContactExists(contact);
+
+        return new PagedMeetingIterator<PastMeeting>() {
+            @Override
+            protected List<PastMeeting> fetchPage(Meeting after, int limit) {
+                return getPastMeetingList(contact, after, limit);
+            }
+        };
+    }
+
+    /**
+     * Returns the contacts that correspond to the IDs.
+     *
+     * @param ids an arbitrary number of contact IDs.
+     * @return a set containing the contacts that correspond to the IDs.
+     * @throws IllegalArgumentException if any of the IDs does not correspond to a contact in this version.
+     */
+    public Set<Contact> getContacts(int... ids) {
+        Set<Contact> tempContactSet = new HashSet<Contact>();
+
+        for (int id : ids) {
+            Contact contact = this.contacts.get(id);
+            if (contact == null) {
+                throw new IllegalArgumentException("Not all IDs supplied exist.");
+            }
+            tempContactSet.add(contact);
+        }
+        return tempContactSet;
+    }
+
+    /**
+     * Returns the contacts whose name contains that string.
+     *
+     * @param name the string to search for.
+     * @return a set with the contacts whose name contains that string.
+     * @throws NullPointerException if the parameter is null.
+     */
+    public Set<Contact> getContacts(String name) {
+        if (name == null) {
+            throw new NullPointerException("Search string cannot be null.");
+        }
+        return getContacts(name, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns up to a number of contacts whose name contains that string (case-sensitive).
+     *
+     * @param name the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @return a set with the contacts whose name contains that string.
+     * @throws NullPointerException if the string is null.
+     */
+    public Set<Contact> getContacts(String name, int limit) {
+        Set<Contact> tempContactSet = new HashSet<Contact>();
+        this.nameIndex.findContaining(name, limit, tempContactSet);
+        return tempContactSet;
+    }
+
+    /**
+     * Returns up to a number of contacts whose name starts with that string, ignoring case.
+     *
+     * @param prefix the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @return a list with the contacts whose name starts with that string, in order of name.
+     * @throws NullPointerException if the string is null.
+     */
+    public List<Contact> getContactsByPrefix(String prefix, int limit) {
+        List<Contact> contactList = new ArrayList<Contact>();
+        this.nameIndex.findStartingWith(prefix, limit, contactList);
+        return contactList;
+    }
+
+    /**
+     * Returns the contact with the ID, if it is part of this version.
+     *
+     * @param id the contact ID.
+     * @return the contact, or null if there is none.
+     */
+    Contact getContact(int id) {
+        return this.contacts.get(id);
+    }
+
+    /**
+     * Returns a new list of the meetings in a posting list or day bucket, in chronological order.
+     *
+     * @param meetingList the meetings, or null for none.
+     * @return a modifiable list of the meetings.
+     */
+    private static <M extends Meeting> List<M> copyOf(MeetingChunkList<M> meetingList) {
+        if (meetingList == null) {
+            return new ArrayList<M>();
+        }
+        List<M> copy = new ArrayList<M>(meetingList.size());
+        meetingList.copyInto(copy);
+        return copy;
+    }
+
+    /**
+     * Copies up to a number of meetings that come after a given meeting from a posting list.
+     *
+     * @param meetingList the meetings, or null for none.
+     * @param after the last meeting of the previous page, or null to start with the first meeting.
+     * @param limit maximum number of meetings to copy.
+     * @param target list to add the meetings to.
+     */
+    private static <M extends Meeting> void copyPage(MeetingChunkList<M> meetingList, Meeting after, int limit,
+                                                     List<? super M> target) {
+        if (meetingList != null) {
+            meetingList.copyPageInto(after, limit, target);
+        }
+    }
+
+    /**
+     * Throws if the contact is not part of this version.
+     *
+     * @param contact the contact.
+     * @throws IllegalArgumentException if the contact does not exist in this version.
+     */
+    private void checkContactExists(Contact contact) {
+        if (!this.contacts.containsKey(contact.getId())) {
+            throw new IllegalArgumentException("Contact ID supplied does not exist.");
+        }
+    }
+
+    /**
+     * Returns the changes gathered for a list, creating them as needed.
+     *
+     * @param changes list key to changes.
+     * @param key the contact ID or epoch day of the list.
+     * @return the changes to the list.
+     */
+    private static <M extends Meeting> ListChanges<M> changesFor(Map<Long, ListChanges<M>> changes, long key) {
+        ListChanges<M> listChanges = changes.get(key);
+        if (listChanges == null) {
+            listChanges = new ListChanges<M>();
+            changes.put(key, listChanges);
+        }
+        return listChanges;
+    }
+
+    /**
+     * Returns an index of posting lists or day buckets with changes applied, or the index itself if nothing changed.
+     * Lists left empty are removed.
+     *
+     * @param meetingLists contact ID or epoch day to meetings index of this version.
+     * @param changes contact ID or epoch day to the changes to its list.
+     * @return the index for the next version.
+     */
+    private static <M extends Meeting> PersistentTrieMap<MeetingChunkList<M>> withChanges(
+            PersistentTrieMap<MeetingChunkList<M>> meetingLists, Map<Long, ListChanges<M>> changes) {
+        if (changes.isEmpty()) {
+            return meetingLists;
+        }
+
+        PersistentTrieMap.Editor<MeetingChunkList<M>> editor = meetingLists.edit();
+        for (Map.Entry<Long, ListChanges<M>> change : changes.entrySet()) {
+            long key = change.getKey();
+            MeetingChunkList<M> meetingList = editor.get(key);
+            if (meetingList == null) {
+                meetingList = MeetingChunkList.empty();
+            }
+
+            MeetingChunkList<M> nextMeetingList = meetingList.withChanges(change.getValue().removals,
+                    change.getValue().additions);
+            if (nextMeetingList.isEmpty()) {
+                editor.remove(key);
+            } else {
+                editor.put(key, nextMeetingList);
+            }
+        }
+        return editor.toMap();
+    }
+
+    /**
+     * The meetings a write batch takes out of and puts into one posting list or day bucket, each in chronological
+     * order.
+     */
+    private static final class ListChanges<M extends Meeting> {
+        private final List<Meeting> removals = new ArrayList<Meeting>();
+        private final List<M> additions = new ArrayList<M>();
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.*;
+
+/**
+ * ContactNameIndex
+ *
+ * An index of contact names for substring and prefix searches that does not scan every contact.
+ *
+ * Substring searches are case-sensitive, like String.contains(). Every name is split into its three character
+ * substrings (trigrams), each mapped to the contacts whose name contains it. A search looks up the trigrams of the
+ * search string and only checks the contacts of the rarest one. Search strings shorter than a trigram match so many
+ * names that a scan, stopped at the result limit, is just as fast.
+ *
+ * Prefix searches ignore case and use a sorted map of lower case names, so results come back in name order.
+ *
+ * Contacts can be added but not removed, which is all ContactManager supports. Not thread-safe.
+ */
+public class ContactNameIndex {
+    static final int GRAM_LENGTH = 3;
+
+    // Every contact, in the order added.
+    private List<Contact> contacts = null;
+
+    // Trigram hash to the contacts whose name contains the trigram. Trigrams with the same hash share an entry,
+    // which only adds candidates that are then ruled out by the contains() check.
+    private IntHashMap<Postings> contactsByGram = null;
+
+    // Lower case name to the contacts with that name.
+    private NavigableMap<String, List<Contact>> contactsByLowerCaseName = null;
+
+    /**
+     * Constructor
+     */
+    public ContactNameIndex() {
+        this.contacts = new ArrayList<Contact>();
+        this.contactsByGram = new IntHashMap<Postings>();
+        this.contactsByLowerCaseName = new TreeMap<String, List<Contact>>();
+    }
+
+    /**
+     * Adds a contact to the index.
+     *
+     * @param contact the contact.
+     */
+    public void add(Contact contact) {
+        String name = contact.getName();
+        this.contacts.add(contact);
+
+        for (int x = 0; x + GRAM_LENGTH <= name.length(); x++) {
+            int gram = gramHash(name, x);
+            Postings postings = this.contactsByGram.get(gram);
+            if (postings == null) {
+                postings = new Postings();
+                this.contactsByGram.put(gram, postings);
+            }
+            postings.add(contact);
+        }
+
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        List<Contact> sameName = this.contactsByLowerCaseName.get(lowerCaseName);
+        if (sameName == null) {
+            sameName = new ArrayList<Contact>(1);
+            this.contactsByLowerCaseName.put(lowerCaseName, sameName);
+        }
+        sameName.add(contact);
+    }
+
+    /**
+     * Finds contacts whose name contains the string, case-sensitively.
+     *
+     * @param text the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @param result collection the contacts found are added to.
+     */
+    public void findContaining(String text, int limit, Collection<? super Contact> result) {
+        List<Contact> candidates = this.contacts;
+        int candidateCount = this.contacts.size();
+
+        // Narrow the candidates down to the contacts of the rarest trigram of the search string.
+        if (text.length() >= GRAM_LENGTH) {
+            Postings rarest = null;
+            for (int x = 0; x + GRAM_LENGTH <= text.length(); x++) {
+                Postings postings = this.contactsByGram.get(gramHash(text, x));
+                if (postings == null) {
+                    return;
+                }
+                if (rarest == null || postings.size < rarest.size) {
+                    rarest = postings;
+                }
+            }
+            candidates = Arrays.asList(rarest.contacts);
+            candidateCount = rarest.size;
+        }
+
+        int found = 0;
+        for (int x = 0; x < candidateCount && found < limit; x++) {
+            Contact contact = candidates.get(x);
+            if (contact.getName().contains(text)) {
+                result.add(contact);
+                found++;
+            }
+        }
+    }
+
+    /**
+     * Finds contacts whose name starts with the string, ignoring case.
+     *
+     * @param prefix the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @param result collection the contacts found are added to, in order of name.
+     */
+    public void findStartingWith(String prefix, int limit, Collection<? super Contact> result) {
+        String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+        int found = 0;
+
+        for (Map.Entry<String, List<Contact>> entry
+                : this.contactsByLowerCaseName.tailMap(lowerCasePrefix, true).entrySet()) {
+            // Names sharing the prefix are next to each other, so the first one without it ends the search.
+            if (!entry.getKey().startsWith(lowerCasePrefix)) {
+                return;
+            }
+            for (Contact contact : entry.getValue()) {
+                if (found++ == limit) {
+                    return;
+                }
+                result.add(contact);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of contacts in the index.
+     *
+     * @return the number of contacts.
+     */
+    public int size() {
+        return this.contacts.size();
+    }
+
+    /**
+     * Hashes the trigram starting at a position.
+     *
+     * @param text the string.
+     * @param start position of the first character.
+     * @return the trigram hash.
+     */
+    static int gramHash(String text, int start) {
+        return (text.charAt(start) * 31 + text.charAt(start + 1)) * 31 + text.charAt(start + 2);
+    }
+
+    /**
+     * Growable array of the contacts with a trigram.
+     */
+    private static class Postings {
+        private Contact[] contacts = new Contact[4];
+        private int size = 0;
+
+        /**
+         * Adds a contact, unless it was the last one added. A name that contains a trigram more than once is added
+         * for each occurrence in turn, so this keeps the postings free of duplicates.
+         *
+         * @param contact the contact.
+         */
+        void add(Contact contact) {
+            if (this.size > 0 && this.contacts[this.size - 1] == contact) {
+                return;
+            }
+            if (this.size == this.contacts.length) {
+                this.contacts = Arrays.copyOf(this.contacts, this.size * 2);
+            }
+            this.contacts[this.size++] = contact;
+        }
+    }
+}
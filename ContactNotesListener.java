@@ -0,0 +1,13 @@
+/**
+ * ContactNotesListener
+ *
+ * Notified when notes are added to a contact, e.g. to keep an index of contact notes up to date.
+ */
+public interface ContactNotesListener {
+    /**
+     * Called after notes were added to a contact.
+     *
+     * @param contact the contact, holding its new notes.
+     */
+    void notesAdded(Contact contact);
+}
@@ -0,0 +1,361 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.ZoneId;
+
+/**
+ * CsvDataReader
+ *
+ * Streams records out of the CSV data file format written by ContactManagerImpl.
+ *
+ * Lines are tokenized by scanning for the delimiter characters rather than with String.split(), numbers and the fixed
+ * yyyy/MM/dd HH:mm:ss date format are parsed by hand, and attendees are handed on as contact IDs. A reader keeps
+ * scratch state, so each thread needs its own instance.
+ *
+ * Text fields are unescaped (see CsvDataWriter) once a FORMAT line of version ESCAPED_TEXT_VERSION or later has been
+ * read, or when the owner of the reader says so. Older files are read as they are.
+ */
+public class CsvDataReader {
+    // First FORMAT version whose text fields are escaped.
+    public static final int ESCAPED_TEXT_VERSION = 3;
+
+    private static final char DELIMITER = ContactManagerImpl.DELIMITER.charAt(0);
+    private static final char ATTENDEE_DELIMITER = ContactManagerImpl.ATTENDEE_DELIMITER.charAt(0);
+    private static final int[] NO_IDS = new int[0];
+
+    // PASTMEETING records have the most fields.
+    private static final int MAX_FIELDS = 5;
+
+    // Field boundaries of the line being parsed, reused from line to line.
+    private int[] fieldStarts = new int[MAX_FIELDS];
+    private int[] fieldEnds = new int[MAX_FIELDS];
+
+    private ZoneId zone = null;
+    private boolean escapedText = false;
+    private long malformedLines = 0;
+
+    /**
+     * Constructor
+     * Dates are read in the system default time zone.
+     */
+    public CsvDataReader() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param zone time zone the dates in the file are written in.
+     */
+    public CsvDataReader(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Reads every line from the reader and passes each record to the handler.
+     *
+     * @param in reader positioned at the start of the data.
+     * @param handler receiver of the records.
+     * @return the number of lines read.
+     * @throws IOException if reading fails.
+     */
+    public long read(BufferedReader in, DataRecordHandler handler) throws IOException {
+        long lines = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lines++;
+            parseLine(line, handler);
+        }
+        return lines;
+    }
+
+    /**
+     * Parses one line and passes its record to the handler.
+     *
+     * Lines that are not records, or whose fields cannot be parsed, are skipped and counted as malformed.
+     *
+     * @param line the line to parse.
+     * @param handler receiver of the record.
+     * @return true if the line held a record, otherwise false.
+     */
+    public boolean parseLine(String line, DataRecordHandler handler) {
+        int fieldCount = splitFields(line);
+
+        try {
+            if (fieldCount >= 4 && isField(line, 0, ContactManagerImpl.CONTACT_RECORD)) {
+                handler.contactRecord(parseInt(line, 1), textField(line, 2), textField(line, 3));
+                return true;
+            } else if (fieldCount >= 5 && isField(line, 0, ContactManagerImpl.PAST_MEETING_RECORD)) {
+                handler.pastMeetingRecord(parseInt(line, 1), parseDate(line, 2), textField(line, 3),
+                        parseIds(line, 4));
+                return true;
+            } else if (fieldCount >= 4 && isField(line, 0, ContactManagerImpl.FUTURE_MEETING_RECORD)) {
+                handler.futureMeetingRecord(parseInt(line, 1), parseDate(line, 2), parseIds(line, 3));
+                return true;
+            } else if (fieldCount >= 3 && isField(line, 0, ContactManagerImpl.MEETING_NOTES_RECORD)) {
+                handler.meetingNotesRecord(parseInt(line, 1), textField(line, 2));
+                return true;
+            } else if (fieldCount >= 3 && isField(line, 0, ContactManagerImpl.CONTACT_NOTES_RECORD)) {
+                handler.contactNotesRecord(parseInt(line, 1), textField(line, 2));
+                return true;
+            } else if (fieldCount == 2 && isField(line, 0, ContactManagerImpl.MEETING_SEQUENCE)) {
+                handler.meetingSequenceRecord(parseInt(line, 1));
+                return true;
+            } else if (fieldCount == 2 && isField(line, 0, SnapshotFile.FORMAT_RECORD)) {
+                // Checked by SnapshotFile.verify() before the file is read, it only says how the text is written.
+                this.escapedText = parseInt(line, 1) >= ESCAPED_TEXT_VERSION;
+                return false;
+            } else if (fieldCount == 2 && isField(line, 0, SnapshotFile.CHECKSUM_RECORD)) {
+                // Checked by SnapshotFile.verify() before the file is read, it carries no data.
+                return false;
+            }
+        } catch (IllegalArgumentException e) {
+            // Covers NumberFormatException as well as malformed dates.
+            System.out.println("Skipping malformed line in data file: " + line);
+        }
+
+        if (line.length() > 0) {
+            this.malformedLines++;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if text fields are unescaped.
+     *
+     * @return true if text fields are unescaped, otherwise false.
+     */
+    public boolean isEscapedText() {
+        return this.escapedText;
+    }
+
+    /**
+     * Sets whether text fields are unescaped, for readers that parse lines from the middle of a file whose FORMAT
+     * line they have not seen.
+     *
+     * @param escapedText true to unescape text fields.
+     */
+    public void setEscapedText(boolean escapedText) {
+        this.escapedText = escapedText;
+    }
+
+    /**
+     * Returns the version in a FORMAT line.
+     *
+     * @param line the line.
+     * @return the format version, or 0 if the line is not a FORMAT line.
+     */
+    public static int formatVersion(String line) {
+        String prefix = SnapshotFile.FORMAT_RECORD + ContactManagerImpl.DELIMITER;
+        if (!line.startsWith(prefix)) {
+            return 0;
+        }
+        try {
+            return parseInt(line, prefix.length(), line.length());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of non-empty lines skipped so far because they could not be parsed.
+     *
+     * @return the number of malformed lines.
+     */
+    public long getMalformedLines() {
+        return this.malformedLines;
+    }
+
+    /**
+     * Records the boundaries of up to MAX_FIELDS delimited fields. As with String.split(), anything after the last
+     * field we keep is ignored.
+     *
+     * @param line the line to split.
+     * @return the number of fields found.
+     */
+    private int splitFields(String line) {
+        int count = 0;
+        int start = 0;
+        int length = line.length();
+
+        while (count < MAX_FIELDS) {
+            int end = line.indexOf(DELIMITER, start);
+            if (end < 0) {
+                end = length;
+            }
+            this.fieldStarts[count] = start;
+            this.fieldEnds[count] = end;
+            count++;
+
+            if (end == length) {
+                break;
+            }
+            start = end + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if a field holds exactly the given text, without creating a substring.
+     *
+     * @param line the line.
+     * @param field index of the field.
+     * @param text the text to compare with.
+     * @return true if the field equals the text, otherwise false.
+     */
+    private boolean isField(String line, int field, String text) {
+        int start = this.fieldStarts[field];
+        return this.fieldEnds[field] - start == text.length() && line.regionMatches(start, text, 0, text.length());
+    }
+
+    /**
+     * Returns a text field as a string, unescaped if the file escapes its text.
+     *
+     * @param line the line.
+     * @param field index of the field.
+     * @return the field text.
+     * @throws IllegalArgumentException if the field ends in an escape or holds an unknown one.
+     */
+    private String textField(String line, int field) {
+        int start = this.fieldStarts[field];
+        int end = this.fieldEnds[field];
+        int escape = line.indexOf(CsvDataWriter.ESCAPE, start);
+
+        if (!this.escapedText || escape < 0 || escape >= end) {
+            return line.substring(start, end);
+        }
+
+        StringBuilder text = new StringBuilder(end - start);
+        text.append(line, start, escape);
+        for (int x = escape; x < end; x++) {
+            char c = line.charAt(x);
+            if (c != CsvDataWriter.ESCAPE) {
+                text.append(c);
+                continue;
+            }
+
+            if (++x == end) {
+                throw new IllegalArgumentException("Unfinished escape in data file.");
+            }
+            c = line.charAt(x);
+            if (c == CsvDataWriter.ESCAPE) {
+                text.append(CsvDataWriter.ESCAPE);
+            } else if (c == CsvDataWriter.ESCAPED_DELIMITER) {
+                text.append(DELIMITER);
+            } else if (c == CsvDataWriter.ESCAPED_ATTENDEE_DELIMITER) {
+                text.append(ATTENDEE_DELIMITER);
+            } else if (c == 'n') {
+                text.append('\n');
+            } else if (c == 'r') {
+                text.append('\r');
+            } else {
+                throw new IllegalArgumentException("Unknown escape in data file: " + CsvDataWriter.ESCAPE + c);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parses a field as an int.
+     *
+     * @param line the line.
+     * @param field index of the field.
+     * @return the parsed value.
+     * @throws NumberFormatException if the field is not a number.
+     */
+    private int parseInt(String line, int field) {
+        return parseInt(line, this.fieldStarts[field], this.fieldEnds[field]);
+    }
+
+    /**
+     * Parses a field as a yyyy/MM/dd HH:mm:ss date.
+     *
+     * @param line the line.
+     * @param field index of the field.
+     * @return the date as milliseconds since the epoch.
+     * @throws IllegalArgumentException if the field is not a valid date.
+     */
+    private long parseDate(String line, int field) {
+        return Utilities.parseDateTimeMillis(line, this.fieldStarts[field], this.fieldEnds[field], this.zone);
+    }
+
+    /**
+     * Parses a field holding a list of contact IDs separated by the attendee delimiter.
+     *
+     * @param line the line.
+     * @param field index of the field.
+     * @return the contact IDs.
+     * @throws NumberFormatException if any of the IDs is not a number.
+     */
+    private int[] parseIds(String line, int field) {
+        int start = this.fieldStarts[field];
+        int end = this.fieldEnds[field];
+
+        if (start == end) {
+            return NO_IDS;
+        }
+
+        // Count the IDs first so the array is allocated once at its final size.
+        int count = 1;
+        for (int x = start; x < end; x++) {
+            if (line.charAt(x) == ATTENDEE_DELIMITER) {
+                count++;
+            }
+        }
+
+        int[] ids = new int[count];
+        int idStart = start;
+        for (int x = 0; x < count; x++) {
+            int idEnd = line.indexOf(ATTENDEE_DELIMITER, idStart);
+            if (idEnd < 0 || idEnd > end) {
+                idEnd = end;
+            }
+            ids[x] = parseInt(line, idStart, idEnd);
+            idStart = idEnd + 1;
+        }
+        return ids;
+    }
+
+    /**
+     * Parses a decimal int from part of a string.
+     *
+     * @param text the text.
+     * @param start index of the first character.
+     * @param end index after the last character.
+     * @return the parsed value.
+     * @throws NumberFormatException if the text is not a number.
+     */
+    static int parseInt(CharSequence text, int start, int end) {
+        boolean negative = false;
+        int x = start;
+
+        if (x < end && text.charAt(x) == '-') {
+            negative = true;
+            x++;
+        }
+        if (x == end) {
+            throw new NumberFormatException("Empty number in data file.");
+        }
+
+        // Accumulate negatively so Integer.MIN_VALUE can be represented.
+        long value = 0;
+        for (; x < end; x++) {
+            int digit = text.charAt(x) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Bad number in data file: " + text.subSequence(start, end));
+            }
+            value = value * 10 - digit;
+            if (value < Integer.MIN_VALUE) {
+                throw new NumberFormatException("Number out of range in data file: " + text.subSequence(start, end));
+            }
+        }
+
+        if (!negative) {
+            if (value == Integer.MIN_VALUE) {
+                throw new NumberFormatException("Number out of range in data file: " + text.subSequence(start, end));
+            }
+            value = -value;
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZoneId;
+
+/**
+ * CsvDataWriter
+ *
+ * Writes records in the CSV data file format read by CsvDataReader, one line per record.
+ *
+ * Each line is built in a reused StringBuilder and handed to the underlying writer in one call. The writer is not
+ * flushed or closed here, that is left to the owner of the stream.
+ *
+ * Text fields are escaped, so that names and notes may hold the delimiters and line ends: a backslash is written as
+ * \\, the delimiter as \a, the attendee delimiter as \p, and line feeds and carriage returns as \n and \r. Readers
+ * only unescape files and journals that say so in their FORMAT line, see CsvDataReader.ESCAPED_TEXT_VERSION.
+ */
+public class CsvDataWriter {
+    static final char ESCAPE = '\\';
+    static final char ESCAPED_DELIMITER = 'a';
+    static final char ESCAPED_ATTENDEE_DELIMITER = 'p';
+
+    private static final char DELIMITER = ContactManagerImpl.DELIMITER.charAt(0);
+    private static final char ATTENDEE_DELIMITER = ContactManagerImpl.ATTENDEE_DELIMITER.charAt(0);
+
+    private Writer out = null;
+    private StringBuilder line = new StringBuilder(256);
+    private long linesWritten = 0;
+    private ZoneId zone = null;
+
+    /**
+     * Constructor
+     * Dates are written in the system default time zone.
+     *
+     * @param out writer to write lines to.
+     */
+    public CsvDataWriter(Writer out) {
+        this(out, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param out writer to write lines to.
+     * @param zone time zone to write the dates in.
+     */
+    public CsvDataWriter(Writer out, ZoneId zone) {
+        this.out = out;
+        this.zone = zone;
+    }
+
+    /**
+     * Writes a CONTACT record.
+     *
+     * @param contact the contact.
+     * @throws IOException if writing fails.
+     */
+    public void writeContact(Contact contact) throws IOException {
+        startRecord(ContactManagerImpl.CONTACT_RECORD);
+        appendField(contact.getId());
+        appendTextField(contact.getName());
+        appendTextField(contact.getNotes());
+        endRecord();
+    }
+
+    /**
+     * Writes a PASTMEETING record.
+     *
+     * @param meeting the past meeting.
+     * @throws IOException if writing fails.
+     */
+    public void writePastMeeting(PastMeeting meeting) throws IOException {
+        startRecord(ContactManagerImpl.PAST_MEETING_RECORD);
+        appendField(meeting.getId());
+        appendDateField(Utilities.meetingTimeMillis(meeting));
+        appendTextField(meeting.getNotes());
+        appendAttendees(meeting);
+        endRecord();
+    }
+
+    /**
+     * Writes a FUTUREMEETING record.
+     *
+     * @param meeting the future meeting.
+     * @throws IOException if writing fails.
+     */
+    public void writeFutureMeeting(FutureMeeting meeting) throws IOException {
+        startRecord(ContactManagerImpl.FUTURE_MEETING_RECORD);
+        appendField(meeting.getId());
+        appendDateField(Utilities.meetingTimeMillis(meeting));
+        appendAttendees(meeting);
+        endRecord();
+    }
+
+    /**
+     * Writes a MEETINGNOTES record, which sets the notes of a meeting and makes it a past meeting.
+     *
+     * @param id ID of the meeting.
+     * @param notes meeting notes text.
+     * @throws IOException if writing fails.
+     */
+    public void writeMeetingNotes(int id, String notes) throws IOException {
+        startRecord(ContactManagerImpl.MEETING_NOTES_RECORD);
+        appendField(id);
+        appendTextField(notes);
+        endRecord();
+    }
+
+    /**
+     * Writes a CONTACTNOTES record, which sets the notes of a contact.
+     *
+     * @param id ID of the contact.
+     * @param notes every note about the contact, as returned by Contact.getNotes().
+     * @throws IOException if writing fails.
+     */
+    public void writeContactNotes(int id, String notes) throws IOException {
+        startRecord(ContactManagerImpl.CONTACT_NOTES_RECORD);
+        appendField(id);
+        appendTextField(notes);
+        endRecord();
+    }
+
+    /**
+     * Writes a MEETINGSEQUENCE record.
+     *
+     * @param nextId the next meeting ID to allocate.
+     * @throws IOException if writing fails.
+     */
+    public void writeMeetingSequence(int nextId) throws IOException {
+        startRecord(ContactManagerImpl.MEETING_SEQUENCE);
+        appendField(nextId);
+        endRecord();
+    }
+
+    /**
+     * Returns the number of lines written so far.
+     *
+     * @return the number of lines written.
+     */
+    public long getLinesWritten() {
+        return this.linesWritten;
+    }
+
+    /**
+     * Starts a new line with the record type.
+     *
+     * @param recordType the record type.
+     */
+    private void startRecord(String recordType) {
+        this.line.setLength(0);
+        this.line.append(recordType);
+    }
+
+    /**
+     * Appends a delimited text field, escaping the characters that would end the field or the line.
+     *
+     * @param value field value.
+     */
+    private void appendTextField(String value) {
+        this.line.append(DELIMITER);
+        if (value == null) {
+            this.line.append(value);
+            return;
+        }
+
+        for (int x = 0; x < value.length(); x++) {
+            char c = value.charAt(x);
+            if (c == ESCAPE) {
+                this.line.append(ESCAPE).append(ESCAPE);
+            } else if (c == DELIMITER) {
+                this.line.append(ESCAPE).append(ESCAPED_DELIMITER);
+            } else if (c == ATTENDEE_DELIMITER) {
+                this.line.append(ESCAPE).append(ESCAPED_ATTENDEE_DELIMITER);
+            } else if (c == '\n') {
+                this.line.append(ESCAPE).append('n');
+            } else if (c == '\r') {
+                this.line.append(ESCAPE).append('r');
+            } else {
+                this.line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Appends a delimited date field, formatted straight into the line.
+     *
+     * @param dateMillis date as milliseconds since the epoch.
+     */
+    private void appendDateField(long dateMillis) {
+        Utilities.appendDateTime(this.line.append(ContactManagerImpl.DELIMITER), dateMillis, this.zone);
+    }
+
+    /**
+     * Appends a delimited int field.
+     *
+     * @param value field value.
+     */
+    private void appendField(int value) {
+        this.line.append(ContactManagerImpl.DELIMITER).append(value);
+    }
+
+    /**
+     * Appends the delimited list of attendee IDs as one field.
+     *
+     * @param meeting the meeting.
+     */
+    private void appendAttendees(Meeting meeting) {
+        this.line.append(ContactManagerImpl.DELIMITER);
+
+        // IDs are read without looking up the contacts, which may not be indexed yet (e.g. an import being journaled).
+        int[] attendeeIds = Utilities.attendeeIds(meeting);
+        for (int x = 0; x < attendeeIds.length; x++) {
+            if (x > 0) {
+                this.line.append(ContactManagerImpl.ATTENDEE_DELIMITER);
+            }
+            this.line.append(attendeeIds[x]);
+        }
+    }
+
+    /**
+     * Ends the line and writes it.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void endRecord() throws IOException {
+        this.line.append(System.lineSeparator());
+        this.out.append(this.line);
+        this.linesWritten++;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * DataFileGenerator
+ *
+ * Writes a synthetic data file in the CSV format read by ContactManagerImpl, for load benchmarks.
+ *
+ * Usage: java DataFileGenerator [contacts] [meetings] [attendees per meeting] [past meeting ratio] [-dir=DIR] [-load]
+ *
+ * The file is written to contacts.txt in DIR, or in a new temporary directory if no DIR is given, so that the data
+ * file in the working directory is never overwritten by accident. With -load, it is then loaded by a new
+ * ContactManagerImpl and the load statistics (including lines/sec) are printed.
+ */
+public class DataFileGenerator {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private int contactCount = 10000;
+    private int meetingCount = 50000;
+    private int attendeesPerMeeting = 4;
+    private double pastMeetingRatio = 0.5;
+    private long seed = 42;
+
+    /**
+     * Constructor
+     *
+     * @param contactCount number of contacts to generate.
+     * @param meetingCount number of meetings to generate.
+     * @param attendeesPerMeeting number of attendees per meeting (capped at the number of contacts).
+     * @param pastMeetingRatio fraction of the meetings that are past meetings.
+     * @param seed random seed, so that the same arguments always give the same file.
+     */
+    public DataFileGenerator(int contactCount, int meetingCount, int attendeesPerMeeting, double pastMeetingRatio,
+                             long seed) {
+        this.contactCount = contactCount;
+        this.meetingCount = meetingCount;
+        this.attendeesPerMeeting = Math.min(attendeesPerMeeting, contactCount);
+        this.pastMeetingRatio = pastMeetingRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the data file described by the command line arguments.
+     *
+     * @param args see class description.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] numbers = {10000, 50000, 4};
+        double pastMeetingRatio = 0.5;
+        boolean load = false;
+        File directory = null;
+
+        int position = 0;
+        for (String arg : args) {
+            if (arg.equals("-load")) {
+                load = true;
+            } else if (arg.startsWith("-dir=")) {
+                directory = new File(arg.substring("-dir=".length()));
+            } else if (position < numbers.length) {
+                numbers[position++] = Integer.parseInt(arg);
+            } else {
+                pastMeetingRatio = Double.parseDouble(arg);
+            }
+        }
+
+        if (directory == null) {
+            directory = Files.createTempDirectory("contacts").toFile();
+        }
+        File file = new File(directory, ContactManagerImpl.DATA_FILE);
+        DataFileGenerator generator = new DataFileGenerator(numbers[0], numbers[1], numbers[2], pastMeetingRatio, 42);
+
+        long startTime = System.nanoTime();
+        long lines = generator.write(file);
+        System.out.printf("Wrote %d lines (%d bytes) to %s in %.1f ms.%n",
+                lines, file.length(), file, (System.nanoTime() - startTime) / 1e6);
+
+        if (load) {
+            ContactManagerImpl contactManager =
+                    new ContactManagerImpl(new ContactManagerOptions().setDataDirectory(directory));
+            System.out.println(contactManager.getLastLoadStatistics());
+        }
+    }
+
+    /**
+     * Writes the contacts, then the meetings, then the meeting ID sequence.
+     *
+     * @param file file to write.
+     * @return the number of lines written.
+     * @throws IOException if the file cannot be written.
+     */
+    public long write(File file) throws IOException {
+        Random random = new Random(this.seed);
+        SimpleDateFormat dateFormatter = new SimpleDateFormat(Utilities.DATE_FORMAT);
+        Calendar now = Calendar.getInstance();
+        StringBuilder line = new StringBuilder(128);
+        long lines = 0;
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), ContactManagerImpl.DATA_FILE_CHARSET), 1 << 16));
+        try {
+            for (int id = 1; id <= this.contactCount; id++) {
+                line.setLength(0);
+                line.append(ContactManagerImpl.CONTACT_RECORD).append(ContactManagerImpl.DELIMITER)
+                        .append(id).append(ContactManagerImpl.DELIMITER)
+                        .append("Contact ").append(id).append(ContactManagerImpl.DELIMITER)
+                        .append("Generated contact number ").append(id).append('.');
+                out.println(line);
+                lines++;
+            }
+
+            for (int id = 1; id <= this.meetingCount; id++) {
+                boolean past = random.nextDouble() < this.pastMeetingRatio;
+
+                // Past meetings fall within the last five years, future ones within the next two.
+                long offsetMillis = (long) (random.nextDouble() * (past ? 5 * 365 : 2 * 365) * DAY_MILLIS) + 60000;
+                String date = dateFormatter.format(now.getTimeInMillis() + (past ? -offsetMillis : offsetMillis));
+
+                line.setLength(0);
+                line.append(past ? ContactManagerImpl.PAST_MEETING_RECORD : ContactManagerImpl.FUTURE_MEETING_RECORD)
+                        .append(ContactManagerImpl.DELIMITER).append(id)
+                        .append(ContactManagerImpl.DELIMITER).append(date);
+                if (past) {
+                    line.append(ContactManagerImpl.DELIMITER).append("Notes for meeting ").append(id).append('.');
+                }
+                line.append(ContactManagerImpl.DELIMITER);
+                appendAttendees(line, random);
+                out.println(line);
+                lines++;
+            }
+
+            out.println(ContactManagerImpl.MEETING_SEQUENCE + ContactManagerImpl.DELIMITER + (this.meetingCount + 1));
+            lines++;
+        } finally {
+            out.close();
+        }
+
+        if (out.checkError()) {
+            throw new IOException("Could not write " + file);
+        }
+        return lines;
+    }
+
+    /**
+     * Appends distinct random attendee IDs separated by the attendee delimiter.
+     *
+     * @param line line being built.
+     * @param random random number source.
+     */
+    private void appendAttendees(StringBuilder line, Random random) {
+        int[] chosen = new int[this.attendeesPerMeeting];
+
+        for (int x = 0; x < chosen.length; x++) {
+            int id;
+            boolean duplicate;
+            do {
+                id = random.nextInt(this.contactCount) + 1;
+                duplicate = false;
+                for (int y = 0; y < x; y++) {
+                    if (chosen[y] == id) {
+                        duplicate = true;
+                    }
+                }
+            } while (duplicate);
+            chosen[x] = id;
+
+            if (x > 0) {
+                line.append(ContactManagerImpl.ATTENDEE_DELIMITER);
+            }
+            line.append(id);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * DataJournal
+ *
+ * An append-only journal of changes made since the data file snapshot was last written.
+ *
+ * Changes are appended as CSV records (the same CONTACT, PASTMEETING and FUTUREMEETING records as the snapshot, plus
+ * MEETINGNOTES and CONTACTNOTES records). On startup the snapshot is loaded first and the journal is then replayed
+ * over it.
+ *
+ * A journal starts with the same FORMAT line as the snapshot, so that its escaped text is read back as written. Each
+ * line is prefixed with the CRC-32 of the record, as 8 hex digits and a space. A crash can leave the last record cut
+ * short or half written, so a last record that is unfinished or fails its checksum is dropped, and cut off so that
+ * later records start on a line of their own. A damaged record before the last one cannot be explained by a crash, so
+ * the journal is then refused.
+ *
+ * Journals without checksums were written before text was escaped, and must be compacted away rather than appended
+ * to.
+ */
+public class DataJournal {
+    // 8 hex digits and a space.
+    private static final int CHECKSUM_PREFIX_LENGTH = 9;
+
+    private File file = null;
+    private FileOutputStream stream = null;
+    private Writer out = null;
+    private CsvDataWriter writer = null;
+    private long recordCount = 0;
+    private boolean legacyFormat = false;
+
+    /**
+     * Constructor
+     *
+     * @param file the journal file.
+     */
+    public DataJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal file.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Replays the records in the journal, if there is one, and counts them towards the journal size.
+     *
+     * A damaged last record is dropped and cut off the journal.
+     *
+     * @param handler receiver of the records.
+     * @return the number of records replayed.
+     * @throws IOException if the journal cannot be read, or a record before the last one is damaged.
+     */
+    public long replay(DataRecordHandler handler) throws IOException {
+        if (!this.file.exists()) {
+            return 0;
+        }
+
+        CsvDataReader reader = new CsvDataReader();
+        ByteArrayOutputStream lineBytes = new ByteArrayOutputStream(256);
+        long lines = 0;
+        long records = 0;
+        boolean checksummed = false;
+
+        // Length of the journal up to the end of the last good line.
+        long goodLength = 0;
+        String damage = null;
+
+        InputStream in = new BufferedInputStream(new FileInputStream(this.file), 1 << 16);
+        try {
+            int b = in.read();
+            while (b >= 0) {
+                lineBytes.reset();
+                while (b >= 0 && b != '\n') {
+                    lineBytes.write(b);
+                    b = in.read();
+                }
+                boolean finished = b == '\n';
+                long lineEnd = goodLength + lineBytes.size() + (finished ? 1 : 0);
+                b = in.read();
+
+                byte[] bytes = lineBytes.toByteArray();
+                int length = bytes.length;
+                if (length > 0 && bytes[length - 1] == '\r') {
+                    length--;
+                }
+
+                // The first line tells a checksummed journal from an older one.
+                if (lines == 0) {
+                    checksummed = hasChecksumPrefix(bytes, length);
+                }
+                if (!finished) {
+                    damage = "unfinished";
+                    break;
+                }
+
+                int start = 0;
+                if (checksummed) {
+                    if (!checksumMatches(bytes, length)) {
+                        if (b >= 0) {
+                            throw new IOException(this.file + " is damaged: the checksum of line " + (lines + 1)
+                                    + " does not match its record.");
+                        }
+                        damage = "damaged";
+                        break;
+                    }
+                    start = CHECKSUM_PREFIX_LENGTH;
+                }
+
+                lines++;
+                if (reader.parseLine(new String(bytes, start, length - start, ContactManagerImpl.DATA_FILE_CHARSET),
+                        handler)) {
+                    records++;
+                }
+                goodLength = lineEnd;
+            }
+        } finally {
+            in.close();
+        }
+
+        if (damage != null) {
+            System.out.println("Dropping " + damage + " last record of " + this.file + ".");
+            truncate(goodLength);
+        }
+
+        this.recordCount += records;
+        this.legacyFormat = lines > 0 && !checksummed;
+        return records;
+    }
+
+    /**
+     * Checks if the replayed journal predates checksums and escaped text. Records appended to it would be read back
+     * wrongly, so the owner should compact it first.
+     *
+     * @return true if the journal has records without checksums, otherwise false.
+     */
+    public boolean isLegacyFormat() {
+        return this.legacyFormat;
+    }
+
+    /**
+     * Returns a writer that appends records to the journal, opening the journal if needed.
+     *
+     * Records are buffered until sync() is called.
+     *
+     * @return the record writer.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public CsvDataWriter append() throws IOException {
+        if (this.writer == null) {
+            this.stream = new FileOutputStream(this.file, true);
+            this.out = new ChecksummedLineWriter(new BufferedOutputStream(this.stream, 1 << 16));
+            if (this.stream.getChannel().size() == 0) {
+                this.out.write(SnapshotFile.FORMAT_RECORD + ContactManagerImpl.DELIMITER + SnapshotFile.FORMAT_VERSION
+                        + "\n");
+            }
+            this.writer = new CsvDataWriter(this.out);
+        }
+        this.recordCount++;
+        return this.writer;
+    }
+
+    /**
+     * Writes out buffered records and forces them to the storage device.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void sync() throws IOException {
+        if (this.writer != null) {
+            this.out.flush();
+            this.stream.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Returns the number of records in the journal.
+     *
+     * @return the number of records.
+     */
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Empties the journal. Only to be called once a snapshot holding every journaled change is safely on disk.
+     *
+     * @throws IOException if the journal cannot be removed.
+     */
+    public void reset() throws IOException {
+        close();
+        if (this.file.exists() && !this.file.delete()) {
+            throw new IOException("Could not remove journal " + this.file);
+        }
+        this.recordCount = 0;
+        this.legacyFormat = false;
+    }
+
+    /**
+     * Syncs and closes the journal. It is reopened by the next append().
+     *
+     * @throws IOException if writing fails.
+     */
+    public void close() throws IOException {
+        if (this.writer != null) {
+            try {
+                sync();
+            } finally {
+                this.out.close();
+                this.writer = null;
+                this.out = null;
+                this.stream = null;
+            }
+        }
+    }
+
+    /**
+     * Cuts the journal off after its last good line and forces the change to disk.
+     *
+     * @param length length of the journal up to the end of its last good line.
+     * @throws IOException if the journal cannot be written.
+     */
+    private void truncate(long length) throws IOException {
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE);
+        try {
+            channel.truncate(length);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Checks if a line starts with a checksum prefix, whether or not it matches.
+     *
+     * @param bytes the line.
+     * @param length length of the line without its line end.
+     * @return true if the line starts with 8 hex digits and a space, otherwise false.
+     */
+    private static boolean hasChecksumPrefix(byte[] bytes, int length) {
+        if (length < CHECKSUM_PREFIX_LENGTH || bytes[CHECKSUM_PREFIX_LENGTH - 1] != ' ') {
+            return false;
+        }
+        for (int x = 0; x < CHECKSUM_PREFIX_LENGTH - 1; x++) {
+            if (Character.digit(bytes[x], 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the checksum prefix of a line matches the record after it.
+     *
+     * @param bytes the line.
+     * @param length length of the line without its line end.
+     * @return true if the checksum matches, otherwise false.
+     */
+    private static boolean checksumMatches(byte[] bytes, int length) {
+        if (!hasChecksumPrefix(bytes, length)) {
+            return false;
+        }
+
+        long recorded = 0;
+        for (int x = 0; x < CHECKSUM_PREFIX_LENGTH - 1; x++) {
+            recorded = recorded << 4 | Character.digit(bytes[x], 16);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, CHECKSUM_PREFIX_LENGTH, length - CHECKSUM_PREFIX_LENGTH);
+        return crc.getValue() == recorded;
+    }
+
+    /**
+     * Writer that encodes each line as UTF-8 and writes it with the CRC-32 of its bytes in front. A carriage return
+     * before the line end is dropped. Characters are held until their line is finished.
+     */
+    private static class ChecksummedLineWriter extends Writer {
+        private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(ContactManagerImpl.DATA_FILE_CHARSET);
+
+        private OutputStream out = null;
+        private StringBuilder line = new StringBuilder(256);
+        private byte[] prefix = new byte[CHECKSUM_PREFIX_LENGTH];
+        private CRC32 crc = new CRC32();
+
+        ChecksummedLineWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            for (int x = offset; x < offset + length; x++) {
+                char c = chars[x];
+                if (c == '\n') {
+                    writeLine();
+                } else if (c != '\r') {
+                    this.line.append(c);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+
+        /**
+         * Writes the finished line with its checksum and a '\n'.
+         *
+         * @throws IOException if writing fails.
+         */
+        private void writeLine() throws IOException {
+            byte[] bytes = this.line.toString().getBytes(ContactManagerImpl.DATA_FILE_CHARSET);
+            this.line.setLength(0);
+
+            this.crc.reset();
+            this.crc.update(bytes, 0, bytes.length);
+            long checksum = this.crc.getValue();
+            for (int x = 0; x < CHECKSUM_PREFIX_LENGTH - 1; x++) {
+                this.prefix[x] = HEX_DIGITS[(int) (checksum >>> (28 - 4 * x)) & 0xf];
+            }
+            this.prefix[CHECKSUM_PREFIX_LENGTH - 1] = ' ';
+
+            this.out.write(this.prefix);
+            this.out.write(bytes);
+            this.out.write('\n');
+        }
+    }
+}
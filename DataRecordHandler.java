@@ -0,0 +1,61 @@
+/**
+ * Receives the records read from a data file, one call per record, in file order.
+ *
+ * Attendees are passed as contact IDs so that the receiver can resolve them through its own contact index.
+ */
+public interface DataRecordHandler {
+    /**
+     * Called for a CONTACT record.
+     *
+     * @param id ID of the contact.
+     * @param name the name of the contact.
+     * @param notes notes about the contact.
+     */
+    void contactRecord(int id, String name, String notes);
+
+    /**
+     * Called for a PASTMEETING record.
+     *
+     * @param id ID of the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param notes meeting notes text.
+     * @param attendeeIds contact IDs of the attendees.
+     */
+    void pastMeetingRecord(int id, long dateMillis, String notes, int[] attendeeIds);
+
+    /**
+     * Called for a FUTUREMEETING record.
+     *
+     * @param id ID of the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param attendeeIds contact IDs of the attendees.
+     */
+    void futureMeetingRecord(int id, long dateMillis, int[] attendeeIds);
+
+    /**
+     * Called for a MEETINGNOTES record, which sets the notes of a meeting and makes it a past meeting.
+     *
+     * These records are only written to the journal.
+     *
+     * @param id ID of the meeting.
+     * @param notes meeting notes text.
+     */
+    void meetingNotesRecord(int id, String notes);
+
+    /**
+     * Called for a CONTACTNOTES record, which sets the notes of a contact to every note added so far.
+     *
+     * These records are only written to the journal.
+     *
+     * @param id ID of the contact.
+     * @param notes notes about the contact.
+     */
+    void contactNotesRecord(int id, String notes);
+
+    /**
+     * Called for a MEETINGSEQUENCE record.
+     *
+     * @param nextId the next meeting ID to allocate.
+     */
+    void meetingSequenceRecord(int nextId);
+}
@@ -0,0 +1,145 @@
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * DateCodecBenchmark
+ *
+ * Measures how fast meeting dates are written and read in the yyyy/MM/dd HH:mm:ss format of the data file, in three
+ * ways:
+ *   SimpleDateFormat   a new SimpleDateFormat per call, as Utilities used to do.
+ *   DateTimeFormatter  one shared DateTimeFormatter, with ZonedDateTime.
+ *   Utilities          Utilities.appendDateTime() and parseDateTimeMillis(), as the loader and saver now do.
+ *
+ * Usage: java DateCodecBenchmark [dates]
+ *
+ * The default is 1,000,000 random dates over the ten years from 2010, in the default time zone. Each measurement is
+ * repeated and the median time and allocation per date are reported.
+ */
+public class DateCodecBenchmark {
+    private static final int ROUNDS = 7;
+
+    // Results are added here so that the JIT cannot drop the calls that produce them.
+    private static volatile long sink = 0;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        final ZoneId zone = ZoneId.systemDefault();
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Utilities.DATE_FORMAT);
+        final long[] dates = new long[count];
+        final String[] texts = new String[count];
+        Random random = new Random(42);
+        for (int x = 0; x < count; x++) {
+            dates[x] = 1262304000000L + (long) (random.nextDouble() * 3652) * 24 * 60 * 60 * 1000
+                    + random.nextInt(24 * 60 * 60) * 1000L;
+            texts[x] = Utilities.millisToString(dates[x], zone);
+        }
+
+        report("format, SimpleDateFormat", count, new Runnable() {
+            @Override
+            public void run() {
+                long result = 0;
+                for (long date : dates) {
+                    result += new SimpleDateFormat(Utilities.DATE_FORMAT).format(new Date(date)).length();
+                }
+                sink += result;
+            }
+        });
+        report("format, DateTimeFormatter", count, new Runnable() {
+            @Override
+            public void run() {
+                long result = 0;
+                for (long date : dates) {
+                    result += formatter.format(Instant.ofEpochMilli(date).atZone(zone)).length();
+                }
+                sink += result;
+            }
+        });
+        report("format, Utilities.appendDateTime", count, new Runnable() {
+            @Override
+            public void run() {
+                // Appended to a reused line, as CsvDataWriter does.
+                StringBuilder line = new StringBuilder(64);
+                long result = 0;
+                for (long date : dates) {
+                    line.setLength(0);
+                    result += Utilities.appendDateTime(line, date, zone).length();
+                }
+                sink += result;
+            }
+        });
+
+        report("parse, SimpleDateFormat", count, new Runnable() {
+            @Override
+            public void run() {
+                long result = 0;
+                try {
+                    for (String text : texts) {
+                        result += new SimpleDateFormat(Utilities.DATE_FORMAT).parse(text).getTime();
+                    }
+                } catch (ParseException e) {
+                    throw new IllegalStateException(e);
+                }
+                sink += result;
+            }
+        });
+        report("parse, DateTimeFormatter", count, new Runnable() {
+            @Override
+            public void run() {
+                long result = 0;
+                for (String text : texts) {
+                    result += LocalDateTime.parse(text, formatter).atZone(zone).toEpochSecond();
+                }
+                sink += result;
+            }
+        });
+        report("parse, Utilities.parseDateTimeMillis", count, new Runnable() {
+            @Override
+            public void run() {
+                long result = 0;
+                for (String text : texts) {
+                    result += Utilities.parseDateTimeMillis(text, 0, text.length(), zone);
+                }
+                sink += result;
+            }
+        });
+    }
+
+    /**
+     * Runs a measurement repeatedly and prints the median time and allocation per date.
+     *
+     * @param name what is measured.
+     * @param calls number of dates the measurement handles.
+     * @param measurement the code to time.
+     */
+    private static void report(String name, int calls, Runnable measurement) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        double[] times = new double[ROUNDS];
+        double[] bytes = new double[ROUNDS];
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            measurement.run();
+            times[round] = (double) (System.nanoTime() - startTime) / calls;
+            bytes[round] = (double) (threads.getThreadAllocatedBytes(threadId) - startBytes) / calls;
+        }
+        Arrays.sort(times);
+        Arrays.sort(bytes);
+        System.out.printf("%-38s median %8.1f ns, %6.1f bytes per date.%n", name, times[ROUNDS / 2],
+                bytes[ROUNDS / 2]);
+    }
+}
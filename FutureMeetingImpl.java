@@ -17,4 +17,15 @@ public class FutureMeetingImpl extends MeetingImpl implements FutureMeeting {
     public FutureMeetingImpl(int id, Calendar date, Set<Contact> contacts) {
         super(id, date, contacts);
     }
+
+    /**
+     * Constructor
+     *
+     * @param id an ID for the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param contacts set of contacts for the meeting.
+     */
+    public FutureMeetingImpl(int id, long dateMillis, Set<Contact> contacts) {
+        super(id, dateMillis, contacts);
+    }
 }
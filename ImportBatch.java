@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ImportBatch
+ *
+ * Collects contacts and meetings for a bulk import into a ContactManagerImpl, started by
+ * ContactManagerImpl.beginImport().
+ *
+ * Attendees are given by contact ID and checked once against the contact index (or the contacts added earlier in the
+ * same batch), meeting IDs are allocated in blocks, and nothing is indexed or written until commit(), which applies
+ * the whole batch in one pass: one journal segment in journal mode (or one data file save if the batch would take
+ * the journal past its compaction threshold) and one published version in snapshot view mode.
+ *
+ * Like the manager itself a batch is not thread-safe, and the manager must not be changed while a batch is open.
+ */
+public class ImportBatch {
+    // Meeting IDs are allocated this many at a time. IDs left over when the batch ends are simply never used.
+    private static final int ID_BLOCK_SIZE = 4096;
+
+    private ContactManagerImpl contactManager = null;
+    private int firstContactId = 0;
+
+    private List<Contact> contacts = null;
+    private List<PastMeeting> pastMeetings = null;
+    private List<FutureMeeting> futureMeetings = null;
+
+    // Unused part of the last allocated block of meeting IDs.
+    private int nextMeetingId = 0;
+    private int meetingIdsLeft = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param contactManager the manager to import into.
+     * @param firstContactId ID of the first contact added by the batch.
+     */
+    ImportBatch(ContactManagerImpl contactManager, int firstContactId) {
+        this.contactManager = contactManager;
+        this.firstContactId = firstContactId;
+        this.contacts = new ArrayList<Contact>();
+        this.pastMeetings = new ArrayList<PastMeeting>();
+        this.futureMeetings = new ArrayList<FutureMeeting>();
+    }
+
+    /**
+     * Adds a new contact.
+     *
+     * @param name the name of the contact.
+     * @param notes notes to be added about the contact.
+     * @return the ID the contact will have once the batch is committed.
+     * @throws NullPointerException if the name or the notes are null.
+     * @throws IllegalStateException if the batch was already committed or aborted.
+     */
+    public int addContact(String name, String notes) {
+        checkOpen();
+        if (name == null || notes == null) {
+            throw new NullPointerException("Contact name or string cannot be null.");
+        }
+
+        int contactId = this.firstContactId + this.contacts.size();
+        this.contacts.add(new ContactImpl(contactId, name, notes));
+        return contactId;
+    }
+
+    /**
+     * Adds a meeting that took place in the past.
+     *
+     * @param date the date on which the meeting took place.
+     * @param notes messages to be added about the meeting.
+     * @param attendeeIds contact IDs of the participants, existing or added earlier in this batch.
+     * @return the ID of the meeting.
+     * @throws IllegalArgumentException if there are no attendees, or any of them does not exist.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws IllegalStateException if the batch was already committed or aborted.
+     */
+    public int addPastMeeting(Calendar date, String notes, int... attendeeIds) {
+        checkOpen();
+        if (date == null || notes == null || attendeeIds == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+
+        Set<Contact> attendees = resolveAttendees(attendeeIds);
+        int meetingId = nextMeetingId();
+        this.pastMeetings.add(new PastMeetingImpl(meetingId, date, attendees, notes));
+        return meetingId;
+    }
+
+    /**
+     * Adds a meeting to be held in the future.
+     *
+     * @param date the date on which the meeting will take place.
+     * @param attendeeIds contact IDs of the participants, existing or added earlier in this batch.
+     * @return the ID of the meeting.
+     * @throws IllegalArgumentException if the meeting is set for a time in the past, if there are no attendees, or if
+     *                                  any of them does not exist.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws IllegalStateException if the batch was already committed or aborted.
+     */
+    public int addFutureMeeting(Calendar date, int... attendeeIds) {
+        checkOpen();
+        if (date == null || attendeeIds == null) {
+            throw new NullPointerException("Parameter(s) supplied is null.");
+        }
+        if (!Utilities.timeInFuture(date, this.contactManager.getClock())) {
+            throw new IllegalArgumentException("Meeting time is in the past.");
+        }
+
+        Set<Contact> attendees = resolveAttendees(attendeeIds);
+        int meetingId = nextMeetingId();
+        this.futureMeetings.add(new FutureMeetingImpl(meetingId, date, attendees));
+        return meetingId;
+    }
+
+    /**
+     * Returns the number of contacts and meetings waiting to be committed.
+     *
+     * @return the number of records in the batch.
+     */
+    public int size() {
+        return this.contacts.size() + this.pastMeetings.size() + this.futureMeetings.size();
+    }
+
+    /**
+     * Applies every contact and meeting in the batch to the manager. The batch cannot be used afterwards.
+     *
+     * @throws IllegalStateException if the batch was already committed or aborted, or if contacts were added to the
+     *                               manager since the batch began.
+     * @throws UncheckedIOException if the batch could not be written to the journal or the data file.
+     */
+    public void commit() {
+        checkOpen();
+        this.contactManager.commitImport(this.firstContactId, this.contacts, this.pastMeetings, this.futureMeetings);
+        this.closed = true;
+    }
+
+    /**
+     * Discards the batch without changing the manager. The batch cannot be used afterwards.
+     */
+    public void abort() {
+        this.closed = true;
+        this.contacts.clear();
+        this.pastMeetings.clear();
+        this.futureMeetings.clear();
+    }
+
+    /**
+     * Resolves attendee IDs against the contacts of the batch and the contact index of the manager.
+     *
+     * @param attendeeIds contact IDs of the attendees.
+     * @return set of attendees.
+     * @throws IllegalArgumentException if there are no attendees, or any of them does not exist.
+     */
+    private Set<Contact> resolveAttendees(int[] attendeeIds) {
+        if (attendeeIds.length == 0) {
+            throw new IllegalArgumentException("Contact list is empty.");
+        }
+
+        for (int id : attendeeIds) {
+            boolean inBatch = id >= this.firstContactId && id - this.firstContactId < this.contacts.size();
+            if (!inBatch && this.contactManager.getContact(id) == null) {
+                throw new IllegalArgumentException("Contact ID supplied does not exist.");
+            }
+        }
+
+        // Contacts of the batch are looked up once committed, as the attendees are not read before.
+        return new AttendeeSet(attendeeIds, this.contactManager.getContactLookup());
+    }
+
+    /**
+     * Hands out the next meeting ID, allocating a new block of IDs when the last one is used up.
+     *
+     * @return a meeting ID.
+     */
+    private int nextMeetingId() {
+        if (this.meetingIdsLeft == 0) {
+            this.nextMeetingId = this.contactManager.allocateMeetingIds(ID_BLOCK_SIZE);
+            this.meetingIdsLeft = ID_BLOCK_SIZE;
+        }
+        this.meetingIdsLeft--;
+        return this.nextMeetingId++;
+    }
+
+    /**
+     * Throws if the batch can no longer be used.
+     *
+     * @throws IllegalStateException if the batch was already committed or aborted.
+     */
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Import batch is already closed.");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.Calendar;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * ImportBenchmark
+ *
+ * Compares the throughput of importing contacts and past meetings one call at a time against an ImportBatch.
+ *
+ * Usage: java ImportBenchmark [contacts] [meetings] [attendees per meeting]
+ *
+ * The defaults are 100,000 contacts and 1,000,000 meetings. Each run imports into a new, empty ContactManagerImpl
+ * and nothing is saved, but ContactManagerImpl loads contacts.txt if there is one, so run it in an empty directory.
+ */
+public class ImportBenchmark {
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int[] numbers = {100000, 1000000, 4};
+        for (int x = 0; x < args.length && x < numbers.length; x++) {
+            numbers[x] = Integer.parseInt(args[x]);
+        }
+        int records = numbers[0] + numbers[1];
+
+        double callTime = 0;
+        double batchTime = 0;
+
+        // The first round warms up the JIT and is not counted.
+        int rounds = 3;
+        for (int round = 0; round <= rounds; round++) {
+            double call = importOneByOne(numbers[0], numbers[1], numbers[2]);
+            double batch = importBatch(numbers[0], numbers[1], numbers[2]);
+            System.out.printf("Round %d: one by one %.0f ms, batch %.0f ms.%n", round, call, batch);
+
+            if (round > 0) {
+                callTime += call / rounds;
+                batchTime += batch / rounds;
+            }
+        }
+
+        System.out.printf("Average: one by one %.0f records/s, batch %.0f records/s, speedup %.2fx.%n",
+                records / (callTime / 1000), records / (batchTime / 1000), callTime / batchTime);
+    }
+
+    /**
+     * Imports through addNewContact() and addNewPastMeeting().
+     *
+     * @param contacts number of contacts.
+     * @param meetings number of meetings.
+     * @param attendees attendees per meeting.
+     * @return elapsed time in milliseconds.
+     */
+    private static double importOneByOne(int contacts, int meetings, int attendees) {
+        System.gc();
+        ContactManagerImpl contactManager = new ContactManagerImpl();
+        Random random = new Random(42);
+        int[] attendeeIds = new int[attendees];
+
+        long startTime = System.nanoTime();
+        for (int x = 1; x <= contacts; x++) {
+            contactManager.addNewContact("Contact " + x, "Imported contact.");
+        }
+        for (int x = 0; x < meetings; x++) {
+            pickAttendees(random, contacts, attendeeIds);
+            Set<Contact> attendeeSet = contactManager.getContacts(attendeeIds);
+            contactManager.addNewPastMeeting(attendeeSet, randomPastDate(random), "Imported meeting.");
+        }
+        return (System.nanoTime() - startTime) / 1e6;
+    }
+
+    /**
+     * Imports through an ImportBatch.
+     *
+     * @param contacts number of contacts.
+     * @param meetings number of meetings.
+     * @param attendees attendees per meeting.
+     * @return elapsed time in milliseconds, including the commit.
+     */
+    private static double importBatch(int contacts, int meetings, int attendees) {
+        System.gc();
+        ContactManagerImpl contactManager = new ContactManagerImpl();
+        Random random = new Random(42);
+        int[] attendeeIds = new int[attendees];
+
+        long startTime = System.nanoTime();
+        ImportBatch batch = contactManager.beginImport();
+        for (int x = 1; x <= contacts; x++) {
+            batch.addContact("Contact " + x, "Imported contact.");
+        }
+        for (int x = 0; x < meetings; x++) {
+            pickAttendees(random, contacts, attendeeIds);
+            batch.addPastMeeting(randomPastDate(random), "Imported meeting.", attendeeIds);
+        }
+        batch.commit();
+        return (System.nanoTime() - startTime) / 1e6;
+    }
+
+    /**
+     * Fills the array with random contact IDs.
+     *
+     * @param random source of randomness.
+     * @param contacts number of contacts.
+     * @param attendeeIds array to fill.
+     */
+    private static void pickAttendees(Random random, int contacts, int[] attendeeIds) {
+        for (int x = 0; x < attendeeIds.length; x++) {
+            attendeeIds[x] = random.nextInt(contacts) + 1;
+        }
+    }
+
+    /**
+     * Returns a random date within the last ten years.
+     *
+     * @param random source of randomness.
+     * @return the date.
+     */
+    private static Calendar randomPastDate(Random random) {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.MINUTE, -1 - random.nextInt(10 * 365 * 24 * 60));
+        return date;
+    }
+}
@@ -0,0 +1,362 @@
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * InstrumentedContactManager - Implements ContactManager interface.
+ *
+ * Passes every call on to another ContactManager and records its latency, whether it failed and how many contacts or
+ * meetings it returned in a ContactManagerMetrics, e.g. new InstrumentedContactManager(new ContactManagerImpl()).
+ * Recording takes two clock reads and a few atomic increments per call, so it is cheap enough to leave on in
+ * production, and it is as thread-safe as the manager it wraps.
+ *
+ * When the wrapped manager is a ContactManagerImpl its data file load and the bytes written by each flush are
+ * recorded too.
+ */
+public class InstrumentedContactManager implements ContactManager {
+    private ContactManager contactManager = null;
+    private ContactManagerMetrics metrics = null;
+
+    private OperationMetrics addFutureMeeting = null;
+    private OperationMetrics getPastMeeting = null;
+    private OperationMetrics getFutureMeeting = null;
+    private OperationMetrics getMeeting = null;
+    private OperationMetrics getFutureMeetingListForContact = null;
+    private OperationMetrics getFutureMeetingListForDate = null;
+    private OperationMetrics getMeetingList = null;
+    private OperationMetrics getPastMeetingList = null;
+    private OperationMetrics addNewPastMeeting = null;
+    private OperationMetrics addMeetingNotes = null;
+    private OperationMetrics addNewContact = null;
+    private OperationMetrics getContactsById = null;
+    private OperationMetrics getContactsByName = null;
+    private OperationMetrics flush = null;
+
+    /**
+     * Constructor
+     *
+     * @param contactManager the manager to pass calls on to.
+     * @throws NullPointerException if the manager is null.
+     */
+    public InstrumentedContactManager(ContactManager contactManager) {
+        if (contactManager == null) {
+            throw new NullPointerException("Contact manager cannot be null.");
+        }
+        this.contactManager = contactManager;
+        this.metrics = new ContactManagerMetrics();
+
+        // Create every operation up front, so that all of them are registered as MBeans and listed in order.
+        this.addFutureMeeting = this.metrics.operation("addFutureMeeting");
+        this.getPastMeeting = this.metrics.operation("getPastMeeting");
+        this.getFutureMeeting = this.metrics.operation("getFutureMeeting");
+        this.getMeeting = this.metrics.operation("getMeeting");
+        this.getFutureMeetingListForContact = this.metrics.operation("getFutureMeetingList(Contact)");
+        this.getFutureMeetingListForDate = this.metrics.operation("getFutureMeetingList(Calendar)");
+        this.getMeetingList = this.metrics.operation("getMeetingList(Calendar, Calendar)");
+        this.getPastMeetingList = this.metrics.operation("getPastMeetingList");
+        this.addNewPastMeeting = this.metrics.operation("addNewPastMeeting");
+        this.addMeetingNotes = this.metrics.operation("addMeetingNotes");
+        this.addNewContact = this.metrics.operation("addNewContact");
+        this.getContactsById = this.metrics.operation("getContacts(int...)");
+        this.getContactsByName = this.metrics.operation("getContacts(String)");
+        this.flush = this.metrics.operation("flush");
+
+        if (contactManager instanceof ContactManagerImpl) {
+            this.metrics.recordLoad(((ContactManagerImpl) contactManager).getLastLoadStatistics());
+        }
+    }
+
+    /**
+     * Returns the metrics recorded so far.
+     *
+     * @return the metrics.
+     */
+    public ContactManagerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Returns the manager calls are passed on to.
+     *
+     * @return the wrapped manager.
+     */
+    public ContactManager getContactManager() {
+        return this.contactManager;
+    }
+
+    /**
+     * Add a new meeting to be held in the future.
+     *
+     * @param contacts a list of contacts that will participate in the meeting.
+     * @param date the date on which the meeting will take place.
+     * @return the ID for the meeting.
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        long startTime = System.nanoTime();
+        try {
+            int id = this.contactManager.addFutureMeeting(contacts, date);
+            this.addFutureMeeting.record(startTime);
+            return id;
+        } catch (RuntimeException e) {
+            this.addFutureMeeting.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the PAST meeting with the requested ID, or null if it there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        long startTime = System.nanoTime();
+        try {
+            PastMeeting meeting = this.contactManager.getPastMeeting(id);
+            this.getPastMeeting.record(startTime);
+            return meeting;
+        } catch (RuntimeException e) {
+            this.getPastMeeting.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the FUTURE meeting with the requested ID, or null if there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     */
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        long startTime = System.nanoTime();
+        try {
+            FutureMeeting meeting = this.contactManager.getFutureMeeting(id);
+            this.getFutureMeeting.record(startTime);
+            return meeting;
+        } catch (RuntimeException e) {
+            this.getFutureMeeting.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the meeting with the requested ID, or null if it there is none.
+     *
+     * @param id the ID for the meeting.
+     * @return the meeting with the requested ID, or null if there is none.
+     */
+    @Override
+    public Meeting getMeeting(int id) {
+        long startTime = System.nanoTime();
+        try {
+            Meeting meeting = this.contactManager.getMeeting(id);
+            this.getMeeting.record(startTime);
+            return meeting;
+        } catch (RuntimeException e) {
+            this.getMeeting.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the list of future meetings scheduled with this contact.
+     *
+     * @param contact one of the user's contacts.
+     * @return the list of future meeting(s) scheduled with this contact (maybe empty).
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        long startTime = System.nanoTime();
+        try {
+            List<Meeting> meetings = this.contactManager.getFutureMeetingList(contact);
+            this.getFutureMeetingListForContact.record(startTime, meetings.size());
+            return meetings;
+        } catch (RuntimeException e) {
+            this.getFutureMeetingListForContact.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, the specified date.
+     *
+     * @param date the date.
+     * @return the list of meetings.
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        long startTime = System.nanoTime();
+        try {
+            List<Meeting> meetings = this.contactManager.getFutureMeetingList(date);
+            this.getFutureMeetingListForDate.record(startTime, meetings.size());
+            return meetings;
+        } catch (RuntimeException e) {
+            this.getFutureMeetingListForDate.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took place on, the days from one date to another.
+     *
+     * @param from the first day.
+     * @param to the last day.
+     * @return the list of meetings.
+     */
+    @Override
+    public List<Meeting> getMeetingList(Calendar from, Calendar to) {
+        long startTime = System.nanoTime();
+        try {
+            List<Meeting> meetings = this.contactManager.getMeetingList(from, to);
+            this.getMeetingList.record(startTime, meetings.size());
+            return meetings;
+        } catch (RuntimeException e) {
+            this.getMeetingList.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the list of past meetings in which this contact has participated.
+     *
+     * @param contact one of the user's contacts.
+     * @return the list of past meeting(s) with this contact (maybe empty).
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        long startTime = System.nanoTime();
+        try {
+            List<PastMeeting> meetings = this.contactManager.getPastMeetingList(contact);
+            this.getPastMeetingList.record(startTime, meetings.size());
+            return meetings;
+        } catch (RuntimeException e) {
+            this.getPastMeetingList.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Create a new record for a meeting that took place in the past.
+     *
+     * @param contacts a list of participants.
+     * @param date the date on which the meeting took place.
+     * @param text messages to be added about the meeting.
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+        long startTime = System.nanoTime();
+        try {
+            this.contactManager.addNewPastMeeting(contacts, date, text);
+            this.addNewPastMeeting.record(startTime);
+        } catch (RuntimeException e) {
+            this.addNewPastMeeting.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Add notes to a meeting.
+     *
+     * @param id the ID of the meeting.
+     * @param text messages to be added about the meeting.
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        long startTime = System.nanoTime();
+        try {
+            this.contactManager.addMeetingNotes(id, text);
+            this.addMeetingNotes.record(startTime);
+        } catch (RuntimeException e) {
+            this.addMeetingNotes.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Create a new contact with the specified name and notes.
+     *
+     * @param name the name of the contact.
+     * @param notes notes to be added about the contact.
+     */
+    @Override
+    public void addNewContact(String name, String notes) {
+        long startTime = System.nanoTime();
+        try {
+            this.contactManager.addNewContact(name, notes);
+            this.addNewContact.record(startTime);
+        } catch (RuntimeException e) {
+            this.addNewContact.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a list containing the contacts that correspond to the IDs.
+     *
+     * @param ids an arbitrary number of contact IDs.
+     * @return a list containing the contacts that correspond to the IDs.
+     */
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        long startTime = System.nanoTime();
+        try {
+            Set<Contact> contacts = this.contactManager.getContacts(ids);
+            this.getContactsById.record(startTime, contacts.size());
+            return contacts;
+        } catch (RuntimeException e) {
+            this.getContactsById.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a list with the contacts whose name contains that string.
+     *
+     * @param name the string to search for.
+     * @return a list with the contacts whose name contains that string.
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        long startTime = System.nanoTime();
+        try {
+            Set<Contact> contacts = this.contactManager.getContacts(name);
+            this.getContactsByName.record(startTime, contacts.size());
+            return contacts;
+        } catch (RuntimeException e) {
+            this.getContactsByName.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Save all data to disk.
+     */
+    @Override
+    public void flush() {
+        long savedBytes = getSavedBytes();
+        long startTime = System.nanoTime();
+        try {
+            this.contactManager.flush();
+            this.flush.record(startTime);
+            this.metrics.recordFlush(System.nanoTime() - startTime, getSavedBytes() - savedBytes);
+        } catch (RuntimeException e) {
+            this.flush.recordFailure(startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the total size of the data files the wrapped manager has written.
+     *
+     * @return bytes written, or 0 if the manager does not report them.
+     */
+    private long getSavedBytes() {
+        if (this.contactManager instanceof ContactManagerImpl) {
+            return ((ContactManagerImpl) this.contactManager).getSavedBytes();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * IntHashMap
+ *
+ * A hash map keyed by primitive int that uses open addressing with linear probing, so that lookups neither box the
+ * key nor allocate entry objects.
+ *
+ * Null values are not permitted since an empty value slot marks a free bucket.
+ */
+public class IntHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys = null;
+    private Object[] values = null;
+    private int size = 0;
+    private int resizeThreshold = 0;
+    private int modCount = 0;
+
+    /**
+     * Constructor
+     */
+    public IntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize number of mappings the map should hold before it needs to grow.
+     */
+    public IntHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the key.
+     *
+     * @param key the key.
+     * @return the value mapped to the key or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+
+        // Probe until we hit the key or a free bucket.
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                return (V) this.values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the key is mapped.
+     *
+     * @param key the key.
+     * @return true if the key is mapped, otherwise false.
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the key to the value, replacing any previous mapping.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @return the previous value mapped to the key or null if there was none.
+     * @throws NullPointerException if the value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("IntHashMap does not permit null values.");
+        }
+
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                // Replacing a value does not change the structure, so modCount is left alone.
+                V previous = (V) this.values[slot];
+                this.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.modCount++;
+
+        if (++this.size > this.resizeThreshold) {
+            rehash(this.keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the key.
+     *
+     * @param key the key.
+     * @return the value that was mapped to the key or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                V previous = (V) this.values[slot];
+                shiftBackFrom(slot);
+                this.size--;
+                this.modCount++;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of mappings.
+     *
+     * @return the number of mappings.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the map has no mappings.
+     *
+     * @return true if there are no mappings, otherwise false.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Returns a live view of the values in the map, in no particular order.
+     *
+     * @return collection view of the values.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return IntHashMap.this.size;
+            }
+        };
+    }
+
+    /**
+     * Closes the gap left by a removed entry so that later entries in the same probe run remain reachable.
+     *
+     * @param slot the slot that was emptied.
+     */
+    private void shiftBackFrom(int slot) {
+        int mask = this.keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+
+        while (this.values[next] != null) {
+            int home = hash(this.keys[next]) & mask;
+
+            // Move the entry into the gap only if its home bucket does not lie cyclically in (gap, next].
+            boolean homeBetween = (gap <= next) ? (gap < home && home <= next) : (gap < home || home <= next);
+            if (!homeBetween) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.values[gap] = null;
+    }
+
+    /**
+     * Grows the table and reinserts every mapping.
+     *
+     * @param newCapacity the new table size (a power of two).
+     */
+    private void rehash(int newCapacity) {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        allocate(newCapacity);
+
+        int mask = newCapacity - 1;
+        for (int x = 0; x < oldValues.length; x++) {
+            if (oldValues[x] != null) {
+                int slot = hash(oldKeys[x]) & mask;
+                while (this.values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[x];
+                this.values[slot] = oldValues[x];
+            }
+        }
+    }
+
+    /**
+     * Allocates empty key and value tables.
+     *
+     * @param capacity the table size (a power of two).
+     */
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the smallest power of two table size able to hold the expected number of mappings.
+     *
+     * @param expectedSize expected number of mappings.
+     * @return table size.
+     */
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the key bits so that sequential and random IDs both distribute over the table.
+     *
+     * @param key the key.
+     * @return the mixed hash.
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Iterator over the occupied value slots.
+     */
+    private class ValueIterator implements Iterator<V> {
+        private int nextSlot = 0;
+        private final int expectedModCount = IntHashMap.this.modCount;
+
+        ValueIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextSlot < IntHashMap.this.values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (IntHashMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) IntHashMap.this.values[this.nextSlot];
+            this.nextSlot++;
+            advance();
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove through the map instead.");
+        }
+
+        /**
+         * Moves nextSlot forward to the next occupied slot.
+         */
+        private void advance() {
+            Object[] table = IntHashMap.this.values;
+            while (this.nextSlot < table.length && table[this.nextSlot] == null) {
+                this.nextSlot++;
+            }
+        }
+    }
+}
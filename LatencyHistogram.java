@@ -0,0 +1,143 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ *
+ * Counts latencies in log-linear buckets, as HdrHistogram does: each power of two is split into 32 equal buckets, so
+ * any latency from a nanosecond to centuries is held to within about 3% in 16 KB, and percentiles are read without
+ * keeping the samples. Values below 32 are counted exactly.
+ *
+ * Recording is lock-free and may be done from any number of threads. A percentile read while others record may be
+ * off by the calls recorded meanwhile.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private AtomicLongArray counts = null;
+    private AtomicLong totalValue = null;
+    private AtomicLong maxValue = null;
+
+    /**
+     * Constructor
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT);
+        this.totalValue = new AtomicLong();
+        this.maxValue = new AtomicLong();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds. Negative values, which a clock going backwards can give, count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        this.counts.incrementAndGet(bucketIndex(value));
+        this.totalValue.addAndGet(value);
+
+        long max = this.maxValue.get();
+        while (value > max && !this.maxValue.compareAndSet(max, value)) {
+            max = this.maxValue.get();
+        }
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of latencies.
+     */
+    public long getCount() {
+        // Summed when read rather than kept, which would cost every recording another atomic increment.
+        long count = 0;
+        for (int x = 0; x < this.counts.length(); x++) {
+            count += this.counts.get(x);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) this.totalValue.get() / count;
+    }
+
+    /**
+     * Returns the highest latency, exactly.
+     *
+     * @return the highest latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return this.maxValue.get();
+    }
+
+    /**
+     * Returns the latency that the given percentage of the recorded latencies are at or below.
+     *
+     * @param percentile the percentage, e.g. 99.9.
+     * @return the upper bound of the bucket holding that latency in nanoseconds (never above the highest latency), or
+     *         0 if nothing was recorded.
+     * @throws IllegalArgumentException if the percentage is not between 0 and 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int x = 0; x < this.counts.length(); x++) {
+            seen += this.counts.get(x);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(x), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     *
+     * @param value the value, not negative.
+     * @return the bucket index.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // Keep the top 6 bits, i.e. the leading 1 and 5 more, and count the shift in steps of SUB_BUCKET_COUNT.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value counted in a bucket.
+     *
+     * @param index the bucket index.
+     * @return the highest value of the bucket.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index - shift * SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
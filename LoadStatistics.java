@@ -0,0 +1,73 @@
+/**
+ * LoadStatistics
+ *
+ * Line count, size and duration of one data file load.
+ */
+public class LoadStatistics {
+    private long lines = 0;
+    private long bytes = 0;
+    private long elapsedNanos = 0;
+
+    /**
+     * Constructor
+     *
+     * @param lines number of lines read.
+     * @param bytes size of the data read in bytes.
+     * @param elapsedNanos time taken in nanoseconds.
+     */
+    public LoadStatistics(long lines, long bytes, long elapsedNanos) {
+        this.lines = lines;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of lines read.
+     *
+     * @return the number of lines read.
+     */
+    public long getLines() {
+        return this.lines;
+    }
+
+    /**
+     * Returns the size of the data read.
+     *
+     * @return the size of the data read in bytes.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the time taken.
+     *
+     * @return the time taken in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Returns the load rate.
+     *
+     * @return lines read per second, or 0 if nothing was timed.
+     */
+    public double getLinesPerSecond() {
+        if (this.elapsedNanos == 0) {
+            return 0;
+        }
+        return this.lines * 1e9 / this.elapsedNanos;
+    }
+
+    /**
+     * Returns a one-line summary of the load.
+     *
+     * @return summary of the load.
+     */
+    @Override
+    public String toString() {
+        return String.format("Loaded %d lines (%d bytes) in %.1f ms, %.0f lines/sec.",
+                this.lines, this.bytes, this.elapsedNanos / 1e6, getLinesPerSecond());
+    }
+}
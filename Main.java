@@ -1,9 +1,11 @@
 import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import javax.management.JMException;
 
 /**
  * Main class for Coursework Assignment 3 of Programming in Java - Birkbeck, University of London
@@ -15,6 +17,7 @@ import java.util.*;
 public class Main {
 
     private ContactManager contactManagerImpl;
+    private ContactManagerMetrics metrics;
 
     /**
      * Calls method launch.
@@ -31,8 +34,17 @@ public class Main {
      * Instantiates an object of this class and calls its main run loop method.
      */
     private void launch() {
-        // Instantiate the ContactManager controller object.
-        contactManagerImpl = new ContactManagerImpl();
+        // Instantiate the ContactManager controller object, recording how long each call takes.
+        InstrumentedContactManager instrumented = new InstrumentedContactManager(new ContactManagerImpl());
+        contactManagerImpl = instrumented;
+        metrics = instrumented.getMetrics();
+
+        // Publish the metrics to JMX consoles such as jconsole as well as the menu.
+        try {
+            metrics.register(ManagementFactory.getPlatformMBeanServer(), "Main");
+        } catch (JMException e) {
+            System.out.println("Metrics are not available over JMX: " + e.getMessage());
+        }
 
         try {
             // Start our main run loop here.
@@ -84,6 +96,7 @@ public class Main {
                 System.out.println("TEST GENERAL OPTIONS");
                 System.out.println("--------------------");
                 System.out.println("M. *Save all data to disk");
+                System.out.println("N. *Show operation metrics");
                 System.out.println("Q. *Quit program");
 
                 choice = (char) System.in.read();
@@ -94,7 +107,7 @@ public class Main {
                     ignore = (char) System.in.read();
                 } while (ignore != '\n');
 
-            } while (choice < 'a' | choice > 'm' & choice != 'q');
+            } while (choice < 'a' | choice > 'n' & choice != 'q');
 
             // Run selected choice.
             doSelectedChoice(choice);
@@ -147,6 +160,9 @@ public class Main {
             case 'm':
                 contactManagerImpl.flush();
                 break;
+            case 'n':
+                showMetrics();
+                break;
             case 'q':
                 cleanup(); // No need for break. System will exit in cleanup().
             default:
@@ -605,6 +621,17 @@ public class Main {
         pause();
     }
 
+    /**
+     * Prints call counts, latencies and result sizes of every operation called so far, and pauses.
+     */
+    private void showMetrics() {
+        System.out.println("Operation Metrics");
+        System.out.println("-----------------");
+        System.out.print(metrics.dump());
+
+        pause();
+    }
+
     /**
      * Utility method that pauses display until return is pressed.
      */
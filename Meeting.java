@@ -1,4 +1,5 @@
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Set;
 
 /**
@@ -7,6 +8,23 @@ import java.util.Set;
  * Meetings have unique IDs, scheduled date and a list of participating contacts.
  */
 public interface Meeting {
+    /**
+     * Orders meetings by date, then by ID so that meetings at the same time still have a stable position. This is
+     * the order of every meeting list returned by ContactManager.
+     */
+    Comparator<Meeting> CHRONOLOGICAL_ORDER = new Comparator<Meeting>() {
+        @Override
+        public int compare(Meeting first, Meeting second) {
+            long firstTime = Utilities.meetingTimeMillis(first);
+            long secondTime = Utilities.meetingTimeMillis(second);
+
+            if (firstTime != secondTime) {
+                return firstTime < secondTime ? -1 : 1;
+            }
+            return Integer.compare(first.getId(), second.getId());
+        }
+    };
+
     /**
      * Returns the id of the meeting.
      *
@@ -0,0 +1,377 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MeetingChunkList
+ *
+ * An immutable list of meetings in Meeting.CHRONOLOGICAL_ORDER, held as chunks of up to MAX_CHUNK_SIZE meetings at the
+ * leaves of a B+ tree whose nodes hold up to MAX_CHUNK_SIZE children, along with the last meeting under each child.
+ *
+ * A changed list is made by withChanges(), which hands each change down to the one child whose range covers it, copies
+ * only the chunks and nodes on the way and shares every other one with this list. A change therefore costs a chunk and
+ * a node per level (three levels hold a quarter of a million meetings), however long the list is. Appended meetings
+ * fill up the last chunk before a new one is started; a chunk or node that overflows elsewhere is split evenly, leaving
+ * room for later inserts on both sides.
+ */
+public final class MeetingChunkList<M extends Meeting> {
+    static final int MAX_CHUNK_SIZE = 64;
+
+    private static final Meeting[] NO_MEETINGS = new Meeting[0];
+    private static final MeetingChunkList<Meeting> EMPTY = new MeetingChunkList<Meeting>(new Node(NO_MEETINGS));
+
+    private final Node root;
+
+    /**
+     * Constructor
+     *
+     * @param root the root node.
+     */
+    private MeetingChunkList(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the empty list.
+     *
+     * @return the empty list.
+     */
+    @SuppressWarnings("unchecked")
+    public static <M extends Meeting> MeetingChunkList<M> empty() {
+        return (MeetingChunkList<M>) EMPTY;
+    }
+
+    /**
+     * Returns the number of meetings in the list.
+     *
+     * @return the number of meetings.
+     */
+    public int size() {
+        return this.root.size;
+    }
+
+    /**
+     * Checks if the list has no meetings.
+     *
+     * @return true if there are no meetings, otherwise false.
+     */
+    public boolean isEmpty() {
+        return this.root.size == 0;
+    }
+
+    /**
+     * Copies the meetings into the provided list, in chronological order.
+     *
+     * @param target list to add the meetings to.
+     */
+    public void copyInto(List<? super M> target) {
+        copyPageInto(null, Integer.MAX_VALUE, target);
+    }
+
+    /**
+     * Copies a page of the meetings into the provided list: up to a number of meetings that come after a given meeting
+     * in chronological order. The start is found by binary search down the tree, and the given meeting need not be in
+     * the list.
+     *
+     * @param after the last meeting of the previous page, or null to start with the first meeting.
+     * @param limit maximum number of meetings to copy.
+     * @param target list to add the meetings to.
+     */
+    public void copyPageInto(Meeting after, int limit, List<? super M> target) {
+        MeetingChunkList.<M>copyPage(this.root, after, limit, target);
+    }
+
+    /**
+     * Returns a list with meetings removed and added. Meetings that compare equal to one already in the list replace
+     * it, so a meeting can be swapped for its new version (e.g. with notes) by adding it.
+     *
+     * @param sortedRemovals meetings to remove, in chronological order.
+     * @param sortedAdditions meetings to add, in chronological order.
+     * @return the changed list, or this list if there are no changes.
+     */
+    public MeetingChunkList<M> withChanges(List<? extends Meeting> sortedRemovals, List<? extends M> sortedAdditions) {
+        if (sortedRemovals.isEmpty() && sortedAdditions.isEmpty()) {
+            return this;
+        }
+
+        List<Node> nodes = new ArrayList<Node>();
+        update(this.root, sortedRemovals, sortedAdditions, true, nodes);
+
+        // Nodes split at the top are joined under new roots, and a root left with one child gives way to it.
+        while (nodes.size() > 1) {
+            List<Node> parents = new ArrayList<Node>();
+            group(nodes, true, parents);
+            nodes = parents;
+        }
+        if (nodes.isEmpty()) {
+            return empty();
+        }
+        Node nextRoot = nodes.get(0);
+        while (nextRoot.children != null && nextRoot.children.length == 1) {
+            nextRoot = nextRoot.children[0];
+        }
+        return new MeetingChunkList<M>(nextRoot);
+    }
+
+    /**
+     * Copies up to a number of meetings that come after a given meeting from below a node.
+     *
+     * @param node the node.
+     * @param after the last meeting of the previous page, or null to start with the first meeting.
+     * @param limit maximum number of meetings to copy.
+     * @param target list to add the meetings to.
+     * @return the number of meetings copied.
+     */
+    @SuppressWarnings("unchecked")
+    private static <M extends Meeting> int copyPage(Node node, Meeting after, int limit, List<? super M> target) {
+        if (node.children == null) {
+            int start = 0;
+            if (after != null) {
+                int position = Arrays.binarySearch(node.meetings, after, Meeting.CHRONOLOGICAL_ORDER);
+                start = position >= 0 ? position + 1 : -(position + 1);
+            }
+            int end = (int) Math.min((long) start + limit, node.meetings.length);
+            if (start >= end) {
+                return 0;
+            }
+            target.addAll((List<M>) Arrays.asList(node.meetings).subList(start, end));
+            return end - start;
+        }
+
+        // Children before the first one with a meeting after the given one are skipped without being visited.
+        int child = after == null ? 0 : firstChild(node, after, false);
+        int copied = 0;
+        for (; child < node.children.length && copied < limit; child++) {
+            copied += MeetingChunkList.<M>copyPage(node.children[child], after, limit - copied, target);
+        }
+        return copied;
+    }
+
+    /**
+     * Applies the removals and additions that fall within a node's range to a copy of it.
+     *
+     * @param node the node.
+     * @param sortedRemovals meetings to remove, in chronological order.
+     * @param sortedAdditions meetings to add, in chronological order.
+     * @param rightmost true if the node ends the list.
+     * @param target list to add the changed node to, as several nodes if it overflowed, or none if it is empty.
+     */
+    private static void update(Node node, List<? extends Meeting> sortedRemovals,
+                               List<? extends Meeting> sortedAdditions, boolean rightmost, List<Node> target) {
+        if (node.children == null) {
+            List<Meeting> meetings = merge(node.meetings, sortedRemovals, sortedAdditions);
+            int count = meetings.size();
+            int pieces = (count + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE;
+            for (int x = 0; x < pieces; x++) {
+                target.add(new Node(meetings.subList(pieceStart(count, pieces, x, rightmost),
+                        pieceStart(count, pieces, x + 1, rightmost)).toArray(NO_MEETINGS)));
+            }
+            return;
+        }
+
+        // Find the child of the next change by binary search, share the children before it, then update it with all
+        // the changes in its range. The last child takes everything after the others.
+        List<Node> children = new ArrayList<Node>(node.children.length + 1);
+        int shared = 0;
+        int removal = 0;
+        int addition = 0;
+        while (removal < sortedRemovals.size() || addition < sortedAdditions.size()) {
+            Meeting first = earlier(removal < sortedRemovals.size() ? sortedRemovals.get(removal) : null,
+                    addition < sortedAdditions.size() ? sortedAdditions.get(addition) : null);
+            int child = Math.min(firstChild(node, first, true), node.children.length - 1);
+            boolean lastChild = child == node.children.length - 1;
+
+            int removalEnd = lastChild ? sortedRemovals.size() : coveredBy(sortedRemovals, removal, node.last[child]);
+            int additionEnd = lastChild ? sortedAdditions.size()
+                    : coveredBy(sortedAdditions, addition, node.last[child]);
+            children.addAll(Arrays.asList(node.children).subList(shared, child));
+            update(node.children[child], sortedRemovals.subList(removal, removalEnd),
+                    sortedAdditions.subList(addition, additionEnd), rightmost && lastChild, children);
+            shared = child + 1;
+            removal = removalEnd;
+            addition = additionEnd;
+        }
+        children.addAll(Arrays.asList(node.children).subList(shared, node.children.length));
+        group(children, rightmost, target);
+    }
+
+    /**
+     * Groups nodes of the same height under parents of at most MAX_CHUNK_SIZE children each.
+     *
+     * @param children the nodes, in order.
+     * @param rightmost true if the nodes end the list.
+     * @param target list to add the parents to.
+     */
+    private static void group(List<Node> children, boolean rightmost, List<Node> target) {
+        int count = children.size();
+        int pieces = (count + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE;
+        for (int x = 0; x < pieces; x++) {
+            target.add(new Node(children.subList(pieceStart(count, pieces, x, rightmost),
+                    pieceStart(count, pieces, x + 1, rightmost)).toArray(new Node[0])));
+        }
+    }
+
+    /**
+     * Returns where a piece starts when items are split into pieces of at most MAX_CHUNK_SIZE. The pieces at the end of
+     * the list are packed full, since appends only ever add to the end; others are spread evenly.
+     *
+     * @param count the number of items.
+     * @param pieces the number of pieces.
+     * @param piece the index of the piece, or the number of pieces for the end.
+     * @param rightmost true if the items end the list.
+     * @return the index of the first item of the piece.
+     */
+    private static int pieceStart(int count, int pieces, int piece, boolean rightmost) {
+        if (rightmost) {
+            return Math.min(piece * MAX_CHUNK_SIZE, count);
+        }
+        return (int) ((long) count * piece / pieces);
+    }
+
+    /**
+     * Binary searches for the first child whose last meeting comes after, or if inclusive does not come before, a
+     * given meeting.
+     *
+     * @param node the node.
+     * @param meeting the meeting.
+     * @param inclusive true to also accept a child whose last meeting equals the given one.
+     * @return the index of the child, or the number of children if there is none.
+     */
+    private static int firstChild(Node node, Meeting meeting, boolean inclusive) {
+        int low = 0;
+        int high = node.children.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Meeting.CHRONOLOGICAL_ORDER.compare(node.last[middle], meeting);
+            if (comparison < 0 || comparison == 0 && !inclusive) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the earlier of two meetings in chronological order.
+     *
+     * @param first a meeting, or null for none.
+     * @param second a meeting, or null for none.
+     * @return the earlier meeting, or the other one if either is null.
+     */
+    private static Meeting earlier(Meeting first, Meeting second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return Meeting.CHRONOLOGICAL_ORDER.compare(first, second) <= 0 ? first : second;
+    }
+
+    /**
+     * Finds the end of the run of sorted meetings that do not come after a child's last meeting.
+     *
+     * @param sortedMeetings meetings in chronological order.
+     * @param start index of the first meeting not yet handed to a child.
+     * @param last the last meeting of the child.
+     * @return the index after the last meeting in the child's range.
+     */
+    private static int coveredBy(List<? extends Meeting> sortedMeetings, int start, Meeting last) {
+        int end = start;
+        while (end < sortedMeetings.size() && Meeting.CHRONOLOGICAL_ORDER.compare(sortedMeetings.get(end), last) <= 0) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Merges a chunk with the removals and additions that fall within it.
+     *
+     * @param chunk the chunk.
+     * @param sortedRemovals meetings to remove, in chronological order.
+     * @param sortedAdditions meetings to add, in chronological order.
+     * @return the meetings of the changed chunk, in chronological order.
+     */
+    private static List<Meeting> merge(Meeting[] chunk, List<? extends Meeting> sortedRemovals,
+                                       List<? extends Meeting> sortedAdditions) {
+        // Drop the removed meetings first.
+        List<Meeting> kept = new ArrayList<Meeting>(chunk.length);
+        int y = 0;
+        for (Meeting meeting : chunk) {
+            while (y < sortedRemovals.size()
+                    && Meeting.CHRONOLOGICAL_ORDER.compare(sortedRemovals.get(y), meeting) < 0) {
+                y++;
+            }
+            if (y < sortedRemovals.size() && Meeting.CHRONOLOGICAL_ORDER.compare(sortedRemovals.get(y), meeting) == 0) {
+                y++;
+            } else {
+                kept.add(meeting);
+            }
+        }
+
+        List<Meeting> merged = new ArrayList<Meeting>(kept.size() + sortedAdditions.size());
+        int x = 0;
+        int z = 0;
+        while (x < kept.size() && z < sortedAdditions.size()) {
+            int comparison = Meeting.CHRONOLOGICAL_ORDER.compare(kept.get(x), sortedAdditions.get(z));
+
+            if (comparison < 0) {
+                merged.add(kept.get(x++));
+            } else if (comparison > 0) {
+                merged.add(sortedAdditions.get(z++));
+            } else {
+                // The added meeting replaces the one it is equal to.
+                merged.add(sortedAdditions.get(z++));
+                x++;
+            }
+        }
+        merged.addAll(kept.subList(x, kept.size()));
+        merged.addAll(sortedAdditions.subList(z, sortedAdditions.size()));
+        return merged;
+    }
+
+    /**
+     * A tree node: a chunk of meetings at the bottom level, otherwise children of one height with the last meeting
+     * under each. Nodes are never changed once built.
+     */
+    private static final class Node {
+        private final Meeting[] meetings;
+        private final Node[] children;
+        private final Meeting[] last;
+        private final int size;
+
+        /**
+         * Constructor for a chunk.
+         *
+         * @param meetings the meetings, in chronological order.
+         */
+        Node(Meeting[] meetings) {
+            this.meetings = meetings;
+            this.children = null;
+            this.last = null;
+            this.size = meetings.length;
+        }
+
+        /**
+         * Constructor for a node above the chunks.
+         *
+         * @param children the children, none of them empty, in order.
+         */
+        Node(Node[] children) {
+            int total = 0;
+            Meeting[] lastMeetings = new Meeting[children.length];
+            for (int x = 0; x < children.length; x++) {
+                Node child = children[x];
+                lastMeetings[x] = child.children == null ? child.meetings[child.meetings.length - 1]
+                        : child.last[child.last.length - 1];
+                total += child.size;
+            }
+            this.meetings = null;
+            this.children = children;
+            this.last = lastMeetings;
+            this.size = total;
+        }
+    }
+}
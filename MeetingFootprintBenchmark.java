@@ -0,0 +1,86 @@
+import java.util.*;
+
+/**
+ * MeetingFootprintBenchmark
+ *
+ * Measures the heap taken per meeting and the time to sort meetings by date.
+ *
+ * Usage: java MeetingFootprintBenchmark [meetings]
+ *
+ * The default is 1,000,000 meetings, all sharing one attendee set so that only the meeting objects themselves are
+ * counted. The footprint is the growth of the used heap after a full GC, divided by the number of meetings, which is
+ * coarse but needs no agent. Sorting is timed over several shuffled copies, both by natural order (compareTo) and by
+ * Meeting.CHRONOLOGICAL_ORDER, and the median is reported.
+ */
+public class MeetingFootprintBenchmark {
+    private static final int SORT_ROUNDS = 7;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int meetings = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        Set<Contact> attendees = new HashSet<Contact>();
+        attendees.add(new ContactImpl(1, "Benchmark", ""));
+        Random random = new Random(42);
+
+        long before = usedHeap();
+        List<MeetingImpl> meetingList = new ArrayList<MeetingImpl>(meetings);
+        long listOnly = usedHeap();
+        for (int x = 0; x < meetings; x++) {
+            Calendar date = Calendar.getInstance();
+            date.setTimeInMillis(1262304000000L + (long) (random.nextDouble() * 20 * 365 * 86400000L));
+            meetingList.add(new PastMeetingImpl(x + 1, date, attendees, ""));
+        }
+        long after = usedHeap();
+        System.out.printf("%d meetings: %.1f bytes per meeting (list of %d bytes excluded).%n", meetings,
+                (double) (after - listOnly) / meetings, listOnly - before);
+
+        System.out.printf("Sort by compareTo: median %.0f ms.%n", medianSortMillis(meetingList, null));
+        System.out.printf("Sort by CHRONOLOGICAL_ORDER: median %.0f ms.%n",
+                medianSortMillis(meetingList, Meeting.CHRONOLOGICAL_ORDER));
+    }
+
+    /**
+     * Sorts shuffled copies of the meetings and returns the median time.
+     *
+     * @param meetingList the meetings.
+     * @param order the order to sort by, or null for natural order.
+     * @return median sort time in milliseconds.
+     */
+    private static double medianSortMillis(List<MeetingImpl> meetingList, Comparator<Meeting> order) {
+        double[] times = new double[SORT_ROUNDS];
+        Random random = new Random(7);
+
+        for (int round = 0; round < SORT_ROUNDS; round++) {
+            List<MeetingImpl> copy = new ArrayList<MeetingImpl>(meetingList);
+            Collections.shuffle(copy, random);
+
+            long startTime = System.nanoTime();
+            if (order == null) {
+                Collections.sort(copy);
+            } else {
+                Collections.sort(copy, order);
+            }
+            times[round] = (System.nanoTime() - startTime) / 1e6;
+        }
+        Arrays.sort(times);
+        return times[SORT_ROUNDS / 2];
+    }
+
+    /**
+     * Returns the used heap after asking for full garbage collections.
+     *
+     * @return used heap in bytes.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int x = 0; x < 3; x++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
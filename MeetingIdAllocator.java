@@ -0,0 +1,43 @@
+/**
+ * A source of unique meeting IDs.
+ *
+ * Allocators hand out IDs in increasing order, and IDs that are already in use (for example those loaded from the
+ * data file) are reserved so that they are never handed out again. An allocator only has to track the highest ID in
+ * use: once it is exhausted, e.g. by a legacy data file holding Integer.MAX_VALUE, the contact managers take IDs
+ * from the gaps between the IDs in use instead.
+ */
+public interface MeetingIdAllocator {
+    /**
+     * Allocates a new meeting ID.
+     *
+     * @return a meeting ID that has not been allocated or reserved before.
+     * @throws IllegalStateException if the ID space is exhausted.
+     */
+    int nextId();
+
+    /**
+     * Allocates a range of consecutive meeting IDs in one step, e.g. for a bulk import.
+     *
+     * @param count number of IDs to allocate.
+     * @return the first ID of the range. The range runs up to and including first ID + count - 1.
+     * @throws IllegalArgumentException if the count is not positive.
+     * @throws IllegalStateException if the ID space cannot hold the range.
+     */
+    int nextIds(int count);
+
+    /**
+     * Reserves an ID that is already in use, so that it will not be allocated.
+     *
+     * @param id the ID in use.
+     */
+    void reserve(int id);
+
+    /**
+     * Returns the ID the next call to nextId() will return, without allocating it.
+     *
+     * This is the value persisted with the data file.
+     *
+     * @return the next meeting ID.
+     */
+    int peekNextId();
+}
@@ -1,14 +1,20 @@
 import java.util.Calendar;
 import java.util.Set;
+import java.util.TimeZone;
 
 /**
  * MeetingImpl - Implements Meeting interface.
  *
  * Meetings have unique IDs, scheduled date and a list of participating contacts.
+ *
+ * The date is held as milliseconds since the epoch rather than as a Calendar, which takes several hundred bytes and
+ * is slow to compare. getDate() creates a Calendar in the default time zone on each call.
  */
 public class MeetingImpl implements Meeting, Comparable<Meeting> {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
     private int id = 0;
-    private Calendar date = null;
+    private long dateMillis = 0;
     private Set<Contact> contacts = null;
 
     /**
@@ -19,8 +25,19 @@ public class MeetingImpl implements Meeting, Comparable<Meeting> {
      * @param contacts set of contacts for the meeting.
      */
     public MeetingImpl(int id, Calendar date, Set<Contact> contacts) {
+        this(id, date.getTimeInMillis(), contacts);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param id an ID for the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param contacts set of contacts for the meeting.
+     */
+    public MeetingImpl(int id, long dateMillis, Set<Contact> contacts) {
         this.id = id;
-        this.date = date;
+        this.dateMillis = dateMillis;
         this.contacts = contacts;
     }
 
@@ -37,11 +54,35 @@ public class MeetingImpl implements Meeting, Comparable<Meeting> {
     /**
      * Return the date of the meeting.
      *
+     * A new Calendar is returned on each call, so changing it does not change the meeting.
+     *
      * @return the date of the meeting.
      */
     @Override
     public Calendar getDate() {
-        return this.date;
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(this.dateMillis);
+        return date;
+    }
+
+    /**
+     * Returns the date of the meeting without creating a Calendar.
+     *
+     * @return the date of the meeting as milliseconds since the epoch.
+     */
+    public long getDateMillis() {
+        return this.dateMillis;
+    }
+
+    /**
+     * Returns the number of days between 1970/01/01 and the date of the meeting in the default time zone, the same
+     * value Utilities.calendarToEpochDay() gives for getDate().
+     *
+     * @return the epoch day of the meeting.
+     */
+    public long getEpochDay() {
+        long localMillis = this.dateMillis + TimeZone.getDefault().getOffset(this.dateMillis);
+        return Math.floorDiv(localMillis, MILLIS_PER_DAY);
     }
 
     /**
@@ -65,50 +106,38 @@ public class MeetingImpl implements Meeting, Comparable<Meeting> {
      */
     @Override
     public int compareTo(Meeting otherMeeting) {
-        return this.date.compareTo(otherMeeting.getDate());
+        return Long.compare(this.dateMillis, Utilities.meetingTimeMillis(otherMeeting));
     }
 
     /**
      * Compares this object with the specified object for equality.
      *
+     * Meeting IDs are unique, so meetings are equal when their IDs are. A past meeting created from a future one keeps
+     * its ID and is equal to it.
+     *
      * @param o the object to be compared.
      * @return true if equal, otherwise false.
      */
     @Override
     public boolean equals(Object o) {
-        if (o == null) {
-            return false;
-        }
-
         if (this == o) {
             return true;
         }
 
-        int otherMeetingID = ((MeetingImpl) o).getId();
-        Calendar otherMeetingDate = ((MeetingImpl) o).getDate();
-        Set<Contact> otherMeetingContacts = ((MeetingImpl) o).getContacts();
-
-        if (this.id == otherMeetingID) {
-            if (this.date.equals(otherMeetingDate)) {
-                if (this.contacts.equals(otherMeetingContacts)) {
-                    return true;
-                }
-            }
+        if (!(o instanceof MeetingImpl)) {
+            return false;
         }
-        return false;
+        return this.id == ((MeetingImpl) o).getId();
     }
 
     /**
      * Returns a hash code value for the object. This method is supported for the benefit of hash tables.
      * Must be overridden since we're overriding Object.equals() as well and must ensure our hash is consistent.
      *
-     * @return a hash code value for this object using an arbitrary algorithm based on its fields values and hash codes.
+     * @return the meeting ID, which is unique and so needs no further hashing.
      */
-    @Override public int hashCode() {
-        int hashCode = 0;
-
-        hashCode = this.id + this.contacts.hashCode() + this.date.hashCode();
-
-        return hashCode;
+    @Override
+    public int hashCode() {
+        return this.id;
     }
 }
@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MeetingPostingList
+ *
+ * A list of meetings that is kept in Meeting.CHRONOLOGICAL_ORDER (by date, ties broken by ID) as meetings are added
+ * and removed, so that readers get an ordered, duplicate-free list without sorting.
+ */
+public class MeetingPostingList<M extends Meeting> {
+    private List<M> meetings = null;
+
+    /**
+     * Constructor
+     */
+    public MeetingPostingList() {
+        this.meetings = new ArrayList<M>();
+    }
+
+    /**
+     * Inserts a meeting at its chronological position. A meeting that is already present is not added again.
+     *
+     * @param meeting the meeting to add.
+     */
+    public void add(M meeting) {
+        int position = indexOf(meeting);
+
+        // Already present, keep the list free of duplicates.
+        if (position >= 0) {
+            return;
+        }
+
+        // Appending is the common case, since meetings tend to be created in date order.
+        this.meetings.add(-(position + 1), meeting);
+    }
+
+    /**
+     * Inserts meetings that are already in chronological order, merging them with the list in one pass rather than
+     * searching for the position of each. Meetings that are already present are not added again.
+     *
+     * @param sortedMeetings meetings in chronological order.
+     */
+    public void addAll(List<? extends M> sortedMeetings) {
+        if (sortedMeetings.isEmpty()) {
+            return;
+        }
+
+        // Appending is the common case, e.g. importing newer meetings than those already held.
+        if (this.meetings.isEmpty()
+                || Meeting.CHRONOLOGICAL_ORDER.compare(this.meetings.get(this.meetings.size() - 1),
+                        sortedMeetings.get(0)) < 0) {
+            this.meetings.addAll(sortedMeetings);
+            return;
+        }
+
+        List<M> merged = new ArrayList<M>(this.meetings.size() + sortedMeetings.size());
+        int x = 0;
+        int y = 0;
+        while (x < this.meetings.size() && y < sortedMeetings.size()) {
+            int comparison = Meeting.CHRONOLOGICAL_ORDER.compare(this.meetings.get(x), sortedMeetings.get(y));
+
+            if (comparison < 0) {
+                merged.add(this.meetings.get(x++));
+            } else if (comparison > 0) {
+                merged.add(sortedMeetings.get(y++));
+            } else {
+                // Already present, keep the list free of duplicates.
+                merged.add(this.meetings.get(x++));
+                y++;
+            }
+        }
+        merged.addAll(this.meetings.subList(x, this.meetings.size()));
+        merged.addAll(sortedMeetings.subList(y, sortedMeetings.size()));
+        this.meetings = merged;
+    }
+
+    /**
+     * Removes the meeting with the same date and ID as the one provided.
+     *
+     * @param meeting the meeting to remove.
+     * @return true if a meeting was removed, otherwise false.
+     */
+    public boolean remove(Meeting meeting) {
+        int position = indexOf(meeting);
+
+        if (position < 0) {
+            return false;
+        }
+        this.meetings.remove(position);
+        return true;
+    }
+
+    /**
+     * Returns the number of meetings in the list.
+     *
+     * @return the number of meetings.
+     */
+    public int size() {
+        return this.meetings.size();
+    }
+
+    /**
+     * Checks if the list has no meetings.
+     *
+     * @return true if there are no meetings, otherwise false.
+     */
+    public boolean isEmpty() {
+        return this.meetings.isEmpty();
+    }
+
+    /**
+     * Copies the meetings into the provided list, in chronological order.
+     *
+     * @param target list to add the meetings to.
+     */
+    public void copyInto(List<? super M> target) {
+        target.addAll(this.meetings);
+    }
+
+    /**
+     * Copies a page of the meetings into the provided list: up to a number of meetings that come after a given meeting
+     * in chronological order. The start is found by binary search, so every page costs the same wherever it starts, and
+     * the given meeting need not be in the list any more.
+     *
+     * @param after the last meeting of the previous page, or null to start with the first meeting.
+     * @param limit maximum number of meetings to copy.
+     * @param target list to add the meetings to.
+     */
+    public void copyPageInto(Meeting after, int limit, List<? super M> target) {
+        int start = 0;
+        if (after != null) {
+            int position = indexOf(after);
+            start = position >= 0 ? position + 1 : -(position + 1);
+        }
+
+        int end = (int) Math.min((long) start + limit, this.meetings.size());
+        if (start < end) {
+            target.addAll(this.meetings.subList(start, end));
+        }
+    }
+
+    /**
+     * Returns a new list of the meetings in a posting list, in chronological order.
+     *
+     * The list is filled with a single array copy of exactly the right size; copying into an empty list instead would
+     * also allocate an intermediate array.
+     *
+     * @param postingList the posting list, or null for none.
+     * @return a modifiable list of the meetings, empty if the posting list is null.
+     */
+    public static <T extends Meeting> List<T> copyOf(MeetingPostingList<? extends T> postingList) {
+        if (postingList == null) {
+            return new ArrayList<T>();
+        }
+        // ArrayList adopts the array copied from another ArrayList rather than copying it again.
+        return new ArrayList<T>(postingList.meetings);
+    }
+
+    /**
+     * Binary searches for the meeting's position.
+     *
+     * @param meeting the meeting to look for.
+     * @return the index of the meeting if present, otherwise (-(insertion point) - 1).
+     */
+    private int indexOf(Meeting meeting) {
+        int low = 0;
+        int high = this.meetings.size() - 1;
+
+        // Fast path for the append case.
+        if (high >= 0 && Meeting.CHRONOLOGICAL_ORDER.compare(this.meetings.get(high), meeting) < 0) {
+            return -(high + 1) - 1;
+        }
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Meeting.CHRONOLOGICAL_ORDER.compare(this.meetings.get(middle), meeting);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,179 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * MeetingQueryBenchmark
+ *
+ * Measures the time and the bytes allocated per call of the meeting list queries of ContactManagerImpl, with and
+ * without snapshot views, both for whole lists and for a first page of 20 meetings.
+ *
+ * Usage: java MeetingQueryBenchmark [contacts] [meetings] [queries]
+ *
+ * The defaults are 10,000 contacts and 1,000,000 meetings of 4 attendees, half in the past and half in the future,
+ * spread over 20 years, so a contact has about 400 meetings and a day about 140. Allocation is read from the thread's
+ * allocated bytes counter, the one used by the JMH gc profiler. Nothing is saved, but ContactManagerImpl loads
+ * contacts.txt if there is one, so run it in an empty directory.
+ */
+public class MeetingQueryBenchmark {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int WARMUP_PASSES = 3;
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int[] numbers = {10000, 1000000, 20000};
+        for (int x = 0; x < args.length && x < numbers.length; x++) {
+            numbers[x] = Integer.parseInt(args[x]);
+        }
+
+        for (boolean snapshotViews : new boolean[] {false, true}) {
+            System.out.println(snapshotViews ? "Snapshot views:" : "Live indexes:");
+            final ContactManagerImpl contactManager =
+                    load(new ContactManagerOptions().setSnapshotViewsEnabled(snapshotViews), numbers[0], numbers[1]);
+            final Contact[] contacts = contactManager.getContacts("").toArray(new Contact[0]);
+            final long now = System.currentTimeMillis();
+
+            report("getFutureMeetingList(Contact)", numbers[2], new Query() {
+                @Override
+                public int run(Random random) {
+                    return contactManager.getFutureMeetingList(contacts[random.nextInt(contacts.length)]).size();
+                }
+            });
+            report("getPastMeetingList(Contact)", numbers[2], new Query() {
+                @Override
+                public int run(Random random) {
+                    return contactManager.getPastMeetingList(contacts[random.nextInt(contacts.length)]).size();
+                }
+            });
+            report("getFutureMeetingList(Calendar)", numbers[2], new Query() {
+                @Override
+                public int run(Random random) {
+                    return contactManager.getFutureMeetingList(randomDate(random, now)).size();
+                }
+            });
+            report("getMeetingList(7 days)", numbers[2], new Query() {
+                @Override
+                public int run(Random random) {
+                    Calendar from = randomDate(random, now);
+                    Calendar to = (Calendar) from.clone();
+                    to.add(Calendar.DAY_OF_MONTH, 6);
+                    return contactManager.getMeetingList(from, to).size();
+                }
+            });
+            report("getPastMeetingList(Contact, 20)", numbers[2], new Query() {
+                @Override
+                public int run(Random random) {
+                    Contact contact = contacts[random.nextInt(contacts.length)];
+                    return contactManager.getPastMeetingList(contact, null, PAGE_SIZE).size();
+                }
+            });
+            report("getMeetingList(7 days, 20)", numbers[2], new Query() {
+                @Override
+                public int run(Random random) {
+                    Calendar from = randomDate(random, now);
+                    Calendar to = (Calendar) from.clone();
+                    to.add(Calendar.DAY_OF_MONTH, 6);
+                    return contactManager.getMeetingList(from, to, null, PAGE_SIZE).size();
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates a manager holding the generated contacts and meetings.
+     *
+     * @param options options for the manager.
+     * @param contacts number of contacts.
+     * @param meetings number of meetings.
+     * @return the manager.
+     */
+    private static ContactManagerImpl load(ContactManagerOptions options, int contacts, int meetings) {
+        ContactManagerImpl contactManager = new ContactManagerImpl(options);
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        ImportBatch batch = contactManager.beginImport();
+        int firstId = 0;
+        for (int x = 0; x < contacts; x++) {
+            int id = batch.addContact("Contact " + x, "");
+            firstId = x == 0 ? id : firstId;
+        }
+        for (int x = 0; x < meetings; x++) {
+            int[] attendeeIds = new int[4];
+            for (int y = 0; y < attendeeIds.length; y++) {
+                attendeeIds[y] = firstId + random.nextInt(contacts);
+            }
+            Calendar date = Calendar.getInstance();
+            long offset = (long) (random.nextDouble() * 10 * 365 * DAY_MILLIS) + DAY_MILLIS;
+            if (x % 2 == 0) {
+                date.setTimeInMillis(now - offset);
+                batch.addPastMeeting(date, "", attendeeIds);
+            } else {
+                date.setTimeInMillis(now + offset);
+                batch.addFutureMeeting(date, attendeeIds);
+            }
+        }
+        batch.commit();
+        return contactManager;
+    }
+
+    /**
+     * Returns a date up to ten years before or after a time.
+     *
+     * @param random source of randomness.
+     * @param now the time.
+     * @return the date.
+     */
+    private static Calendar randomDate(Random random, long now) {
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(now + (long) ((random.nextDouble() * 2 - 1) * 10 * 365 * DAY_MILLIS));
+        return date;
+    }
+
+    /**
+     * Runs a query repeatedly and prints the time, allocation and result size per call. The first passes warm up the
+     * JIT and are not reported.
+     *
+     * @param name the query.
+     * @param queries number of calls.
+     * @param query the query.
+     */
+    private static void report(String name, int queries, Query query) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int pass = 0; pass <= WARMUP_PASSES; pass++) {
+            Random random = new Random(7);
+            long results = 0;
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            for (int x = 0; x < queries; x++) {
+                results += query.run(random);
+            }
+            long elapsed = System.nanoTime() - startTime;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+            if (pass == WARMUP_PASSES) {
+                System.out.printf("  %-32s %8.2f us %10.0f bytes %8.1f results per call%n", name,
+                        elapsed / 1e3 / queries, (double) allocated / queries, (double) results / queries);
+            }
+        }
+    }
+
+    /**
+     * A query to measure.
+     */
+    private interface Query {
+        /**
+         * Runs the query once.
+         *
+         * @param random source of randomness for the query arguments.
+         * @return the number of results.
+         */
+        int run(Random random);
+    }
+}
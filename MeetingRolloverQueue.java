@@ -0,0 +1,61 @@
+import java.time.Clock;
+import java.util.PriorityQueue;
+
+/**
+ * MeetingRolloverQueue
+ *
+ * Future meetings in order of time, so that those whose time has passed are found without scanning them all. Adding a
+ * meeting and taking the next one that is due each cost O(log n), and finding that none is due costs O(1).
+ *
+ * The queue does not follow changes to the meetings: a meeting that is replaced stays queued until it is due, so a
+ * caller taking it has to check that it is still current. The time is read from a Clock, which tests can control.
+ */
+public class MeetingRolloverQueue {
+    private PriorityQueue<FutureMeeting> meetings = null;
+    private Clock clock = null;
+
+    /**
+     * Constructor
+     *
+     * @param clock source of the current time.
+     * @throws NullPointerException if the clock is null.
+     */
+    public MeetingRolloverQueue(Clock clock) {
+        if (clock == null) {
+            throw new NullPointerException("Clock cannot be null.");
+        }
+        this.meetings = new PriorityQueue<FutureMeeting>(11, Meeting.CHRONOLOGICAL_ORDER);
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a meeting to the queue.
+     *
+     * @param meeting the future meeting.
+     */
+    public void add(FutureMeeting meeting) {
+        this.meetings.add(meeting);
+    }
+
+    /**
+     * Takes the earliest meeting off the queue if its time has passed.
+     *
+     * @return the earliest meeting if its time is not after the current time, otherwise null.
+     */
+    public FutureMeeting pollDue() {
+        FutureMeeting meeting = this.meetings.peek();
+        if (meeting == null || Utilities.meetingTimeMillis(meeting) > this.clock.millis()) {
+            return null;
+        }
+        return this.meetings.poll();
+    }
+
+    /**
+     * Returns the number of meetings queued.
+     *
+     * @return the number of meetings.
+     */
+    public int size() {
+        return this.meetings.size();
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.*;
+
+/**
+ * MeetingSetBenchmark
+ *
+ * Measures how fast meetings are hashed and compared, through Utilities.removeDuplicateItemsInList and through
+ * contains() on a HashSet and on a list of meetings.
+ *
+ * Usage: java MeetingSetBenchmark [meetings] [attendees per meeting]
+ *
+ * The defaults are 500,000 meetings of 5 attendees each. The list given to removeDuplicateItemsInList holds every
+ * meeting twice, as when the meetings of several contacts are combined. HashSet lookups are made for every meeting,
+ * list lookups for 200 meetings spread over the list. Each measurement is repeated and the median is reported.
+ */
+public class MeetingSetBenchmark {
+    private static final int ROUNDS = 7;
+    private static final int LIST_LOOKUPS = 200;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int meetings = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int attendees = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Contact[] contacts = new Contact[1000];
+        for (int x = 0; x < contacts.length; x++) {
+            contacts[x] = new ContactImpl(x + 1, "Contact " + (x + 1), "");
+        }
+
+        Random random = new Random(42);
+        List<Meeting> meetingList = new ArrayList<Meeting>(meetings);
+        for (int x = 0; x < meetings; x++) {
+            Set<Contact> attendeeSet = new HashSet<Contact>();
+            while (attendeeSet.size() < attendees) {
+                attendeeSet.add(contacts[random.nextInt(contacts.length)]);
+            }
+            meetingList.add(new FutureMeetingImpl(x + 1, 1262304000000L + x * 60000L, attendeeSet));
+        }
+
+        final List<Meeting> doubledList = new ArrayList<Meeting>(meetingList);
+        doubledList.addAll(meetingList);
+        Collections.shuffle(doubledList, random);
+        report("removeDuplicateItemsInList of " + doubledList.size(), new Runnable() {
+            @Override
+            public void run() {
+                if (Utilities.removeDuplicateItemsInList(doubledList).size() * 2 != doubledList.size()) {
+                    throw new IllegalStateException("Duplicates were not removed.");
+                }
+            }
+        });
+
+        final Set<Meeting> meetingSet = new HashSet<Meeting>(meetingList);
+        final List<Meeting> lookupList = meetingList;
+        report("HashSet.contains() of each of " + meetingSet.size(), new Runnable() {
+            @Override
+            public void run() {
+                for (Meeting meeting : lookupList) {
+                    if (!meetingSet.contains(meeting)) {
+                        throw new IllegalStateException("Meeting not found.");
+                    }
+                }
+            }
+        });
+
+        report("List.contains() of " + LIST_LOOKUPS + " in " + lookupList.size(), new Runnable() {
+            @Override
+            public void run() {
+                for (int x = 0; x < LIST_LOOKUPS; x++) {
+                    Meeting meeting = lookupList.get((int) ((long) x * lookupList.size() / LIST_LOOKUPS));
+                    if (!lookupList.contains(meeting)) {
+                        throw new IllegalStateException("Meeting not found.");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a measurement repeatedly and prints the median time.
+     *
+     * @param name what is measured.
+     * @param measurement the code to time.
+     */
+    private static void report(String name, Runnable measurement) {
+        double[] times = new double[ROUNDS];
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long startTime = System.nanoTime();
+            measurement.run();
+            times[round] = (System.nanoTime() - startTime) / 1e6;
+        }
+        Arrays.sort(times);
+        System.out.printf("%s: median %.1f ms.%n", name, times[ROUNDS / 2]);
+    }
+}
@@ -0,0 +1,335 @@
+import java.util.*;
+
+/**
+ * NotesIndex
+ *
+ * An inverted index for full-text search over notes, keyed by the int ID of whatever the notes belong to (a contact
+ * or a meeting).
+ *
+ * Notes are split into terms of letters and digits, lower-cased. Each term maps to the IDs of the notes containing it,
+ * held in ascending order together with how often the term occurs. A query returns the IDs of the notes that contain
+ * every one of its terms, best first, ranked by BM25: rare terms, repeated terms and short notes score higher.
+ *
+ * Not thread-safe.
+ */
+public class NotesIndex {
+    // BM25 term frequency saturation and length normalisation, the usual defaults.
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Term to the notes containing it.
+    private Map<String, Postings> postingsByTerm = null;
+
+    // ID to the distinct terms and the length of its notes, needed to remove or replace the notes.
+    private IntHashMap<Document> documents = null;
+    private long totalLength = 0;
+
+    /**
+     * Constructor
+     */
+    public NotesIndex() {
+        this.postingsByTerm = new HashMap<String, Postings>();
+        this.documents = new IntHashMap<Document>();
+    }
+
+    /**
+     * Indexes notes, replacing any notes indexed before under the same ID.
+     *
+     * @param id ID of the contact or meeting the notes belong to.
+     * @param text the notes.
+     */
+    public void put(int id, String text) {
+        remove(id);
+
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return;
+        }
+
+        // Count the occurrences of each term.
+        Map<String, int[]> termFrequencies = new HashMap<String, int[]>();
+        for (String token : tokens) {
+            int[] frequency = termFrequencies.get(token);
+            if (frequency == null) {
+                termFrequencies.put(token, new int[] {1});
+            } else {
+                frequency[0]++;
+            }
+        }
+
+        String[] terms = new String[termFrequencies.size()];
+        int x = 0;
+        for (Map.Entry<String, int[]> term : termFrequencies.entrySet()) {
+            Postings postings = this.postingsByTerm.get(term.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                this.postingsByTerm.put(term.getKey(), postings);
+            }
+            postings.add(id, term.getValue()[0], tokens.size());
+            terms[x++] = term.getKey();
+        }
+
+        this.documents.put(id, new Document(terms, tokens.size()));
+        this.totalLength += tokens.size();
+    }
+
+    /**
+     * Removes the notes indexed under an ID, if any.
+     *
+     * @param id ID of the contact or meeting the notes belong to.
+     */
+    public void remove(int id) {
+        Document document = this.documents.remove(id);
+        if (document == null) {
+            return;
+        }
+
+        for (String term : document.terms) {
+            Postings postings = this.postingsByTerm.get(term);
+            postings.remove(id);
+            if (postings.size == 0) {
+                this.postingsByTerm.remove(term);
+            }
+        }
+        this.totalLength -= document.length;
+    }
+
+    /**
+     * Returns the IDs of the notes that contain every term of the query, best match first.
+     *
+     * @param query the search terms, separated by spaces or punctuation.
+     * @param limit maximum number of IDs to return.
+     * @return the IDs of the best matching notes, best first. Equal scores are in ascending ID order.
+     */
+    public int[] search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<String>(tokenize(query));
+        if (queryTerms.isEmpty() || limit == 0) {
+            return new int[0];
+        }
+
+        // Every term must be present. The rarest term drives the search and the others are probed for its IDs.
+        Postings[] termPostings = new Postings[queryTerms.size()];
+        int x = 0;
+        for (String term : queryTerms) {
+            termPostings[x] = this.postingsByTerm.get(term);
+            if (termPostings[x] == null) {
+                return new int[0];
+            }
+            x++;
+        }
+        Arrays.sort(termPostings, new Comparator<Postings>() {
+            @Override
+            public int compare(Postings first, Postings second) {
+                return Integer.compare(first.size, second.size);
+            }
+        });
+
+        int documentCount = this.documents.size();
+        double averageLength = (double) this.totalLength / documentCount;
+        double[] idf = new double[termPostings.length];
+        for (x = 0; x < termPostings.length; x++) {
+            int df = termPostings[x].size;
+            idf[x] = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+        }
+
+        // Lowest of the best scores kept so far at the head.
+        PriorityQueue<ScoredId> best = new PriorityQueue<ScoredId>(Math.min(limit, 1024) + 1);
+        int[] cursors = new int[termPostings.length];
+        Postings rarest = termPostings[0];
+
+        candidates:
+        for (int position = 0; position < rarest.size; position++) {
+            int id = rarest.ids[position];
+            double lengthNorm = K1 * (1 - B + B * rarest.lengths[position] / averageLength);
+            double score = termScore(rarest.frequencies[position], lengthNorm, idf[0]);
+
+            for (int t = 1; t < termPostings.length; t++) {
+                // IDs come in ascending order, so each probe can start where the last one ended.
+                cursors[t] = termPostings[t].find(id, cursors[t]);
+                if (cursors[t] >= termPostings[t].size || termPostings[t].ids[cursors[t]] != id) {
+                    continue candidates;
+                }
+                score += termScore(termPostings[t].frequencies[cursors[t]], lengthNorm, idf[t]);
+            }
+
+            // Only allocate for candidates that make it into the best so far.
+            if (best.size() < limit) {
+                best.add(new ScoredId(id, score));
+            } else if (score > best.peek().score) {
+                best.poll();
+                best.add(new ScoredId(id, score));
+            }
+        }
+
+        int[] ids = new int[best.size()];
+        for (x = ids.length - 1; x >= 0; x--) {
+            ids[x] = best.poll().id;
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the number of notes in the index.
+     *
+     * @return the number of notes.
+     */
+    public int size() {
+        return this.documents.size();
+    }
+
+    /**
+     * Splits text into lower-case terms of letters and digits.
+     *
+     * @param text the text.
+     * @return the terms in order of occurrence.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+
+        for (int x = 0; x < text.length(); x++) {
+            char c = text.charAt(x);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the BM25 score of one term in one document.
+     *
+     * @param frequency occurrences of the term in the document.
+     * @param lengthNorm K1 scaled by the document length relative to the average.
+     * @param idf inverse document frequency of the term.
+     * @return the score.
+     */
+    private static double termScore(int frequency, double lengthNorm, double idf) {
+        return idf * frequency * (K1 + 1) / (frequency + lengthNorm);
+    }
+
+    /**
+     * IDs of the notes containing a term, in ascending order, with the term's frequency in each and the length of
+     * each. Keeping the length next to the ID spares a document lookup for every candidate a query scores.
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int[] frequencies = new int[4];
+        private int[] lengths = new int[4];
+        private int size = 0;
+
+        /**
+         * Adds an ID at its sorted position.
+         *
+         * @param id the ID.
+         * @param frequency occurrences of the term.
+         * @param length number of terms in the notes.
+         */
+        void add(int id, int frequency, int length) {
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+                this.frequencies = Arrays.copyOf(this.frequencies, this.size * 2);
+                this.lengths = Arrays.copyOf(this.lengths, this.size * 2);
+            }
+
+            // IDs are mostly handed out in increasing order, so appending is the common case.
+            int position = this.size;
+            if (this.size > 0 && this.ids[this.size - 1] > id) {
+                position = find(id, 0);
+                System.arraycopy(this.ids, position, this.ids, position + 1, this.size - position);
+                System.arraycopy(this.frequencies, position, this.frequencies, position + 1, this.size - position);
+                System.arraycopy(this.lengths, position, this.lengths, position + 1, this.size - position);
+            }
+            this.ids[position] = id;
+            this.frequencies[position] = frequency;
+            this.lengths[position] = length;
+            this.size++;
+        }
+
+        /**
+         * Removes an ID, if present.
+         *
+         * @param id the ID.
+         */
+        void remove(int id) {
+            int position = find(id, 0);
+            if (position < this.size && this.ids[position] == id) {
+                System.arraycopy(this.ids, position + 1, this.ids, position, this.size - position - 1);
+                System.arraycopy(this.frequencies, position + 1, this.frequencies, position, this.size - position - 1);
+                System.arraycopy(this.lengths, position + 1, this.lengths, position, this.size - position - 1);
+                this.size--;
+            }
+        }
+
+        /**
+         * Finds the position of the first ID not below the one given, searching from a starting position.
+         *
+         * @param id the ID.
+         * @param from position to search from.
+         * @return the position, which is size if every ID from the starting position is lower.
+         */
+        int find(int id, int from) {
+            // Gallop forward to bracket the ID, then binary search the bracket.
+            int low = from;
+            int step = 1;
+            int high = from;
+            while (high < this.size && this.ids[high] < id) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, this.size);
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.ids[middle] < id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Distinct terms and length of one document's notes.
+     */
+    private static class Document {
+        private String[] terms = null;
+        private int length = 0;
+
+        Document(String[] terms, int length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A candidate ID with its score, ordered worst first so that a priority queue keeps the best at the tail.
+     */
+    private static class ScoredId implements Comparable<ScoredId> {
+        private int id = 0;
+        private double score = 0;
+
+        ScoredId(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredId other) {
+            if (this.score != other.score) {
+                return this.score < other.score ? -1 : 1;
+            }
+            // On equal scores the higher ID is worse, so lower IDs are kept and listed first.
+            return Integer.compare(other.id, this.id);
+        }
+    }
+}
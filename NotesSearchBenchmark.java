@@ -0,0 +1,106 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * NotesSearchBenchmark
+ *
+ * Measures how long NotesIndex takes to index generated notes and to answer one, two and three word queries.
+ *
+ * Usage: java NotesSearchBenchmark [notes] [vocabulary size] [queries per kind]
+ *
+ * The defaults are 2,000,000 notes of 5 to 30 words drawn from 50,000 words with a Zipf-like distribution, as in
+ * natural language, so a few words are in most notes and most words are rare. Queries draw their words the same way
+ * and return the top 10. Latencies are reported as median, 99th percentile and maximum.
+ */
+public class NotesSearchBenchmark {
+    private static final int LIMIT = 10;
+
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     */
+    public static void main(String[] args) {
+        int[] numbers = {2000000, 50000, 1000};
+        for (int x = 0; x < args.length && x < numbers.length; x++) {
+            numbers[x] = Integer.parseInt(args[x]);
+        }
+
+        Random random = new Random(42);
+        String[] vocabulary = new String[numbers[1]];
+        for (int x = 0; x < vocabulary.length; x++) {
+            vocabulary[x] = "w" + Integer.toString(x, 36);
+        }
+        double[] cumulative = zipfCumulative(vocabulary.length);
+
+        NotesIndex index = new NotesIndex();
+        StringBuilder notes = new StringBuilder();
+        long startTime = System.nanoTime();
+        for (int id = 1; id <= numbers[0]; id++) {
+            notes.setLength(0);
+            int words = 5 + random.nextInt(26);
+            for (int x = 0; x < words; x++) {
+                notes.append(vocabulary[pick(random, cumulative)]).append(' ');
+            }
+            index.put(id, notes.toString());
+        }
+        System.out.printf("Indexed %d notes in %.0f ms.%n", index.size(), (System.nanoTime() - startTime) / 1e6);
+
+        for (int terms = 1; terms <= 3; terms++) {
+            // The first pass warms up the JIT and is not reported.
+            for (int pass = 0; pass < 2; pass++) {
+                long[] latencies = new long[numbers[2]];
+                long results = 0;
+                for (int q = 0; q < latencies.length; q++) {
+                    StringBuilder query = new StringBuilder();
+                    for (int x = 0; x < terms; x++) {
+                        query.append(vocabulary[pick(random, cumulative)]).append(' ');
+                    }
+
+                    long queryStart = System.nanoTime();
+                    results += index.search(query.toString(), LIMIT).length;
+                    latencies[q] = System.nanoTime() - queryStart;
+                }
+
+                if (pass == 1) {
+                    Arrays.sort(latencies);
+                    System.out.printf("%d word queries: median %.1f us, p99 %.1f us, max %.1f us, %.1f results.%n",
+                            terms, latencies[latencies.length / 2] / 1e3,
+                            latencies[(int) (latencies.length * 0.99)] / 1e3, latencies[latencies.length - 1] / 1e3,
+                            (double) results / latencies.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns cumulative probabilities of a Zipf distribution, where the word of rank r has weight 1 / r.
+     *
+     * @param size number of words.
+     * @return cumulative probability of each rank.
+     */
+    private static double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int x = 0; x < size; x++) {
+            total += 1.0 / (x + 1);
+            cumulative[x] = total;
+        }
+        for (int x = 0; x < size; x++) {
+            cumulative[x] /= total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Picks a word rank from the distribution.
+     *
+     * @param random source of randomness.
+     * @param cumulative cumulative probability of each rank.
+     * @return the word rank.
+     */
+    private static int pick(Random random, double[] cumulative) {
+        int position = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(position < 0 ? -position - 1 : position, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OperationMetrics
+ *
+ * Call count, failures, latency histogram and result sizes of one ContactManager operation. Calls may be recorded from
+ * any number of threads.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    private String name = null;
+    private LatencyHistogram latency = null;
+    private AtomicLong failures = null;
+    private AtomicLong totalResultSize = null;
+
+    /**
+     * Constructor
+     *
+     * @param name name of the operation.
+     */
+    public OperationMetrics(String name) {
+        this.name = name;
+        this.latency = new LatencyHistogram();
+        this.failures = new AtomicLong();
+        this.totalResultSize = new AtomicLong();
+    }
+
+    /**
+     * Returns the name of the operation.
+     *
+     * @return the name of the operation.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records a successful call that returned no collection.
+     *
+     * @param startTime System.nanoTime() when the call started.
+     */
+    public void record(long startTime) {
+        this.latency.record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records a successful call that returned a collection.
+     *
+     * @param startTime System.nanoTime() when the call started.
+     * @param resultSize number of contacts or meetings returned.
+     */
+    public void record(long startTime, int resultSize) {
+        this.latency.record(System.nanoTime() - startTime);
+        this.totalResultSize.addAndGet(resultSize);
+    }
+
+    /**
+     * Records a call that threw an exception.
+     *
+     * @param startTime System.nanoTime() when the call started.
+     */
+    public void recordFailure(long startTime) {
+        this.latency.record(System.nanoTime() - startTime);
+        this.failures.incrementAndGet();
+    }
+
+    /**
+     * Returns the latency histogram, in nanoseconds.
+     *
+     * @return the latency histogram.
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Returns the number of calls, including those that failed.
+     *
+     * @return the number of calls.
+     */
+    @Override
+    public long getCalls() {
+        return this.latency.getCount();
+    }
+
+    /**
+     * Returns the number of calls that threw an exception.
+     *
+     * @return the number of failed calls.
+     */
+    @Override
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean latency in microseconds.
+     */
+    @Override
+    public double getMeanMicros() {
+        return this.latency.getMean() / 1e3;
+    }
+
+    /**
+     * Returns the median latency.
+     *
+     * @return the median latency in microseconds.
+     */
+    @Override
+    public double getP50Micros() {
+        return this.latency.getValueAtPercentile(50) / 1e3;
+    }
+
+    /**
+     * Returns the 90th percentile latency.
+     *
+     * @return the 90th percentile latency in microseconds.
+     */
+    @Override
+    public double getP90Micros() {
+        return this.latency.getValueAtPercentile(90) / 1e3;
+    }
+
+    /**
+     * Returns the 99th percentile latency.
+     *
+     * @return the 99th percentile latency in microseconds.
+     */
+    @Override
+    public double getP99Micros() {
+        return this.latency.getValueAtPercentile(99) / 1e3;
+    }
+
+    /**
+     * Returns the 99.9th percentile latency.
+     *
+     * @return the 99.9th percentile latency in microseconds.
+     */
+    @Override
+    public double getP999Micros() {
+        return this.latency.getValueAtPercentile(99.9) / 1e3;
+    }
+
+    /**
+     * Returns the highest latency.
+     *
+     * @return the highest latency in microseconds.
+     */
+    @Override
+    public double getMaxMicros() {
+        return this.latency.getMax() / 1e3;
+    }
+
+    /**
+     * Returns the mean number of contacts or meetings returned by a successful call.
+     *
+     * @return the mean result size, or 0 if the operation returns no collection.
+     */
+    @Override
+    public double getMeanResultSize() {
+        // An operation either always returns a collection or never does, so every successful call counts.
+        long count = getCalls() - getFailures();
+        if (count <= 0) {
+            return 0;
+        }
+        return (double) this.totalResultSize.get() / count;
+    }
+
+    /**
+     * Returns a one-line summary of the operation, in the columns of ContactManagerMetrics.dump().
+     *
+     * @return summary of the operation.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-30s %9d %6d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %9.1f", this.name, getCalls(),
+                getFailures(), getMeanMicros(), getP50Micros(), getP90Micros(), getP99Micros(), getP999Micros(),
+                getMaxMicros(), getMeanResultSize());
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * OperationMetricsMBean
+ *
+ * JMX view of the calls made to one ContactManager operation. Latencies are in microseconds.
+ */
+public interface OperationMetricsMBean {
+    /**
+     * Returns the number of calls, including those that failed.
+     *
+     * @return the number of calls.
+     */
+    long getCalls();
+
+    /**
+     * Returns the number of calls that threw an exception.
+     *
+     * @return the number of failed calls.
+     */
+    long getFailures();
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean latency in microseconds.
+     */
+    double getMeanMicros();
+
+    /**
+     * Returns the median latency.
+     *
+     * @return the median latency in microseconds.
+     */
+    double getP50Micros();
+
+    /**
+     * Returns the 90th percentile latency.
+     *
+     * @return the 90th percentile latency in microseconds.
+     */
+    double getP90Micros();
+
+    /**
+     * Returns the 99th percentile latency.
+     *
+     * @return the 99th percentile latency in microseconds.
+     */
+    double getP99Micros();
+
+    /**
+     * Returns the 99.9th percentile latency.
+     *
+     * @return the 99.9th percentile latency in microseconds.
+     */
+    double getP999Micros();
+
+    /**
+     * Returns the highest latency.
+     *
+     * @return the highest latency in microseconds.
+     */
+    double getMaxMicros();
+
+    /**
+     * Returns the mean number of contacts or meetings returned by a successful call.
+     *
+     * @return the mean result size, or 0 if the operation returns no collection.
+     */
+    double getMeanResultSize();
+}
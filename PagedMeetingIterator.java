@@ -0,0 +1,81 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * PagedMeetingIterator
+ *
+ * Iterates over a chronologically ordered meeting query by fetching it a page at a time, each page starting after the
+ * last meeting returned. Only one page is held at once, so the first meetings come back in constant time and memory
+ * however many there are in all. Pages start small and grow, since callers often stop after the first few meetings.
+ *
+ * Each page is looked up afresh, so meetings added or removed between pages do not make the iteration fail: it goes on
+ * with whatever comes after the last meeting returned.
+ */
+public abstract class PagedMeetingIterator<M extends Meeting> implements Iterator<M> {
+    private static final int FIRST_PAGE_SIZE = 32;
+    private static final int MAX_PAGE_SIZE = 1024;
+
+    private List<M> page = null;
+    private int position = 0;
+    private int pageSize = FIRST_PAGE_SIZE;
+    private M lastMeeting = null;
+    private boolean lastPage = false;
+
+    /**
+     * Fetches a page of the query.
+     *
+     * @param after the last meeting returned, or null for the first page.
+     * @param limit maximum number of meetings to return.
+     * @return the meetings that come after the given one, in chronological order.
+     */
+    protected abstract List<M> fetchPage(Meeting after, int limit);
+
+    /**
+     * Checks if there are more meetings, fetching the next page if the current one is used up.
+     *
+     * @return true if there are more meetings, otherwise false.
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.page != null && this.position < this.page.size()) {
+            return true;
+        }
+        if (this.lastPage) {
+            return false;
+        }
+
+        this.page = fetchPage(this.lastMeeting, this.pageSize);
+        this.position = 0;
+
+        // A page that is not full is the last one.
+        this.lastPage = this.page.size() < this.pageSize;
+        this.pageSize = Math.min(this.pageSize * 2, MAX_PAGE_SIZE);
+        return !this.page.isEmpty();
+    }
+
+    /**
+     * Returns the next meeting.
+     *
+     * @return the next meeting.
+     * @throws NoSuchElementException if there are no more meetings.
+     */
+    @Override
+    public M next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more meetings.");
+        }
+        this.lastMeeting = this.page.get(this.position++);
+        return this.lastMeeting;
+    }
+
+    /**
+     * Not supported, query results are read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Meetings cannot be removed through a query.");
+    }
+}
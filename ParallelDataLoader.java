@@ -0,0 +1,404 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelDataLoader
+ *
+ * Loads a large CSV data file using every core. The file is memory mapped and split into newline-aligned chunks.
+ *
+ * Loading happens in two parallel passes:
+ * 1. parse() tokenizes every chunk and creates the contacts.
+ * 2. buildMeetings() creates the meetings, once the caller has indexed the contacts and can resolve attendees.
+ *
+ * Results are returned in file order, so the caller can index them single-threaded exactly as the streaming loader
+ * would. Meeting notes, contact notes and meeting sequence records, which refer to what was loaded before them, are
+ * handed on last by replayMeetingRecords().
+ */
+public class ParallelDataLoader {
+    // Chunks are mapped one at a time, so each has to fit in a MappedByteBuffer.
+    private static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private File file = null;
+    private ForkJoinPool pool = null;
+    private long chunkSize = 0;
+    private boolean escapedText = false;
+    private List<Chunk> chunks = null;
+    private long lines = 0;
+
+    /**
+     * Constructor
+     *
+     * @param file data file to load.
+     * @param pool pool the passes run in.
+     */
+    public ParallelDataLoader(File file, ForkJoinPool pool) {
+        this(file, pool, 0);
+    }
+
+    /**
+     * Constructor
+     * Tests use small chunks, so that small files are split too.
+     *
+     * @param file data file to load.
+     * @param pool pool the passes run in.
+     * @param chunkSize size each chunk is cut at before it is moved on to the next line end, or 0 to size the chunks
+     *                  by the file size and the parallelism of the pool.
+     */
+    ParallelDataLoader(File file, ForkJoinPool pool, long chunkSize) {
+        this.file = file;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * First pass: maps the file and parses every chunk in parallel.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    public void parse() throws IOException {
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+        try {
+            // Only the first chunk holds the FORMAT line, which says whether the text fields are escaped.
+            this.escapedText = readFormatVersion(channel) >= CsvDataReader.ESCAPED_TEXT_VERSION;
+            this.chunks = splitIntoChunks(channel);
+
+            List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+            for (final Chunk chunk : this.chunks) {
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        chunk.parse(escapedText);
+                    }
+                });
+            }
+            invokeAll(tasks);
+        } finally {
+            channel.close();
+        }
+
+        for (Chunk chunk : this.chunks) {
+            this.lines += chunk.lines;
+        }
+    }
+
+    /**
+     * Returns the contacts read by parse(), in file order.
+     *
+     * @return the contacts.
+     */
+    public List<Contact> getContacts() {
+        List<Contact> contacts = new ArrayList<Contact>();
+        for (Chunk chunk : this.chunks) {
+            contacts.addAll(chunk.contacts);
+        }
+        return contacts;
+    }
+
+    /**
+     * Second pass: creates the meetings read by parse() in parallel, resolving attendees through the provided
+     * contact lookup. The contacts behind it are only read, so they must not be modified while this runs.
+     *
+     * @param contactLookup where attendee IDs are looked up, and then kept for the AttendeeSet of each meeting.
+     * @return the meetings, in file order. Past meetings are PastMeetingImpl, future meetings FutureMeetingImpl.
+     */
+    public List<Meeting> buildMeetings(final ContactLookup contactLookup) {
+        List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        for (final Chunk chunk : this.chunks) {
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    chunk.buildMeetings(contactLookup);
+                }
+            });
+        }
+        invokeAll(tasks);
+
+        List<Meeting> meetings = new ArrayList<Meeting>();
+        for (Chunk chunk : this.chunks) {
+            meetings.addAll(chunk.meetings);
+        }
+        return meetings;
+    }
+
+    /**
+     * Passes the meeting notes, contact notes and meeting sequence records read by parse() to the handler, in file
+     * order. Call it once the contacts and the meetings from buildMeetings() have been indexed.
+     *
+     * @param handler receiver of the records.
+     */
+    public void replayMeetingRecords(DataRecordHandler handler) {
+        CsvDataReader reader = new CsvDataReader();
+        reader.setEscapedText(this.escapedText);
+        for (Chunk chunk : this.chunks) {
+            for (String line : chunk.meetingRecordLines) {
+                reader.parseLine(line, handler);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lines read by parse().
+     *
+     * @return the number of lines.
+     */
+    public long getLines() {
+        return this.lines;
+    }
+
+    /**
+     * Runs the tasks in the pool and waits for all of them.
+     *
+     * @param tasks the tasks.
+     */
+    private void invokeAll(final List<RecursiveAction> tasks) {
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Reads the version from the FORMAT line at the start of the file.
+     *
+     * @param channel channel open on the file.
+     * @return the format version, or 0 if the file does not start with a FORMAT line.
+     * @throws IOException if the file cannot be read.
+     */
+    private int readFormatVersion(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(64);
+        channel.read(header, 0);
+
+        int end = 0;
+        while (end < header.position() && header.get(end) != '\n' && header.get(end) != '\r') {
+            end++;
+        }
+        return CsvDataReader.formatVersion(new String(header.array(), 0, end, ContactManagerImpl.DATA_FILE_CHARSET));
+    }
+
+    /**
+     * Splits the file into chunks that each start at the beginning of a line and end after a newline (or at the end
+     * of the file), and maps each of them.
+     *
+     * @param channel channel open on the file.
+     * @return the chunks, in file order.
+     * @throws IOException if the file cannot be read.
+     */
+    private List<Chunk> splitIntoChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long targetSize = this.chunkSize;
+        if (targetSize == 0) {
+            targetSize = size / (this.pool.getParallelism() * 4L);
+            targetSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, targetSize));
+        }
+
+        List<Chunk> chunkList = new ArrayList<Chunk>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+
+        while (start < size) {
+            long end = Math.min(size, start + targetSize);
+
+            // Move the end forward to just after the next newline, so no line is split between chunks.
+            boolean aligned = end == size;
+            while (!aligned) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                for (int x = 0; x < read; x++) {
+                    if (probe.get(x) == '\n') {
+                        end += x + 1;
+                        aligned = true;
+                        break;
+                    }
+                }
+                if (!aligned) {
+                    end += read;
+                    if (end - start > Integer.MAX_VALUE) {
+                        throw new IOException("Line too long in " + this.file);
+                    }
+                }
+            }
+
+            chunkList.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            start = end;
+        }
+        return chunkList;
+    }
+
+    /**
+     * One newline-aligned part of the file, with the records parsed from it.
+     */
+    private static class Chunk implements DataRecordHandler {
+        private MappedByteBuffer buffer = null;
+        private long lines = 0;
+
+        private List<Contact> contacts = new ArrayList<Contact>();
+
+        // Meeting notes, contact notes and meeting sequence lines, kept as text for replayMeetingRecords(). They are
+        // rare.
+        private List<String> meetingRecordLines = new ArrayList<String>();
+        private String line = null;
+
+        // Meeting records from the first pass, held as parallel arrays until the second pass builds them.
+        private int meetingCount = 0;
+        private int[] meetingIds = new int[64];
+        private long[] meetingDates = new long[64];
+        private String[] meetingNotes = new String[64];
+        private int[][] meetingAttendees = new int[64][];
+        private boolean[] meetingIsPast = new boolean[64];
+
+        private List<Meeting> meetings = null;
+
+        Chunk(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Decodes each line of the chunk and parses it.
+         *
+         * @param escapedText true if the file escapes its text fields.
+         */
+        void parse(boolean escapedText) {
+            CsvDataReader reader = new CsvDataReader();
+            reader.setEscapedText(escapedText);
+            byte[] lineBytes = new byte[256];
+            int limit = this.buffer.limit();
+            int lineStart = 0;
+
+            while (lineStart < limit) {
+                // Find the end of the line.
+                int lineEnd = lineStart;
+                while (lineEnd < limit && this.buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && this.buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+
+                int length = lineEnd - lineStart;
+                if (length > lineBytes.length) {
+                    lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+                }
+                this.buffer.position(lineStart);
+                this.buffer.get(lineBytes, 0, length);
+
+                this.lines++;
+                this.line = new String(lineBytes, 0, length, ContactManagerImpl.DATA_FILE_CHARSET);
+                reader.parseLine(this.line, this);
+                lineStart = next;
+            }
+
+            // Let the mapping go once parsed.
+            this.buffer = null;
+            this.line = null;
+        }
+
+        /**
+         * Creates the meetings parsed from the chunk.
+         *
+         * @param contactLookup where attendee IDs are looked up.
+         */
+        void buildMeetings(ContactLookup contactLookup) {
+            this.meetings = new ArrayList<Meeting>(this.meetingCount);
+
+            for (int x = 0; x < this.meetingCount; x++) {
+                int[] attendeeIds = this.meetingAttendees[x];
+                int count = 0;
+                for (int id : attendeeIds) {
+                    // IDs that do not belong to a known contact are left out.
+                    if (contactLookup.getContact(id) != null) {
+                        attendeeIds[count++] = id;
+                    }
+                }
+                Set<Contact> attendees = new AttendeeSet(Arrays.copyOf(attendeeIds, count), contactLookup);
+
+                if (this.meetingIsPast[x]) {
+                    this.meetings.add(new PastMeetingImpl(this.meetingIds[x], this.meetingDates[x], attendees,
+                            this.meetingNotes[x]));
+                } else {
+                    this.meetings.add(new FutureMeetingImpl(this.meetingIds[x], this.meetingDates[x], attendees));
+                }
+            }
+
+            // Free the first pass arrays.
+            this.meetingNotes = null;
+            this.meetingAttendees = null;
+        }
+
+        @Override
+        public void contactRecord(int id, String name, String notes) {
+            this.contacts.add(new ContactImpl(id, name, notes));
+        }
+
+        @Override
+        public void pastMeetingRecord(int id, long dateMillis, String notes, int[] attendeeIds) {
+            addMeetingRecord(true, id, dateMillis, notes, attendeeIds);
+        }
+
+        @Override
+        public void futureMeetingRecord(int id, long dateMillis, int[] attendeeIds) {
+            addMeetingRecord(false, id, dateMillis, null, attendeeIds);
+        }
+
+        @Override
+        public void meetingNotesRecord(int id, String notes) {
+            this.meetingRecordLines.add(this.line);
+        }
+
+        @Override
+        public void contactNotesRecord(int id, String notes) {
+            this.meetingRecordLines.add(this.line);
+        }
+
+        @Override
+        public void meetingSequenceRecord(int nextId) {
+            this.meetingRecordLines.add(this.line);
+        }
+
+        /**
+         * Appends a meeting record to the parallel arrays, growing them as needed.
+         *
+         * @param past true for a past meeting, false for a future meeting.
+         * @param id ID of the meeting.
+         * @param dateMillis date of the meeting as milliseconds since the epoch.
+         * @param notes meeting notes text, or null for a future meeting.
+         * @param attendeeIds contact IDs of the attendees.
+         */
+        private void addMeetingRecord(boolean past, int id, long dateMillis, String notes, int[] attendeeIds) {
+            if (this.meetingCount == this.meetingIds.length) {
+                int capacity = this.meetingCount * 2;
+                this.meetingIds = Arrays.copyOf(this.meetingIds, capacity);
+                this.meetingDates = Arrays.copyOf(this.meetingDates, capacity);
+                this.meetingNotes = Arrays.copyOf(this.meetingNotes, capacity);
+                this.meetingAttendees = Arrays.copyOf(this.meetingAttendees, capacity);
+                this.meetingIsPast = Arrays.copyOf(this.meetingIsPast, capacity);
+            }
+
+            this.meetingIds[this.meetingCount] = id;
+            this.meetingDates[this.meetingCount] = dateMillis;
+            this.meetingNotes[this.meetingCount] = notes;
+            this.meetingAttendees[this.meetingCount] = attendeeIds;
+            this.meetingIsPast[this.meetingCount] = past;
+            this.meetingCount++;
+        }
+    }
+}
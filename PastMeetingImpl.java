@@ -22,6 +22,19 @@ public class PastMeetingImpl extends MeetingImpl implements PastMeeting {
         setNotes(text);
     }
 
+    /**
+     * Constructor
+     *
+     * @param id an ID for the meeting.
+     * @param dateMillis date of the meeting as milliseconds since the epoch.
+     * @param contacts set of contacts for the meeting.
+     * @param text meeting notes text.
+     */
+    public PastMeetingImpl(int id, long dateMillis, Set<Contact> contacts, String text) {
+        super(id, dateMillis, contacts);
+        setNotes(text);
+    }
+
     /**
      * Returns the notes from the meeting.
      *
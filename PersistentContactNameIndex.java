@@ -0,0 +1,446 @@
+import java.util.*;
+
+/**
+ * PersistentContactNameIndex
+ *
+ * An immutable ContactNameIndex for ContactManagerSnapshot. Each version is made from the one before by with(), which
+ * shares everything the added contacts do not touch, so readers can search any published version while the writer
+ * builds the next. Searches give the same answers as those of ContactNameIndex.
+ *
+ * The trigram postings are held in a PersistentTrieMap. The array behind a posting list is shared by the versions that
+ * have it, each reading only the slots below its own size. A later version appends into the free slot after that size,
+ * or copies the array when the slot is already taken or there is none left. A slot is written once, before any version
+ * that reads it is published, so readers never see it change.
+ *
+ * The lower case names are held in a B+ tree of up to MAX_NODE_SIZE contacts per leaf and children per node, in order
+ * of lower case name and then contact ID. Adding a contact copies one leaf and a node per level, and a prefix search
+ * finds the first name by binary search down the tree and walks along the leaves from there.
+ */
+public final class PersistentContactNameIndex {
+    static final int MAX_NODE_SIZE = 64;
+
+    private static final PersistentContactNameIndex EMPTY = new PersistentContactNameIndex(
+            PersistentTrieMap.<Contact>emptyIntMap(), PersistentTrieMap.<Postings>emptyIntMap(),
+            new NameNode(new String[0], new Contact[0], null));
+
+    // Contact ID to contact. IDs are handed out in order of creation, so this is the order of the contacts added.
+    private final PersistentTrieMap<Contact> contacts;
+
+    // Trigram hash to the contacts whose name contains the trigram, as in ContactNameIndex.
+    private final PersistentTrieMap<Postings> contactsByGram;
+
+    // Root of the tree of contacts in order of lower case name.
+    private final NameNode namesRoot;
+
+    /**
+     * Constructor
+     *
+     * @param contacts every contact by ID.
+     * @param contactsByGram trigram postings.
+     * @param namesRoot root of the name tree.
+     */
+    private PersistentContactNameIndex(PersistentTrieMap<Contact> contacts, PersistentTrieMap<Postings> contactsByGram,
+                                       NameNode namesRoot) {
+        this.contacts = contacts;
+        this.contactsByGram = contactsByGram;
+        this.namesRoot = namesRoot;
+    }
+
+    /**
+     * Returns the index with no contacts.
+     *
+     * @return the empty index.
+     */
+    public static PersistentContactNameIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns an index that also holds some added contacts.
+     *
+     * @param addedContacts contacts not yet in this index.
+     * @param contacts every contact of the new index by ID, including the added ones. Scanned for search strings
+     *                 shorter than a trigram, as ContactNameIndex scans its list of contacts.
+     * @return the new index.
+     */
+    public PersistentContactNameIndex with(Collection<Contact> addedContacts, PersistentTrieMap<Contact> contacts) {
+        if (addedContacts.isEmpty()) {
+            return new PersistentContactNameIndex(contacts, this.contactsByGram, this.namesRoot);
+        }
+
+        // The posting lists changed are gathered in a hash table first, so that each goes into the trie once.
+        IntHashMap<Postings> changedPostings = new IntHashMap<Postings>();
+        int[] changedGrams = new int[16];
+        int changedGramCount = 0;
+        for (Contact contact : addedContacts) {
+            String name = contact.getName();
+            for (int x = 0; x + ContactNameIndex.GRAM_LENGTH <= name.length(); x++) {
+                int gram = ContactNameIndex.gramHash(name, x);
+                Postings postings = changedPostings.get(gram);
+                if (postings == null) {
+                    postings = this.contactsByGram.get(gram);
+                    if (changedGramCount == changedGrams.length) {
+                        changedGrams = Arrays.copyOf(changedGrams, changedGramCount * 2);
+                    }
+                    changedGrams[changedGramCount++] = gram;
+                }
+                changedPostings.put(gram, (postings == null ? Postings.NONE : postings).with(contact));
+            }
+        }
+        PersistentTrieMap.Editor<Postings> gramEditor = this.contactsByGram.edit();
+        for (int x = 0; x < changedGramCount; x++) {
+            gramEditor.put(changedGrams[x], changedPostings.get(changedGrams[x]));
+        }
+
+        NameNode nextRoot = this.namesRoot;
+        if (this.namesRoot.names.length == 0) {
+            // Loading a whole data set into an empty index builds the tree bottom-up from the sorted names.
+            nextRoot = build(addedContacts);
+        } else {
+            for (Contact contact : addedContacts) {
+                NameNode[] replacement = insert(nextRoot, contact.getName().toLowerCase(Locale.ROOT), contact);
+                nextRoot = replacement.length == 1 ? replacement[0] : parent(replacement);
+            }
+        }
+        return new PersistentContactNameIndex(contacts, gramEditor.toMap(), nextRoot);
+    }
+
+    /**
+     * Finds contacts whose name contains the string, case-sensitively.
+     *
+     * @param text the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @param result collection the contacts found are added to.
+     */
+    public void findContaining(String text, int limit, Collection<? super Contact> result) {
+        int found = 0;
+
+        if (text.length() < ContactNameIndex.GRAM_LENGTH) {
+            for (Contact contact : this.contacts.values()) {
+                if (found == limit) {
+                    return;
+                }
+                if (contact.getName().contains(text)) {
+                    result.add(contact);
+                    found++;
+                }
+            }
+            return;
+        }
+
+        // Only the contacts of the rarest trigram of the search string are checked.
+        Postings rarest = null;
+        for (int x = 0; x + ContactNameIndex.GRAM_LENGTH <= text.length(); x++) {
+            Postings postings = this.contactsByGram.get(ContactNameIndex.gramHash(text, x));
+            if (postings == null) {
+                return;
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        for (int x = 0; x < rarest.size && found < limit; x++) {
+            Contact contact = rarest.contacts[x];
+            if (contact.getName().contains(text)) {
+                result.add(contact);
+                found++;
+            }
+        }
+    }
+
+    /**
+     * Finds contacts whose name starts with the string, ignoring case.
+     *
+     * @param prefix the string to search for.
+     * @param limit maximum number of contacts to return.
+     * @param result collection the contacts found are added to, in order of name.
+     */
+    public void findStartingWith(String prefix, int limit, Collection<? super Contact> result) {
+        String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+        if (limit > 0) {
+            collect(this.namesRoot, lowerCasePrefix, limit, result);
+        }
+    }
+
+    /**
+     * Adds the contacts below a node whose lower case name starts with the prefix to the result, in order.
+     *
+     * @param node the node.
+     * @param lowerCasePrefix the prefix, in lower case.
+     * @param remaining maximum number of contacts still to add, at least 1.
+     * @param result collection the contacts found are added to.
+     * @return the number of contacts still to add, or -1 if a name without the prefix was reached, either of which
+     *         ends the search when not positive.
+     */
+    private static int collect(NameNode node, String lowerCasePrefix, int remaining,
+                               Collection<? super Contact> result) {
+        // Names before the first one that is not less than the prefix cannot start with it.
+        for (int x = firstAfter(node, lowerCasePrefix, Integer.MIN_VALUE); x < node.names.length; x++) {
+            if (node.children != null) {
+                remaining = collect(node.children[x], lowerCasePrefix, remaining, result);
+                if (remaining <= 0) {
+                    return remaining;
+                }
+            } else {
+                // Names sharing the prefix are next to each other, so the first one without it ends the search.
+                if (!node.names[x].startsWith(lowerCasePrefix)) {
+                    return -1;
+                }
+                result.add(node.contacts[x]);
+                if (--remaining == 0) {
+                    return 0;
+                }
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Adds a contact below a node.
+     *
+     * @param node the node.
+     * @param lowerCaseName the contact's name, in lower case.
+     * @param contact the contact.
+     * @return the copy of the node with the contact, or two nodes if it overflowed.
+     */
+    private static NameNode[] insert(NameNode node, String lowerCaseName, Contact contact) {
+        int position = firstAfter(node, lowerCaseName, contact.getId());
+
+        if (node.children == null) {
+            return split(splice(node.names, position, position, new String[] {lowerCaseName}),
+                    splice(node.contacts, position, position, new Contact[] {contact}), null);
+        }
+
+        // A contact after the last one of every child goes into the last child.
+        int child = Math.min(position, node.children.length - 1);
+        NameNode[] replacement = insert(node.children[child], lowerCaseName, contact);
+        String[] lastNames = new String[replacement.length];
+        Contact[] lastContacts = new Contact[replacement.length];
+        for (int x = 0; x < replacement.length; x++) {
+            lastNames[x] = replacement[x].lastName();
+            lastContacts[x] = replacement[x].lastContact();
+        }
+        return split(splice(node.names, child, child + 1, lastNames),
+                splice(node.contacts, child, child + 1, lastContacts),
+                splice(node.children, child, child + 1, replacement));
+    }
+
+    /**
+     * Builds a tree holding some contacts.
+     *
+     * @param contacts the contacts, in any order.
+     * @return the root of the tree.
+     */
+    private static NameNode build(Collection<Contact> contacts) {
+        List<Map.Entry<String, Contact>> entries = new ArrayList<Map.Entry<String, Contact>>(contacts.size());
+        for (Contact contact : contacts) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<String, Contact>(
+                    contact.getName().toLowerCase(Locale.ROOT), contact));
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, Contact>>() {
+            @Override
+            public int compare(Map.Entry<String, Contact> first, Map.Entry<String, Contact> second) {
+                return PersistentContactNameIndex.compare(first.getKey(), first.getValue().getId(), second.getKey(),
+                        second.getValue().getId());
+            }
+        });
+
+        List<NameNode> nodes = new ArrayList<NameNode>();
+        for (int start = 0; start < entries.size(); start += MAX_NODE_SIZE) {
+            int end = Math.min(start + MAX_NODE_SIZE, entries.size());
+            String[] names = new String[end - start];
+            Contact[] leafContacts = new Contact[end - start];
+            for (int x = start; x < end; x++) {
+                names[x - start] = entries.get(x).getKey();
+                leafContacts[x - start] = entries.get(x).getValue();
+            }
+            nodes.add(new NameNode(names, leafContacts, null));
+        }
+        while (nodes.size() > 1) {
+            List<NameNode> parents = new ArrayList<NameNode>();
+            for (int start = 0; start < nodes.size(); start += MAX_NODE_SIZE) {
+                parents.add(parent(nodes.subList(start, Math.min(start + MAX_NODE_SIZE, nodes.size()))
+                        .toArray(new NameNode[0])));
+            }
+            nodes = parents;
+        }
+        return nodes.get(0);
+    }
+
+    /**
+     * Makes a node above some children.
+     *
+     * @param children the children, none of them empty, in order.
+     * @return the node.
+     */
+    private static NameNode parent(NameNode[] children) {
+        String[] lastNames = new String[children.length];
+        Contact[] lastContacts = new Contact[children.length];
+        for (int x = 0; x < children.length; x++) {
+            lastNames[x] = children[x].lastName();
+            lastContacts[x] = children[x].lastContact();
+        }
+        return new NameNode(lastNames, lastContacts, children);
+    }
+
+    /**
+     * Makes a node, or two halves of it if it has more than MAX_NODE_SIZE entries.
+     *
+     * @param names the names of the entries.
+     * @param contacts the contacts of the entries.
+     * @param children the children of the entries, or null for a leaf.
+     * @return the node or its halves.
+     */
+    private static NameNode[] split(String[] names, Contact[] contacts, NameNode[] children) {
+        if (names.length <= MAX_NODE_SIZE) {
+            return new NameNode[] {new NameNode(names, contacts, children)};
+        }
+        int half = names.length / 2;
+        return new NameNode[] {
+            new NameNode(Arrays.copyOfRange(names, 0, half), Arrays.copyOfRange(contacts, 0, half),
+                    children == null ? null : Arrays.copyOfRange(children, 0, half)),
+            new NameNode(Arrays.copyOfRange(names, half, names.length),
+                    Arrays.copyOfRange(contacts, half, contacts.length),
+                    children == null ? null : Arrays.copyOfRange(children, half, children.length))
+        };
+    }
+
+    /**
+     * Returns a copy of an array with a range of it replaced.
+     *
+     * @param array the array.
+     * @param start index of the first element replaced.
+     * @param end index after the last element replaced.
+     * @param replacement the elements to put in their place.
+     * @return the new array.
+     */
+    private static <T> T[] splice(T[] array, int start, int end, T[] replacement) {
+        T[] spliced = Arrays.copyOf(array, array.length - (end - start) + replacement.length);
+        System.arraycopy(replacement, 0, spliced, start, replacement.length);
+        System.arraycopy(array, end, spliced, start + replacement.length, array.length - end);
+        return spliced;
+    }
+
+    /**
+     * Binary searches a node for the first entry that comes after a name and contact ID.
+     *
+     * @param node the node.
+     * @param lowerCaseName the name, in lower case.
+     * @param id the contact ID, or Integer.MIN_VALUE to find the first entry that does not come before the name.
+     * @return the index of the entry, or the number of entries if there is none.
+     */
+    private static int firstAfter(NameNode node, String lowerCaseName, int id) {
+        int low = 0;
+        int high = node.names.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(node.names[middle], node.contacts[middle].getId(), lowerCaseName, id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares two entries of the name tree, by lower case name and then contact ID.
+     *
+     * @param name the lower case name of the first entry.
+     * @param id the contact ID of the first entry.
+     * @param otherName the lower case name of the second entry.
+     * @param otherId the contact ID of the second entry.
+     * @return a negative number, zero or a positive number as the first entry comes before, is equal to or comes
+     *         after the second.
+     */
+    private static int compare(String name, int id, String otherName, int otherId) {
+        int comparison = name.compareTo(otherName);
+        return comparison != 0 ? comparison : Integer.compare(id, otherId);
+    }
+
+    /**
+     * A posting list: the first size contacts of an array that later versions may append to.
+     */
+    private static final class Postings {
+        private static final Postings NONE = new Postings(new Contact[0], 0);
+
+        private final Contact[] contacts;
+        private final int size;
+
+        /**
+         * Constructor
+         *
+         * @param contacts the array, whose first size slots hold the contacts.
+         * @param size the number of contacts.
+         */
+        Postings(Contact[] contacts, int size) {
+            this.contacts = contacts;
+            this.size = size;
+        }
+
+        /**
+         * Returns the posting list with a contact added, unless it was the last one added. A name that contains a
+         * trigram more than once is added for each occurrence in turn, so this keeps the postings free of duplicates.
+         *
+         * @param contact the contact.
+         * @return the posting list with the contact.
+         */
+        Postings with(Contact contact) {
+            if (this.size > 0 && this.contacts[this.size - 1] == contact) {
+                return this;
+            }
+            if (this.size < this.contacts.length && this.contacts[this.size] == null) {
+                this.contacts[this.size] = contact;
+                return new Postings(this.contacts, this.size + 1);
+            }
+
+            // The next slot belongs to another version, or there is none, so only this version's slots are copied.
+            Contact[] grown = new Contact[Math.max(4, this.size * 2)];
+            System.arraycopy(this.contacts, 0, grown, 0, this.size);
+            grown[this.size] = contact;
+            return new Postings(grown, this.size + 1);
+        }
+    }
+
+    /**
+     * A tree node: contacts and their lower case names at the bottom level, otherwise children of one height with the
+     * last contact under each and its name. Nodes are never changed once built.
+     */
+    private static final class NameNode {
+        private final String[] names;
+        private final Contact[] contacts;
+        private final NameNode[] children;
+
+        /**
+         * Constructor
+         *
+         * @param names the lower case names, in order.
+         * @param contacts the contacts of the names.
+         * @param children the children, or null for a leaf.
+         */
+        NameNode(String[] names, Contact[] contacts, NameNode[] children) {
+            this.names = names;
+            this.contacts = contacts;
+            this.children = children;
+        }
+
+        /**
+         * Returns the lower case name of the last contact below the node.
+         *
+         * @return the name.
+         */
+        String lastName() {
+            return this.names[this.names.length - 1];
+        }
+
+        /**
+         * Returns the last contact below the node.
+         *
+         * @return the contact.
+         */
+        Contact lastContact() {
+            return this.contacts[this.contacts.length - 1];
+        }
+    }
+}
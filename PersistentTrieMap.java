@@ -0,0 +1,509 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * PersistentTrieMap
+ *
+ * An immutable map keyed by primitive int or long, held as a trie of 32-way nodes that each use a bitmap to store
+ * only their children that are present. A key is looked up 5 bits at a time from its most significant bits, so lookups
+ * cost one step per level (7 for int keys, 13 for long keys) whatever the size of the map.
+ *
+ * Maps are changed through an Editor, which copies only the nodes on the paths to the keys it changes and shares
+ * every other node with the map it started from. Nodes copied by an editor are changed in place by its later edits,
+ * so a batch of changes costs no more than the paths it touches. Since each node holds its children in key order,
+ * values can be iterated in key order over any key range, e.g. the days of a month.
+ *
+ * Null values are not permitted since get() returns null for a missing key.
+ */
+public final class PersistentTrieMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object[] NO_SLOTS = new Object[0];
+
+    private final boolean longKeys;
+    private final int rootShift;
+    private final Node root;
+    private final int size;
+
+    /**
+     * Constructor
+     *
+     * @param longKeys true for a map keyed by long, false for one keyed by int.
+     * @param root the root node.
+     * @param size the number of entries.
+     */
+    private PersistentTrieMap(boolean longKeys, Node root, int size) {
+        this.longKeys = longKeys;
+        this.rootShift = longKeys ? 60 : 30;
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty map keyed by int.
+     *
+     * @return the empty map.
+     */
+    public static <V> PersistentTrieMap<V> emptyIntMap() {
+        return new PersistentTrieMap<V>(false, new Node(null, 0, NO_SLOTS), 0);
+    }
+
+    /**
+     * Returns an empty map keyed by long.
+     *
+     * @return the empty map.
+     */
+    public static <V> PersistentTrieMap<V> emptyLongMap() {
+        return new PersistentTrieMap<V>(true, new Node(null, 0, NO_SLOTS), 0);
+    }
+
+    /**
+     * Returns the value for a key.
+     *
+     * @param key the key.
+     * @return the value, or null if the key is not present.
+     */
+    public V get(long key) {
+        if (!this.longKeys && (int) key != key) {
+            return null;
+        }
+        return lookup(this.root, this.rootShift, path(this.longKeys, key));
+    }
+
+    /**
+     * Checks if a key is present.
+     *
+     * @param key the key.
+     * @return true if the key is present, otherwise false.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the map has no entries.
+     *
+     * @return true if there are no entries, otherwise false.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the values in key order.
+     *
+     * @return the values.
+     */
+    public Iterable<V> values() {
+        return this.longKeys ? values(Long.MIN_VALUE, Long.MAX_VALUE) : values(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the values whose keys are in a range, in key order. Subtrees outside the range are not visited.
+     *
+     * @param from the lowest key (inclusive).
+     * @param to the highest key (inclusive).
+     * @return the values.
+     */
+    public Iterable<V> values(long from, long to) {
+        // Keys beyond the range of an int map cannot be present, so clamp the range to the keys that can.
+        final long lowest = this.longKeys ? from : Math.max(from, Integer.MIN_VALUE);
+        final long highest = this.longKeys ? to : Math.min(to, Integer.MAX_VALUE);
+
+        return new Iterable<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new RangeIterator(lowest, highest);
+            }
+        };
+    }
+
+    /**
+     * Returns an editor that starts from this map. The map itself is never changed.
+     *
+     * @return the editor.
+     */
+    public Editor<V> edit() {
+        return new Editor<V>(this);
+    }
+
+    /**
+     * Maps a key to the bits that lead to it through the trie, flipping the sign bit so that the unsigned order of the
+     * paths is the signed order of the keys.
+     *
+     * @param longKeys true for a map keyed by long, false for one keyed by int.
+     * @param key the key.
+     * @return the path.
+     */
+    private static long path(boolean longKeys, long key) {
+        return longKeys ? key ^ Long.MIN_VALUE : (key ^ Integer.MIN_VALUE) & 0xffffffffL;
+    }
+
+    /**
+     * Follows a path down from a node.
+     *
+     * @param root the node to start from.
+     * @param rootShift the shift of the node's level.
+     * @param path the path of the key.
+     * @return the value at the end of the path, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V lookup(Node root, int rootShift, long path) {
+        Node node = root;
+        for (int shift = rootShift; ; shift -= BITS) {
+            int bit = 1 << (int) ((path >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (shift == 0) {
+                return (V) child;
+            }
+            node = (Node) child;
+        }
+    }
+
+    /**
+     * A trie node: a bitmap of the 32 children that are present and an array of just those children, in bit order.
+     * Children are nodes, or values at the bottom level. A node may only be changed by the editor that owns it.
+     */
+    private static final class Node {
+        private Object owner = null;
+        private int bitmap = 0;
+        private Object[] slots = null;
+
+        /**
+         * Constructor
+         *
+         * @param owner the editor token allowed to change the node, or null if it is shared.
+         * @param bitmap the children that are present.
+         * @param slots the children.
+         */
+        Node(Object owner, int bitmap, Object[] slots) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * Makes changes to a copy of a map, copying each node on the path to a changed key the first time it is touched.
+     *
+     * The editor can carry on after toMap(); its later changes copy the nodes shared with the map returned.
+     */
+    public static final class Editor<V> {
+        private final boolean longKeys;
+        private final int rootShift;
+        private Object token = null;
+        private Node root = null;
+        private int size = 0;
+
+        // The value replaced or removed by the last put() or remove().
+        private Object previous = null;
+
+        /**
+         * Constructor
+         *
+         * @param map the map to start from.
+         */
+        private Editor(PersistentTrieMap<V> map) {
+            this.longKeys = map.longKeys;
+            this.rootShift = map.rootShift;
+            this.token = new Object();
+            this.root = map.root;
+            this.size = map.size;
+        }
+
+        /**
+         * Returns the value for a key, as changed by this editor.
+         *
+         * @param key the key.
+         * @return the value, or null if the key is not present.
+         */
+        public V get(long key) {
+            if (!this.longKeys && (int) key != key) {
+                return null;
+            }
+            return lookup(this.root, this.rootShift, path(this.longKeys, key));
+        }
+
+        /**
+         * Sets the value for a key.
+         *
+         * @param key the key.
+         * @param value the value.
+         * @return the value replaced, or null if the key was not present.
+         * @throws IllegalArgumentException if an int map is given a key outside the range of an int.
+         * @throws NullPointerException if the value is null.
+         */
+        @SuppressWarnings("unchecked")
+        public V put(long key, V value) {
+            if (value == null) {
+                throw new NullPointerException("Value cannot be null.");
+            }
+            if (!this.longKeys && (int) key != key) {
+                throw new IllegalArgumentException("Key is out of the range of an int: " + key);
+            }
+
+            this.previous = null;
+            this.root = put(this.root, this.rootShift, path(this.longKeys, key), value);
+            if (this.previous == null) {
+                this.size++;
+            }
+            return (V) this.previous;
+        }
+
+        /**
+         * Removes a key.
+         *
+         * @param key the key.
+         * @return the value removed, or null if the key was not present.
+         */
+        @SuppressWarnings("unchecked")
+        public V remove(long key) {
+            if (!this.longKeys && (int) key != key) {
+                return null;
+            }
+
+            this.previous = null;
+            Node nextRoot = remove(this.root, this.rootShift, path(this.longKeys, key));
+            if (this.previous == null) {
+                return null;
+            }
+            this.root = nextRoot == null ? new Node(this.token, 0, NO_SLOTS) : nextRoot;
+            this.size--;
+            return (V) this.previous;
+        }
+
+        /**
+         * Returns a map holding the changes made so far.
+         *
+         * @return the map.
+         */
+        public PersistentTrieMap<V> toMap() {
+            // Nodes owned so far now belong to the map, so later edits must copy them.
+            this.token = new Object();
+            return new PersistentTrieMap<V>(this.longKeys, this.root, this.size);
+        }
+
+        /**
+         * Sets the value at a path below a node.
+         *
+         * @param node the node.
+         * @param shift the shift of the node's level.
+         * @param path the path of the key.
+         * @param value the value.
+         * @return the node, or the copy of it that was changed.
+         */
+        private Node put(Node node, int shift, long path, Object value) {
+            int bit = 1 << (int) ((path >>> shift) & MASK);
+            int slot = Integer.bitCount(node.bitmap & (bit - 1));
+
+            if ((node.bitmap & bit) != 0) {
+                Node editable = editable(node);
+                if (shift == 0) {
+                    this.previous = editable.slots[slot];
+                    editable.slots[slot] = value;
+                } else {
+                    editable.slots[slot] = put((Node) editable.slots[slot], shift - BITS, path, value);
+                }
+                return editable;
+            }
+
+            Object child = value;
+            if (shift > 0) {
+                child = put(new Node(this.token, 0, NO_SLOTS), shift - BITS, path, value);
+            }
+
+            // The slots array grows, so it is copied whoever owns the node.
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, slot);
+            slots[slot] = child;
+            System.arraycopy(node.slots, slot, slots, slot + 1, node.slots.length - slot);
+            return owned(node, node.bitmap | bit, slots);
+        }
+
+        /**
+         * Removes the value at a path below a node.
+         *
+         * @param node the node.
+         * @param shift the shift of the node's level.
+         * @param path the path of the key.
+         * @return the node, the copy of it that was changed, or null if it has no children left.
+         */
+        private Node remove(Node node, int shift, long path) {
+            int bit = 1 << (int) ((path >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return node;
+            }
+            int slot = Integer.bitCount(node.bitmap & (bit - 1));
+
+            if (shift > 0) {
+                Node child = (Node) node.slots[slot];
+                Node nextChild = remove(child, shift - BITS, path);
+                if (nextChild == child) {
+                    return node;
+                }
+                if (nextChild != null) {
+                    Node editable = editable(node);
+                    editable.slots[slot] = nextChild;
+                    return editable;
+                }
+            } else {
+                this.previous = node.slots[slot];
+            }
+
+            // The child is gone, so drop its slot.
+            if (node.slots.length == 1) {
+                return null;
+            }
+            Object[] slots = new Object[node.slots.length - 1];
+            System.arraycopy(node.slots, 0, slots, 0, slot);
+            System.arraycopy(node.slots, slot + 1, slots, slot, slots.length - slot);
+            return owned(node, node.bitmap & ~bit, slots);
+        }
+
+        /**
+         * Returns the node if this editor owns it, otherwise a copy that it owns.
+         *
+         * @param node the node.
+         * @return a node this editor may change.
+         */
+        private Node editable(Node node) {
+            if (node.owner == this.token) {
+                return node;
+            }
+            return new Node(this.token, node.bitmap, node.slots.clone());
+        }
+
+        /**
+         * Gives a node new children, in place if this editor owns it, otherwise in a copy that it owns.
+         *
+         * @param node the node.
+         * @param bitmap the new bitmap.
+         * @param slots the new children.
+         * @return the changed node.
+         */
+        private Node owned(Node node, int bitmap, Object[] slots) {
+            if (node.owner != this.token) {
+                return new Node(this.token, bitmap, slots);
+            }
+            node.bitmap = bitmap;
+            node.slots = slots;
+            return node;
+        }
+    }
+
+    /**
+     * Iterates over the values whose keys are in a range, in key order, descending only into the subtrees that
+     * overlap the range.
+     */
+    private final class RangeIterator implements Iterator<V> {
+        private final long fromPath;
+        private final long toPath;
+
+        // The node at each level of the current path, its children not yet visited, the slot of the next one, and
+        // the path bits above the level.
+        private final Node[] nodes;
+        private final int[] remaining;
+        private final int[] slots;
+        private final long[] prefixes;
+        private int depth = 0;
+
+        private Object next = null;
+
+        /**
+         * Constructor
+         *
+         * @param from the lowest key (inclusive).
+         * @param to the highest key (inclusive).
+         */
+        RangeIterator(long from, long to) {
+            int levels = rootShift / BITS + 1;
+            this.fromPath = path(longKeys, from);
+            this.toPath = path(longKeys, to);
+            this.nodes = new Node[levels];
+            this.remaining = new int[levels];
+            this.slots = new int[levels];
+            this.prefixes = new long[levels];
+
+            if (from > to) {
+                this.depth = -1;
+            } else {
+                this.nodes[0] = root;
+                this.remaining[0] = root.bitmap;
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            Object value = this.next;
+            advance();
+            return (V) value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The map cannot be changed.");
+        }
+
+        /**
+         * Moves on to the next value in the range, or to the end.
+         */
+        private void advance() {
+            this.next = null;
+            while (this.depth >= 0) {
+                if (this.remaining[this.depth] == 0) {
+                    this.depth--;
+                    continue;
+                }
+
+                // Children are visited in bit order, which is also the order of their slots.
+                int shift = rootShift - BITS * this.depth;
+                int child = Integer.numberOfTrailingZeros(this.remaining[this.depth]);
+                this.remaining[this.depth] &= this.remaining[this.depth] - 1;
+                Object slot = this.nodes[this.depth].slots[this.slots[this.depth]++];
+
+                long low = this.prefixes[this.depth] | (long) child << shift;
+                long high = low | ((1L << shift) - 1);
+                if (Long.compareUnsigned(high, this.fromPath) < 0) {
+                    continue;
+                }
+                if (Long.compareUnsigned(low, this.toPath) > 0) {
+                    // Every later child is further beyond the range.
+                    this.depth = -1;
+                    return;
+                }
+
+                if (shift == 0) {
+                    this.next = slot;
+                    return;
+                }
+                this.depth++;
+                this.nodes[this.depth] = (Node) slot;
+                this.remaining[this.depth] = ((Node) slot).bitmap;
+                this.slots[this.depth] = 0;
+                this.prefixes[this.depth] = low;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * SequentialMeetingIdAllocator - Implements MeetingIdAllocator interface.
+ *
+ * Hands out meeting IDs from a monotonic sequence starting at 1. Not thread-safe.
+ */
+public class SequentialMeetingIdAllocator implements MeetingIdAllocator {
+    private int nextId = 1;
+
+    /**
+     * Allocates a new meeting ID.
+     *
+     * @return a meeting ID that has not been allocated or reserved before.
+     * @throws IllegalStateException if the ID space is exhausted.
+     */
+    @Override
+    public int nextId() {
+        // The sequence wraps to a negative value once Integer.MAX_VALUE has been handed out.
+        if (this.nextId <= 0) {
+            throw new IllegalStateException("Meeting ID space exhausted.");
+        }
+        return this.nextId++;
+    }
+
+    /**
+     * Allocates a range of consecutive meeting IDs in one step.
+     *
+     * @param count number of IDs to allocate.
+     * @return the first ID of the range.
+     * @throws IllegalArgumentException if the count is not positive.
+     * @throws IllegalStateException if the ID space cannot hold the range.
+     */
+    @Override
+    public int nextIds(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("ID count must be positive.");
+        }
+        if (this.nextId <= 0 || (long) this.nextId + count - 1 > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Meeting ID space exhausted.");
+        }
+
+        int firstId = this.nextId;
+        this.nextId += count;
+        return firstId;
+    }
+
+    /**
+     * Reserves an ID that is already in use, so that it will not be allocated.
+     *
+     * @param id the ID in use.
+     */
+    @Override
+    public void reserve(int id) {
+        // IDs behind the sequence can never be handed out again, so only those ahead of it move it on.
+        if (this.nextId > 0 && id >= this.nextId) {
+            this.nextId = id + 1;
+        }
+    }
+
+    /**
+     * Returns the ID the next call to nextId() will return, without allocating it.
+     *
+     * @return the next meeting ID.
+     */
+    @Override
+    public int peekNextId() {
+        return this.nextId;
+    }
+}
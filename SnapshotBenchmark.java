@@ -0,0 +1,82 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * SnapshotBenchmark
+ *
+ * Compares load and save times of the CSV and binary data file formats.
+ *
+ * Usage: java SnapshotBenchmark [contacts] [meetings] [attendees per meeting]
+ *
+ * The defaults are 1,000,000 contacts and 5,000,000 meetings, which needs a large heap (e.g. -Xmx8g). A data set is
+ * generated into contacts.txt in a new temporary directory and converted to contacts.bin, then each format is loaded
+ * by a new ContactManagerImpl and saved again by compact().
+ */
+public class SnapshotBenchmark {
+    /**
+     * Runs the benchmark described by the command line arguments.
+     *
+     * @param args see class description.
+     * @throws IOException if a data file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] numbers = {1000000, 5000000, 4};
+        for (int x = 0; x < args.length && x < numbers.length; x++) {
+            numbers[x] = Integer.parseInt(args[x]);
+        }
+
+        File directory = Files.createTempDirectory("contacts").toFile();
+        File csvFile = new File(directory, ContactManagerImpl.DATA_FILE);
+        File binaryFile = new File(directory, ContactManagerImpl.BINARY_DATA_FILE);
+        new DataFileGenerator(numbers[0], numbers[1], numbers[2], 0.5, 42).write(csvFile);
+        SnapshotConverter.convert(csvFile, binaryFile);
+        System.out.printf("%d contacts, %d meetings: CSV %d bytes, binary %d bytes.%n",
+                numbers[0], numbers[1], csvFile.length(), binaryFile.length());
+
+        double csvLoad = 0;
+        double csvSave = 0;
+        double binaryLoad = 0;
+        double binarySave = 0;
+
+        // The first round warms up the JIT and is not counted.
+        int rounds = 3;
+        for (int round = 0; round <= rounds; round++) {
+            double[] csv = run(new ContactManagerOptions().setDataDirectory(directory));
+            double[] binary = run(new ContactManagerOptions().setDataDirectory(directory)
+                    .setSnapshotFormat(SnapshotFormat.BINARY));
+            System.out.printf("Round %d: CSV load %.0f ms, save %.0f ms; binary load %.0f ms, save %.0f ms.%n",
+                    round, csv[0], csv[1], binary[0], binary[1]);
+
+            if (round > 0) {
+                csvLoad += csv[0] / rounds;
+                csvSave += csv[1] / rounds;
+                binaryLoad += binary[0] / rounds;
+                binarySave += binary[1] / rounds;
+            }
+        }
+
+        System.out.printf("Average: CSV load %.0f ms, save %.0f ms; binary load %.0f ms, save %.0f ms.%n",
+                csvLoad, csvSave, binaryLoad, binarySave);
+        System.out.printf("Binary speedup: load %.2fx, save %.2fx.%n", csvLoad / binaryLoad, csvSave / binarySave);
+    }
+
+    /**
+     * Loads the data file in one format and saves it again.
+     *
+     * @param options options selecting the format.
+     * @return load and save time in milliseconds.
+     * @throws IOException if the data file cannot be written.
+     */
+    private static double[] run(ContactManagerOptions options) throws IOException {
+        System.gc();
+
+        long startTime = System.nanoTime();
+        ContactManagerImpl contactManager = new ContactManagerImpl(options);
+        long loaded = System.nanoTime();
+        contactManager.compact();
+        long saved = System.nanoTime();
+
+        return new double[] {(loaded - startTime) / 1e6, (saved - loaded) / 1e6};
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.*;
+
+/**
+ * SnapshotConverter
+ *
+ * Converts a CSV data file into the binary snapshot format.
+ *
+ * Usage: java SnapshotConverter [CSV file] [binary file]
+ *
+ * The files default to contacts.txt and contacts.bin in the working directory. Records are streamed from one file
+ * to the other in file order, so the conversion never holds the data set in memory. The binary file is written with
+ * the same temporary file and atomic rename as the data file.
+ */
+public class SnapshotConverter {
+    /**
+     * Converts the files named by the command line arguments.
+     *
+     * @param args see class description.
+     * @throws IOException if either file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        File csvFile = new File(args.length > 0 ? args[0] : ContactManagerImpl.DATA_FILE);
+        File binaryFile = new File(args.length > 1 ? args[1] : ContactManagerImpl.BINARY_DATA_FILE);
+
+        long startTime = System.nanoTime();
+        long records = convert(csvFile, binaryFile);
+        System.out.printf("Converted %d records from %s (%d bytes) to %s (%d bytes) in %.1f ms.%n", records,
+                csvFile, csvFile.length(), binaryFile, binaryFile.length(), (System.nanoTime() - startTime) / 1e6);
+    }
+
+    /**
+     * Converts a CSV data file into a binary snapshot.
+     *
+     * @param csvFile the CSV data file.
+     * @param binaryFile the binary snapshot to write.
+     * @return the number of records converted.
+     * @throws IOException if the CSV file is damaged, or either file cannot be read or written.
+     */
+    public static long convert(File csvFile, File binaryFile) throws IOException {
+        SnapshotFile.verify(csvFile);
+
+        SnapshotFile snapshot = new SnapshotFile(binaryFile);
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+                ContactManagerImpl.DATA_FILE_CHARSET), 1 << 16);
+        try {
+            final BinaryDataWriter writer = new BinaryDataWriter(snapshot.beginBinaryWrite());
+
+            // DataRecordHandler methods cannot throw IOException, so it is tunnelled out unchecked.
+            new CsvDataReader().read(in, new DataRecordHandler() {
+                @Override
+                public void contactRecord(int id, String name, String notes) {
+                    try {
+                        writer.writeContact(id, name, notes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void pastMeetingRecord(int id, long dateMillis, String notes, int[] attendeeIds) {
+                    try {
+                        writer.writePastMeeting(id, dateMillis, notes, attendeeIds);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void futureMeetingRecord(int id, long dateMillis, int[] attendeeIds) {
+                    try {
+                        writer.writeFutureMeeting(id, dateMillis, attendeeIds);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void meetingNotesRecord(int id, String notes) {
+                    try {
+                        writer.writeMeetingNotes(id, notes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void contactNotesRecord(int id, String notes) {
+                    try {
+                        writer.writeContactNotes(id, notes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void meetingSequenceRecord(int nextId) {
+                    try {
+                        writer.writeMeetingSequence(nextId);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+
+            writer.finish();
+            snapshot.commit();
+            return writer.getRecordsWritten();
+        } catch (UncheckedIOException e) {
+            snapshot.abort();
+            throw e.getCause();
+        } catch (IOException e) {
+            snapshot.abort();
+            throw e;
+        } finally {
+            in.close();
+        }
+    }
+}
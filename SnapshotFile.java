@@ -0,0 +1,292 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * SnapshotFile
+ *
+ * Writes data file snapshots crash-safely and verifies them on load.
+ *
+ * A snapshot is written to a temporary file next to the data file through a large NIO buffer, fsynced, and then
+ * atomically renamed over the data file, so a crash leaves either the old or the new snapshot in place. The snapshot
+ * starts with a FORMAT line and ends with a CHECKSUM line holding the CRC-32 of every byte before it, which lets a
+ * damaged file be detected on startup. Files without a FORMAT line predate this and are not verified.
+ *
+ * Binary snapshots use the same temporary file and rename, but carry their own header and checksum.
+ */
+public class SnapshotFile {
+    public static final String FORMAT_RECORD = "FORMAT";
+    public static final String CHECKSUM_RECORD = "CHECKSUM";
+    // Version 3 escapes the text fields, see CsvDataWriter.
+    public static final int FORMAT_VERSION = 3;
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // The CHECKSUM line is short, so reading this much of the end of the file is enough to find it.
+    private static final int TRAILER_SEARCH_SIZE = 64;
+
+    private File target = null;
+    private File temp = null;
+    private FileChannel channel = null;
+    private ChecksummedChannelOutputStream stream = null;
+    private Writer writer = null;
+
+    /**
+     * Constructor
+     *
+     * @param target the data file the snapshot replaces.
+     */
+    public SnapshotFile(File target) {
+        this.target = target;
+        this.temp = new File(target.getPath() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Starts writing a snapshot to the temporary file and writes the FORMAT line.
+     *
+     * @return writer for the records of the snapshot. Lines must end with '\n'.
+     * @throws IOException if the temporary file cannot be created.
+     */
+    public Writer beginWrite() throws IOException {
+        this.writer = new OutputStreamWriter(beginBinaryWrite(), ContactManagerImpl.DATA_FILE_CHARSET);
+
+        this.writer.write(FORMAT_RECORD + ContactManagerImpl.DELIMITER + FORMAT_VERSION + "\n");
+        return this.writer;
+    }
+
+    /**
+     * Starts writing a binary snapshot to the temporary file. Nothing is written before or after the caller's bytes.
+     *
+     * @return stream for the bytes of the snapshot, buffered by this object.
+     * @throws IOException if the temporary file cannot be created.
+     */
+    public OutputStream beginBinaryWrite() throws IOException {
+        this.channel = FileChannel.open(this.temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.stream = new ChecksummedChannelOutputStream(this.channel);
+        return this.stream;
+    }
+
+    /**
+     * Writes the CHECKSUM line of a text snapshot, forces the snapshot to disk and renames it over the data file.
+     *
+     * @return the size of the snapshot in bytes.
+     * @throws IOException if the snapshot cannot be completed. The data file is left untouched.
+     */
+    public long commit() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+
+            String trailer = CHECKSUM_RECORD + ContactManagerImpl.DELIMITER
+                    + Long.toHexString(this.stream.getChecksum()) + "\n";
+            this.stream.write(trailer.getBytes(ContactManagerImpl.DATA_FILE_CHARSET));
+        }
+        this.stream.flush();
+
+        long size = this.channel.size();
+        this.channel.force(true);
+        this.channel.close();
+        this.channel = null;
+
+        try {
+            Files.move(this.temp.toPath(), this.target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(this.temp.toPath(), this.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+
+        return size;
+    }
+
+    /**
+     * Abandons a snapshot that could not be completed and removes the temporary file.
+     */
+    public void abort() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.channel = null;
+        }
+        this.temp.delete();
+    }
+
+    /**
+     * Checks that a data file is complete.
+     *
+     * @param file the data file.
+     * @throws IOException if the file has a FORMAT line but its CHECKSUM line is missing or does not match.
+     */
+    public static void verify(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+
+            // Files without the FORMAT line predate checksums.
+            byte[] header = (FORMAT_RECORD + ContactManagerImpl.DELIMITER).getBytes(ContactManagerImpl.DATA_FILE_CHARSET);
+            ByteBuffer headerBuffer = ByteBuffer.allocate(header.length);
+            channel.read(headerBuffer, 0);
+            if (headerBuffer.position() < header.length || !headerBuffer.flip().equals(ByteBuffer.wrap(header))) {
+                return;
+            }
+
+            long trailerStart = findTrailer(channel, size);
+            if (trailerStart < 0) {
+                throw new IOException(file + " is incomplete: its CHECKSUM line is missing.");
+            }
+
+            // Read the recorded checksum.
+            ByteBuffer trailerBuffer = ByteBuffer.allocate((int) (size - trailerStart));
+            channel.read(trailerBuffer, trailerStart);
+            String trailer = new String(trailerBuffer.array(), ContactManagerImpl.DATA_FILE_CHARSET).trim();
+            String recorded = trailer.substring(CHECKSUM_RECORD.length() + ContactManagerImpl.DELIMITER.length());
+
+            // Checksum everything before the trailer.
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = 0;
+            while (position < trailerStart) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, trailerStart - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                crc.update(buffer);
+                position += read;
+            }
+
+            if (!recorded.equals(Long.toHexString(crc.getValue()))) {
+                throw new IOException(file + " is damaged: its checksum does not match its contents.");
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Finds the CHECKSUM line at the end of the file.
+     *
+     * @param channel channel open on the file.
+     * @param size size of the file.
+     * @return the offset of the CHECKSUM line, or -1 if the file does not end with one.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long findTrailer(FileChannel channel, long size) throws IOException {
+        int length = (int) Math.min(size, TRAILER_SEARCH_SIZE);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        channel.read(tail, size - length);
+
+        byte[] bytes = tail.array();
+        if (length == 0 || bytes[length - 1] != '\n') {
+            return -1;
+        }
+
+        // Start of the last line.
+        int lineStart = length - 1;
+        while (lineStart > 0 && bytes[lineStart - 1] != '\n') {
+            lineStart--;
+        }
+        if (lineStart == 0 && length < size) {
+            return -1;
+        }
+
+        byte[] record = (CHECKSUM_RECORD + ContactManagerImpl.DELIMITER).getBytes(ContactManagerImpl.DATA_FILE_CHARSET);
+        if (length - lineStart < record.length) {
+            return -1;
+        }
+        for (int x = 0; x < record.length; x++) {
+            if (bytes[lineStart + x] != record[x]) {
+                return -1;
+            }
+        }
+        return size - length + lineStart;
+    }
+
+    /**
+     * Forces the rename to disk by syncing the directory holding the data file, where the platform allows it.
+     */
+    private void syncDirectory() {
+        File directory = this.target.getAbsoluteFile().getParentFile();
+        try {
+            FileChannel directoryChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            try {
+                directoryChannel.force(true);
+            } finally {
+                directoryChannel.close();
+            }
+        } catch (IOException e) {
+            // Not supported on every platform, the rename itself is still atomic.
+        }
+    }
+
+    /**
+     * Output stream that writes through a large direct buffer into a file channel, keeping a CRC-32 of the bytes.
+     */
+    private static class ChecksummedChannelOutputStream extends OutputStream {
+        private FileChannel channel = null;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private CRC32 crc = new CRC32();
+
+        ChecksummedChannelOutputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            this.crc.update(bytes, offset, length);
+
+            while (length > 0) {
+                if (!this.buffer.hasRemaining()) {
+                    drain();
+                }
+                int count = Math.min(length, this.buffer.remaining());
+                this.buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        /**
+         * Returns the CRC-32 of every byte written so far.
+         *
+         * @return the checksum.
+         */
+        long getChecksum() {
+            return this.crc.getValue();
+        }
+
+        /**
+         * Writes the buffered bytes to the channel.
+         *
+         * @throws IOException if writing fails.
+         */
+        private void drain() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * SnapshotFormat
+ *
+ * The file formats ContactManagerImpl can save its data in.
+ */
+public enum SnapshotFormat {
+    /**
+     * Delimited text records in contacts.txt, see CsvDataReader and CsvDataWriter.
+     */
+    CSV,
+
+    /**
+     * Tagged binary records in contacts.bin, see BinaryDataReader and BinaryDataWriter.
+     */
+    BINARY
+}
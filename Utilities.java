@@ -1,6 +1,14 @@
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utilities
@@ -11,6 +19,17 @@ public class Utilities {
     public static final String DATE_FORMAT = "yyyy/MM/dd HH:mm:ss";
     public static final String DATE_FORMAT_NO_TIME = "yyyy/MM/dd";
 
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final long DAYS_PER_ERA = 146097;
+    private static final long DAYS_0000_03_01_TO_EPOCH = 719468;
+
+    // Offset windows of each time zone used to format or parse a date from 1900 to 2100, when dates are looked up in
+    // them rather than in the zone's rules. Tables cannot be changed, so threads can share them without locking; at
+    // worst two threads each build one.
+    private static final long FIRST_TABLE_SECOND = -2208988800L;
+    private static final long LAST_TABLE_SECOND = 4102444800L;
+    private static final Map<ZoneId, ZoneTable> zoneTables = new ConcurrentHashMap<ZoneId, ZoneTable>();
+
     /**
      * Checks if provided date is in the future.
      *
@@ -18,13 +37,87 @@ public class Utilities {
      * @return true if the date is in the future, otherwise false.
      */
     public static boolean timeInFuture(Calendar date) {
-        Calendar rightNow = Calendar.getInstance();
+        // Comparing milliseconds avoids creating a Calendar, and looking up the default time zone, on every call.
+        return timeInFuture(date.getTimeInMillis());
+    }
 
-        if (rightNow.before(date)) {
-            return true;
-        } else {
-            return false;
+    /**
+     * Checks if provided date is in the future.
+     *
+     * @param dateMillis date to check, as milliseconds since the epoch.
+     * @return true if the date is in the future, otherwise false.
+     */
+    public static boolean timeInFuture(long dateMillis) {
+        return dateMillis > System.currentTimeMillis();
+    }
+
+    /**
+     * Checks if provided date is in the future of a clock.
+     *
+     * @param date date to check.
+     * @param clock source of the current time.
+     * @return true if the date is after the clock's current time, otherwise false.
+     */
+    public static boolean timeInFuture(Calendar date, Clock clock) {
+        return timeInFuture(date.getTimeInMillis(), clock);
+    }
+
+    /**
+     * Checks if provided date is in the future of a clock.
+     *
+     * @param dateMillis date to check, as milliseconds since the epoch.
+     * @param clock source of the current time.
+     * @return true if the date is after the clock's current time, otherwise false.
+     */
+    public static boolean timeInFuture(long dateMillis, Clock clock) {
+        return dateMillis > clock.millis();
+    }
+
+    /**
+     * Returns the date of a meeting as milliseconds since the epoch, without creating a Calendar for a MeetingImpl.
+     *
+     * @param meeting the meeting.
+     * @return the date of the meeting.
+     */
+    public static long meetingTimeMillis(Meeting meeting) {
+        if (meeting instanceof MeetingImpl) {
+            return ((MeetingImpl) meeting).getDateMillis();
         }
+        return meeting.getDate().getTimeInMillis();
+    }
+
+    /**
+     * Returns the epoch day of the date of a meeting, as calendarToEpochDay(meeting.getDate()) would, without creating
+     * a Calendar for a MeetingImpl.
+     *
+     * @param meeting the meeting.
+     * @return the epoch day of the meeting.
+     */
+    public static long meetingEpochDay(Meeting meeting) {
+        if (meeting instanceof MeetingImpl) {
+            return ((MeetingImpl) meeting).getEpochDay();
+        }
+        return calendarToEpochDay(meeting.getDate());
+    }
+
+    /**
+     * Returns the contact IDs of the attendees of a meeting, without looking up the contacts of an AttendeeSet.
+     *
+     * @param meeting the meeting.
+     * @return the contact IDs.
+     */
+    public static int[] attendeeIds(Meeting meeting) {
+        Set<Contact> attendees = meeting.getContacts();
+        if (attendees instanceof AttendeeSet) {
+            return ((AttendeeSet) attendees).getContactIds();
+        }
+
+        int[] ids = new int[attendees.size()];
+        int x = 0;
+        for (Contact attendee : attendees) {
+            ids[x++] = attendee.getId();
+        }
+        return ids;
     }
 
     /**
@@ -46,22 +139,15 @@ public class Utilities {
     }
 
     /**
-     * Returns a unique integer that is not found in the provided int array.
+     * Returns the number of days between 1970/01/01 and the date portion of a Calendar, in the Calendar's own time
+     * zone, so that two Calendars have the same epoch day exactly when calendarsEqual() holds for them.
      *
-     * @param existingIntegers list of Integers.
-     * @return a unique int that is not found in the provided integers list.
+     * @param calendar Calendar to convert.
+     * @return the epoch day of the date.
      */
-    public static int createUniqueInteger(List<Integer> existingIntegers) {
-        Random randomNumberGenerator = new Random();
-
-        Integer newInt = Math.abs(randomNumberGenerator.nextInt());
-
-        // Make sure number is unique. If not, pseudo-randomize until we get a unique int.
-        while ( existingIntegers.contains(newInt) ) {
-            newInt = randomNumberGenerator.nextInt();
-        }
-
-        return newInt;
+    public static long calendarToEpochDay(Calendar calendar) {
+        return LocalDate.of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH)).toEpochDay();
     }
 
     /**
@@ -79,16 +165,84 @@ public class Utilities {
     }
 
     /**
-     * Converts a Calendar as a string formatted as yyyy/MM/dd HH:mm:ss.
+     * Converts a Calendar as a string formatted as yyyy/MM/dd HH:mm:ss, in the Calendar's time zone.
      *
      * @param calendar Calendar to convert.
      * @return string object with date.
      */
     public static String calendarToString(Calendar calendar) {
-        SimpleDateFormat dateFormatter = new SimpleDateFormat(DATE_FORMAT);
-        String tempStringDate = dateFormatter.format(calendar.getTime());
+        return millisToString(calendar.getTimeInMillis(), calendar.getTimeZone().toZoneId());
+    }
+
+    /**
+     * Converts a date in milliseconds since the epoch to a string formatted as yyyy/MM/dd HH:mm:ss, in the default
+     * time zone.
+     *
+     * @param dateMillis date to convert.
+     * @return string object with date.
+     */
+    public static String millisToString(long dateMillis) {
+        return millisToString(dateMillis, ZoneId.systemDefault());
+    }
 
-        return tempStringDate;
+    /**
+     * Converts a date in milliseconds since the epoch to a string formatted as yyyy/MM/dd HH:mm:ss.
+     *
+     * @param dateMillis date to convert.
+     * @param zone time zone to write the date in.
+     * @return string object with date.
+     */
+    public static String millisToString(long dateMillis, ZoneId zone) {
+        return appendDateTime(new StringBuilder(DATE_FORMAT.length()), dateMillis, zone).toString();
+    }
+
+    /**
+     * Appends a date in the fixed-width format yyyy/MM/dd HH:mm:ss, without a date formatter. Unlike
+     * SimpleDateFormat it creates no objects and may be called from any number of threads at once.
+     *
+     * Dates are written in the ISO calendar, as parseDateTimeMillis() reads them. Years after 9999 do not fit the
+     * format and are written with as many digits as they need.
+     *
+     * @param text where to append the date.
+     * @param dateMillis date to write, as milliseconds since the epoch.
+     * @param zone time zone to write the date in.
+     * @return the text appended to.
+     */
+    public static StringBuilder appendDateTime(StringBuilder text, long dateMillis, ZoneId zone) {
+        long epochSecond = Math.floorDiv(dateMillis, 1000);
+        ZoneWindow window = zoneTable(zone).window(epochSecond);
+        int offsetSeconds = window != null ? window.getOffsetSeconds()
+                : zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        long localSecond = epochSecond + offsetSeconds;
+        long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(localSecond, SECONDS_PER_DAY);
+
+        // Civil date from a day count, after H. Hinnant's days_from_civil algorithm, in 400 year eras from 0000/03/01.
+        long shiftedDay = epochDay + DAYS_0000_03_01_TO_EPOCH;
+        long era = Math.floorDiv(shiftedDay, DAYS_PER_ERA);
+        long dayOfEra = shiftedDay - era * DAYS_PER_ERA;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0) {
+            text.append('-');
+            year = -year;
+        }
+        if (year > 9999) {
+            text.append(year);
+        } else {
+            appendDigits(text, (int) year, 4);
+        }
+        appendDigits(text.append('/'), month, 2);
+        appendDigits(text.append('/'), day, 2);
+        appendDigits(text.append(' '), secondOfDay / 3600, 2);
+        appendDigits(text.append(':'), secondOfDay / 60 % 60, 2);
+        appendDigits(text.append(':'), secondOfDay % 60, 2);
+        return text;
     }
 
     /**
@@ -98,20 +252,142 @@ public class Utilities {
      * @return Calendar object.
      */
     public static Calendar stringToCalendar(String string) {
-        Calendar calendar = null;
+        Calendar calendar = Calendar.getInstance();
+        try {
+            ZoneId zone = calendar.getTimeZone().toZoneId();
+            calendar.setTimeInMillis(parseDateTimeMillis(string, 0, string.length(), zone));
+            return calendar;
+        } catch (IllegalArgumentException e) {
+            // Not in the fixed-width format, e.g. typed without leading zeros, which SimpleDateFormat is lenient about.
+        }
+
         try {
             // Reformat date into Calendar.
             SimpleDateFormat dateFormatter = new SimpleDateFormat(DATE_FORMAT);
             Date date = dateFormatter.parse(string);
-            calendar = Calendar.getInstance();
             calendar.setTime(date);
         } catch (ParseException e) {
             System.out.println("Date format mangled.");
+            calendar = null;
         }
 
         return calendar;
     }
 
+    /**
+     * Parses a date in the fixed-width format yyyy/MM/dd HH:mm:ss from part of a string, without a date formatter.
+     * It may be called from any number of threads at once, e.g. by the parallel loader.
+     *
+     * A local time that occurs twice, when the clocks go back, is taken as the earlier one, and one that does not
+     * occur, when the clocks go forward, is moved forward by the length of the gap, as ZonedDateTime.of() does.
+     *
+     * @param text the text holding the date.
+     * @param start index of the first character of the date.
+     * @param end index after the last character of the date.
+     * @param zone time zone the date is written in.
+     * @return the date as milliseconds since the epoch.
+     * @throws IllegalArgumentException if the text is not a valid date in that format.
+     */
+    public static long parseDateTimeMillis(CharSequence text, int start, int end, ZoneId zone) {
+        if (end - start != DATE_FORMAT.length()
+                || text.charAt(start + 4) != '/' || text.charAt(start + 7) != '/' || text.charAt(start + 10) != ' '
+                || text.charAt(start + 13) != ':' || text.charAt(start + 16) != ':') {
+            throw new IllegalArgumentException("Date format mangled: " + text.subSequence(start, end));
+        }
+
+        int year = parseDigits(text, start, 4);
+        int month = parseDigits(text, start + 5, 2);
+        int day = parseDigits(text, start + 8, 2);
+        int hour = parseDigits(text, start + 11, 2);
+        int minute = parseDigits(text, start + 14, 2);
+        int second = parseDigits(text, start + 17, 2);
+
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour > 23 || minute > 59
+                || second > 59) {
+            throw new IllegalArgumentException("Date out of range: " + text.subSequence(start, end));
+        }
+
+        // Day count from a civil date, the inverse of the algorithm in appendDateTime().
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long epochDay = era * DAYS_PER_ERA + dayOfEra - DAYS_0000_03_01_TO_EPOCH;
+        long localSecond = epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+
+        // Local times near an offset change, or outside the table, are left to ZonedDateTime.
+        ZoneWindow window = zoneTable(zone).localWindow(localSecond);
+        if (window == null) {
+            return ZonedDateTime.of(year, month, day, hour, minute, second, 0, zone).toEpochSecond() * 1000;
+        }
+        return (localSecond - window.getOffsetSeconds()) * 1000;
+    }
+
+    /**
+     * Returns the number of days in a month of the ISO calendar.
+     *
+     * @param year the year.
+     * @param month the month, from 1 to 12.
+     * @return the number of days.
+     */
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leapYear ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Returns the table of offset windows of a time zone, building it the first time the zone is used.
+     *
+     * @param zone the time zone.
+     * @return the table.
+     */
+    private static ZoneTable zoneTable(ZoneId zone) {
+        ZoneTable table = zoneTables.get(zone);
+        if (table == null) {
+            table = new ZoneTable(zone);
+            zoneTables.put(zone, table);
+        }
+        return table;
+    }
+
+    /**
+     * Appends a number with leading zeros.
+     *
+     * @param text where to append the number.
+     * @param value the number, not negative.
+     * @param digits number of digits to write.
+     */
+    private static void appendDigits(StringBuilder text, int value, int digits) {
+        for (int divisor = digits == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            text.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Parses a fixed number of decimal digits.
+     *
+     * @param text the text holding the digits.
+     * @param start index of the first digit.
+     * @param count number of digits.
+     * @return the parsed value.
+     * @throws IllegalArgumentException if any character is not a digit.
+     */
+    private static int parseDigits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int x = start; x < start + count; x++) {
+            int digit = text.charAt(x) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Date format mangled: " + text);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
     /**
      * Cleans up String input from command line in "[num], [num]..." format for int varargs.
      *
@@ -134,4 +410,151 @@ public class Utilities {
 
         return idIntArray;
     }
+
+    /**
+     * A stretch of time between two offset changes of a time zone, in which its offset from UTC does not change. Dates
+     * in it are converted with one addition rather than a lookup in the zone's rules.
+     */
+    private static final class ZoneWindow {
+        private final int offsetSeconds;
+
+        // Instants covered, from the start up to but not including the end, as seconds since the epoch.
+        private final long startSecond;
+        private final long endSecond;
+
+        // Local times that map to a single instant in the window, the same way, as seconds since the local epoch.
+        private final long localStartSecond;
+        private final long localEndSecond;
+
+        /**
+         * Constructor
+         *
+         * @param zone the time zone.
+         * @param epochSecond an instant the window has to cover, as seconds since the epoch.
+         */
+        ZoneWindow(ZoneId zone, long epochSecond) {
+            ZoneRules rules = zone.getRules();
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+
+            this.offsetSeconds = rules.getOffset(instant).getTotalSeconds();
+
+            // Halved so that adding an offset cannot overflow.
+            this.startSecond = previous == null ? Long.MIN_VALUE / 2 : previous.toEpochSecond();
+            this.endSecond = next == null ? Long.MAX_VALUE / 2 : next.toEpochSecond();
+
+            // Local times just after the clocks went back occur twice and belong to the earlier offset, so they are
+            // left out. Local times just before the clocks go back also occur twice, but belong to this offset.
+            int previousOffsetSeconds =
+                    previous == null ? this.offsetSeconds : previous.getOffsetBefore().getTotalSeconds();
+            this.localStartSecond = this.startSecond + Math.max(previousOffsetSeconds, this.offsetSeconds);
+            this.localEndSecond = this.endSecond + this.offsetSeconds;
+        }
+
+        /**
+         * Checks if the window covers an instant.
+         *
+         * @param epochSecond the instant, as seconds since the epoch.
+         * @return true if the instant is in the window, otherwise false.
+         */
+        boolean covers(long epochSecond) {
+            return epochSecond >= this.startSecond && epochSecond < this.endSecond;
+        }
+
+        /**
+         * Checks if the window covers a local time, i.e. maps it to one of its instants as ZonedDateTime would.
+         *
+         * @param localSecond the local time, as seconds since the local epoch.
+         * @return true if the local time is in the window, otherwise false.
+         */
+        boolean coversLocal(long localSecond) {
+            return localSecond >= this.localStartSecond && localSecond < this.localEndSecond;
+        }
+
+        /**
+         * Returns the first instant after the window.
+         *
+         * @return the end of the window, as seconds since the epoch.
+         */
+        long getEndSecond() {
+            return this.endSecond;
+        }
+
+        /**
+         * Returns the offset from UTC in the window.
+         *
+         * @return the offset in seconds.
+         */
+        int getOffsetSeconds() {
+            return this.offsetSeconds;
+        }
+    }
+
+    /**
+     * The offset windows of a time zone from 1900 to 2100, one after another, in which a date is found by a binary
+     * search rather than by a lookup in the zone's rules, which creates objects.
+     */
+    private static final class ZoneTable {
+        private final ZoneWindow[] windows;
+        private final long[] startSeconds;
+        private final long[] localStartSeconds;
+
+        /**
+         * Constructor
+         *
+         * @param zone the time zone.
+         */
+        ZoneTable(ZoneId zone) {
+            List<ZoneWindow> windowList = new ArrayList<ZoneWindow>();
+            ZoneWindow window = new ZoneWindow(zone, FIRST_TABLE_SECOND);
+            windowList.add(window);
+            while (window.getEndSecond() < LAST_TABLE_SECOND) {
+                window = new ZoneWindow(zone, window.getEndSecond());
+                windowList.add(window);
+            }
+
+            this.windows = windowList.toArray(new ZoneWindow[windowList.size()]);
+            this.startSeconds = new long[this.windows.length];
+            this.localStartSeconds = new long[this.windows.length];
+            for (int x = 0; x < this.windows.length; x++) {
+                this.startSeconds[x] = this.windows[x].startSecond;
+                this.localStartSeconds[x] = this.windows[x].localStartSecond;
+            }
+        }
+
+        /**
+         * Returns the window covering an instant.
+         *
+         * @param epochSecond the instant, as seconds since the epoch.
+         * @return the window, or null if the instant is outside the table.
+         */
+        ZoneWindow window(long epochSecond) {
+            int index = Arrays.binarySearch(this.startSeconds, epochSecond);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            if (index >= 0 && this.windows[index].covers(epochSecond)) {
+                return this.windows[index];
+            }
+            return null;
+        }
+
+        /**
+         * Returns the window covering a local time.
+         *
+         * @param localSecond the local time, as seconds since the local epoch.
+         * @return the window, or null if the local time is outside the table, or occurs twice or not at all.
+         */
+        ZoneWindow localWindow(long localSecond) {
+            int index = Arrays.binarySearch(this.localStartSeconds, localSecond);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            if (index >= 0 && this.windows[index].coversLocal(localSecond)) {
+                return this.windows[index];
+            }
+            return null;
+        }
+    }
 }